@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.AntiAliasMode;
+import renderer.SceneRenderer;
+import renderer.Transform;
+
+/**
+ * A whole frame, as FrameBenchmark draws it, with each way of smoothing the
+ * edges of polygons, so each can be compared with the OFF (one sample a
+ * pixel) path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AntiAliasBenchmark {
+
+	@Param({ "1000", "100000" })
+	public int triangles;
+
+	@Param({ "OFF", "SUPERSAMPLE_2X", "SUPERSAMPLE_4X", "ADAPTIVE" })
+	public AntiAliasMode antiAliasing;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private static final Color AMBIENT = new Color(128, 128, 128);
+
+	private SceneRenderer sceneRenderer;
+	private Transform orientation;
+	private Transform step;
+
+	@Setup
+	public void setUp() {
+		sceneRenderer = new SceneRenderer(600, 600);
+		sceneRenderer.parallel = parallel;
+		sceneRenderer.antiAliasing = antiAliasing;
+		sceneRenderer.setModel(SyntheticScene.generate(triangles));
+		orientation = Transform.identity();
+		step = Transform.newYRotation(0.1f);
+	}
+
+	@Benchmark
+	public BufferedImage render() {
+		orientation = step.compose(orientation).orthonormalized();
+		return sceneRenderer.render(orientation, AMBIENT, Color.BLACK, Color.BLACK);
+	}
+}
+
+// code for comp261 assignments
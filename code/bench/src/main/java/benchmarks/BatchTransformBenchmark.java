@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.Transform;
+
+/**
+ * Transform's batch multiply with its plain loop and with its Vector API
+ * kernel. The fork adds jdk.incubator.vector so the kernel can be loaded;
+ * setUp fails if it can't be, rather than timing the plain loop twice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+public class BatchTransformBenchmark {
+
+	@Param({ "1000", "100000", "3000000" })
+	public int points;
+
+	@Param({ "false", "true" })
+	public boolean vector;
+
+	private float[] xs, ys, zs;
+	private float[] outXs, outYs, outZs;
+	private Transform transform;
+
+	@Setup
+	public void setUp() {
+		if (vector && !Transform.isVectorKernelAvailable()) {
+			throw new IllegalStateException("the Vector API kernel isn't available");
+		}
+		Transform.vectorTransform = vector;
+		Random random = new Random(4);
+		xs = new float[points];
+		ys = new float[points];
+		zs = new float[points];
+		for (int i = 0; i < points; i++) {
+			xs[i] = random.nextFloat() * 200 - 100;
+			ys[i] = random.nextFloat() * 200 - 100;
+			zs[i] = random.nextFloat() * 200 - 100;
+		}
+		outXs = new float[points];
+		outYs = new float[points];
+		outZs = new float[points];
+		transform = Transform.newTranslation(300, 300, 0).compose(Transform.newYRotation(0.2f))
+				.compose(Transform.newXRotation(0.1f)).compose(Transform.newScale(2, 2, 2));
+	}
+
+	@Benchmark
+	public float[] multiply() {
+		transform.multiply(xs, ys, zs, outXs, outYs, outZs, 0, points);
+		return outXs;
+	}
+}
+
+// code for comp261 assignments
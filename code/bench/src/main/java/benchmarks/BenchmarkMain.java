@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the gc profiler, so allocation rates are reported
+ * alongside throughput, and saves the results as JSON to compare later runs
+ * against.
+ *
+ * <code>java -jar benchmarks.jar [regex] [results.json]</code>
+ *
+ * The regex picks which benchmarks run (all of them by default). For any
+ * other JMH options, run org.openjdk.jmh.Main from the same jar instead.
+ * The jdk.incubator.vector module is added, so Transform's batch multiply
+ * uses its Vector API kernel.
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+		String include = args.length > 0 ? args[0] : "benchmarks\\..*";
+		String results = args.length > 1 ? args[1] : "benchmark-results.json";
+
+		Options options = new OptionsBuilder()
+				.include(include)
+				.addProfiler(GCProfiler.class)
+				.jvmArgsAppend("-Djava.awt.headless=true", "--add-modules", "jdk.incubator.vector")
+				.resultFormat(ResultFormatType.JSON)
+				.result(results)
+				.build();
+		new Runner(options).run();
+	}
+}
+
+// code for comp261 assignments
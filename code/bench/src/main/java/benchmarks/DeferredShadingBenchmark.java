@@ -0,0 +1,79 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.Light;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+/**
+ * Whole frames drawn with depth ordering and deferred shading, serially and
+ * in tiles, with the lights fixed to the view so every frame shades its
+ * polygons again. With more lights shading costs more, which shows whether
+ * the tiles shade at the same time or wait for each other.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeferredShadingBenchmark {
+
+	@Param({ "100000", "1000000" })
+	public int triangles;
+
+	@Param({ "2", "16" })
+	public int lightCount;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private static final Color AMBIENT = new Color(128, 128, 128);
+
+	private SceneRenderer sceneRenderer;
+	private List<Light> lights;
+	private Transform orientation;
+	private Transform step;
+
+	@Setup
+	public void setUp() {
+		sceneRenderer = new SceneRenderer(600, 600);
+		sceneRenderer.parallel = parallel;
+		sceneRenderer.depthOrdering = true;
+		sceneRenderer.deferredShading = true;
+		sceneRenderer.setModel(SyntheticScene.generate(triangles));
+		lights = Light.cornerLights(new Color(40, 20, 0), new Color(0, 20, 40));
+		for (int i = lights.size(); i < lightCount; i++) {
+			float angle = i * 0.4f;
+			Vector3D direction = new Vector3D((float) Math.cos(angle), (float) Math.sin(angle), -1);
+			lights.add(Light.directional(direction, new Color(10, 10, 10)).fixedToView());
+		}
+		orientation = Transform.identity();
+		step = Transform.newYRotation(0.1f);
+	}
+
+	@Benchmark
+	public BufferedImage render() {
+		orientation = step.compose(orientation).orthonormalized();
+		return sceneRenderer.render(orientation, AMBIENT, lights);
+	}
+}
+
+// code for comp261 assignments
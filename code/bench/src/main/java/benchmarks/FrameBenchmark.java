@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.SceneRenderer;
+import renderer.Transform;
+
+/**
+ * A whole frame, as Renderer.render() draws it, turning the model a little
+ * each frame as holding down an arrow key would. The Renderer itself needs a
+ * display, so this uses the SceneRenderer it renders with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int triangles;
+
+	@Param({ "300", "600", "1200" })
+	public int canvas;
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	private static final Color AMBIENT = new Color(128, 128, 128);
+
+	private SceneRenderer sceneRenderer;
+	private Transform orientation;
+	private Transform step;
+
+	@Setup
+	public void setUp() {
+		sceneRenderer = new SceneRenderer(canvas, canvas);
+		sceneRenderer.parallel = parallel;
+		sceneRenderer.setModel(SyntheticScene.generate(triangles));
+		orientation = Transform.identity();
+		step = Transform.newYRotation(0.1f);
+	}
+
+	@Benchmark
+	public BufferedImage render() {
+		orientation = step.compose(orientation).orthonormalized();
+		return sceneRenderer.render(orientation, AMBIENT, Color.BLACK, Color.BLACK);
+	}
+}
+
+// code for comp261 assignments
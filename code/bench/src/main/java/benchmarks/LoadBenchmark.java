@@ -0,0 +1,67 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.BinaryScene;
+import renderer.Mesh;
+import renderer.Scene;
+import renderer.SceneLoader;
+
+/**
+ * Loading a scene file, in both formats, without the binary cache.
+ * loadScene is what Renderer.loadScene does, building a Scene as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int triangles;
+
+	@Param({ "text", "binary" })
+	public String format;
+
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException {
+		Mesh mesh = SyntheticScene.generate(triangles);
+		if (format.equals("binary")) {
+			file = File.createTempFile("synthetic" + triangles, ".bin");
+			file.deleteOnExit();
+			BinaryScene.write(mesh, file);
+		} else {
+			file = SyntheticScene.writeText(mesh);
+		}
+	}
+
+	@Benchmark
+	public Mesh load() throws IOException {
+		return SceneLoader.load(file, false);
+	}
+
+	@Benchmark
+	public Scene loadScene() throws IOException {
+		return SceneLoader.load(file, false).toScene();
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.EdgeList;
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.Pipeline;
+import renderer.Transform;
+
+/**
+ * Edge lists and the z-buffer, for the visible polygons of a scene fitted to
+ * a square canvas of the given size.
+ *
+ * A frame's worth of edge lists doesn't fit in memory for the biggest
+ * scenes, so computeZBuffer draws a sample of at most SAMPLE polygons spread
+ * over the scene, with their edge lists worked out up front. It clears the
+ * frame first, so the clear benchmark should be taken off it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RasterBenchmark {
+
+	private static final int SAMPLE = 4096;
+
+	@Param({ "1000", "100000", "1000000" })
+	public int triangles;
+
+	@Param({ "300", "600", "1200" })
+	public int canvas;
+
+	private Mesh screen;
+	private int[] visible;
+	private int visibleCount;
+	private FrameBuffer frame;
+	private EdgeList edgeList;
+	private EdgeList[] sample;
+	private int[] sampleColors;
+
+	@Setup
+	public void setUp() {
+		Mesh mesh = SyntheticScene.generate(triangles);
+		screen = new Mesh(triangles);
+
+		// fit the scene to the canvas size rather than the GUI's
+		float scale = Pipeline.getScale(mesh, canvas, canvas);
+		mesh.transform(Transform.newScale(scale, scale, scale), screen);
+		Pipeline.translateMesh(screen, canvas, canvas);
+
+		visible = new int[triangles];
+		for (int p = 0; p < screen.size; p++) {
+			if (!Pipeline.isHidden(screen, p)) {
+				visible[visibleCount++] = p;
+			}
+		}
+
+		frame = new FrameBuffer(canvas, canvas);
+		edgeList = new EdgeList(0, -1);
+
+		int sampleSize = Math.min(SAMPLE, visibleCount);
+		sample = new EdgeList[sampleSize];
+		sampleColors = new int[sampleSize];
+		for (int i = 0; i < sampleSize; i++) {
+			int p = visible[(int) ((long) i * visibleCount / sampleSize)];
+			sample[i] = Pipeline.computeEdgeList(screen, p, new EdgeList(0, -1));
+			sampleColors[i] = screen.reflectance[p];
+		}
+	}
+
+	@Benchmark
+	public EdgeList computeEdgeList() {
+		for (int i = 0; i < visibleCount; i++) {
+			Pipeline.computeEdgeList(screen, visible[i], edgeList);
+		}
+		return edgeList;
+	}
+
+	@Benchmark
+	public FrameBuffer clear() {
+		frame.clear(0);
+		return frame;
+	}
+
+	@Benchmark
+	public FrameBuffer computeZBuffer() {
+		frame.clear(0);
+		for (int i = 0; i < sample.length; i++) {
+			Pipeline.computeZBuffer(frame, sample[i], sampleColors[i]);
+		}
+		return frame;
+	}
+
+	/** Every visible polygon, one at a time, as the serial renderer does. */
+	@Benchmark
+	public FrameBuffer rasterize() {
+		frame.clear(0);
+		for (int i = 0; i < visibleCount; i++) {
+			int p = visible[i];
+			Pipeline.computeEdgeList(screen, p, edgeList);
+			Pipeline.computeZBuffer(frame, edgeList, screen.reflectance[p]);
+		}
+		return frame;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.Mesh;
+import renderer.Pipeline;
+import renderer.Scene;
+import renderer.Transform;
+
+/**
+ * The Scene transforms in Pipeline, which build a new Scene each time, and
+ * the Mesh transform the renderer uses instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SceneTransformBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int triangles;
+
+	private Mesh mesh;
+	private Mesh out;
+	private Scene scene;
+	private Transform rotation;
+
+	@Setup
+	public void setUp() {
+		mesh = SyntheticScene.generate(triangles);
+		out = new Mesh(triangles);
+		scene = mesh.toScene();
+		rotation = Transform.newYRotation(0.2f).compose(Transform.newXRotation(0.1f));
+	}
+
+	@Benchmark
+	public Scene rotateScene() {
+		return Pipeline.rotateScene(scene, 0.1f, 0.2f);
+	}
+
+	@Benchmark
+	public Scene translateScene() {
+		return Pipeline.translateScene(scene);
+	}
+
+	@Benchmark
+	public Scene scaleScene() {
+		return Pipeline.scaleScene(scene);
+	}
+
+	@Benchmark
+	public Mesh transformMesh() {
+		mesh.transform(rotation, out);
+		return out;
+	}
+
+	@Benchmark
+	public Transform translateMesh() {
+		return Pipeline.translateMesh(out);
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import renderer.Mesh;
+import renderer.Pipeline;
+import renderer.Scene.Polygon;
+import renderer.ShadingCache;
+
+/**
+ * Shading every polygon of a scene: through the Polygon and Color version of
+ * getShading, through the packed version, and through an empty ShadingCache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShadingBenchmark {
+
+	@Param({ "1000", "100000", "1000000" })
+	public int triangles;
+
+	private static final Color AMBIENT = new Color(128, 128, 128);
+	private static final Color CORNER = new Color(100, 50, 0);
+
+	private Mesh mesh;
+	private List<Polygon> polygons;
+	private ShadingCache cache;
+
+	@Setup
+	public void setUp() {
+		mesh = SyntheticScene.generate(triangles);
+		polygons = mesh.toScene().getPolygons();
+		cache = new ShadingCache(mesh);
+		cache.setLights(Color.WHITE, AMBIENT, CORNER, CORNER);
+		cache.setView(mesh, null);
+	}
+
+	@Benchmark
+	public void getShading(Blackhole blackhole) {
+		for (Polygon poly : polygons) {
+			blackhole.consume(Pipeline.getShading(poly, mesh.light, Color.WHITE, AMBIENT, CORNER, CORNER));
+		}
+	}
+
+	@Benchmark
+	public void getShadingPacked(Blackhole blackhole) {
+		for (int p = 0; p < mesh.size; p++) {
+			blackhole.consume(Pipeline.getShading(Pipeline.getNormal(mesh, p), mesh.reflectance[p], mesh.light,
+					Color.WHITE, AMBIENT, CORNER, CORNER));
+		}
+	}
+
+	@Benchmark
+	public void shadingCache(Blackhole blackhole) {
+		cache.invalidate();
+		for (int p = 0; p < mesh.size; p++) {
+			blackhole.consume(cache.getColor(p));
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import renderer.Mesh;
+import renderer.Vector3D;
+
+/**
+ * Makes repeatable scenes of any size for the benchmarks: small triangles
+ * scattered over the surface of a sphere, facing outwards, so roughly half of
+ * them are visible from any direction, like a real closed model.
+ */
+public class SyntheticScene {
+
+	private static final float RADIUS = 100;
+
+	/** Makes a scene with the given number of triangles. */
+	public static Mesh generate(int triangles) {
+		Random random = new Random(triangles);
+		Mesh mesh = new Mesh(triangles);
+		// triangles get smaller as there are more of them, so the sphere is
+		// covered about the same either way
+		float size = (float) (4 * RADIUS / Math.sqrt(triangles));
+		for (int p = 0; p < triangles; p++) {
+			// a random point on the sphere, and two directions along it
+			double z = 2 * random.nextDouble() - 1;
+			double angle = 2 * Math.PI * random.nextDouble();
+			double r = Math.sqrt(1 - z * z);
+			float nx = (float) (r * Math.cos(angle));
+			float ny = (float) (r * Math.sin(angle));
+			float nz = (float) z;
+			Vector3D normal = new Vector3D(nx, ny, nz);
+			Vector3D u = normal.crossProduct(Math.abs(nx) < 0.9f ? new Vector3D(1, 0, 0) : new Vector3D(0, 1, 0))
+					.unitVector();
+			Vector3D v = normal.crossProduct(u);
+
+			float cx = nx * RADIUS;
+			float cy = ny * RADIUS;
+			float cz = nz * RADIUS;
+			// anticlockwise when looking at the outside
+			mesh.add(cx, cy, cz,
+					cx + u.x * size, cy + u.y * size, cz + u.z * size,
+					cx + v.x * size, cy + v.y * size, cz + v.z * size,
+					random.nextInt(1 << 24));
+		}
+		mesh.light = new Vector3D(-0.5f, -1, -0.7f);
+		return mesh;
+	}
+
+	/** Writes the mesh to a temporary text scene file. */
+	public static File writeText(Mesh mesh) throws IOException {
+		File file = File.createTempFile("synthetic" + mesh.size, ".txt");
+		file.deleteOnExit();
+		try (BufferedWriter writer = new BufferedWriter(new FileWriter(file), 1 << 16)) {
+			writer.write(mesh.light.x + " " + mesh.light.y + " " + mesh.light.z + "\n");
+			StringBuilder line = new StringBuilder();
+			for (int p = 0; p < mesh.size; p++) {
+				line.setLength(0);
+				for (int v = p * 3; v < p * 3 + 3; v++) {
+					line.append(mesh.xs[v]).append(' ').append(mesh.ys[v]).append(' ').append(mesh.zs[v]).append(' ');
+				}
+				int rgb = mesh.reflectance[p];
+				line.append((rgb >> 16) & 0xff).append(' ').append((rgb >> 8) & 0xff).append(' ').append(rgb & 0xff)
+						.append('\n');
+				writer.write(line.toString());
+			}
+		}
+		return file;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,66 @@
+package benchmarks;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import renderer.Light;
+import renderer.TiledRenderer;
+import renderer.Transform;
+
+/**
+ * A whole poster drawn by the TiledRenderer and compressed to a PNG that is
+ * thrown away, for comparing tile sizes. The gc profiler's allocation rate
+ * shows the memory used staying the same as the image grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TiledBenchmark {
+
+	@Param({ "100000" })
+	public int triangles;
+
+	@Param({ "2048", "8192" })
+	public int size;
+
+	@Param({ "128", "256", "512" })
+	public int tileSize;
+
+	private static final Color AMBIENT = new Color(128, 128, 128);
+
+	private TiledRenderer tiledRenderer;
+	private List<Light> lights;
+
+	@Setup
+	public void setUp() {
+		tiledRenderer = new TiledRenderer(tileSize);
+		tiledRenderer.setModel(SyntheticScene.generate(triangles), null);
+		lights = Light.cornerLights(Color.BLACK, Color.BLACK);
+	}
+
+	@Benchmark
+	public void render() throws IOException {
+		tiledRenderer.render(Transform.newYRotation(0.3f), AMBIENT, lights, size, size,
+				OutputStream.nullOutputStream());
+	}
+}
+
+// code for comp261 assignments
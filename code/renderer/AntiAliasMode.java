@@ -0,0 +1,37 @@
+package renderer;
+
+/**
+ * The ways the renderer can smooth the edges of polygons. Each takes a grid
+ * of samples per pixel, samples by samples, and averages them.
+ */
+public enum AntiAliasMode {
+
+	/** One sample per pixel. */
+	OFF(1),
+
+	/** The whole frame drawn at twice the width and height, 4 samples a pixel. */
+	SUPERSAMPLE_2X(2),
+
+	/** The whole frame drawn at four times the width and height, 16 samples a pixel. */
+	SUPERSAMPLE_4X(4),
+
+	/**
+	 * The frame drawn once, then 16 samples taken only at pixels on the edge
+	 * of a polygon, from the polygons drawn around them.
+	 */
+	ADAPTIVE(4);
+
+	/** The number of samples along each side of a pixel. */
+	public final int samples;
+
+	private AntiAliasMode(int samples) {
+		this.samples = samples;
+	}
+
+	/** Returns true if the frame is drawn bigger and shrunk down. */
+	public boolean isSupersampled() {
+		return this == SUPERSAMPLE_2X || this == SUPERSAMPLE_4X;
+	}
+}
+
+// code for comp261 assignments
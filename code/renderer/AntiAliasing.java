@@ -0,0 +1,375 @@
+package renderer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Smooths the edges of a frame's polygons, by averaging a grid of samples
+ * for each pixel (see AntiAliasMode).
+ *
+ * For supersampling the frame has already been drawn samples times the
+ * width and height, and downsample just averages each block of samples into
+ * a pixel of the frame that is shown.
+ *
+ * The adaptive mode works on a frame drawn at the normal size with polygon
+ * ids on. Only pixels with a different polygon somewhere in the 3x3 block
+ * around them can be on an edge, and if all nine pixels of the block are the
+ * same colour the samples could only give that colour again, so the rest are
+ * left alone. For each of the others, each sample is given the nearest of
+ * the polygons drawn in its block that covers it, or the background if none
+ * do, and the colour that polygon was drawn with at the nearest pixel in the
+ * block. This takes the colours from the finished frame, so it works the
+ * same for every ShadingMode and with shadows. A polygon too small to be
+ * drawn at any pixel of the block is missed, as it would be without
+ * anti-aliasing.
+ *
+ * Either way the samples' colours are added up straight from the packed
+ * ints, two channels at a time, with no Color objects, in bands of rows on
+ * the pool.
+ */
+public class AntiAliasing {
+
+	/** Rows of pixels per task when resolving in parallel. */
+	private static final int BAND_HEIGHT = 32;
+
+	// The number of floats describing each polygon when resolving a pixel
+	private static final int PLANE = 9;
+
+	// The offsets of the pixels of a 3x3 block, nearest the middle first
+	private static final int[] NEAREST_X = { 0, -1, 1, 0, 0, -1, 1, -1, 1 };
+	private static final int[] NEAREST_Y = { 0, 0, 0, -1, 1, -1, -1, 1, 1 };
+
+	/**
+	 * If true, the work is split into bands on the pool, otherwise it is all
+	 * done on the calling thread. Both give the same image.
+	 */
+	public boolean parallel = true;
+
+	private final ForkJoinPool pool;
+
+	/** The frame's pixels before the adaptive mode resolves its edges. */
+	private int[] source = new int[0];
+
+	public AntiAliasing() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public AntiAliasing(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Averages each block of samples by samples pixels of the sample buffer,
+	 * which must be samples times the width and height of the frame, into a
+	 * pixel of the frame. The frame's depth (and polygon id, if it has them)
+	 * at each pixel is taken from the sample nearest its middle.
+	 */
+	public void downsample(FrameBuffer sampleBuffer, int samples, FrameBuffer frame) {
+		if (sampleBuffer.width != frame.width * samples || sampleBuffer.height != frame.height * samples) {
+			throw new IllegalArgumentException("the sample buffer must be " + samples + " times the frame's size");
+		}
+		run(new Band(frame, sampleBuffer, null, samples, 0, frame.height));
+	}
+
+	/**
+	 * Resolves extra samples at the pixels of the frame on the edges of
+	 * polygons, as described above, and returns how many pixels it resolved.
+	 * The frame must have polygon ids, and screen must hold the polygons it
+	 * was drawn from.
+	 */
+	public int resolveEdges(FrameBuffer frame, Mesh screen, int samples) {
+		if (frame.ids == null) {
+			throw new IllegalArgumentException("resolving edges needs polygon ids");
+		}
+		if (source.length < frame.pixels.length) {
+			source = new int[frame.pixels.length];
+		}
+		System.arraycopy(frame.pixels, 0, source, 0, frame.pixels.length);
+		return run(new Band(frame, null, screen, samples, 0, frame.height));
+	}
+
+	private int run(Band band) {
+		return !parallel || band.to - band.from <= BAND_HEIGHT ? band.compute() : pool.invoke(band);
+	}
+
+	/**
+	 * A task that either downsamples (if sampleBuffer isn't null) or resolves
+	 * the edges of (otherwise) rows [from, to) of the frame, splitting itself
+	 * in two while it is taller than BAND_HEIGHT. Returns the number of
+	 * pixels resolved.
+	 */
+	@SuppressWarnings("serial")
+	private class Band extends RecursiveTask<Integer> {
+
+		private final FrameBuffer frame;
+		private final FrameBuffer sampleBuffer;
+		private final Mesh screen;
+		private final int samples;
+		private final int from;
+		private final int to;
+
+		Band(FrameBuffer frame, FrameBuffer sampleBuffer, Mesh screen, int samples, int from, int to) {
+			this.frame = frame;
+			this.sampleBuffer = sampleBuffer;
+			this.screen = screen;
+			this.samples = samples;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (parallel && to - from > BAND_HEIGHT) {
+				int mid = (from + to) >>> 1;
+				Band top = new Band(frame, sampleBuffer, screen, samples, from, mid);
+				top.fork();
+				int bottom = new Band(frame, sampleBuffer, screen, samples, mid, to).compute();
+				return bottom + top.join();
+			} else if (sampleBuffer != null) {
+				downsampleRows(sampleBuffer, samples, frame, from, to);
+				return 0;
+			}
+			return resolveRows(frame, screen, samples, from, to);
+		}
+	}
+
+	private static void downsampleRows(FrameBuffer sampleBuffer, int samples, FrameBuffer frame, int fromRow,
+			int toRow) {
+		int width = frame.width;
+		int sampleWidth = sampleBuffer.width;
+		int[] from = sampleBuffer.pixels;
+		int[] to = frame.pixels;
+		int middle = samples / 2;
+		int count = samples * samples;
+		for (int y = fromRow; y < toRow; y++) {
+			for (int x = 0; x < width; x++) {
+				int redBlue = 0, green = 0;
+				int start = y * samples * sampleWidth + x * samples;
+				for (int sy = 0; sy < samples; sy++) {
+					int row = start + sy * sampleWidth;
+					for (int sx = 0; sx < samples; sx++) {
+						int rgb = from[row + sx];
+						redBlue += rgb & 0xff00ff;
+						green += rgb & 0xff00;
+					}
+				}
+				int i = y * width + x;
+				to[i] = average(redBlue, green, count);
+				int centre = start + middle * sampleWidth + middle;
+				frame.depth[i] = sampleBuffer.depth[centre];
+				if (frame.ids != null) {
+					frame.ids[i] = sampleBuffer.ids == null ? FrameBuffer.NO_POLYGON : sampleBuffer.ids[centre];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Divides the sums of count colours' red and blue channels, added up
+	 * together, and green channels by count, rounding to the nearest, and
+	 * packs them back together. Blue can't spill into red for up to 256
+	 * samples.
+	 */
+	private static int average(int redBlue, int green, int count) {
+		int half = count / 2;
+		int red = ((redBlue >>> 16) + half) / count;
+		int blue = ((redBlue & 0xffff) + half) / count;
+		return (red << 16) | (((green >>> 8) + half) / count << 8) | blue;
+	}
+
+	private int resolveRows(FrameBuffer frame, Mesh screen, int samples, int fromRow, int toRow) {
+		int width = frame.width, height = frame.height;
+		int[] ids = frame.ids;
+		int[] colours = source;
+		int[] pixels = frame.pixels;
+		EdgeResolver resolver = new EdgeResolver(frame, screen, colours, samples);
+		int resolved = 0;
+
+		for (int y = fromRow; y < toRow; y++) {
+			for (int x = 0; x < width; x++) {
+				int i = y * width + x;
+				boolean inside = x > 0 && y > 0 && x < width - 1 && y < height - 1;
+				if (inside ? differs(ids, i, width) && differs(colours, i, width)
+						: differsAtBorder(ids, x, y, width, height) && differsAtBorder(colours, x, y, width, height)) {
+					pixels[i] = resolver.resolve(x, y);
+					resolved++;
+				}
+			}
+		}
+		return resolved;
+	}
+
+	/**
+	 * Returns true if any pixel next to pixel i, which isn't on the border of
+	 * the frame, has a different value in the given array. Every neighbour is
+	 * looked at without branching, as most pixels match them all.
+	 */
+	private static boolean differs(int[] values, int i, int width) {
+		int value = values[i];
+		int above = i - width, below = i + width;
+		return (values[above - 1] != value | values[above] != value | values[above + 1] != value
+				| values[i - 1] != value | values[i + 1] != value | values[below - 1] != value
+				| values[below] != value | values[below + 1] != value);
+	}
+
+	/** The same as differs, for a pixel on the border of the frame. */
+	private static boolean differsAtBorder(int[] values, int x, int y, int width, int height) {
+		int value = values[y * width + x];
+		for (int ny = Math.max(y - 1, 0); ny <= Math.min(y + 1, height - 1); ny++) {
+			for (int nx = Math.max(x - 1, 0); nx <= Math.min(x + 1, width - 1); nx++) {
+				if (values[ny * width + nx] != value) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/** Works out the colour of one pixel on an edge, from its samples. */
+	private static class EdgeResolver {
+
+		private final int width;
+		private final int height;
+		private final int originX;
+		private final int originY;
+		private final int[] ids;
+		private final int[] colours;
+		private final float[] xs;
+		private final float[] ys;
+		private final float[] zs;
+		private final int samples;
+
+		// The different polygons drawn in the block around the pixel, the
+		// colour each was drawn with at the pixel nearest the middle, and
+		// their planes
+		private final int[] polygons = new int[9];
+		private final int[] polygonColours = new int[9];
+		private final float[] plane = new float[9 * PLANE];
+
+		// Where each sample is within the pixel, and the nearest polygon to
+		// it so far and its colour
+		private final float[] sampleXs;
+		private final float[] sampleYs;
+		private final float[] nearest;
+		private final int[] sampleColours;
+
+		EdgeResolver(FrameBuffer frame, Mesh screen, int[] colours, int samples) {
+			this.width = frame.width;
+			this.height = frame.height;
+			this.originX = frame.originX;
+			this.originY = frame.originY;
+			this.ids = frame.ids;
+			this.colours = colours;
+			this.xs = screen.xs;
+			this.ys = screen.ys;
+			this.zs = screen.zs;
+			this.samples = samples;
+			int count = samples * samples;
+			this.sampleXs = new float[count];
+			this.sampleYs = new float[count];
+			this.nearest = new float[count];
+			this.sampleColours = new int[count];
+			for (int k = 0; k < count; k++) {
+				sampleXs[k] = (k % samples + 0.5f) / samples;
+				sampleYs[k] = (k / samples + 0.5f) / samples;
+			}
+		}
+
+		int resolve(int x, int y) {
+			// The middle pixel first, then its sides, then its corners, so
+			// each polygon's colour comes from as near as it can
+			int found = 0;
+			int background = -1;
+			for (int k = 0; k < 9; k++) {
+				int nx = x + NEAREST_X[k], ny = y + NEAREST_Y[k];
+				if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+					continue;
+				}
+				int n = ny * width + nx;
+				int p = ids[n];
+				if (p == FrameBuffer.NO_POLYGON) {
+					if (background < 0) {
+						background = colours[n];
+					}
+					continue;
+				}
+				boolean seen = false;
+				for (int f = 0; f < found && !seen; f++) {
+					seen = polygons[f] == p;
+				}
+				if (!seen) {
+					polygons[found] = p;
+					polygonColours[found++] = colours[n];
+				}
+			}
+			int uncovered = background >= 0 ? background : colours[y * width + x];
+
+			// Each polygon's weights on its first two corners, and its depth,
+			// as planes over the pixel, measured from its top left on the
+			// canvas
+			int left = x + originX, top = y + originY;
+			int planes = 0;
+			for (int f = 0; f < found; f++) {
+				int v = polygons[f] * 3;
+				float ax = xs[v] - left, ay = ys[v] - top;
+				float bx = xs[v + 1] - left, by = ys[v + 1] - top;
+				float cx = xs[v + 2] - left, cy = ys[v + 2] - top;
+				float area = (bx - ax) * (cy - ay) - (cx - ax) * (by - ay);
+				if (area == 0) {
+					continue;
+				}
+				float inverseArea = 1 / area;
+				float wa = (bx * cy - cx * by) * inverseArea;
+				float waX = (by - cy) * inverseArea, waY = (cx - bx) * inverseArea;
+				float wb = (cx * ay - ax * cy) * inverseArea;
+				float wbX = (cy - ay) * inverseArea, wbY = (ax - cx) * inverseArea;
+				float za = zs[v] - zs[v + 2], zb = zs[v + 1] - zs[v + 2];
+				int e = planes * PLANE;
+				plane[e] = wa;
+				plane[e + 1] = waX;
+				plane[e + 2] = waY;
+				plane[e + 3] = wb;
+				plane[e + 4] = wbX;
+				plane[e + 5] = wbY;
+				plane[e + 6] = zs[v + 2] + wa * za + wb * zb;
+				plane[e + 7] = waX * za + wbX * zb;
+				plane[e + 8] = waY * za + wbY * zb;
+				polygonColours[planes++] = polygonColours[f];
+			}
+
+			// Each polygon in turn takes the samples it covers nearer than
+			// those before it
+			int count = samples * samples;
+			for (int k = 0; k < count; k++) {
+				nearest[k] = Float.POSITIVE_INFINITY;
+				sampleColours[k] = uncovered;
+			}
+			for (int f = 0, e = 0; f < planes; f++, e += PLANE) {
+				float wa0 = plane[e], waX = plane[e + 1], waY = plane[e + 2];
+				float wb0 = plane[e + 3], wbX = plane[e + 4], wbY = plane[e + 5];
+				float z0 = plane[e + 6], zX = plane[e + 7], zY = plane[e + 8];
+				int polygonColour = polygonColours[f];
+				for (int k = 0; k < count; k++) {
+					float u = sampleXs[k], v = sampleYs[k];
+					float wa = wa0 + waX * u + waY * v;
+					float wb = wb0 + wbX * u + wbY * v;
+					float z = z0 + zX * u + zY * v;
+					// one test rather than four, as which way each goes is
+					// hard to guess
+					if (wa >= 0 & wb >= 0 & wa + wb <= 1 & z < nearest[k]) {
+						nearest[k] = z;
+						sampleColours[k] = polygonColour;
+					}
+				}
+			}
+			int redBlue = 0, green = 0;
+			for (int k = 0; k < count; k++) {
+				redBlue += sampleColours[k] & 0xff00ff;
+				green += sampleColours[k] & 0xff00;
+			}
+			return average(redBlue, green, count);
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,396 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Renders scenes to PNG files without a GUI, so it runs with
+ * java.awt.headless=true on machines with no display.
+ *
+ * A single job is given on the command line:
+ *
+ * <pre>
+ * java renderer.BatchRenderer scene.txt out.png [option=value ...]
+ * </pre>
+ *
+ * and many jobs can be given in a manifest, one per line in the same form,
+ * with blank lines and lines starting with # ignored:
+ *
+ * <pre>
+ * java renderer.BatchRenderer --manifest jobs.txt [--threads n]
+ * </pre>
+ *
+ * The options are rotateX and rotateY (in radians, applied x first), ambient,
+ * bottomLeft and bottomRight (as r,g,b), width and height, raster (scanline
+ * or halfspace, see RasterMode), shading (flat, gouraud or phong, see
+ * ShadingMode), antiAlias (off, 2x, 4x or adaptive, see AntiAliasMode), and
+ * occlusion, depthOrdering, deferredShading and shadows (on or off, see the
+ * SceneRenderer fields of the same names, occlusion being occlusionCulling),
+ * and tile (in pixels, see below).
+ *
+ * Images of more than TILED_PIXELS pixels are drawn by a TiledRenderer in
+ * tiles of its default size and streamed to the PNG, so that a poster needs
+ * no more memory than a small image; tile=n draws any image in tiles of n
+ * pixels, and tile=0 (the default) leaves it to the image's size.
+ *
+ * Jobs from a manifest are run by a fixed number of worker threads, each
+ * holding at most one model at a time, so memory use is bounded by the
+ * number of threads rather than the number of jobs. Jobs are sorted by scene
+ * file so that a worker can reuse the model it already has loaded.
+ */
+public class BatchRenderer {
+
+	/** The most pixels an image can have and still be drawn in one frame. */
+	public static final int TILED_PIXELS = 4096 * 4096;
+
+	/** One image to render. */
+	public static class Job {
+		public File scene;
+		public File output;
+		public float rotateX = 0;
+		public float rotateY = 0;
+		public Color ambientLight = new Color(128, 128, 128);
+		public Color bottomLeftLight = Color.BLACK;
+		public Color bottomRightLight = Color.BLACK;
+		public int width = GUI.CANVAS_WIDTH;
+		public int height = GUI.CANVAS_HEIGHT;
+		public RasterMode rasterMode = RasterMode.SCANLINE;
+		public ShadingMode shadingMode = ShadingMode.FLAT;
+		public AntiAliasMode antiAliasing = AntiAliasMode.OFF;
+		public boolean occlusionCulling = false;
+		public boolean depthOrdering = false;
+		public boolean deferredShading = false;
+		public boolean shadows = false;
+		public int tileSize = 0;
+
+		/** The rotation of the model, about x then y. */
+		public Transform getOrientation() {
+			return Transform.newYRotation(rotateY).compose(Transform.newXRotation(rotateX));
+		}
+	}
+
+	/**
+	 * Reads a job from its command line or manifest form, relative paths
+	 * being resolved against the given directory (which may be null).
+	 */
+	public static Job parseJob(String[] args, File directory) {
+		if (args.length < 2) {
+			throw new IllegalArgumentException("expected a scene file and an output file");
+		}
+		Job job = new Job();
+		job.scene = resolve(args[0], directory);
+		job.output = resolve(args[1], directory);
+		for (int i = 2; i < args.length; i++) {
+			int equals = args[i].indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("expected option=value but found " + args[i]);
+			}
+			String option = args[i].substring(0, equals);
+			String value = args[i].substring(equals + 1);
+			try {
+				if (option.equals("rotateX")) {
+					job.rotateX = Float.parseFloat(value);
+				} else if (option.equals("rotateY")) {
+					job.rotateY = Float.parseFloat(value);
+				} else if (option.equals("ambient")) {
+					job.ambientLight = parseColor(value);
+				} else if (option.equals("bottomLeft")) {
+					job.bottomLeftLight = parseColor(value);
+				} else if (option.equals("bottomRight")) {
+					job.bottomRightLight = parseColor(value);
+				} else if (option.equals("width")) {
+					job.width = Integer.parseInt(value);
+				} else if (option.equals("height")) {
+					job.height = Integer.parseInt(value);
+				} else if (option.equals("raster")) {
+					job.rasterMode = parseRasterMode(value);
+				} else if (option.equals("shading")) {
+					job.shadingMode = parseShadingMode(value);
+				} else if (option.equals("antiAlias")) {
+					job.antiAliasing = parseAntiAliasMode(value);
+				} else if (option.equals("occlusion")) {
+					job.occlusionCulling = parseSwitch(value);
+				} else if (option.equals("depthOrdering")) {
+					job.depthOrdering = parseSwitch(value);
+				} else if (option.equals("deferredShading")) {
+					job.deferredShading = parseSwitch(value);
+				} else if (option.equals("shadows")) {
+					job.shadows = parseSwitch(value);
+				} else if (option.equals("tile")) {
+					job.tileSize = Integer.parseInt(value);
+				} else {
+					throw new IllegalArgumentException("unknown option " + option);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("bad value for " + option + ": " + value);
+			}
+		}
+		if (job.width <= 0 || job.height <= 0) {
+			throw new IllegalArgumentException("width and height must be positive");
+		}
+		if (job.tileSize < 0) {
+			throw new IllegalArgumentException("tile must not be negative");
+		}
+		return job;
+	}
+
+	private static File resolve(String path, File directory) {
+		File file = new File(path);
+		return file.isAbsolute() || directory == null ? file : new File(directory, path);
+	}
+
+	private static Color parseColor(String value) {
+		String[] parts = value.split(",");
+		if (parts.length != 3) {
+			throw new NumberFormatException(value);
+		}
+		return new Color(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+	}
+
+	private static RasterMode parseRasterMode(String value) {
+		if (value.equals("scanline")) {
+			return RasterMode.SCANLINE;
+		} else if (value.equals("halfspace")) {
+			return RasterMode.HALF_SPACE;
+		}
+		throw new NumberFormatException(value);
+	}
+
+	private static ShadingMode parseShadingMode(String value) {
+		if (value.equals("flat")) {
+			return ShadingMode.FLAT;
+		} else if (value.equals("gouraud")) {
+			return ShadingMode.GOURAUD;
+		} else if (value.equals("phong")) {
+			return ShadingMode.PHONG;
+		}
+		throw new NumberFormatException(value);
+	}
+
+	private static AntiAliasMode parseAntiAliasMode(String value) {
+		if (value.equals("off")) {
+			return AntiAliasMode.OFF;
+		} else if (value.equals("2x")) {
+			return AntiAliasMode.SUPERSAMPLE_2X;
+		} else if (value.equals("4x")) {
+			return AntiAliasMode.SUPERSAMPLE_4X;
+		} else if (value.equals("adaptive")) {
+			return AntiAliasMode.ADAPTIVE;
+		}
+		throw new NumberFormatException(value);
+	}
+
+	private static boolean parseSwitch(String value) {
+		if (value.equals("on")) {
+			return true;
+		} else if (value.equals("off")) {
+			return false;
+		}
+		throw new NumberFormatException(value);
+	}
+
+	/** Reads every job in a manifest file. */
+	public static List<Job> readManifest(File manifest) throws IOException {
+		List<Job> jobs = new ArrayList<Job>();
+		File directory = manifest.getAbsoluteFile().getParentFile();
+		try (BufferedReader reader = new BufferedReader(new FileReader(manifest))) {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				try {
+					jobs.add(parseJob(line.split("\\s+"), directory));
+				} catch (IllegalArgumentException e) {
+					throw new IOException(manifest + " line " + lineNumber + ": " + e.getMessage());
+				}
+			}
+		}
+		return jobs;
+	}
+
+	/**
+	 * Renders every job on the given number of threads, returning the number
+	 * that failed. Failures are reported on System.err and don't stop the
+	 * other jobs.
+	 */
+	public static int renderAll(List<Job> jobs, int threads) throws InterruptedException {
+		final List<Job> sorted = new ArrayList<Job>(jobs);
+		Collections.sort(sorted, new Comparator<Job>() {
+			public int compare(Job a, Job b) {
+				return a.scene.getPath().compareTo(b.scene.getPath());
+			}
+		});
+
+		threads = Math.max(1, Math.min(threads, sorted.size()));
+		// with several jobs at once each one is drawn on a single thread
+		final boolean parallel = threads == 1 && Runtime.getRuntime().availableProcessors() > 1;
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger failures = new AtomicInteger();
+
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Runnable() {
+				public void run() {
+					Worker worker = new Worker(parallel);
+					for (int j = next.getAndIncrement(); j < sorted.size(); j = next.getAndIncrement()) {
+						Job job = sorted.get(j);
+						try {
+							worker.render(job);
+						} catch (Exception e) {
+							failures.incrementAndGet();
+							System.err.println("failed to render " + job.scene + " to " + job.output + ": " + e);
+						}
+					}
+				}
+			}, "batch-" + i);
+			workers[i].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return failures.get();
+	}
+
+	/** The size of the tiles a job is drawn in, or 0 if it is drawn in one frame. */
+	public static int getTileSize(Job job) {
+		if (job.tileSize > 0) {
+			return job.tileSize;
+		}
+		return (long) job.width * job.height > TILED_PIXELS ? TiledRenderer.DEFAULT_TILE_SIZE : 0;
+	}
+
+	/**
+	 * Renders jobs one at a time, keeping the last model it loaded and its
+	 * SceneRenderer (or TiledRenderer) for the next job.
+	 */
+	private static class Worker {
+		private final boolean parallel;
+		private File scene = null;
+		private Mesh model = null;
+		private SceneRenderer sceneRenderer = null;
+		private TiledRenderer tiledRenderer = null;
+
+		Worker(boolean parallel) {
+			this.parallel = parallel;
+		}
+
+		void render(Job job) throws IOException {
+			if (!job.scene.equals(scene)) {
+				// let go of the old model before loading the next one
+				scene = null;
+				model = null;
+				sceneRenderer = null;
+				tiledRenderer = null;
+				model = SceneLoader.load(job.scene);
+				scene = job.scene;
+			}
+			File parent = job.output.getAbsoluteFile().getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+
+			int tileSize = getTileSize(job);
+			if (tileSize > 0) {
+				if (tiledRenderer == null || tiledRenderer.tileSize != tileSize) {
+					// a tile's frame buffers are small, so there's no need to
+					// keep a whole frame's as well
+					sceneRenderer = null;
+					tiledRenderer = new TiledRenderer(tileSize);
+					tiledRenderer.sceneRenderer.parallel = parallel;
+					tiledRenderer.setModel(model, scene.getPath());
+				}
+				setModes(tiledRenderer.sceneRenderer, job);
+				try (OutputStream out = new BufferedOutputStream(new FileOutputStream(job.output))) {
+					tiledRenderer.render(job.getOrientation(), job.ambientLight,
+							Light.cornerLights(job.bottomLeftLight, job.bottomRightLight), job.width, job.height, out);
+				}
+				return;
+			}
+
+			if (sceneRenderer == null) {
+				tiledRenderer = null;
+				sceneRenderer = new SceneRenderer(job.width, job.height);
+				sceneRenderer.parallel = parallel;
+				sceneRenderer.setModel(model, scene.getPath());
+			} else {
+				sceneRenderer.setSize(job.width, job.height);
+			}
+			setModes(sceneRenderer, job);
+			BufferedImage image = sceneRenderer.render(job.getOrientation(), job.ambientLight,
+					job.bottomLeftLight, job.bottomRightLight);
+			if (!ImageIO.write(image, "png", job.output)) {
+				throw new IOException("no PNG writer available");
+			}
+		}
+
+		private static void setModes(SceneRenderer sceneRenderer, Job job) {
+			sceneRenderer.rasterMode = job.rasterMode;
+			sceneRenderer.shadingMode = job.shadingMode;
+			sceneRenderer.antiAliasing = job.antiAliasing;
+			sceneRenderer.occlusionCulling = job.occlusionCulling;
+			sceneRenderer.depthOrdering = job.depthOrdering;
+			sceneRenderer.deferredShading = job.deferredShading;
+			sceneRenderer.shadows = job.shadows;
+		}
+	}
+
+	private static void usage() {
+		System.err.println("usage: java renderer.BatchRenderer <scene> <output.png> [option=value ...]");
+		System.err.println("       java renderer.BatchRenderer --manifest <jobs.txt> [--threads n]");
+		System.err.println("options: rotateX=radians rotateY=radians ambient=r,g,b bottomLeft=r,g,b");
+		System.err.println("         bottomRight=r,g,b width=pixels height=pixels raster=scanline|halfspace");
+		System.err.println("         shading=flat|gouraud|phong antiAlias=off|2x|4x|adaptive shadows=on|off");
+		System.err.println("         occlusion=on|off depthOrdering=on|off deferredShading=on|off tile=pixels");
+		System.exit(2);
+	}
+
+	public static void main(String[] args) throws Exception {
+		System.setProperty("java.awt.headless", "true");
+
+		List<Job> jobs;
+		int threads = Runtime.getRuntime().availableProcessors();
+		try {
+			if (args.length > 0 && args[0].equals("--manifest")) {
+				if (args.length != 2 && !(args.length == 4 && args[2].equals("--threads"))) {
+					usage();
+				}
+				jobs = readManifest(new File(args[1]));
+				if (args.length == 4) {
+					threads = Integer.parseInt(args[3]);
+				}
+			} else {
+				jobs = Collections.singletonList(parseJob(args, null));
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			usage();
+			return;
+		}
+
+		long start = System.nanoTime();
+		int failures = renderAll(jobs, threads);
+		System.out.printf("rendered %d of %d images in %.1f s%n", jobs.size() - failures, jobs.size(),
+				(System.nanoTime() - start) / 1e9);
+		System.exit(failures == 0 ? 0 : 1);
+	}
+}
+
+// code for comp261 assignments
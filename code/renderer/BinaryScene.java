@@ -0,0 +1,316 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * A compact binary version of the scene file format, which can be loaded
+ * straight into a Mesh by memory-mapping the file, without parsing anything
+ * per polygon.
+ *
+ * All values are little-endian. The layout is:
+ *
+ * <pre>
+ * int     MAGIC
+ * int     VERSION
+ * int     n, the number of polygons
+ * float   light x, y, z
+ * int     flags, FLAG_SOURCE_LINES, FLAG_LIGHTS and FLAG_SOURCE_FILE for
+ *         the optional parts
+ * long    the length and last-modified time of the text file the scene was
+ * long    read from, if FLAG_SOURCE_FILE is set
+ * float   3n vertex x values, in Mesh order (vertex i of polygon p at 3p + i)
+ * float   3n vertex y values
+ * float   3n vertex z values
+ * byte    3n reflectance values, r g b for each polygon
+ * int     n source lines, the line of the text file each polygon came from,
+ *         if FLAG_SOURCE_LINES is set
+ * int     m, the number of other lights, if FLAG_LIGHTS is set
+ * m times:
+ *   int   0 for a directional light, 1 for a point light, plus 2 if the
+ *         light is fixed to the view
+ *   float x, y, z of the light's direction or position
+ *   int   the light's packed RGB colour
+ *   float constant, linear and quadratic attenuation
+ * </pre>
+ *
+ * Version 1 files have no flags and no source lines, version 2 files have no
+ * lights and version 3 files have no source file. All can still be read.
+ *
+ * Running this class converts text scene files to binary ones:
+ * <code>java renderer.BinaryScene in.txt out.bin</code>
+ */
+public class BinaryScene {
+
+	public static final int MAGIC = 0x52334453; // "R3DS"
+	public static final int VERSION = 4;
+
+	/** Set in the flags if the file holds the source line of each polygon. */
+	public static final int FLAG_SOURCE_LINES = 1;
+
+	/** Set in the flags if the file holds the mesh's other lights. */
+	public static final int FLAG_LIGHTS = 2;
+
+	/**
+	 * Set in the flags if the header records the text file the scene was read
+	 * from, so a cache can tell whether that file has changed since.
+	 */
+	public static final int FLAG_SOURCE_FILE = 4;
+
+	private static final int SOURCE_FILE_SIZE = 2 * 8;
+
+	private static final int LIGHT_SIZE = 8 * 4;
+
+	private static final int HEADER_SIZE = 7 * 4;
+
+	private static final int VERSION_1_HEADER_SIZE = 6 * 4;
+
+	/** The most we map at once, as a single mapping can't pass 2GB. */
+	private static final int MAX_MAPPING = 1 << 30;
+
+	/** Returns true if the given file starts with the binary scene magic. */
+	public static boolean isBinary(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() < 4) {
+				return false;
+			}
+			return Integer.reverseBytes(raf.readInt()) == MAGIC;
+		}
+	}
+
+	/** Loads a binary scene file into a new Mesh. */
+	public static Mesh read(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = readHeader(file, channel);
+			int version = header.getInt(4);
+			int size = header.getInt();
+			Vector3D light = new Vector3D(header.getFloat(), header.getFloat(), header.getFloat());
+			int flags = version == 1 ? 0 : header.getInt();
+			int headerSize = version == 1 ? VERSION_1_HEADER_SIZE : HEADER_SIZE;
+			if ((flags & FLAG_SOURCE_FILE) != 0) {
+				headerSize += SOURCE_FILE_SIZE;
+			}
+			boolean hasSourceLines = (flags & FLAG_SOURCE_LINES) != 0;
+			boolean hasLights = (flags & FLAG_LIGHTS) != 0;
+			long expected = headerSize + 3L * size * (3 * 4 + 1) + (hasSourceLines ? 4L * size : 0);
+			int lightCount = 0;
+			if (hasLights && size >= 0 && channel.size() >= expected + 4) {
+				ByteBuffer count = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+				channel.read(count, expected);
+				lightCount = count.getInt(0);
+				expected += 4 + (long) LIGHT_SIZE * Math.max(lightCount, 0);
+			} else if (hasLights) {
+				expected += 4;
+			}
+			if (size < 0 || lightCount < 0 || channel.size() != expected) {
+				throw new IOException(file + " is truncated or corrupt: expected " + expected + " bytes but found "
+						+ channel.size());
+			}
+
+			Mesh mesh = new Mesh(size);
+			mesh.light = light;
+			mesh.size = size;
+
+			long position = headerSize;
+			position = readFloats(channel, position, mesh.xs, 3 * size);
+			position = readFloats(channel, position, mesh.ys, 3 * size);
+			position = readFloats(channel, position, mesh.zs, 3 * size);
+
+			// The colours are read a mapping at a time, then packed.
+			for (int p = 0; p < size;) {
+				int count = Math.min(size - p, MAX_MAPPING / 3);
+				MappedByteBuffer bytes = channel.map(MapMode.READ_ONLY, position, 3L * count);
+				for (int i = 0; i < count; i++, p++) {
+					int r = bytes.get() & 0xff;
+					int g = bytes.get() & 0xff;
+					int b = bytes.get() & 0xff;
+					mesh.reflectance[p] = (r << 16) | (g << 8) | b;
+				}
+				position += 3L * count;
+			}
+
+			if (hasSourceLines) {
+				mesh.sourceLines = new int[size];
+				for (int done = 0; done < size;) {
+					int chunk = Math.min(size - done, MAX_MAPPING / 4);
+					channel.map(MapMode.READ_ONLY, position, 4L * chunk).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer()
+							.get(mesh.sourceLines, done, chunk);
+					done += chunk;
+					position += 4L * chunk;
+				}
+			}
+
+			if (hasLights) {
+				ByteBuffer lights = channel.map(MapMode.READ_ONLY, position + 4, (long) LIGHT_SIZE * lightCount)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				for (int i = 0; i < lightCount; i++) {
+					int kind = lights.getInt();
+					Vector3D vector = new Vector3D(lights.getFloat(), lights.getFloat(), lights.getFloat());
+					Color color = new Color(lights.getInt() & 0xffffff);
+					float constant = lights.getFloat();
+					float linear = lights.getFloat();
+					float quadratic = lights.getFloat();
+					Light extra;
+					try {
+						extra = (kind & 1) == 0 ? Light.directional(vector, color)
+								: Light.point(vector, color, constant, linear, quadratic);
+					} catch (IllegalArgumentException e) {
+						throw new IOException(file + " is corrupt: " + e.getMessage());
+					}
+					mesh.lights.add((kind & 2) == 0 ? extra : extra.fixedToView());
+				}
+			}
+			return mesh;
+		}
+	}
+
+	/**
+	 * Maps the header of a binary scene file and checks its magic, version
+	 * and length. The buffer is left just after the version.
+	 */
+	private static ByteBuffer readHeader(File file, FileChannel channel) throws IOException {
+		ByteBuffer header = channel.map(MapMode.READ_ONLY, 0,
+				Math.min(HEADER_SIZE + SOURCE_FILE_SIZE, channel.size())).order(ByteOrder.LITTLE_ENDIAN);
+		if (header.remaining() < VERSION_1_HEADER_SIZE || header.getInt() != MAGIC) {
+			throw new IOException(file + " is not a binary scene file");
+		}
+		int version = header.getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException(file + " has unsupported binary scene version " + version);
+		}
+		int headerSize = version == 1 ? VERSION_1_HEADER_SIZE : HEADER_SIZE;
+		if (version > 1 && header.limit() >= HEADER_SIZE
+				&& (header.getInt(HEADER_SIZE - 4) & FLAG_SOURCE_FILE) != 0) {
+			headerSize += SOURCE_FILE_SIZE;
+		}
+		if (header.limit() < headerSize) {
+			throw new IOException(file + " is truncated or corrupt: the header is incomplete");
+		}
+		return header;
+	}
+
+	/**
+	 * Returns true if the given binary scene file records a source text file
+	 * of exactly the given length and last-modified time.
+	 */
+	public static boolean isReadFrom(File file, long sourceLength, long sourceLastModified) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+			ByteBuffer header = readHeader(file, channel);
+			if (header.getInt(4) == 1 || (header.getInt(HEADER_SIZE - 4) & FLAG_SOURCE_FILE) == 0) {
+				return false;
+			}
+			return header.getLong(HEADER_SIZE) == sourceLength
+					&& header.getLong(HEADER_SIZE + 8) == sourceLastModified;
+		}
+	}
+
+	private static long readFloats(FileChannel channel, long position, float[] into, int count) throws IOException {
+		for (int done = 0; done < count;) {
+			int chunk = Math.min(count - done, MAX_MAPPING / 4);
+			channel.map(MapMode.READ_ONLY, position, 4L * chunk).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer()
+					.get(into, done, chunk);
+			done += chunk;
+			position += 4L * chunk;
+		}
+		return position;
+	}
+
+	/** Writes the given mesh to a binary scene file. */
+	public static void write(Mesh mesh, File file) throws IOException {
+		write(mesh, file, false, 0, 0);
+	}
+
+	/**
+	 * Writes the given mesh to a binary scene file, recording the length and
+	 * last-modified time of the text file it was read from.
+	 */
+	public static void write(Mesh mesh, File file, long sourceLength, long sourceLastModified)
+			throws IOException {
+		write(mesh, file, true, sourceLength, sourceLastModified);
+	}
+
+	private static void write(Mesh mesh, File file, boolean hasSource, long sourceLength, long sourceLastModified)
+			throws IOException {
+		int size = mesh.size;
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength(0);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(VERSION).putInt(size);
+			buffer.putFloat(mesh.light.x).putFloat(mesh.light.y).putFloat(mesh.light.z);
+			buffer.putInt((mesh.sourceLines != null ? FLAG_SOURCE_LINES : 0)
+					| (mesh.lights.isEmpty() ? 0 : FLAG_LIGHTS) | (hasSource ? FLAG_SOURCE_FILE : 0));
+			if (hasSource) {
+				buffer.putLong(sourceLength).putLong(sourceLastModified);
+			}
+			for (float[] values : new float[][] { mesh.xs, mesh.ys, mesh.zs }) {
+				for (int v = 0; v < 3 * size; v++) {
+					if (buffer.remaining() < 4) {
+						flush(buffer, channel);
+					}
+					buffer.putFloat(values[v]);
+				}
+			}
+			for (int p = 0; p < size; p++) {
+				if (buffer.remaining() < 3) {
+					flush(buffer, channel);
+				}
+				int rgb = mesh.reflectance[p];
+				buffer.put((byte) (rgb >> 16)).put((byte) (rgb >> 8)).put((byte) rgb);
+			}
+			if (mesh.sourceLines != null) {
+				for (int p = 0; p < size; p++) {
+					if (buffer.remaining() < 4) {
+						flush(buffer, channel);
+					}
+					buffer.putInt(mesh.sourceLines[p]);
+				}
+			}
+			if (!mesh.lights.isEmpty()) {
+				if (buffer.remaining() < 4) {
+					flush(buffer, channel);
+				}
+				buffer.putInt(mesh.lights.size());
+				for (Light light : mesh.lights) {
+					if (buffer.remaining() < LIGHT_SIZE) {
+						flush(buffer, channel);
+					}
+					buffer.putInt((light.type == Light.Type.POINT ? 1 : 0) | (light.fixedToView ? 2 : 0));
+					buffer.putFloat(light.vector.x).putFloat(light.vector.y).putFloat(light.vector.z);
+					buffer.putInt(light.color.getRGB() & 0xffffff);
+					buffer.putFloat(light.constant).putFloat(light.linear).putFloat(light.quadratic);
+				}
+			}
+			flush(buffer, channel);
+		}
+	}
+
+	private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/** Converts a text scene file into a binary one. */
+	public static void convert(File text, File binary) throws IOException {
+		write(SceneLoader.loadText(text), binary);
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("usage: java renderer.BinaryScene <scene.txt> <scene.bin>");
+			System.exit(1);
+		}
+		convert(new File(args[0]), new File(args[1]));
+	}
+}
+
+// code for comp261 assignments
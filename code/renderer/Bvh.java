@@ -0,0 +1,516 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounding volume hierarchy over the polygons of a model-space Mesh: a
+ * binary tree of axis-aligned boxes, each holding the polygons of its
+ * subtree, so that queries can skip whole groups of polygons at a time
+ * instead of looking at every one. A Scene can be turned into a Mesh first
+ * with Mesh.fromScene.
+ *
+ * It is built once, when a model is loaded. Each node is split where the
+ * surface area heuristic says rays and boxes are least likely to have to
+ * look at both halves, picking from a few evenly spaced planes on each
+ * axis, and big subtrees are built on several threads.
+ *
+ * The view only rotates, scales and moves the model, which doesn't change
+ * which polygons belong together, so the tree stays in model space and is
+ * queried with the current view transform: each box is carried into screen
+ * space as the smallest box holding the transformed one. Nothing has to be
+ * rebuilt as the model is turned.
+ *
+ * Queries don't change the tree, so it can be queried from several threads
+ * at once.
+ */
+public class Bvh {
+
+	/** Nodes with this many polygons or fewer are always leaves. */
+	private static final int MIN_LEAF = 2;
+
+	/** Nodes with more polygons than this are always split. */
+	private static final int MAX_LEAF = 16;
+
+	/** The number of split planes tried on each axis, plus one. */
+	private static final int BINS = 16;
+
+	/** Subtrees with fewer polygons than this are built on one thread. */
+	private static final int MIN_PARALLEL = 4096;
+
+	private final Mesh mesh;
+
+	// The polygons, in an order where every node's are next to each other:
+	// node n holds order[start[n] .. start[n] + count[n]).
+	private final int[] order;
+
+	// The nodes, root first. The children of node n are left[n] and
+	// left[n] + 1, and left[n] is -1 if it is a leaf.
+	private final float[] minX, minY, minZ, maxX, maxY, maxZ;
+	private final int[] start;
+	private final int[] count;
+	private final int[] left;
+	private final int nodes;
+
+	/** Builds the hierarchy on the common ForkJoin pool. */
+	public Bvh(Mesh mesh) {
+		this(mesh, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Builds the hierarchy over the polygons of the given mesh, which must not
+	 * change afterwards.
+	 */
+	public Bvh(Mesh mesh, ForkJoinPool pool) {
+		this.mesh = mesh;
+		int n = mesh.size;
+		this.order = new int[n];
+		for (int p = 0; p < n; p++) {
+			order[p] = p;
+		}
+		// A tree with n leaves has 2n - 1 nodes, and every leaf holds at
+		// least one polygon
+		int capacity = Math.max(1, 2 * n - 1);
+		minX = new float[capacity];
+		minY = new float[capacity];
+		minZ = new float[capacity];
+		maxX = new float[capacity];
+		maxY = new float[capacity];
+		maxZ = new float[capacity];
+		start = new int[capacity];
+		count = new int[capacity];
+		left = new int[capacity];
+
+		Builder builder = new Builder(mesh);
+		pool.invoke(builder.new BuildTask(0, 0, n));
+		this.nodes = builder.nodes.get();
+	}
+
+	public Mesh getMesh() {
+		return mesh;
+	}
+
+	/** The number of nodes in the tree. */
+	public int getNodeCount() {
+		return nodes;
+	}
+
+	/** The smallest corner of the box around the whole model. */
+	public Vector3D getMin() {
+		return new Vector3D(minX[0], minY[0], minZ[0]);
+	}
+
+	/** The largest corner of the box around the whole model. */
+	public Vector3D getMax() {
+		return new Vector3D(maxX[0], maxY[0], maxZ[0]);
+	}
+
+	/**
+	 * Finds the polygons that could, once transformed by the view, have a
+	 * vertex inside the given rectangle of the screen (inclusive), or an edge
+	 * crossing it. Bit p of the set (bit p % 64 of word p / 64) is set for
+	 * every such polygon p, and cleared for the rest, so the set must hold at
+	 * least mesh.size bits. Some polygons just outside may be included.
+	 *
+	 * @return The number of polygons included.
+	 */
+	public int cull(Transform view, float rectMinX, float rectMinY, float rectMaxX, float rectMaxY, long[] set) {
+		int words = (mesh.size + 63) >> 6;
+		for (int w = 0; w < words; w++) {
+			set[w] = 0;
+		}
+		if (mesh.size == 0) {
+			return 0;
+		}
+		final float m00 = view.get(0, 0), m01 = view.get(0, 1), m02 = view.get(0, 2), m03 = view.get(0, 3);
+		final float m10 = view.get(1, 0), m11 = view.get(1, 1), m12 = view.get(1, 2), m13 = view.get(1, 3);
+		final float a00 = Math.abs(m00), a01 = Math.abs(m01), a02 = Math.abs(m02);
+		final float a10 = Math.abs(m10), a11 = Math.abs(m11), a12 = Math.abs(m12);
+		int included = 0;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			// The screen-space box around the node's box
+			float cx = (minX[node] + maxX[node]) * 0.5f, ex = (maxX[node] - minX[node]) * 0.5f;
+			float cy = (minY[node] + maxY[node]) * 0.5f, ey = (maxY[node] - minY[node]) * 0.5f;
+			float cz = (minZ[node] + maxZ[node]) * 0.5f, ez = (maxZ[node] - minZ[node]) * 0.5f;
+			float sx = m03 + m00 * cx + m01 * cy + m02 * cz;
+			float sy = m13 + m10 * cx + m11 * cy + m12 * cz;
+			float rx = grow(sx, a00 * ex + a01 * ey + a02 * ez);
+			float ry = grow(sy, a10 * ex + a11 * ey + a12 * ez);
+			if (sx + rx < rectMinX || sx - rx > rectMaxX || sy + ry < rectMinY || sy - ry > rectMaxY) {
+				continue;
+			}
+			boolean inside = sx - rx >= rectMinX && sx + rx <= rectMaxX && sy - ry >= rectMinY
+					&& sy + ry <= rectMaxY;
+			if (inside || left[node] < 0) {
+				int end = start[node] + count[node];
+				for (int i = start[node]; i < end; i++) {
+					int p = order[i];
+					set[p >> 6] |= 1L << p;
+				}
+				included += count[node];
+				continue;
+			}
+			if (top + 2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length * 2);
+			}
+			stack[top++] = left[node];
+			stack[top++] = left[node] + 1;
+		}
+		return included;
+	}
+
+	/**
+	 * Finds the nearest polygon hit by a ray, with both the ray and the
+	 * polygons in screen space, i.e. with the polygons transformed by the
+	 * view. Polygons are hit from either side. The ray starts at the origin
+	 * and only hits at origin + t * direction for t >= 0 count.
+	 *
+	 * @param hit
+	 *            If not null, hit[0] is set to the t of the hit.
+	 * @return The polygon hit, or -1 if there is none.
+	 */
+	public int intersect(Transform view, Vector3D origin, Vector3D direction, float[] hit) {
+		if (mesh.size == 0) {
+			return -1;
+		}
+		final float m00 = view.get(0, 0), m01 = view.get(0, 1), m02 = view.get(0, 2), m03 = view.get(0, 3);
+		final float m10 = view.get(1, 0), m11 = view.get(1, 1), m12 = view.get(1, 2), m13 = view.get(1, 3);
+		final float m20 = view.get(2, 0), m21 = view.get(2, 1), m22 = view.get(2, 2), m23 = view.get(2, 3);
+		float ox = origin.x, oy = origin.y, oz = origin.z;
+		float dx = direction.x, dy = direction.y, dz = direction.z;
+		float invX = 1 / dx, invY = 1 / dy, invZ = 1 / dz;
+
+		float best = Float.POSITIVE_INFINITY;
+		int bestPoly = -1;
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = 0;
+		while (top > 0) {
+			int node = stack[--top];
+			float cx = (minX[node] + maxX[node]) * 0.5f, ex = (maxX[node] - minX[node]) * 0.5f;
+			float cy = (minY[node] + maxY[node]) * 0.5f, ey = (maxY[node] - minY[node]) * 0.5f;
+			float cz = (minZ[node] + maxZ[node]) * 0.5f, ez = (maxZ[node] - minZ[node]) * 0.5f;
+			float sx = m03 + m00 * cx + m01 * cy + m02 * cz;
+			float sy = m13 + m10 * cx + m11 * cy + m12 * cz;
+			float sz = m23 + m20 * cx + m21 * cy + m22 * cz;
+			float rx = grow(sx, Math.abs(m00) * ex + Math.abs(m01) * ey + Math.abs(m02) * ez);
+			float ry = grow(sy, Math.abs(m10) * ex + Math.abs(m11) * ey + Math.abs(m12) * ez);
+			float rz = grow(sz, Math.abs(m20) * ex + Math.abs(m21) * ey + Math.abs(m22) * ez);
+			if (slabEntry(ox, oy, oz, invX, invY, invZ, sx - rx, sy - ry, sz - rz, sx + rx, sy + ry, sz + rz,
+					best) > best) {
+				continue;
+			}
+			if (left[node] >= 0) {
+				if (top + 2 > stack.length) {
+					stack = Arrays.copyOf(stack, stack.length * 2);
+				}
+				stack[top++] = left[node];
+				stack[top++] = left[node] + 1;
+				continue;
+			}
+			int end = start[node] + count[node];
+			for (int i = start[node]; i < end; i++) {
+				int p = order[i];
+				int v = p * 3;
+				float x0 = m03 + m00 * mesh.xs[v] + m01 * mesh.ys[v] + m02 * mesh.zs[v];
+				float y0 = m13 + m10 * mesh.xs[v] + m11 * mesh.ys[v] + m12 * mesh.zs[v];
+				float z0 = m23 + m20 * mesh.xs[v] + m21 * mesh.ys[v] + m22 * mesh.zs[v];
+				float x1 = m03 + m00 * mesh.xs[v + 1] + m01 * mesh.ys[v + 1] + m02 * mesh.zs[v + 1];
+				float y1 = m13 + m10 * mesh.xs[v + 1] + m11 * mesh.ys[v + 1] + m12 * mesh.zs[v + 1];
+				float z1 = m23 + m20 * mesh.xs[v + 1] + m21 * mesh.ys[v + 1] + m22 * mesh.zs[v + 1];
+				float x2 = m03 + m00 * mesh.xs[v + 2] + m01 * mesh.ys[v + 2] + m02 * mesh.zs[v + 2];
+				float y2 = m13 + m10 * mesh.xs[v + 2] + m11 * mesh.ys[v + 2] + m12 * mesh.zs[v + 2];
+				float z2 = m23 + m20 * mesh.xs[v + 2] + m21 * mesh.ys[v + 2] + m22 * mesh.zs[v + 2];
+				float t = intersectTriangle(ox, oy, oz, dx, dy, dz, x0, y0, z0, x1, y1, z1, x2, y2, z2);
+				if (t < best || (t == best && p < bestPoly)) {
+					best = t;
+					bestPoly = p;
+				}
+			}
+		}
+		if (hit != null && bestPoly >= 0) {
+			hit[0] = best;
+		}
+		return bestPoly;
+	}
+
+	/**
+	 * Grows the half width of a transformed box a little, so that rounding in
+	 * working it out can't leave a transformed vertex just outside.
+	 */
+	private static float grow(float centre, float halfWidth) {
+		return halfWidth + (Math.abs(centre) + halfWidth) * 1e-5f;
+	}
+
+	/**
+	 * The t at which a ray enters a box, or infinity if it misses it or only
+	 * gets there after limit.
+	 */
+	private static float slabEntry(float ox, float oy, float oz, float invX, float invY, float invZ, float bMinX,
+			float bMinY, float bMinZ, float bMaxX, float bMaxY, float bMaxZ, float limit) {
+		float t0 = (bMinX - ox) * invX, t1 = (bMaxX - ox) * invX;
+		float near = Math.min(t0, t1), far = Math.max(t0, t1);
+		t0 = (bMinY - oy) * invY;
+		t1 = (bMaxY - oy) * invY;
+		near = Math.max(near, Math.min(t0, t1));
+		far = Math.min(far, Math.max(t0, t1));
+		t0 = (bMinZ - oz) * invZ;
+		t1 = (bMaxZ - oz) * invZ;
+		near = Math.max(near, Math.min(t0, t1));
+		far = Math.min(far, Math.max(t0, t1));
+		// A ray along a face of the box gives 0 * infinity = NaN, and the
+		// Math.min and max above then give NaN too, so treat that as a hit
+		if (Float.isNaN(near) || Float.isNaN(far)) {
+			return 0;
+		}
+		if (far < Math.max(near, 0) || near > limit) {
+			return Float.POSITIVE_INFINITY;
+		}
+		return Math.max(near, 0);
+	}
+
+	/**
+	 * The t at which a ray hits a triangle (Moller-Trumbore), or infinity if
+	 * it doesn't.
+	 */
+	private static float intersectTriangle(float ox, float oy, float oz, float dx, float dy, float dz, float x0,
+			float y0, float z0, float x1, float y1, float z1, float x2, float y2, float z2) {
+		float e1x = x1 - x0, e1y = y1 - y0, e1z = z1 - z0;
+		float e2x = x2 - x0, e2y = y2 - y0, e2z = z2 - z0;
+		float px = dy * e2z - dz * e2y;
+		float py = dz * e2x - dx * e2z;
+		float pz = dx * e2y - dy * e2x;
+		float det = e1x * px + e1y * py + e1z * pz;
+		if (det == 0) {
+			return Float.POSITIVE_INFINITY;
+		}
+		float inv = 1 / det;
+		float tx = ox - x0, ty = oy - y0, tz = oz - z0;
+		float u = (tx * px + ty * py + tz * pz) * inv;
+		if (u < 0 || u > 1) {
+			return Float.POSITIVE_INFINITY;
+		}
+		float qx = ty * e1z - tz * e1y;
+		float qy = tz * e1x - tx * e1z;
+		float qz = tx * e1y - ty * e1x;
+		float w = (dx * qx + dy * qy + dz * qz) * inv;
+		if (w < 0 || u + w > 1) {
+			return Float.POSITIVE_INFINITY;
+		}
+		float t = (e2x * qx + e2y * qy + e2z * qz) * inv;
+		return t >= 0 ? t : Float.POSITIVE_INFINITY;
+	}
+
+	/** The surface area of a box, up to a constant factor. */
+	private static float area(float dx, float dy, float dz) {
+		return dx * dy + dy * dz + dz * dx;
+	}
+
+	/** Holds what the build tasks share while the tree is built. */
+	private class Builder {
+		// The bounds and centre of each polygon, indexed by polygon
+		final float[] boxes;
+		final float[] centres;
+		final AtomicInteger nodes = new AtomicInteger(1);
+
+		Builder(Mesh mesh) {
+			int n = mesh.size;
+			boxes = new float[n * 6];
+			centres = new float[n * 3];
+			for (int p = 0; p < n; p++) {
+				int v = p * 3;
+				float x0 = Math.min(mesh.xs[v], Math.min(mesh.xs[v + 1], mesh.xs[v + 2]));
+				float y0 = Math.min(mesh.ys[v], Math.min(mesh.ys[v + 1], mesh.ys[v + 2]));
+				float z0 = Math.min(mesh.zs[v], Math.min(mesh.zs[v + 1], mesh.zs[v + 2]));
+				float x1 = Math.max(mesh.xs[v], Math.max(mesh.xs[v + 1], mesh.xs[v + 2]));
+				float y1 = Math.max(mesh.ys[v], Math.max(mesh.ys[v + 1], mesh.ys[v + 2]));
+				float z1 = Math.max(mesh.zs[v], Math.max(mesh.zs[v + 1], mesh.zs[v + 2]));
+				boxes[p * 6] = x0;
+				boxes[p * 6 + 1] = y0;
+				boxes[p * 6 + 2] = z0;
+				boxes[p * 6 + 3] = x1;
+				boxes[p * 6 + 4] = y1;
+				boxes[p * 6 + 5] = z1;
+				centres[v] = (x0 + x1) * 0.5f;
+				centres[v + 1] = (y0 + y1) * 0.5f;
+				centres[v + 2] = (z0 + z1) * 0.5f;
+			}
+		}
+
+		/** Builds the subtree holding order[from .. to) at the given node. */
+		@SuppressWarnings("serial")
+		class BuildTask extends RecursiveAction {
+			private final int node;
+			private final int from;
+			private final int to;
+
+			BuildTask(int node, int from, int to) {
+				this.node = node;
+				this.from = from;
+				this.to = to;
+			}
+
+			@Override
+			protected void compute() {
+				float[] b = boxes;
+				float bx0 = Float.POSITIVE_INFINITY, by0 = Float.POSITIVE_INFINITY, bz0 = Float.POSITIVE_INFINITY;
+				float bx1 = Float.NEGATIVE_INFINITY, by1 = Float.NEGATIVE_INFINITY, bz1 = Float.NEGATIVE_INFINITY;
+				float[] cMin = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+				float[] cMax = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+				for (int i = from; i < to; i++) {
+					int p = order[i];
+					bx0 = Math.min(bx0, b[p * 6]);
+					by0 = Math.min(by0, b[p * 6 + 1]);
+					bz0 = Math.min(bz0, b[p * 6 + 2]);
+					bx1 = Math.max(bx1, b[p * 6 + 3]);
+					by1 = Math.max(by1, b[p * 6 + 4]);
+					bz1 = Math.max(bz1, b[p * 6 + 5]);
+					for (int axis = 0; axis < 3; axis++) {
+						cMin[axis] = Math.min(cMin[axis], centres[p * 3 + axis]);
+						cMax[axis] = Math.max(cMax[axis], centres[p * 3 + axis]);
+					}
+				}
+				minX[node] = bx0;
+				minY[node] = by0;
+				minZ[node] = bz0;
+				maxX[node] = bx1;
+				maxY[node] = by1;
+				maxZ[node] = bz1;
+				start[node] = from;
+				count[node] = to - from;
+				left[node] = -1;
+				int n = to - from;
+				if (n <= MIN_LEAF) {
+					return;
+				}
+
+				// Try the planes between the bins on each axis, and keep the
+				// one with the lowest cost
+				int bestAxis = -1;
+				int bestBin = 0;
+				float bestCost = Float.POSITIVE_INFINITY;
+				int[] binCounts = new int[BINS];
+				float[] binBoxes = new float[BINS * 6];
+				float[] rightArea = new float[BINS];
+				int[] rightCount = new int[BINS];
+				for (int axis = 0; axis < 3; axis++) {
+					float extent = cMax[axis] - cMin[axis];
+					if (!(extent > 0)) {
+						continue;
+					}
+					for (int k = 0; k < BINS; k++) {
+						binCounts[k] = 0;
+						for (int j = 0; j < 3; j++) {
+							binBoxes[k * 6 + j] = Float.POSITIVE_INFINITY;
+							binBoxes[k * 6 + 3 + j] = Float.NEGATIVE_INFINITY;
+						}
+					}
+					for (int i = from; i < to; i++) {
+						int p = order[i];
+						int k = bin(centres[p * 3 + axis], cMin[axis], extent);
+						binCounts[k]++;
+						for (int j = 0; j < 3; j++) {
+							binBoxes[k * 6 + j] = Math.min(binBoxes[k * 6 + j], b[p * 6 + j]);
+							binBoxes[k * 6 + 3 + j] = Math.max(binBoxes[k * 6 + 3 + j], b[p * 6 + 3 + j]);
+						}
+					}
+					// Sweep from the right to get the area and count of every
+					// right hand side, then from the left to cost each plane
+					float x0 = Float.POSITIVE_INFINITY, y0 = x0, z0 = x0;
+					float x1 = Float.NEGATIVE_INFINITY, y1 = x1, z1 = x1;
+					int right = 0;
+					for (int k = BINS - 1; k > 0; k--) {
+						if (binCounts[k] > 0) {
+							x0 = Math.min(x0, binBoxes[k * 6]);
+							y0 = Math.min(y0, binBoxes[k * 6 + 1]);
+							z0 = Math.min(z0, binBoxes[k * 6 + 2]);
+							x1 = Math.max(x1, binBoxes[k * 6 + 3]);
+							y1 = Math.max(y1, binBoxes[k * 6 + 4]);
+							z1 = Math.max(z1, binBoxes[k * 6 + 5]);
+						}
+						right += binCounts[k];
+						rightCount[k] = right;
+						rightArea[k] = right == 0 ? 0 : area(x1 - x0, y1 - y0, z1 - z0);
+					}
+					x0 = Float.POSITIVE_INFINITY;
+					y0 = x0;
+					z0 = x0;
+					x1 = Float.NEGATIVE_INFINITY;
+					y1 = x1;
+					z1 = x1;
+					int leftCount = 0;
+					for (int k = 0; k < BINS - 1; k++) {
+						if (binCounts[k] > 0) {
+							x0 = Math.min(x0, binBoxes[k * 6]);
+							y0 = Math.min(y0, binBoxes[k * 6 + 1]);
+							z0 = Math.min(z0, binBoxes[k * 6 + 2]);
+							x1 = Math.max(x1, binBoxes[k * 6 + 3]);
+							y1 = Math.max(y1, binBoxes[k * 6 + 4]);
+							z1 = Math.max(z1, binBoxes[k * 6 + 5]);
+						}
+						leftCount += binCounts[k];
+						if (leftCount == 0 || rightCount[k + 1] == 0) {
+							continue;
+						}
+						float cost = leftCount * area(x1 - x0, y1 - y0, z1 - z0) + rightCount[k + 1] * rightArea[k + 1];
+						if (cost < bestCost) {
+							bestCost = cost;
+							bestAxis = axis;
+							bestBin = k;
+						}
+					}
+				}
+
+				// Splitting costs a box test per child, about one polygon test
+				// each, as the parent's area; stop if that isn't any cheaper
+				float area = area(bx1 - bx0, by1 - by0, bz1 - bz0);
+				int split;
+				if (bestAxis >= 0 && (n > MAX_LEAF || area + bestCost < n * area)) {
+					float extent = cMax[bestAxis] - cMin[bestAxis];
+					int i = from, j = to - 1;
+					while (i <= j) {
+						int p = order[i];
+						if (bin(centres[p * 3 + bestAxis], cMin[bestAxis], extent) <= bestBin) {
+							i++;
+						} else {
+							order[i] = order[j];
+							order[j--] = p;
+						}
+					}
+					split = i;
+				} else if (n > MAX_LEAF) {
+					// Every centre is in the same place, so any split is as
+					// good as any other
+					split = (from + to) >>> 1;
+				} else {
+					return;
+				}
+
+				int child = nodes.getAndAdd(2);
+				left[node] = child;
+				BuildTask leftTask = new BuildTask(child, from, split);
+				BuildTask rightTask = new BuildTask(child + 1, split, to);
+				if (n >= MIN_PARALLEL) {
+					invokeAll(leftTask, rightTask);
+				} else {
+					leftTask.compute();
+					rightTask.compute();
+				}
+			}
+		}
+	}
+
+	/** The bin a centre falls in along an axis. */
+	private static int bin(float centre, float min, float extent) {
+		int k = (int) ((centre - min) * BINS / extent);
+		return Math.max(0, Math.min(k, BINS - 1));
+	}
+}
+
+// code for comp261 assignments
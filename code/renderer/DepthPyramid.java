@@ -0,0 +1,265 @@
+package renderer;
+
+import java.util.Arrays;
+
+/**
+ * A coarse copy of a frame's depth buffer, used to skip polygons, or parts of
+ * polygons, that are hidden behind what has already been drawn.
+ *
+ * It has two levels: the farthest depth in each 8x8 block of pixels, and the
+ * farthest depth in each 64x64 tile (the same tiles the TileRasterizer draws
+ * in). If the nearest point of a polygon over some area is no nearer than the
+ * farthest depth already drawn there, every one of its pixels would fail the
+ * depth test, so none of them need to be drawn.
+ *
+ * Depths in a frame only ever get nearer until it is cleared, so a stale
+ * farthest depth is still a safe one: at worst it lets through pixels that
+ * then fail the depth test. Drawing code counts the pixels it writes in
+ * each block, and a block's farthest depth is only read back from the depth
+ * buffer when its stale value isn't enough to show a polygon is hidden, and
+ * enough pixels have been written since it was last read to fill the pixels
+ * that were still empty then, and at least a quarter of the block. That
+ * keeps the cost of reading blocks back to at most four reads per pixel
+ * written, however the polygons are laid out. A tile's farthest depth
+ * is worked out from its blocks' in the same lazy way.
+ *
+ * Pixels are given in canvas coordinates, as they are drawn, but the blocks
+ * and tiles are counted from the frame's top left corner (see FrameBuffer).
+ *
+ * Each tile's entries are only touched when drawing inside that tile, so
+ * several threads can use one pyramid as long as they draw in different
+ * tiles, as the TileRasterizer does.
+ */
+public class DepthPyramid {
+
+	public static final int BLOCK_SIZE = 8;
+
+	public static final int TILE_SIZE = TileRasterizer.TILE_SIZE;
+
+	private static final int BLOCK_SHIFT = 3;
+
+	private static final int TILE_SHIFT = 6;
+
+	/** The number of blocks across a tile, and in a whole tile. */
+	private static final int TILE_BLOCKS_X = TILE_SIZE / BLOCK_SIZE;
+	private static final int TILE_BLOCKS = TILE_BLOCKS_X * TILE_BLOCKS_X;
+
+	private static final int BLOCK_PIXELS = BLOCK_SIZE * BLOCK_SIZE;
+
+	/**
+	 * If true, the pixels of polygons that are skipped are counted even when
+	 * that costs extra work. The SceneRenderer turns this on while recording
+	 * stats.
+	 */
+	public boolean countPixels = false;
+
+	private final FrameBuffer frame;
+	private final int blocksX;
+	private final int blocksY;
+	private final int tilesX;
+
+	private final float[] blockDepth;
+	private final int[] blockWrites;
+	private final float[] tileDepth;
+	private final boolean[] tileDirty;
+
+	// Counts of what was skipped since the last clear, kept per tile so the
+	// tiles can be drawn on different threads.
+	private final long[] occludedPolygons;
+	private final long[] occludedPixels;
+
+	public DepthPyramid(FrameBuffer frame) {
+		this.frame = frame;
+		this.blocksX = (frame.width + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+		this.blocksY = (frame.height + BLOCK_SIZE - 1) >> BLOCK_SHIFT;
+		this.tilesX = (frame.width + TILE_SIZE - 1) >> TILE_SHIFT;
+		int tilesY = (frame.height + TILE_SIZE - 1) >> TILE_SHIFT;
+		this.blockDepth = new float[blocksX * blocksY];
+		this.blockWrites = new int[blocksX * blocksY];
+		this.tileDepth = new float[tilesX * tilesY];
+		this.tileDirty = new boolean[tilesX * tilesY];
+		this.occludedPolygons = new long[tilesX * tilesY];
+		this.occludedPixels = new long[tilesX * tilesY];
+		clear();
+	}
+
+	/** Resets every depth to FAR, to match a cleared frame, and the counts to 0. */
+	public void clear() {
+		Arrays.fill(blockDepth, FrameBuffer.FAR);
+		Arrays.fill(blockWrites, 0);
+		Arrays.fill(tileDepth, FrameBuffer.FAR);
+		Arrays.fill(tileDirty, false);
+		Arrays.fill(occludedPolygons, 0);
+		Arrays.fill(occludedPixels, 0);
+	}
+
+	/**
+	 * Notes that the given number of pixels in the block holding pixel
+	 * (x, y) have been written.
+	 */
+	public void markWritten(int x, int y, int pixels) {
+		x -= frame.originX;
+		y -= frame.originY;
+		blockWrites[(y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT)] += pixels;
+	}
+
+	/**
+	 * Notes that pixels from x0 to x1 (inclusive) of row y may have been
+	 * written.
+	 */
+	public void markRowWritten(int x0, int x1, int y) {
+		x0 -= frame.originX;
+		x1 -= frame.originX;
+		y -= frame.originY;
+		int row = (y >> BLOCK_SHIFT) * blocksX;
+		for (int bx = x0 >> BLOCK_SHIFT; bx <= x1 >> BLOCK_SHIFT; bx++) {
+			int start = Math.max(x0, bx << BLOCK_SHIFT);
+			int end = Math.min(x1, (bx << BLOCK_SHIFT) + BLOCK_SIZE - 1);
+			blockWrites[row + bx] += end - start + 1;
+		}
+	}
+
+	/**
+	 * Returns the farthest depth in the 8x8 block holding pixel (x, y), as of
+	 * the last time it was worked out. This never reads the depth buffer, so
+	 * it is cheap enough to call per row of a block.
+	 */
+	public float getBlockDepth(int x, int y) {
+		x -= frame.originX;
+		y -= frame.originY;
+		return blockDepth[(y >> BLOCK_SHIFT) * blocksX + (x >> BLOCK_SHIFT)];
+	}
+
+	/**
+	 * Returns true if nothing at the given depth or farther could be seen
+	 * anywhere in the given rectangle (inclusive), i.e. everything drawn there
+	 * so far is nearer.
+	 */
+	public boolean isOccluded(int minX, int minY, int maxX, int maxY, float nearest) {
+		minX -= frame.originX;
+		maxX -= frame.originX;
+		minY -= frame.originY;
+		maxY -= frame.originY;
+		for (int ty = minY >> TILE_SHIFT; ty <= maxY >> TILE_SHIFT; ty++) {
+			for (int tx = minX >> TILE_SHIFT; tx <= maxX >> TILE_SHIFT; tx++) {
+				int tile = ty * tilesX + tx;
+				if (nearest >= tileDepth[tile]) {
+					continue;
+				}
+				int bx0 = Math.max(minX, tx << TILE_SHIFT) >> BLOCK_SHIFT;
+				int bx1 = Math.min(maxX, ((tx + 1) << TILE_SHIFT) - 1) >> BLOCK_SHIFT;
+				int by0 = Math.max(minY, ty << TILE_SHIFT) >> BLOCK_SHIFT;
+				int by1 = Math.min(maxY, ((ty + 1) << TILE_SHIFT) - 1) >> BLOCK_SHIFT;
+				// Going via the tile only pays off if the rectangle covers
+				// a good part of it
+				if (tileDirty[tile] && (bx1 - bx0 + 1) * (by1 - by0 + 1) >= TILE_BLOCKS / 4) {
+					updateTile(tx, ty);
+					if (nearest >= tileDepth[tile]) {
+						continue;
+					}
+				}
+				for (int by = by0; by <= by1; by++) {
+					for (int bx = bx0; bx <= bx1; bx++) {
+						int block = by * blocksX + bx;
+						if (nearest >= blockDepth[block]) {
+							continue;
+						}
+						if (blockWrites[block] < BLOCK_PIXELS) {
+							return false;
+						}
+						updateBlock(bx, by);
+						if (nearest < blockDepth[block]) {
+							return false;
+						}
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds to the counts of polygons and pixels skipped, for the tile holding
+	 * pixel (x, y).
+	 */
+	public void addOccluded(int x, int y, int polygons, long pixels) {
+		int tile = ((y - frame.originY) >> TILE_SHIFT) * tilesX + ((x - frame.originX) >> TILE_SHIFT);
+		occludedPolygons[tile] += polygons;
+		occludedPixels[tile] += pixels;
+	}
+
+	/**
+	 * The number of polygons skipped whole since the last clear. When drawing
+	 * in tiles, a polygon is counted once for each tile it was skipped in.
+	 */
+	public long getOccludedPolygons() {
+		long total = 0;
+		for (long count : occludedPolygons) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * The number of pixels whose depth test was skipped since the last clear.
+	 * Pixels of skipped polygons and half-space blocks are only counted if
+	 * countPixels is set.
+	 */
+	public long getOccludedPixels() {
+		long total = 0;
+		for (long count : occludedPixels) {
+			total += count;
+		}
+		return total;
+	}
+
+	/** Reads the farthest depth of a block back from the depth buffer. */
+	private void updateBlock(int bx, int by) {
+		int width = frame.width;
+		float[] depth = frame.depth;
+		int x0 = bx << BLOCK_SHIFT;
+		int x1 = Math.min(x0 + BLOCK_SIZE, width);
+		int y0 = by << BLOCK_SHIFT;
+		int y1 = Math.min(y0 + BLOCK_SIZE, frame.height);
+		float farthest = Float.NEGATIVE_INFINITY;
+		int uncovered = 0;
+		for (int y = y0; y < y1; y++) {
+			int row = y * width;
+			for (int x = x0; x < x1; x++) {
+				farthest = Math.max(farthest, depth[row + x]);
+				if (depth[row + x] == FrameBuffer.FAR) {
+					uncovered++;
+				}
+			}
+		}
+		int block = by * blocksX + bx;
+		blockDepth[block] = farthest;
+		// Don't read it again until enough has been written to cover what
+		// is still empty, and at least a quarter of a block
+		blockWrites[block] = BLOCK_PIXELS - Math.max(uncovered, BLOCK_PIXELS / 4);
+		tileDirty[(by >> (TILE_SHIFT - BLOCK_SHIFT)) * tilesX + (bx >> (TILE_SHIFT - BLOCK_SHIFT))] = true;
+	}
+
+	/**
+	 * Works out the farthest depth of a tile from its blocks'. Their depths
+	 * may be stale, but that still gives a safe depth for the tile.
+	 */
+	private void updateTile(int tx, int ty) {
+		int bx0 = tx * TILE_BLOCKS_X;
+		int bx1 = Math.min(bx0 + TILE_BLOCKS_X, blocksX);
+		int by0 = ty * TILE_BLOCKS_X;
+		int by1 = Math.min(by0 + TILE_BLOCKS_X, blocksY);
+		float farthest = Float.NEGATIVE_INFINITY;
+		for (int by = by0; by < by1; by++) {
+			int row = by * blocksX;
+			for (int bx = bx0; bx < bx1; bx++) {
+				farthest = Math.max(farthest, blockDepth[row + bx]);
+			}
+		}
+		int tile = ty * tilesX + tx;
+		tileDepth[tile] = farthest;
+		tileDirty[tile] = false;
+	}
+}
+
+// code for comp261 assignments
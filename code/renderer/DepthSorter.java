@@ -0,0 +1,223 @@
+package renderer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Sorts polygons roughly front to back, by the depth of their nearest vertex,
+ * so that near polygons are drawn first and the ones behind them mostly fail
+ * the depth test instead of being drawn and then drawn over.
+ *
+ * Depths are quantised to 16 bit keys across the range of the polygons being
+ * sorted, and the polygons are sorted by key with a two pass (8 bits a pass)
+ * least significant digit radix sort. That takes linear time, and the order
+ * only has to be roughly right. Big sorts are split into chunks that are
+ * keyed, counted and scattered on several threads; each chunk's polygons go
+ * to their own part of every bucket, so the sort is stable and gives the same
+ * order however many threads are used.
+ *
+ * A DepthSorter keeps its buffers from one sort to the next. It is not thread
+ * safe; use one per thread.
+ */
+public class DepthSorter {
+
+	public static final int KEY_BITS = 16;
+
+	private static final int RADIX_BITS = 8;
+	private static final int BUCKETS = 1 << RADIX_BITS;
+	private static final int PASSES = KEY_BITS / RADIX_BITS;
+
+	/** Sorts with fewer polygons than this per chunk aren't split up. */
+	private static final int MIN_CHUNK = 16384;
+
+	private final ForkJoinPool pool;
+
+	// Reused between sorts
+	private int[] keys = new int[0];
+	private int[] spareKeys = new int[0];
+	private int[] sparePolys = new int[0];
+	private int[][] counts = new int[0][];
+	private float[] chunkMin = new float[0];
+	private float[] chunkMax = new float[0];
+
+	public DepthSorter() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public DepthSorter(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Sorts the first count entries of polys, which are polygons of the given
+	 * screen-space mesh, nearest first.
+	 */
+	public void sort(Mesh screen, int[] polys, int count) {
+		if (count < 2) {
+			return;
+		}
+		if (keys.length < count) {
+			keys = new int[count];
+			spareKeys = new int[count];
+			sparePolys = new int[count];
+		}
+		int chunks = Math.max(1, Math.min(pool.getParallelism(), count / MIN_CHUNK));
+		if (counts.length < chunks) {
+			counts = new int[chunks][BUCKETS];
+			chunkMin = new float[chunks];
+			chunkMax = new float[chunks];
+		}
+
+		// Find the range of depths, then turn them into keys across it
+		run(Phase.RANGE, screen, polys, null, null, null, count, chunks, 0, 0, 0);
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (int c = 0; c < chunks; c++) {
+			min = Math.min(min, chunkMin[c]);
+			max = Math.max(max, chunkMax[c]);
+		}
+		float scale = max > min ? ((1 << KEY_BITS) - 1) / (max - min) : 0;
+		run(Phase.KEY, screen, polys, keys, null, null, count, chunks, 0, min, scale);
+
+		// Each pass sorts by the next 8 bits, from the lowest up, moving the
+		// polygons and keys back and forth between the arrays given and the
+		// spare ones
+		int[] fromPolys = polys, fromKeys = keys, toPolys = sparePolys, toKeys = spareKeys;
+		for (int pass = 0; pass < PASSES; pass++) {
+			int shift = pass * RADIX_BITS;
+			run(Phase.COUNT, screen, fromPolys, fromKeys, null, null, count, chunks, shift, 0, 0);
+			// Turn the counts into where each chunk's part of each bucket
+			// starts, going through the buckets in order and the chunks in
+			// order within each bucket
+			int start = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				for (int c = 0; c < chunks; c++) {
+					int n = counts[c][b];
+					counts[c][b] = start;
+					start += n;
+				}
+			}
+			run(Phase.SCATTER, screen, fromPolys, fromKeys, toPolys, toKeys, count, chunks, shift, 0, 0);
+			int[] t = fromPolys; fromPolys = toPolys; toPolys = t;
+			t = fromKeys; fromKeys = toKeys; toKeys = t;
+		}
+		if (fromPolys != polys) {
+			System.arraycopy(fromPolys, 0, polys, 0, count);
+		}
+	}
+
+	/** The nearest depth of polygon p. */
+	private static float nearest(Mesh m, int p) {
+		int v = p * 3;
+		return Math.min(m.zs[v], Math.min(m.zs[v + 1], m.zs[v + 2]));
+	}
+
+	private enum Phase {
+		RANGE, KEY, COUNT, SCATTER
+	}
+
+	/** Runs a phase on every chunk, on the pool if there is more than one. */
+	@SuppressWarnings("serial")
+	private void run(Phase phase, Mesh screen, int[] polys, int[] keys, int[] toPolys, int[] toKeys, int count,
+			int chunks, int shift, float min, float scale) {
+		if (chunks == 1) {
+			new ChunkTask(phase, screen, polys, keys, toPolys, toKeys, 0, 0, count, shift, min, scale).compute();
+			return;
+		}
+		final ChunkTask[] tasks = new ChunkTask[chunks];
+		for (int c = 0; c < chunks; c++) {
+			int from = (int) ((long) count * c / chunks);
+			int to = (int) ((long) count * (c + 1) / chunks);
+			tasks[c] = new ChunkTask(phase, screen, polys, keys, toPolys, toKeys, c, from, to, shift, min, scale);
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/** One phase of the sort over the entries [from, to), chunk number chunk. */
+	@SuppressWarnings("serial")
+	private class ChunkTask extends RecursiveAction {
+		private final Phase phase;
+		private final Mesh screen;
+		private final int[] polys;
+		private final int[] keys;
+		private final int[] toPolys;
+		private final int[] toKeys;
+		private final int chunk;
+		private final int from;
+		private final int to;
+		private final int shift;
+		private final float min;
+		private final float scale;
+
+		ChunkTask(Phase phase, Mesh screen, int[] polys, int[] keys, int[] toPolys, int[] toKeys, int chunk,
+				int from, int to, int shift, float min, float scale) {
+			this.phase = phase;
+			this.screen = screen;
+			this.polys = polys;
+			this.keys = keys;
+			this.toPolys = toPolys;
+			this.toKeys = toKeys;
+			this.chunk = chunk;
+			this.from = from;
+			this.to = to;
+			this.shift = shift;
+			this.min = min;
+			this.scale = scale;
+		}
+
+		@Override
+		protected void compute() {
+			switch (phase) {
+			case RANGE:
+				float lo = Float.POSITIVE_INFINITY;
+				float hi = Float.NEGATIVE_INFINITY;
+				for (int i = from; i < to; i++) {
+					float z = nearest(screen, polys[i]);
+					// A NaN or infinite depth would spread to the whole range
+					// and turn every key into 0, so they are left out, and
+					// the KEY phase puts them at the ends
+					if (Float.isFinite(z)) {
+						lo = Math.min(lo, z);
+						hi = Math.max(hi, z);
+					}
+				}
+				chunkMin[chunk] = lo;
+				chunkMax[chunk] = hi;
+				break;
+			case KEY:
+				int maxKey = (1 << KEY_BITS) - 1;
+				for (int i = from; i < to; i++) {
+					int key = (int) ((nearest(screen, polys[i]) - min) * scale);
+					// NaNs come out as 0, and rounding can't go past the ends
+					keys[i] = Math.max(0, Math.min(key, maxKey));
+				}
+				break;
+			case COUNT:
+				int[] bucketCounts = counts[chunk];
+				for (int b = 0; b < BUCKETS; b++) {
+					bucketCounts[b] = 0;
+				}
+				for (int i = from; i < to; i++) {
+					bucketCounts[(keys[i] >>> shift) & (BUCKETS - 1)]++;
+				}
+				break;
+			case SCATTER:
+				int[] next = counts[chunk];
+				for (int i = from; i < to; i++) {
+					int key = keys[i];
+					int at = next[(key >>> shift) & (BUCKETS - 1)]++;
+					toPolys[at] = polys[i];
+					toKeys[at] = key;
+				}
+				break;
+			}
+		}
+	}
+}
+
+// code for comp261 assignments
@@ -1,30 +1,62 @@
 package renderer;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 /**
- * EdgeList should store the data for the edge list of a single polygon in your
- * scene. A few method stubs have been provided so that it can be tested, but
- * you'll need to fill in all the details.
+ * EdgeList stores the data for the edge list of a single polygon in the scene,
+ * i.e. the left and right x and z values of every scanline the polygon covers.
  *
- * You'll probably want to add some setters as well as getters or, for example,
- * an addRow(y, xLeft, xRight, zLeft, zRight) method.
+ * The rows are kept in flat float arrays indexed by y - startY, rather than one
+ * object per row, and an EdgeList can be reset and refilled for another polygon
+ * so that the rendering loop doesn't need to allocate one per polygon. The
+ * arrays only ever grow, so after the first few polygons reset() allocates
+ * nothing.
+ *
+ * A row that no edge has set yet has leftX = +infinity and rightX = -infinity,
+ * so it is empty rather than stretching across to x = 0.
  */
 public class EdgeList {
 	
 	public int startY;
 	public int endY;
-	public Map<Integer, EdgeListRow> rows = new HashMap<Integer, EdgeListRow>();
+	
+	protected float[] leftX;
+	protected float[] rightX;
+	protected float[] leftZ;
+	protected float[] rightZ;
 	
 	public EdgeList(int startY, int endY) {
+		int rows = Math.max(endY - startY + 1, 0);
+		this.leftX = new float[rows];
+		this.rightX = new float[rows];
+		this.leftZ = new float[rows];
+		this.rightZ = new float[rows];
+		Arrays.fill(leftX, Float.POSITIVE_INFINITY);
+		Arrays.fill(rightX, Float.NEGATIVE_INFINITY);
 		this.startY = startY;
 		this.endY = endY;
-		
-		// Initilialise rows with empty EdgeListRows
-		for (int y = startY; y <= endY; y++) {
-			rows.put(y, new EdgeListRow());
+	}
+	
+	/**
+	 * Clears this edge list and sets it up for a new range of rows, growing
+	 * the row arrays if they are too small.
+	 */
+	public void reset(int startY, int endY) {
+		int rows = Math.max(endY - startY + 1, 0);
+		if (rows > leftX.length) {
+			int capacity = Math.max(rows, leftX.length * 2);
+			leftX = new float[capacity];
+			rightX = new float[capacity];
+			leftZ = new float[capacity];
+			rightZ = new float[capacity];
+		} else {
+			Arrays.fill(leftZ, 0, rows, 0);
+			Arrays.fill(rightZ, 0, rows, 0);
 		}
+		Arrays.fill(leftX, 0, rows, Float.POSITIVE_INFINITY);
+		Arrays.fill(rightX, 0, rows, Float.NEGATIVE_INFINITY);
+		this.startY = startY;
+		this.endY = endY;
 	}
 
 	public int getStartY() {
@@ -36,19 +68,29 @@ public class EdgeList {
 	}
 
 	public float getLeftX(int y) {
-		return rows.get(y).leftX;
+		return leftX[y - startY];
 	}
 
 	public float getRightX(int y) {
-		return rows.get(y).rightX;
+		return rightX[y - startY];
 	}
 
 	public float getLeftZ(int y) {
-		return rows.get(y).leftZ;
+		return leftZ[y - startY];
 	}
 
 	public float getRightZ(int y) {
-		return rows.get(y).rightZ;
+		return rightZ[y - startY];
+	}
+	
+	public void setLeft(int y, float x, float z) {
+		leftX[y - startY] = x;
+		leftZ[y - startY] = z;
+	}
+	
+	public void setRight(int y, float x, float z) {
+		rightX[y - startY] = x;
+		rightZ[y - startY] = z;
 	}
 	
 }
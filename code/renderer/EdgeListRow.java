@@ -1,13 +0,0 @@
-package renderer;
-
-public class EdgeListRow {
-	
-	public float leftX;
-	
-	public float rightX;
-	
-	public float leftZ;
-	
-	public float rightZ;
-	
-}
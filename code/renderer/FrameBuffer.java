@@ -0,0 +1,123 @@
+package renderer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * A colour buffer and depth buffer for a single frame. Colours are stored as
+ * packed RGB ints in a flat row-major array that is the backing store of a
+ * BufferedImage, so once the polygons have been drawn the image is ready to be
+ * displayed without any copying. Depths are stored in a flat row-major float
+ * array of the same size.
+ *
+ * A frame normally shows the whole canvas, but it can show just part of a
+ * bigger one, as the tiles of a TiledRenderer do, with its top left corner at
+ * (originX, originY) on the canvas. Everything drawn into it is worked out in
+ * canvas coordinates, so a pixel comes out the same whichever frame it is
+ * drawn in. Pixel (x, y) of the canvas is at index
+ * (y - originY) * width + (x - originX) in both arrays.
+ *
+ * Alongside the depths it keeps a DepthPyramid, which drawing code can use to
+ * skip polygons that are hidden behind what has already been drawn.
+ *
+ * It can also keep the index of the polygon drawn at each pixel, which is off
+ * by default as it costs another int per pixel. With it on, finding the
+ * polygon under the mouse is a single array lookup, and the frame can be
+ * shaded again without drawing it again.
+ */
+public class FrameBuffer {
+
+	/** The depth every pixel is reset to, i.e. "infinitely" far away. */
+	public static final float FAR = Integer.MAX_VALUE;
+
+	public final int width;
+	public final int height;
+
+	/** Where the frame's top left pixel is on the canvas. */
+	public int originX = 0;
+	public int originY = 0;
+
+	public final int[] pixels;
+	public final float[] depth;
+	public final DepthPyramid pyramid;
+
+	/**
+	 * The index of the polygon drawn at each pixel, or NO_POLYGON where
+	 * nothing has been drawn. Null unless turned on with enableIds.
+	 */
+	public int[] ids;
+
+	/** The id of a pixel that no polygon has been drawn at. */
+	public static final int NO_POLYGON = -1;
+
+	private final BufferedImage image;
+
+	public FrameBuffer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		this.depth = new float[width * height];
+		this.pyramid = new DepthPyramid(this);
+	}
+
+	/**
+	 * Fills every pixel with the given packed RGB colour and resets the depth
+	 * of every pixel (and of the depth pyramid) to FAR, and the polygon ids
+	 * (if they are on) to NO_POLYGON.
+	 */
+	public void clear(int rgb) {
+		Arrays.fill(pixels, rgb);
+		Arrays.fill(depth, FAR);
+		if (ids != null) {
+			Arrays.fill(ids, NO_POLYGON);
+		}
+		pyramid.clear();
+	}
+
+	/**
+	 * Turns on keeping the index of the polygon drawn at each pixel, from the
+	 * next time the buffer is cleared.
+	 */
+	public void enableIds() {
+		if (ids == null) {
+			ids = new int[width * height];
+			Arrays.fill(ids, NO_POLYGON);
+		}
+	}
+
+	/** Turns off keeping polygon ids, and frees them. */
+	public void disableIds() {
+		ids = null;
+	}
+
+	/**
+	 * Returns the image backed by this buffer. Note that the image shares its
+	 * data with the buffer, so drawing into the buffer changes the image.
+	 */
+	public BufferedImage getImage() {
+		return image;
+	}
+
+	/** Returns the colour of pixel (x, y) of the frame, from its top left. */
+	public int getRGB(int x, int y) {
+		return pixels[y * width + x];
+	}
+
+	/** Returns the depth of pixel (x, y) of the frame, from its top left. */
+	public float getDepth(int x, int y) {
+		return depth[y * width + x];
+	}
+
+	/**
+	 * Returns the index of the polygon drawn at pixel (x, y) of the frame,
+	 * from its top left, or NO_POLYGON if there isn't one or polygon ids are
+	 * off.
+	 */
+	public int getId(int x, int y) {
+		return ids == null ? NO_POLYGON : ids[y * width + x];
+	}
+}
+
+// code for comp261 assignments
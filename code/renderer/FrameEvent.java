@@ -0,0 +1,47 @@
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event covering one frame drawn by a SceneRenderer.
+ *
+ * Like the other renderer events (StageEvent and SceneLoadEvent) it is off
+ * unless turned on in the recording's settings, e.g.
+ * <code>-XX:StartFlightRecording:renderer.Frame#enabled=true</code> or an
+ * entry for it in a .jfc file. While it is off it costs nothing.
+ */
+@Name("renderer.Frame")
+@Label("Frame")
+@Category("Renderer")
+@Description("One frame drawn by the renderer")
+@Enabled(false)
+@StackTrace(false)
+public class FrameEvent extends Event {
+
+	@Label("Scene")
+	public String scene;
+
+	@Label("Polygons")
+	public int polygons;
+
+	@Label("Visible Polygons")
+	@Description("Polygons left after back-face culling")
+	public int visiblePolygons;
+
+	@Label("Width")
+	public int width;
+
+	@Label("Height")
+	public int height;
+
+	@Label("Parallel")
+	public boolean parallel;
+}
+
+// code for comp261 assignments
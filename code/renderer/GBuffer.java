@@ -0,0 +1,226 @@
+package renderer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * What the shading needs to know about each pixel of a frame, kept so the
+ * frame can be lit again without drawing any polygons. For every pixel it
+ * holds the unit normal (in model space) and reflectance of the polygon drawn
+ * there, and the polygon's index.
+ *
+ * It is filled in from a frame drawn with polygon ids on, after the frame has
+ * been drawn, so drawing pays nothing for it. Lighting the frame then only
+ * works out the colour of each covered pixel, in bands of rows on all cores,
+ * which takes the same time however many polygons the model has.
+ *
+ * The normals are in model space, as the Lighting expects, so they don't
+ * depend on the orientation. Point lights shine on the middle of the polygon
+ * at each pixel, as they do when polygons are drawn, so the colours are the
+ * ones the polygons were drawn with, up to rounding.
+ */
+public class GBuffer {
+
+	/** Rows of pixels per task when lighting in parallel. */
+	private static final int BAND_HEIGHT = 32;
+
+	public final int width;
+	public final int height;
+
+	/** The index of the polygon at each pixel, or FrameBuffer.NO_POLYGON. */
+	public final int[] ids;
+
+	/** The unit normal at each pixel, in model space. */
+	public final float[] normalX;
+	public final float[] normalY;
+	public final float[] normalZ;
+
+	/** The packed RGB reflectance at each pixel. */
+	public final int[] reflectance;
+
+	/**
+	 * If true, lighting is split into bands of rows on the pool, otherwise it
+	 * is all done on the calling thread.
+	 */
+	public boolean parallel = true;
+
+	private final ForkJoinPool pool;
+
+	// The model the buffer was built from, for the middles of its polygons.
+	private Mesh model;
+
+	public GBuffer(int width, int height) {
+		this(width, height, ForkJoinPool.commonPool());
+	}
+
+	public GBuffer(int width, int height, ForkJoinPool pool) {
+		this.width = width;
+		this.height = height;
+		this.pool = pool;
+		this.ids = new int[width * height];
+		this.normalX = new float[width * height];
+		this.normalY = new float[width * height];
+		this.normalZ = new float[width * height];
+		this.reflectance = new int[width * height];
+	}
+
+	/**
+	 * Fills the buffer in from a frame drawn with polygon ids on, and the
+	 * model it was drawn from.
+	 */
+	public void build(FrameBuffer frame, Mesh model) {
+		if (frame.ids == null) {
+			throw new IllegalArgumentException("the frame has no polygon ids");
+		}
+		System.arraycopy(frame.ids, 0, ids, 0, ids.length);
+		this.model = model;
+		run(new Band(model, null, null, null, null, 0, 0), 0, height);
+	}
+
+	/**
+	 * Works out the colour of every pixel with the given lights, as the
+	 * polygons drawn there would be shaded with them, and writes it into the
+	 * given packed RGB pixels. Pixels with no polygon are given the ambient
+	 * light. The lighting must be made for the orientation the frame was
+	 * drawn with.
+	 */
+	public void light(int[] pixels, Lighting lighting) {
+		light(pixels, lighting, null, null);
+	}
+
+	/**
+	 * The same as light above, but pixels set in shadowed (if it isn't null)
+	 * are lit by shadowLighting instead.
+	 */
+	public void light(int[] pixels, Lighting lighting, Lighting shadowLighting, boolean[] shadowed) {
+		run(new Band(null, pixels, lighting, shadowLighting, shadowed, 0, 0), 0, height);
+	}
+
+	/** Runs a band's job over rows [from, to), split up if parallel is on. */
+	private void run(Band job, int from, int to) {
+		if (!parallel || to - from <= BAND_HEIGHT) {
+			job.forRows(from, to).compute();
+		} else {
+			pool.invoke(job.forRows(from, to));
+		}
+	}
+
+	/**
+	 * A task that either builds (if model isn't null) or lights (otherwise)
+	 * a band of rows, splitting itself in two while it is taller than
+	 * BAND_HEIGHT.
+	 */
+	@SuppressWarnings("serial")
+	private class Band extends RecursiveAction {
+
+		private final Mesh model;
+		private final int[] pixels;
+		private final Lighting lighting;
+		private final Lighting shadowLighting;
+		private final boolean[] shadowed;
+		private final int from;
+		private final int to;
+
+		Band(Mesh model, int[] pixels, Lighting lighting, Lighting shadowLighting, boolean[] shadowed, int from,
+				int to) {
+			this.model = model;
+			this.pixels = pixels;
+			this.lighting = lighting;
+			this.shadowLighting = shadowLighting;
+			this.shadowed = shadowed;
+			this.from = from;
+			this.to = to;
+		}
+
+		Band forRows(int from, int to) {
+			return new Band(model, pixels, lighting, shadowLighting, shadowed, from, to);
+		}
+
+		@Override
+		protected void compute() {
+			if (parallel && to - from > BAND_HEIGHT) {
+				int mid = (from + to) >>> 1;
+				invokeAll(forRows(from, mid), forRows(mid, to));
+			} else if (model != null) {
+				buildRows(model, from, to);
+			} else {
+				lightRows(pixels, lighting, shadowLighting, shadowed, from, to);
+			}
+		}
+	}
+
+	private void buildRows(Mesh model, int fromRow, int toRow) {
+		int last = FrameBuffer.NO_POLYGON;
+		float nx = 0, ny = 0, nz = 0;
+		int rgb = 0;
+		for (int i = fromRow * width; i < toRow * width; i++) {
+			int p = ids[i];
+			if (p == FrameBuffer.NO_POLYGON) {
+				continue;
+			}
+			// Neighbouring pixels are mostly the same polygon
+			if (p != last) {
+				int v = p * 3;
+				float e1x = model.xs[v + 1] - model.xs[v];
+				float e1y = model.ys[v + 1] - model.ys[v];
+				float e1z = model.zs[v + 1] - model.zs[v];
+				float e2x = model.xs[v + 2] - model.xs[v + 1];
+				float e2y = model.ys[v + 2] - model.ys[v + 1];
+				float e2z = model.zs[v + 2] - model.zs[v + 1];
+				nx = e1y * e2z - e1z * e2y;
+				ny = e1z * e2x - e1x * e2z;
+				nz = e1x * e2y - e1y * e2x;
+				float mag = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+				if (mag > 0) {
+					nx /= mag;
+					ny /= mag;
+					nz /= mag;
+				} else {
+					// Vector3D.unitVector treats a zero normal as (1, 0, 0)
+					nx = 1;
+					ny = 0;
+					nz = 0;
+				}
+				rgb = model.reflectance[p];
+				last = p;
+			}
+			normalX[i] = nx;
+			normalY[i] = ny;
+			normalZ[i] = nz;
+			reflectance[i] = rgb;
+		}
+	}
+
+	private void lightRows(int[] pixels, Lighting lit, Lighting unlit, boolean[] shadowed, int fromRow,
+			int toRow) {
+		int ambient = lit.ambientLight.getRGB() & 0xffffff;
+		boolean pointLights = lit.hasPointLights || (shadowed != null && unlit.hasPointLights);
+		float[] light = new float[3];
+		float[] xs = model.xs, ys = model.ys, zs = model.zs;
+		float third = 1 / 3f;
+
+		// The middle of the polygon at the last pixel, for point lights
+		int last = FrameBuffer.NO_POLYGON;
+		float cx = 0, cy = 0, cz = 0;
+
+		for (int i = fromRow * width; i < toRow * width; i++) {
+			int p = ids[i];
+			if (p == FrameBuffer.NO_POLYGON) {
+				pixels[i] = ambient;
+				continue;
+			}
+			if (pointLights && p != last) {
+				int v = p * 3;
+				cx = (xs[v] + xs[v + 1] + xs[v + 2]) * third;
+				cy = (ys[v] + ys[v + 1] + ys[v + 2]) * third;
+				cz = (zs[v] + zs[v + 1] + zs[v + 2]) * third;
+				last = p;
+			}
+			Lighting lighting = shadowed != null && shadowed[i] ? unlit : lit;
+			lighting.sum(normalX[i], normalY[i], normalZ[i], cx, cy, cz, light, 0);
+			pixels[i] = Lighting.colour(light, 0, reflectance[i]);
+		}
+	}
+}
+
+// code for comp261 assignments
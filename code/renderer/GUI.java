@@ -10,8 +10,12 @@ import java.awt.KeyboardFocusManager;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Queue;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -22,6 +26,8 @@ import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
@@ -51,17 +57,59 @@ public abstract class GUI {
 	protected abstract void onKeyPress(KeyEvent ev);
 
 	/**
-	 * Is called every time the drawing canvas is drawn. This should return a
+	 * Is called every time the user clicks on the image. getX() and getY() of
+	 * the MouseEvent are the pixel of the image clicked on. Does nothing
+	 * unless overridden.
+	 */
+	protected void onMouseClick(MouseEvent ev) {
+	}
+
+	/**
+	 * Is called every time a new frame is needed. This should return a
 	 * BufferedImage that is your render of the scene.
+	 * 
+	 * This is called on the render thread, not the Swing thread, so it can
+	 * take as long as it needs without holding up the rest of the GUI. The
+	 * image returned is shown until the next frame is ready, so it must not
+	 * be drawn into again until render has returned a different image.
 	 */
 	protected abstract BufferedImage render();
 
 	/**
-	 * Forces a redraw of the drawing canvas. This is called for you, so you
-	 * don't need to call this unless you modify this GUI.
+	 * Asks the render thread for a new frame. This is called for you, so you
+	 * don't need to call this unless you modify this GUI. Requests made while
+	 * a frame is being rendered are merged, so only the newest state gets
+	 * rendered next.
 	 */
 	public void redraw() {
-		frame.repaint();
+		synchronized (renderLock) {
+			renderRequested = true;
+			renderLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Runs the given task on the render thread, before the next frame is
+	 * rendered. Anything that changes what render() works with, like loading a
+	 * new model, should be done this way.
+	 */
+	public void runOnRenderThread(Runnable task) {
+		synchronized (renderLock) {
+			renderTasks.add(task);
+			renderLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Shows the given message in the status line under the sliders. This can
+	 * be called from any thread, the message is put up on the Swing thread.
+	 */
+	public void setStatus(final String message) {
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				status.setText(message);
+			}
+		});
 	}
 
 	/**
@@ -101,6 +149,18 @@ public abstract class GUI {
 	// --------------------------------------------------------------------
 
 	private JFrame frame;
+
+	// The render thread waits on renderLock for a frame to be requested, or
+	// for a task to run. The newest finished frame is shown by the drawing
+	// canvas, and is guarded by frameLock so it can't be replaced mid-blit.
+	private final Object renderLock = new Object();
+	private final Queue<Runnable> renderTasks = new ArrayDeque<Runnable>();
+	private boolean renderRequested = false;
+	private final Object frameLock = new Object();
+	private BufferedImage latestFrame = null;
+	private JComponent drawing;
+	private final JTextArea status = new JTextArea();
+
 	private final JSlider red = new JSlider(JSlider.HORIZONTAL, 0, 255, 128);
 	private final JSlider green = new JSlider(JSlider.HORIZONTAL, 0, 255, 128);
 	private final JSlider blue = new JSlider(JSlider.HORIZONTAL, 0, 255, 128);
@@ -133,19 +193,20 @@ public abstract class GUI {
 		frame.setResizable(false);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 
-		// set up the drawing canvas, hook it into the render() method, and give
-		// it a nice default if render() returns null.
-		JComponent drawing = new JComponent() {
+		// set up the drawing canvas, have it show the latest frame from the
+		// render thread, and give it a nice default if render() returned null.
+		drawing = new JComponent() {
 			protected void paintComponent(Graphics g) {
-				BufferedImage image = render();
-				if (image == null) {
-					g.setColor(Color.WHITE);
-					g.fillRect(0, 0, DRAWING_SIZE.width, DRAWING_SIZE.height);
-					g.setColor(Color.BLACK);
-					g.setFont(FONT);
-					g.drawString("IMAGE IS NULL", 50, DRAWING_SIZE.height - 50);
-				} else {
-					g.drawImage(image, 0, 0, null);
+				synchronized (frameLock) {
+					if (latestFrame == null) {
+						g.setColor(Color.WHITE);
+						g.fillRect(0, 0, DRAWING_SIZE.width, DRAWING_SIZE.height);
+						g.setColor(Color.BLACK);
+						g.setFont(FONT);
+						g.drawString("IMAGE IS NULL", 50, DRAWING_SIZE.height - 50);
+					} else {
+						g.drawImage(latestFrame, 0, 0, null);
+					}
 				}
 			}
 		};
@@ -154,6 +215,11 @@ public abstract class GUI {
 		drawing.setMinimumSize(DRAWING_SIZE);
 		drawing.setMaximumSize(DRAWING_SIZE);
 		drawing.setVisible(true);
+		drawing.addMouseListener(new MouseAdapter() {
+			public void mouseClicked(MouseEvent ev) {
+				onMouseClick(ev);
+			}
+		});
 
 		// set up the load button
 		final JFileChooser fileChooser = new JFileChooser();
@@ -167,8 +233,12 @@ public abstract class GUI {
 
 				// run the file chooser and check the user didn't hit cancel
 				if (fileChooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-					File file = fileChooser.getSelectedFile();
-					onLoad(file);
+					final File file = fileChooser.getSelectedFile();
+					runOnRenderThread(new Runnable() {
+						public void run() {
+							onLoad(file);
+						}
+					});
 					redraw();
 				}
 			}
@@ -337,12 +407,67 @@ public abstract class GUI {
 		// if i were going to add more GUI components, i'd do it here.
 		controls.add(Box.createVerticalGlue());
 
+		// the status line, for messages from the renderer
+		status.setEditable(false);
+		status.setFocusable(false);
+		status.setLineWrap(true);
+		status.setWrapStyleWord(true);
+		status.setOpaque(false);
+		status.setMaximumSize(new Dimension(1000, 60));
+		controls.add(status);
+
 		// put it all together.
 		frame.add(drawing);
 		frame.add(controls);
 
 		frame.pack();
 		frame.setVisible(true);
+
+		Thread renderThread = new Thread(new Runnable() {
+			public void run() {
+				renderLoop();
+			}
+		}, "render");
+		renderThread.setDaemon(true);
+		renderThread.start();
+	}
+
+	/**
+	 * Waits for frames to be asked for and renders them, one at a time, on the
+	 * render thread. Each finished frame replaces the one being shown.
+	 */
+	private void renderLoop() {
+		while (true) {
+			Runnable task;
+			synchronized (renderLock) {
+				while (!renderRequested && renderTasks.isEmpty()) {
+					try {
+						renderLock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				task = renderTasks.poll();
+				if (task == null) {
+					renderRequested = false;
+				}
+			}
+
+			try {
+				if (task != null) {
+					task.run();
+					continue;
+				}
+				BufferedImage image = render();
+				synchronized (frameLock) {
+					latestFrame = image;
+				}
+				drawing.repaint();
+			} catch (RuntimeException e) {
+				// keep the render thread alive for the next frame
+				e.printStackTrace();
+			}
+		}
 	}
 
 	protected void onLightChange(ChangeEvent e) {
@@ -0,0 +1,303 @@
+package renderer;
+
+/**
+ * Draws triangles using edge functions instead of edge lists.
+ *
+ * Each edge of a triangle splits the screen in two, and a pixel is drawn if
+ * its centre is on the inside of all three. The vertices are snapped to a
+ * 1/16 pixel grid and the edge functions are worked out exactly in integers,
+ * so two triangles sharing an edge always agree on which side of it a pixel
+ * is. A pixel centre lying exactly on an edge is only drawn if that edge is a
+ * top or left edge of the triangle (the top-left rule), so a pixel on an edge
+ * shared by two triangles is drawn by exactly one of them. Together this
+ * means a mesh drawn this way has no gaps between its triangles and no
+ * pixels drawn twice.
+ *
+ * The screen is walked in 8x8 blocks, lined up with the frame's depth
+ * pyramid. A block entirely outside an edge is skipped, and a block entirely
+ * inside all three is filled without testing the edges per pixel, which
+ * makes small and thin triangles cheap.
+ *
+ * The depth of a pixel is worked out from the plane of the triangle at the
+ * pixel's centre, clamped to the range of the triangle's vertices, and
+ * doesn't depend on the clip rectangle, so drawing in tiles gives the same
+ * result as drawing the whole frame at once.
+ */
+public class HalfSpaceRasterizer {
+
+	/** Vertex positions are snapped to 1/SUBPIXELS of a pixel. */
+	public static final int SUBPIXELS = 16;
+
+	public static final int BLOCK_SIZE = 8;
+
+	private static final int BLOCK_MASK = ~(BLOCK_SIZE - 1);
+
+	/**
+	 * Draws polygon p of a screen-space mesh into the frame, only touching the
+	 * pixels inside the given rectangle (inclusive). Either winding is drawn.
+	 * If the frame keeps polygon ids, p is written to them for every pixel
+	 * drawn.
+	 *
+	 * @return The number of pixels that passed the depth test.
+	 */
+	public static int draw(FrameBuffer frame, Mesh screen, int p, int color, int minX, int minY, int maxX,
+			int maxY) {
+		return traverse(frame, screen, p, color, minX, minY, maxX, maxY, null, false);
+	}
+
+	/**
+	 * The same as draw above, but using the frame's depth pyramid (if it
+	 * isn't null) to skip the whole polygon, or 8x8 blocks of it, when they
+	 * are hidden behind what has already been drawn. Pixel depths are clamped
+	 * to the range of the vertices, so the nearest vertex is a safe nearest
+	 * depth for the whole polygon, and the plane is nearest at a corner of
+	 * each block.
+	 */
+	public static int draw(FrameBuffer frame, Mesh screen, int p, int color, int minX, int minY, int maxX,
+			int maxY, DepthPyramid pyramid) {
+		return traverse(frame, screen, p, color, minX, minY, maxX, maxY, pyramid, false);
+	}
+
+	/**
+	 * Returns true if at least one pixel of polygon p inside the given
+	 * rectangle (inclusive) would pass the depth test, i.e. if draw would
+	 * draw anything. This stops at the first such pixel, and skips what the
+	 * depth pyramid (if not null) shows is hidden, counting it as occluded if
+	 * the polygon turns out to be hidden.
+	 */
+	public static boolean isAnyPixelVisible(FrameBuffer frame, Mesh screen, int p, int minX, int minY, int maxX,
+			int maxY, DepthPyramid pyramid) {
+		return traverse(frame, screen, p, 0, minX, minY, maxX, maxY, pyramid, true) != 0;
+	}
+
+	/**
+	 * Returns the number of pixels inside the given rectangle (inclusive)
+	 * that polygon p covers, i.e. the number draw would depth test.
+	 */
+	public static int countPixels(Mesh screen, int p, int minX, int minY, int maxX, int maxY) {
+		return traverse(null, screen, p, 0, minX, minY, maxX, maxY, null, false);
+	}
+
+	/**
+	 * Walks the pixels of polygon p inside the clip rectangle. If frame is
+	 * null the covered pixels are only counted, otherwise they are depth
+	 * tested and drawn, and the number written is returned. The pyramid is
+	 * only used when drawing, and may be null. If probe is true nothing is
+	 * drawn, and 1 is returned as soon as a pixel passes the depth test.
+	 */
+	private static int traverse(FrameBuffer frame, Mesh screen, int p, int color, int clipMinX, int clipMinY,
+			int clipMaxX, int clipMaxY, DepthPyramid pyramid, boolean probe) {
+		int v = p * 3;
+		float fx0 = screen.xs[v], fy0 = screen.ys[v], fz0 = screen.zs[v];
+		float fx1 = screen.xs[v + 1], fy1 = screen.ys[v + 1], fz1 = screen.zs[v + 1];
+		float fx2 = screen.xs[v + 2], fy2 = screen.ys[v + 2], fz2 = screen.zs[v + 2];
+
+		// Bounding box in pixels, clipped. This also throws out NaNs.
+		int minX = Math.max(clipMinX, (int) Math.floor(Math.min(fx0, Math.min(fx1, fx2))));
+		int maxX = Math.min(clipMaxX, (int) Math.ceil(Math.max(fx0, Math.max(fx1, fx2))));
+		int minY = Math.max(clipMinY, (int) Math.floor(Math.min(fy0, Math.min(fy1, fy2))));
+		int maxY = Math.min(clipMaxY, (int) Math.ceil(Math.max(fy0, Math.max(fy1, fy2))));
+		if (!(minX <= maxX && minY <= maxY)) {
+			return 0;
+		}
+		float minZ = Math.min(fz0, Math.min(fz1, fz2));
+		float maxZ = Math.max(fz0, Math.max(fz1, fz2));
+		if (pyramid != null && pyramid.isOccluded(minX, minY, maxX, maxY, minZ)) {
+			int covered = pyramid.countPixels ? traverse(null, screen, p, 0, minX, minY, maxX, maxY, null, false) : 0;
+			pyramid.addOccluded(minX, minY, 1, covered);
+			return 0;
+		}
+
+		long x0 = snap(fx0), y0 = snap(fy0);
+		long x1 = snap(fx1), y1 = snap(fy1);
+		long x2 = snap(fx2), y2 = snap(fy2);
+		long area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+		if (area == 0) {
+			return 0;
+		}
+		if (area < 0) {
+			// Swap vertices 1 and 2 so that the inside of every edge is
+			// positive.
+			long t = x1; x1 = x2; x2 = t;
+			t = y1; y1 = y2; y2 = t;
+			float f = fx1; fx1 = fx2; fx2 = f;
+			f = fy1; fy1 = fy2; fy2 = f;
+			f = fz1; fz1 = fz2; fz2 = f;
+		}
+
+		// Edge i is opposite vertex i. E(x, y) = a * x + b * y + c, in
+		// 1/SUBPIXELS units squared, is positive inside the edge. The bias
+		// takes one off for edges that aren't top or left ones, so that a
+		// pixel centre exactly on them counts as outside.
+		long a0 = y1 - y2, b0 = x2 - x1, c0 = x1 * y2 - x2 * y1 + bias(a0, b0);
+		long a1 = y2 - y0, b1 = x0 - x2, c1 = x2 * y0 - x0 * y2 + bias(a1, b1);
+		long a2 = y0 - y1, b2 = x1 - x0, c2 = x0 * y1 - x1 * y0 + bias(a2, b2);
+
+		// The plane of the triangle, for depths.
+		double dx1 = fx1 - fx0, dy1 = fy1 - fy0, dz1 = fz1 - fz0;
+		double dx2 = fx2 - fx0, dy2 = fy2 - fy0, dz2 = fz2 - fz0;
+		double denominator = dx1 * dy2 - dx2 * dy1;
+		float dzdx = denominator == 0 ? 0 : (float) ((dz1 * dy2 - dz2 * dy1) / denominator);
+		float dzdy = denominator == 0 ? 0 : (float) ((dx1 * dz2 - dx2 * dz1) / denominator);
+		float zBase = fz0 - dzdx * fx0 - dzdy * fy0;
+
+		// Stepping one pixel to the right or down changes E by this much.
+		long stepX0 = a0 * SUBPIXELS, stepX1 = a1 * SUBPIXELS, stepX2 = a2 * SUBPIXELS;
+		long blockX0 = stepX0 * (BLOCK_SIZE - 1), blockX1 = stepX1 * (BLOCK_SIZE - 1),
+				blockX2 = stepX2 * (BLOCK_SIZE - 1);
+		long blockY0 = b0 * SUBPIXELS * (BLOCK_SIZE - 1), blockY1 = b1 * SUBPIXELS * (BLOCK_SIZE - 1),
+				blockY2 = b2 * SUBPIXELS * (BLOCK_SIZE - 1);
+
+		int[] pixels = frame == null ? null : frame.pixels;
+		float[] depth = frame == null ? null : frame.depth;
+		int[] ids = frame == null ? null : frame.ids;
+		int width = frame == null ? 0 : frame.width;
+		int originX = frame == null ? 0 : frame.originX;
+		int originY = frame == null ? 0 : frame.originY;
+
+		int count = 0;
+		long skipped = 0;
+		for (int by = ((minY - originY) & BLOCK_MASK) + originY; by <= maxY; by += BLOCK_SIZE) {
+			for (int bx = ((minX - originX) & BLOCK_MASK) + originX; bx <= maxX; bx += BLOCK_SIZE) {
+				// The edge functions at the centres of the block's top left
+				// pixel, and so at its other corners.
+				long e0 = edge(a0, b0, c0, bx, by);
+				long e1 = edge(a1, b1, c1, bx, by);
+				long e2 = edge(a2, b2, c2, bx, by);
+
+				int inside0 = corners(e0, blockX0, blockY0);
+				int inside1 = corners(e1, blockX1, blockY1);
+				int inside2 = corners(e2, blockX2, blockY2);
+				if (inside0 == 0 || inside1 == 0 || inside2 == 0) {
+					continue;
+				}
+				boolean full = (inside0 & inside1 & inside2) == 0xf;
+
+				int startX = Math.max(bx, minX);
+				int endX = Math.min(bx + BLOCK_SIZE - 1, maxX);
+				int startY = Math.max(by, minY);
+				int endY = Math.min(by + BLOCK_SIZE - 1, maxY);
+
+				if (frame == null) {
+					count += full ? (endX - startX + 1) * (endY - startY + 1)
+							: countBlock(a0, b0, c0, a1, b1, c1, a2, b2, c2, startX, startY, endX, endY);
+					continue;
+				}
+
+				if (pyramid != null) {
+					float topZ = zBase + dzdy * (startY + 0.5f);
+					float bottomZ = zBase + dzdy * (endY + 0.5f);
+					float nearest = Math.min(Math.min(topZ + dzdx * (startX + 0.5f), topZ + dzdx * (endX + 0.5f)),
+							Math.min(bottomZ + dzdx * (startX + 0.5f), bottomZ + dzdx * (endX + 0.5f)));
+					if (Math.min(Math.max(nearest, minZ), maxZ) >= pyramid.getBlockDepth(bx, by)) {
+						if (full) {
+							skipped += (endX - startX + 1) * (endY - startY + 1);
+						} else if (pyramid.countPixels) {
+							skipped += countBlock(a0, b0, c0, a1, b1, c1, a2, b2, c2, startX, startY, endX, endY);
+						}
+						continue;
+					}
+				}
+
+				int before = count;
+				for (int y = startY; y <= endY; y++) {
+					float rowZ = zBase + dzdy * (y + 0.5f);
+					int row = (y - originY) * width - originX;
+					if (full) {
+						for (int x = startX; x <= endX; x++) {
+							float z = Math.min(Math.max(rowZ + dzdx * (x + 0.5f), minZ), maxZ);
+							if (z < depth[row + x]) {
+								if (probe) {
+									return 1;
+								}
+								pixels[row + x] = color;
+								depth[row + x] = z;
+								if (ids != null) {
+									ids[row + x] = p;
+								}
+								count++;
+							}
+						}
+						continue;
+					}
+					long r0 = edge(a0, b0, c0, startX, y);
+					long r1 = edge(a1, b1, c1, startX, y);
+					long r2 = edge(a2, b2, c2, startX, y);
+					for (int x = startX; x <= endX; x++, r0 += stepX0, r1 += stepX1, r2 += stepX2) {
+						if ((r0 | r1 | r2) >= 0) {
+							float z = Math.min(Math.max(rowZ + dzdx * (x + 0.5f), minZ), maxZ);
+							if (z < depth[row + x]) {
+								if (probe) {
+									return 1;
+								}
+								pixels[row + x] = color;
+								depth[row + x] = z;
+								if (ids != null) {
+									ids[row + x] = p;
+								}
+								count++;
+							}
+						}
+					}
+				}
+				if (pyramid != null && count != before) {
+					pyramid.markWritten(bx, by, count - before);
+				}
+			}
+		}
+		if (skipped != 0) {
+			pyramid.addOccluded(minX, minY, 0, skipped);
+		}
+		return count;
+	}
+
+	/** Counts the pixels in the given part of a block inside all three edges. */
+	private static int countBlock(long a0, long b0, long c0, long a1, long b1, long c1, long a2, long b2, long c2,
+			int startX, int startY, int endX, int endY) {
+		int count = 0;
+		for (int y = startY; y <= endY; y++) {
+			long r0 = edge(a0, b0, c0, startX, y);
+			long r1 = edge(a1, b1, c1, startX, y);
+			long r2 = edge(a2, b2, c2, startX, y);
+			for (int x = startX; x <= endX; x++, r0 += a0 * SUBPIXELS, r1 += a1 * SUBPIXELS, r2 += a2 * SUBPIXELS) {
+				if ((r0 | r1 | r2) >= 0) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static long snap(float coord) {
+		return Math.round((double) coord * SUBPIXELS);
+	}
+
+	/**
+	 * With the vertices in the order used, a top edge runs exactly
+	 * horizontally to the right and a left edge runs upwards.
+	 */
+	private static long bias(long a, long b) {
+		boolean topLeft = a > 0 || (a == 0 && b > 0);
+		return topLeft ? 0 : -1;
+	}
+
+	/** The edge function at the centre of pixel (x, y). */
+	private static long edge(long a, long b, long c, int x, int y) {
+		return a * (x * SUBPIXELS + SUBPIXELS / 2) + b * (y * SUBPIXELS + SUBPIXELS / 2) + c;
+	}
+
+	/**
+	 * Given the edge function at the top left pixel of a block, returns a bit
+	 * for each corner of the block that is inside the edge.
+	 */
+	private static int corners(long e, long blockX, long blockY) {
+		int inside = 0;
+		if (e >= 0) inside |= 1;
+		if (e + blockX >= 0) inside |= 2;
+		if (e + blockY >= 0) inside |= 4;
+		if (e + blockX + blockY >= 0) inside |= 8;
+		return inside;
+	}
+}
+
+// code for comp261 assignments
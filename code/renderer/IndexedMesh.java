@@ -0,0 +1,275 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A Mesh with the corners of its polygons welded together, so that polygons
+ * meeting at a point share one vertex there, with one normal.
+ *
+ * A Mesh stores three separate vertices per polygon. Here each distinct
+ * position is stored once, and corner i of polygon p is vertex indices[3p + i].
+ * Positions are welded by snapping them to a grid whose spacing is the
+ * tolerance and looking the snapped position up in a hash table, so corners
+ * closer together than the tolerance are nearly always welded (two that fall
+ * either side of a grid line aren't). On a typical closed mesh each vertex is
+ * shared by about six polygons, so there are about a sixth as many vertices to
+ * transform as in the Mesh.
+ *
+ * The normal of a vertex is the sum of the normals of the polygons around it,
+ * each weighted by its area, as a unit vector in model space. They are worked
+ * out in one pass over the vertices, split across the pool; the polygons
+ * around each vertex are listed first, so no two threads add into the same
+ * vertex and the normals don't depend on how the work was split.
+ */
+public class IndexedMesh {
+
+	/** The default tolerance, as a fraction of the size of the model. */
+	public static final float DEFAULT_TOLERANCE = 1e-6f;
+
+	/** Vertices per task when working out the normals in parallel. */
+	private static final int MIN_CHUNK = 16384;
+
+	/** The Mesh this was built from, which holds the reflectance and light. */
+	public final Mesh mesh;
+
+	/** The number of polygons. */
+	public final int size;
+
+	/** The number of distinct vertices. */
+	public final int vertexCount;
+
+	/** Corner i of polygon p is vertex indices[3 * p + i]. */
+	public final int[] indices;
+
+	/** The position of each vertex. */
+	public final float[] xs;
+	public final float[] ys;
+	public final float[] zs;
+
+	/** The unit normal of each vertex, in model space. */
+	public final float[] normalXs;
+	public final float[] normalYs;
+	public final float[] normalZs;
+
+	// The vertices transformed by the last transform, reused between frames.
+	private float[] transformedXs = new float[0];
+	private float[] transformedYs = new float[0];
+	private float[] transformedZs = new float[0];
+
+	/** Welds the given mesh with the default tolerance. */
+	public IndexedMesh(Mesh mesh) {
+		this(mesh, defaultTolerance(mesh), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Welds the given mesh, treating corners closer than the tolerance as the
+	 * same vertex, and works out the normals on the given pool.
+	 */
+	public IndexedMesh(Mesh mesh, float tolerance, ForkJoinPool pool) {
+		this.mesh = mesh;
+		this.size = mesh.size;
+		this.indices = new int[mesh.size * 3];
+
+		float[] xs = new float[Math.max(16, mesh.size)];
+		float[] ys = new float[xs.length];
+		float[] zs = new float[xs.length];
+		long[] keyXs = new long[xs.length];
+		long[] keyYs = new long[xs.length];
+		long[] keyZs = new long[xs.length];
+
+		// An open-addressed table of vertex indices, at most half full
+		int[] table = new int[Integer.highestOneBit(Math.max(mesh.size * 6, 16)) << 1];
+		Arrays.fill(table, -1);
+		int mask = table.length - 1;
+		double scale = tolerance > 0 ? 1.0 / tolerance : 0;
+		int count = 0;
+
+		for (int v = 0; v < mesh.size * 3; v++) {
+			float x = mesh.xs[v], y = mesh.ys[v], z = mesh.zs[v];
+			// With no tolerance only exactly equal positions are welded
+			long kx = scale > 0 ? Math.round(x * scale) : Float.floatToIntBits(x);
+			long ky = scale > 0 ? Math.round(y * scale) : Float.floatToIntBits(y);
+			long kz = scale > 0 ? Math.round(z * scale) : Float.floatToIntBits(z);
+			int slot = hash(kx, ky, kz) & mask;
+			int found;
+			while ((found = table[slot]) >= 0
+					&& (keyXs[found] != kx || keyYs[found] != ky || keyZs[found] != kz)) {
+				slot = (slot + 1) & mask;
+			}
+			if (found < 0) {
+				if (count == xs.length) {
+					int capacity = count * 2;
+					xs = Arrays.copyOf(xs, capacity);
+					ys = Arrays.copyOf(ys, capacity);
+					zs = Arrays.copyOf(zs, capacity);
+					keyXs = Arrays.copyOf(keyXs, capacity);
+					keyYs = Arrays.copyOf(keyYs, capacity);
+					keyZs = Arrays.copyOf(keyZs, capacity);
+				}
+				found = count++;
+				table[slot] = found;
+				xs[found] = x;
+				ys[found] = y;
+				zs[found] = z;
+				keyXs[found] = kx;
+				keyYs[found] = ky;
+				keyZs[found] = kz;
+			}
+			indices[v] = found;
+		}
+
+		this.vertexCount = count;
+		this.xs = Arrays.copyOf(xs, count);
+		this.ys = Arrays.copyOf(ys, count);
+		this.zs = Arrays.copyOf(zs, count);
+		this.normalXs = new float[count];
+		this.normalYs = new float[count];
+		this.normalZs = new float[count];
+		computeNormals(pool);
+	}
+
+	/** The model's largest extent along an axis, times DEFAULT_TOLERANCE. */
+	private static float defaultTolerance(Mesh mesh) {
+		float min = Float.POSITIVE_INFINITY;
+		float max = Float.NEGATIVE_INFINITY;
+		for (float[] values : new float[][] { mesh.xs, mesh.ys, mesh.zs }) {
+			float axisMin = Float.POSITIVE_INFINITY;
+			float axisMax = Float.NEGATIVE_INFINITY;
+			for (int v = 0; v < mesh.size * 3; v++) {
+				axisMin = Math.min(axisMin, values[v]);
+				axisMax = Math.max(axisMax, values[v]);
+			}
+			if (axisMax - axisMin > max - min) {
+				min = axisMin;
+				max = axisMax;
+			}
+		}
+		return max > min ? (max - min) * DEFAULT_TOLERANCE : 0;
+	}
+
+	private static int hash(long x, long y, long z) {
+		long h = x * 0x9E3779B97F4A7C15L + y * 0xC2B2AE3D27D4EB4FL + z * 0x165667B19E3779F9L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * Lists the polygons around each vertex, then sums their normals into
+	 * each vertex's normal, one chunk of vertices per task.
+	 */
+	private void computeNormals(ForkJoinPool pool) {
+		final int[] starts = new int[vertexCount + 1];
+		for (int i = 0; i < size * 3; i++) {
+			starts[indices[i] + 1]++;
+		}
+		for (int v = 0; v < vertexCount; v++) {
+			starts[v + 1] += starts[v];
+		}
+		final int[] polygons = new int[size * 3];
+		int[] next = Arrays.copyOf(starts, vertexCount);
+		for (int i = 0; i < size * 3; i++) {
+			polygons[next[indices[i]]++] = i / 3;
+		}
+
+		int chunks = Math.max(1, Math.min(pool.getParallelism(), vertexCount / MIN_CHUNK));
+		if (chunks == 1) {
+			sumNormals(starts, polygons, 0, vertexCount);
+			return;
+		}
+		final NormalTask[] tasks = new NormalTask[chunks];
+		for (int c = 0; c < chunks; c++) {
+			tasks[c] = new NormalTask(starts, polygons, (int) ((long) vertexCount * c / chunks),
+					(int) ((long) vertexCount * (c + 1) / chunks));
+		}
+		pool.invoke(new RecursiveAction() {
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	@SuppressWarnings("serial")
+	private class NormalTask extends RecursiveAction {
+		private final int[] starts;
+		private final int[] polygons;
+		private final int from;
+		private final int to;
+
+		NormalTask(int[] starts, int[] polygons, int from, int to) {
+			this.starts = starts;
+			this.polygons = polygons;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			sumNormals(starts, polygons, from, to);
+		}
+	}
+
+	private void sumNormals(int[] starts, int[] polygons, int from, int to) {
+		float[] mx = mesh.xs, my = mesh.ys, mz = mesh.zs;
+		for (int v = from; v < to; v++) {
+			float nx = 0, ny = 0, nz = 0;
+			for (int i = starts[v]; i < starts[v + 1]; i++) {
+				// The same edges as getNormal, so the normal faces the same
+				// way; its length is twice the polygon's area
+				int c = polygons[i] * 3;
+				float e1x = mx[c + 1] - mx[c];
+				float e1y = my[c + 1] - my[c];
+				float e1z = mz[c + 1] - mz[c];
+				float e2x = mx[c + 2] - mx[c + 1];
+				float e2y = my[c + 2] - my[c + 1];
+				float e2z = mz[c + 2] - mz[c + 1];
+				nx += e1y * e2z - e1z * e2y;
+				ny += e1z * e2x - e1x * e2z;
+				nz += e1x * e2y - e1y * e2x;
+			}
+			float mag = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+			if (mag > 0) {
+				normalXs[v] = nx / mag;
+				normalYs[v] = ny / mag;
+				normalZs[v] = nz / mag;
+			} else {
+				// Vector3D.unitVector treats a zero normal as (1, 0, 0)
+				normalXs[v] = 1;
+				normalYs[v] = 0;
+				normalZs[v] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Applies a transform to every vertex, then writes the transformed
+	 * corners of every polygon into the given Mesh, in the same layout as
+	 * Mesh.transform. Each vertex is only transformed once, however many
+	 * polygons share it. The other mesh shares the reflectance and
+	 * sourceLines arrays of the one this was built from.
+	 */
+	public void transform(Transform transform, Mesh out) {
+		if (transformedXs.length < vertexCount) {
+			transformedXs = new float[vertexCount];
+			transformedYs = new float[vertexCount];
+			transformedZs = new float[vertexCount];
+		}
+		float[] txs = transformedXs, tys = transformedYs, tzs = transformedZs;
+		transform.multiply(xs, ys, zs, txs, tys, tzs, 0, vertexCount);
+
+		out.ensureCapacity(size);
+		float[] oxs = out.xs, oys = out.ys, ozs = out.zs;
+		for (int i = 0; i < size * 3; i++) {
+			int v = indices[i];
+			oxs[i] = txs[v];
+			oys[i] = tys[v];
+			ozs[i] = tzs[v];
+		}
+		out.reflectance = mesh.reflectance;
+		out.sourceLines = mesh.sourceLines;
+		out.size = size;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,105 @@
+package renderer;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A light shining on the model, besides the ambient light. A directional
+ * light shines from the same direction onto every polygon, like the light
+ * read in from the top of the scene file. A point light shines out from a
+ * position, and gets dimmer with distance d by
+ * 1 / (constant + linear * d + quadratic * d * d).
+ *
+ * Most lights are given in model space, so they turn with the model. A light
+ * that is fixedToView is given in view space instead (x to the right, y down
+ * and z into the screen, in the model's units), so it stays put on the
+ * screen while the model turns, like the two lights in the bottom corners.
+ *
+ * Lights never change once made, so the same Light can be shared by any
+ * number of scenes and threads.
+ */
+public class Light {
+
+	public enum Type {
+		DIRECTIONAL, POINT
+	}
+
+	public final Type type;
+
+	/**
+	 * For a directional light, the direction the light comes from (not
+	 * necessarily a unit vector). For a point light, its position.
+	 */
+	public final Vector3D vector;
+
+	public final Color color;
+
+	/** How a point light falls off with distance. Unused for directional lights. */
+	public final float constant;
+	public final float linear;
+	public final float quadratic;
+
+	public final boolean fixedToView;
+
+	private Light(Type type, Vector3D vector, Color color, float constant, float linear, float quadratic,
+			boolean fixedToView) {
+		this.type = type;
+		this.vector = vector;
+		this.color = color;
+		this.constant = constant;
+		this.linear = linear;
+		this.quadratic = quadratic;
+		this.fixedToView = fixedToView;
+	}
+
+	/** Makes a directional light in model space, coming from the given direction. */
+	public static Light directional(Vector3D direction, Color color) {
+		return new Light(Type.DIRECTIONAL, direction, color, 1, 0, 0, false);
+	}
+
+	/**
+	 * Makes a point light in model space at the given position. The
+	 * attenuation terms can't be negative, and can't all be zero.
+	 */
+	public static Light point(Vector3D position, Color color, float constant, float linear, float quadratic) {
+		if (!(constant >= 0 && linear >= 0 && quadratic >= 0) || constant + linear + quadratic == 0) {
+			throw new IllegalArgumentException(
+					"bad attenuation " + constant + ", " + linear + ", " + quadratic + " for a point light");
+		}
+		return new Light(Type.POINT, position, color, constant, linear, quadratic, false);
+	}
+
+	/** Returns the same light, but given in view space rather than model space. */
+	public Light fixedToView() {
+		return new Light(type, vector, color, constant, linear, quadratic, true);
+	}
+
+	/** Returns true if the light is black, so it never adds anything. */
+	public boolean isOff() {
+		return (color.getRGB() & 0xffffff) == 0;
+	}
+
+	/**
+	 * Returns the two lights in the bottom corners of the screen, with the
+	 * given colours, as set with the sliders in the GUI.
+	 */
+	public static List<Light> cornerLights(Color bottomLeftLight, Color bottomRightLight) {
+		List<Light> lights = new ArrayList<Light>(2);
+		lights.add(directional(Pipeline.BOTTOM_LEFT_LIGHT_DIRECTION, bottomLeftLight).fixedToView());
+		lights.add(directional(Pipeline.BOTTOM_RIGHT_LIGHT_DIRECTION, bottomRightLight).fixedToView());
+		return lights;
+	}
+
+	@Override
+	public String toString() {
+		String str = type.name().toLowerCase(Locale.ROOT) + " light " + vector + " " + color;
+		if (type == Type.POINT) {
+			str += " falling off by " + constant + ", " + linear + ", " + quadratic;
+		}
+		return fixedToView ? str + " fixed to the view" : str;
+	}
+}
+
+// code for comp261 assignments
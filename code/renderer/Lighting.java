@@ -0,0 +1,214 @@
+package renderer;
+
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * The lights for one frame, made ready for shading lots of surfaces with.
+ *
+ * Lights that are off are left out, and the rest are turned into model space
+ * and packed into flat arrays, once per frame, so shading a surface is a loop
+ * over just the lights that can add anything, with no objects or vector maths
+ * in it. Normals and positions given to it are in model space, so they never
+ * have to be rotated.
+ *
+ * A light is also skipped for a surface it can't reach: one it shines on from
+ * behind, or one too far from a point light for it to add half a step to any
+ * channel. The colours can differ by the odd step from adding in every light,
+ * but are otherwise the same as Pipeline.getShading gives: the light from
+ * each source is its colour times the cosine of its angle to the surface
+ * (times its attenuation, for a point light), these are added to the ambient
+ * light, and the sum is multiplied by the reflectance.
+ */
+public class Lighting {
+
+	private static final float MULTIPLIER = 1 / (float) 255;
+
+	public final Color ambientLight;
+
+	/** The number of lights that are on. */
+	public final int count;
+
+	/** True if any of the lights that are on is a point light. */
+	public final boolean hasPointLights;
+
+	// For each light that is on: whether it is a point light, then its unit
+	// direction (or position), its colour from 0 to 1, its attenuation, and
+	// the square of the distance past which it adds under half a step.
+	private final boolean[] points;
+	private final float[] xs;
+	private final float[] ys;
+	private final float[] zs;
+	private final float[] reds;
+	private final float[] greens;
+	private final float[] blues;
+	private final float[] constants;
+	private final float[] linears;
+	private final float[] quadratics;
+	private final float[] ranges;
+
+	private final float ambientRed;
+	private final float ambientGreen;
+	private final float ambientBlue;
+
+	/**
+	 * Gets the given lights ready for a frame drawn with the given
+	 * orientation, which is used to turn lights fixed to the view into model
+	 * space.
+	 */
+	public Lighting(Color ambientLight, List<Light> lights, Transform orientation) {
+		this.ambientLight = ambientLight;
+		this.ambientRed = MULTIPLIER * ambientLight.getRed();
+		this.ambientGreen = MULTIPLIER * ambientLight.getGreen();
+		this.ambientBlue = MULTIPLIER * ambientLight.getBlue();
+
+		int n = lights.size();
+		points = new boolean[n];
+		xs = new float[n];
+		ys = new float[n];
+		zs = new float[n];
+		reds = new float[n];
+		greens = new float[n];
+		blues = new float[n];
+		constants = new float[n];
+		linears = new float[n];
+		quadratics = new float[n];
+		ranges = new float[n];
+
+		int count = 0;
+		boolean hasPointLights = false;
+		for (Light light : lights) {
+			float range = Float.POSITIVE_INFINITY;
+			boolean point = light.type == Light.Type.POINT;
+			if (point) {
+				range = range(light);
+			}
+			if (light.isOff() || range <= 0) {
+				continue;
+			}
+			Vector3D vector = point ? light.vector : light.vector.unitVector();
+			if (light.fixedToView) {
+				vector = rotateBack(orientation, vector);
+			}
+			points[count] = point;
+			xs[count] = vector.x;
+			ys[count] = vector.y;
+			zs[count] = vector.z;
+			reds[count] = MULTIPLIER * light.color.getRed();
+			greens[count] = MULTIPLIER * light.color.getGreen();
+			blues[count] = MULTIPLIER * light.color.getBlue();
+			constants[count] = light.constant;
+			linears[count] = light.linear;
+			quadratics[count] = light.quadratic;
+			ranges[count] = range == Float.POSITIVE_INFINITY ? range : range * range;
+			hasPointLights |= point;
+			count++;
+		}
+		this.count = count;
+		this.hasPointLights = hasPointLights;
+	}
+
+	/**
+	 * The distance at which a point light has faded to adding under half a
+	 * step to its brightest channel, or infinity if it never does.
+	 */
+	private static float range(Light light) {
+		int brightest = Math.max(light.color.getRed(), Math.max(light.color.getGreen(), light.color.getBlue()));
+		// light * brightest / 255 < 0.5 / 255 once the attenuation passes this
+		float fade = 2f * brightest - light.constant;
+		if (fade <= 0) {
+			return 0;
+		} else if (light.quadratic > 0) {
+			double l = light.linear, q = light.quadratic;
+			return (float) ((-l + Math.sqrt(l * l + 4 * q * fade)) / (2 * q));
+		} else if (light.linear > 0) {
+			return fade / light.linear;
+		}
+		return Float.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Turns a vector in view space back into model space. The orientation is
+	 * a rotation, so its transpose undoes it.
+	 */
+	private static Vector3D rotateBack(Transform rotation, Vector3D v) {
+		return new Vector3D(
+				rotation.get(0, 0) * v.x + rotation.get(1, 0) * v.y + rotation.get(2, 0) * v.z,
+				rotation.get(0, 1) * v.x + rotation.get(1, 1) * v.y + rotation.get(2, 1) * v.z,
+				rotation.get(0, 2) * v.x + rotation.get(1, 2) * v.y + rotation.get(2, 2) * v.z);
+	}
+
+	/**
+	 * Adds up the red, green and blue light falling on a surface with the
+	 * given unit normal at the given position, from 0 to 1 (or more), and
+	 * writes them into out at offset, offset + 1 and offset + 2. The position
+	 * is only used by point lights.
+	 */
+	public void sum(float nx, float ny, float nz, float px, float py, float pz, float[] out, int offset) {
+		float red = ambientRed, green = ambientGreen, blue = ambientBlue;
+		for (int i = 0; i < count; i++) {
+			float cosTheta;
+			if (points[i]) {
+				float dx = xs[i] - px, dy = ys[i] - py, dz = zs[i] - pz;
+				float distanceSquared = dx * dx + dy * dy + dz * dz;
+				if (distanceSquared >= ranges[i]) {
+					continue;
+				}
+				float distance = (float) Math.sqrt(distanceSquared);
+				// a light right on the surface shines straight at it
+				cosTheta = distance > 0 ? (nx * dx + ny * dy + nz * dz) / distance : 1;
+				if (cosTheta <= 0) {
+					continue;
+				}
+				cosTheta /= constants[i] + linears[i] * distance + quadratics[i] * distanceSquared;
+			} else {
+				cosTheta = nx * xs[i] + ny * ys[i] + nz * zs[i];
+				if (cosTheta <= 0) {
+					continue;
+				}
+			}
+			red += reds[i] * cosTheta;
+			green += greens[i] * cosTheta;
+			blue += blues[i] * cosTheta;
+		}
+		out[offset] = red;
+		out[offset + 1] = green;
+		out[offset + 2] = blue;
+	}
+
+	/**
+	 * Returns the packed RGB colour of a surface with the given packed RGB
+	 * reflectance, lit by the light at offset in light, as added up by sum.
+	 */
+	public static int colour(float[] light, int offset, int reflectance) {
+		return (channel(light[offset], (reflectance >> 16) & 0xff) << 16)
+				| (channel(light[offset + 1], (reflectance >> 8) & 0xff) << 8)
+				| channel(light[offset + 2], reflectance & 0xff);
+	}
+
+	/**
+	 * Colours one channel of the light added up by sum with that channel of
+	 * the reflectance, from 0 to 255.
+	 */
+	public static int channel(float light, int reflectance) {
+		return Math.min((int) (light * MULTIPLIER * reflectance * 255), 255);
+	}
+
+	/** Returns true if the other lighting would shade everything the same. */
+	public boolean sameAs(Lighting other) {
+		if (other == null || !ambientLight.equals(other.ambientLight) || count != other.count) {
+			return false;
+		}
+		for (int i = 0; i < count; i++) {
+			if (points[i] != other.points[i] || xs[i] != other.xs[i] || ys[i] != other.ys[i] || zs[i] != other.zs[i]
+					|| reds[i] != other.reds[i] || greens[i] != other.greens[i] || blues[i] != other.blues[i]
+					|| constants[i] != other.constants[i] || linears[i] != other.linears[i]
+					|| quadratics[i] != other.quadratics[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,133 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import renderer.Scene.Polygon;
+
+/**
+ * Mesh stores the same data as a Scene (a list of triangles and a light
+ * source), but as flat arrays of primitives rather than a Polygon object and
+ * three Vector3D objects per triangle. This makes it cheap to transform the
+ * whole model every frame into a reusable screen-space Mesh.
+ *
+ * Vertex i (0, 1 or 2) of polygon p is stored at index 3 * p + i of the xs, ys
+ * and zs arrays, and the reflectance of polygon p is stored as a packed RGB int
+ * at index p of the reflectance array.
+ *
+ * If the mesh was loaded from a text scene file, the line of the file each
+ * polygon came from is stored at index p of the sourceLines array, otherwise
+ * sourceLines is null.
+ *
+ * Besides the light at the top of the scene file, which shines white, a scene
+ * can have any number of other lights, kept in the lights list.
+ */
+public class Mesh {
+
+	public int size;
+	public float[] xs;
+	public float[] ys;
+	public float[] zs;
+	public int[] reflectance;
+	public int[] sourceLines;
+	public Vector3D light;
+	public List<Light> lights = new ArrayList<Light>();
+
+	public Mesh(int capacity) {
+		this.xs = new float[capacity * 3];
+		this.ys = new float[capacity * 3];
+		this.zs = new float[capacity * 3];
+		this.reflectance = new int[capacity];
+	}
+
+	/** Builds a Mesh holding the same polygons and light as the given Scene. */
+	public static Mesh fromScene(Scene scene) {
+		Mesh mesh = new Mesh(scene.getPolygons().size());
+		for (Polygon poly : scene.getPolygons()) {
+			Vector3D[] v = poly.getVertices();
+			mesh.add(v[0].x, v[0].y, v[0].z, v[1].x, v[1].y, v[1].z, v[2].x, v[2].y, v[2].z,
+					poly.getReflectance().getRGB() & 0xffffff);
+		}
+		mesh.light = scene.getLight();
+		mesh.lights.addAll(scene.getLights());
+		return mesh;
+	}
+
+	/** Makes sure the mesh can hold at least the given number of polygons. */
+	public void ensureCapacity(int capacity) {
+		if (capacity * 3 > xs.length) {
+			capacity = Math.max(capacity, xs.length / 3 * 2);
+			xs = Arrays.copyOf(xs, capacity * 3);
+			ys = Arrays.copyOf(ys, capacity * 3);
+			zs = Arrays.copyOf(zs, capacity * 3);
+		}
+		if (capacity > reflectance.length) {
+			reflectance = Arrays.copyOf(reflectance, Math.max(capacity, reflectance.length * 2));
+		}
+		if (sourceLines != null && capacity > sourceLines.length) {
+			sourceLines = Arrays.copyOf(sourceLines, Math.max(capacity, sourceLines.length * 2));
+		}
+	}
+
+	/** Adds a polygon to the end of the mesh. */
+	public void add(float ax, float ay, float az, float bx, float by, float bz, float cx, float cy, float cz,
+			int rgb) {
+		ensureCapacity(size + 1);
+		int v = size * 3;
+		xs[v] = ax;
+		ys[v] = ay;
+		zs[v] = az;
+		xs[v + 1] = bx;
+		ys[v + 1] = by;
+		zs[v + 1] = bz;
+		xs[v + 2] = cx;
+		ys[v + 2] = cy;
+		zs[v + 2] = cz;
+		reflectance[size] = rgb;
+		size++;
+	}
+
+	/**
+	 * Applies a transform to every vertex of this mesh, writing the result
+	 * into another mesh (which may be this one). The other mesh shares this
+	 * mesh's reflectance and sourceLines arrays, and its lights are left
+	 * alone.
+	 */
+	public void transform(Transform transform, Mesh out) {
+		out.ensureCapacity(size);
+		transform.multiply(xs, ys, zs, out.xs, out.ys, out.zs, 0, size * 3);
+		out.reflectance = reflectance;
+		out.sourceLines = sourceLines;
+		out.size = size;
+	}
+
+	/** Builds a Scene holding the same polygons and light as this Mesh. */
+	public Scene toScene() {
+		List<Polygon> polygons = new ArrayList<Polygon>(size);
+		for (int p = 0; p < size; p++) {
+			polygons.add(getPolygon(p));
+		}
+		Scene scene = new Scene(polygons, light);
+		scene.lights.addAll(lights);
+		return scene;
+	}
+
+	/**
+	 * Returns the line of the scene file polygon p came from, counting from
+	 * 1, or 0 if it isn't known.
+	 */
+	public int getSourceLine(int p) {
+		return sourceLines == null ? 0 : sourceLines[p];
+	}
+
+	/** Returns a new Polygon with the vertices and reflectance of polygon p. */
+	public Polygon getPolygon(int p) {
+		int v = p * 3;
+		return new Polygon(new float[] { xs[v], ys[v], zs[v], xs[v + 1], ys[v + 1], zs[v + 1], xs[v + 2],
+				ys[v + 2], zs[v + 2] }, new int[] { (reflectance[p] >> 16) & 0xff, (reflectance[p] >> 8) & 0xff,
+				reflectance[p] & 0xff });
+	}
+}
+
+// code for comp261 assignments
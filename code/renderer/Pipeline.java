@@ -2,6 +2,7 @@ package renderer;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import renderer.Scene.Polygon;
@@ -16,6 +17,16 @@ import renderer.Scene.Polygon;
  */
 public class Pipeline {
 
+	// Add-on: Extra light sources, fixed in the bottom corners of the screen
+	public static final Vector3D BOTTOM_LEFT_LIGHT_DIRECTION = new Vector3D(-1, 1, -1);
+	public static final Vector3D BOTTOM_RIGHT_LIGHT_DIRECTION = new Vector3D(1, 1, -1);
+
+	/**
+	 * The space left around a model fitted to the GUI's canvas, in pixels.
+	 * Canvases of other sizes leave the same share of their width and height.
+	 */
+	public static final int FIT_MARGIN = 350;
+
 	/**
 	 * Returns true if the given polygon is facing away from the camera (and so
 	 * should be hidden), and false otherwise.
@@ -39,29 +50,42 @@ public class Pipeline {
 	 *            on the direction.
 	 */
 	public static Color getShading(Polygon poly, Vector3D lightDirection, Color lightColor, Color ambientLight, Color bottomLeftColor, Color bottomRightColor) {
+		return new Color(getShading(getNormal(poly), poly.getReflectance().getRGB(), lightDirection, lightColor, ambientLight, bottomLeftColor, bottomRightColor));
+	}
+	
+	/**
+	 * The same as getShading above, but for a polygon given by its normal and
+	 * packed RGB reflectance, and returning a packed RGB colour.
+	 */
+	public static int getShading(Vector3D normal, int reflectance, Vector3D lightDirection, Color lightColor, Color ambientLight, Color bottomLeftColor, Color bottomRightColor) {
+		Vector3D unitNormal = normal.unitVector();
+		return getShading(unitNormal.cosTheta(lightDirection),
+				unitNormal.cosTheta(BOTTOM_LEFT_LIGHT_DIRECTION),
+				unitNormal.cosTheta(BOTTOM_RIGHT_LIGHT_DIRECTION),
+				reflectance, lightColor, ambientLight, bottomLeftColor, bottomRightColor);
+	}
+	
+	/**
+	 * The same as getShading above, but given the cosines of the angles
+	 * between the polygon's normal and each of the three lights. This is where
+	 * the colour is actually worked out.
+	 */
+	public static int getShading(float cosTheta, float cosThetaBottomLeft, float cosThetaBottomRight, int reflectance, Color lightColor, Color ambientLight, Color bottomLeftColor, Color bottomRightColor) {
 		int r, g, b;
 		float normalizedRed, normalizedGreen, normalizedBlue;
-		Vector3D unitNormal = getNormal(poly).unitVector();
-		float cosTheta = unitNormal.cosTheta(lightDirection);
 		float multiplier = 1 / (float) 255;
 		
-		// Ignore lightColor if lightDirection is coming from the back
+		// Ignore a light if it is coming from the back
 		if (cosTheta < 0) {
-			lightColor = new Color(0, 0, 0);
+			cosTheta = 0;
 		}
 		
-		// Add-on: Extra light sources
-		Vector3D bottomLeftLightDirection = new Vector3D(-1, 1, -1);
-		Vector3D bottomRightLightDirection = new Vector3D(1, 1, -1);
-		float cosThetaBottomLeft = unitNormal.cosTheta(bottomLeftLightDirection);
-		float cosThetaBottomRight = unitNormal.cosTheta(bottomRightLightDirection);
-		
 		if (cosThetaBottomLeft < 0) {
-			bottomLeftColor = new Color(0, 0, 0);
+			cosThetaBottomLeft = 0;
 		}
 		
 		if (cosThetaBottomRight < 0) {
-			bottomRightColor = new Color(0, 0, 0);
+			cosThetaBottomRight = 0;
 		}
 		
 		normalizedRed = ((
@@ -69,7 +93,7 @@ public class Pipeline {
 				(multiplier*bottomLeftColor.getRed() * cosThetaBottomLeft) +
 				(multiplier*bottomRightColor.getRed() * cosThetaBottomRight) +
 				multiplier*lightColor.getRed() * cosTheta) * 
-				multiplier*poly.getReflectance().getRed());
+				multiplier*((reflectance >> 16) & 0xff));
 		r = (int) (normalizedRed * 255);
 		
 		normalizedGreen = ((
@@ -77,7 +101,7 @@ public class Pipeline {
 				(multiplier*bottomLeftColor.getGreen() * cosThetaBottomLeft) +
 				(multiplier*bottomRightColor.getGreen() * cosThetaBottomRight) +
 				multiplier*lightColor.getGreen() * cosTheta) * 
-				multiplier*poly.getReflectance().getGreen());
+				multiplier*((reflectance >> 8) & 0xff));
 		g = (int) (normalizedGreen * 255);
 		
 		normalizedBlue = ((
@@ -85,10 +109,10 @@ public class Pipeline {
 				(multiplier*bottomLeftColor.getBlue() * cosThetaBottomLeft) +
 				(multiplier*bottomRightColor.getBlue() * cosThetaBottomRight) +
 				multiplier*lightColor.getBlue() * cosTheta) * 
-				multiplier*poly.getReflectance().getBlue());
+				multiplier*(reflectance & 0xff));
 		b = (int) (normalizedBlue * 255);
 				
-		return new Color(Math.min(r, 255), Math.min(g, 255), Math.min(b, 255));
+		return (Math.min(r, 255) << 16) | (Math.min(g, 255) << 8) | Math.min(b, 255);
 	}
 	
 	public static Vector3D getNormal(Polygon poly) {
@@ -96,6 +120,27 @@ public class Pipeline {
 		Vector3D edge2 = poly.getVertices()[2].minus(poly.getVertices()[1]);
 		return edge1.crossProduct(edge2);
 	}
+	
+	/**
+	 * Returns true if polygon p of the given mesh is facing away from the
+	 * camera. This is the z part of getNormal, without making any vectors.
+	 */
+	public static boolean isHidden(Mesh mesh, int p) {
+		int v = p * 3;
+		float e1x = mesh.xs[v + 1] - mesh.xs[v];
+		float e1y = mesh.ys[v + 1] - mesh.ys[v];
+		float e2x = mesh.xs[v + 2] - mesh.xs[v + 1];
+		float e2y = mesh.ys[v + 2] - mesh.ys[v + 1];
+		return e1x * e2y - e1y * e2x > 0;
+	}
+	
+	public static Vector3D getNormal(Mesh mesh, int p) {
+		int v = p * 3;
+		Vector3D a = new Vector3D(mesh.xs[v], mesh.ys[v], mesh.zs[v]);
+		Vector3D b = new Vector3D(mesh.xs[v + 1], mesh.ys[v + 1], mesh.zs[v + 1]);
+		Vector3D c = new Vector3D(mesh.xs[v + 2], mesh.ys[v + 2], mesh.zs[v + 2]);
+		return b.minus(a).crossProduct(c.minus(b));
+	}
 
 	/**
 	 * This method should rotate the polygons and light such that the viewer is
@@ -116,37 +161,19 @@ public class Pipeline {
 	public static Scene rotateScene(Scene scene, float xRot, float yRot) {
 		
 		List<Polygon> newPolygons = new ArrayList<Polygon>();
-		Vector3D newLightPos;
+		
+		// Rotate along x, then along y
+		Transform rotation = Transform.newYRotation(yRot).compose(Transform.newXRotation(xRot));
 		
 		// Rotate polygons
 		for (Polygon poly : scene.getPolygons()) {
-			
-			Vector3D[] vertices = new Vector3D[3];
-			int i = 0;
-			
-			for (Vector3D point : poly.getVertices()) {
-				
-				Vector3D newPoint;
-				
-				// Rotate along x
-				newPoint = Transform.newXRotation(xRot).multiply(point);
-				
-				// Rotate along y
-				newPoint = Transform.newYRotation(yRot).multiply(newPoint);
-				
-				vertices[i] = newPoint;
-				
-				i++;				
-			}
-			
-			newPolygons.add(new Polygon(vertices[0], vertices[1], vertices[2], poly.getReflectance()));
+			Vector3D[] vertices = poly.getVertices();
+			newPolygons.add(new Polygon(rotation.multiply(vertices[0]), rotation.multiply(vertices[1]),
+					rotation.multiply(vertices[2]), poly.getReflectance()));
 		}
 		
 		// Rotate light position
-		newLightPos = Transform.newXRotation(xRot).multiply(scene.getLight());
-		newLightPos = Transform.newYRotation(yRot).multiply(newLightPos);
-		
-		return new Scene(newPolygons, newLightPos);
+		return new Scene(newPolygons, rotation.multiply(scene.getLight()));
 	}
 
 	/**
@@ -156,6 +183,11 @@ public class Pipeline {
 	 * @return
 	 */
 	public static Scene translateScene(Scene scene) {
+		return translateScene(scene, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+
+	/** Centres the scene on a canvas of the given size. */
+	public static Scene translateScene(Scene scene, int width, int height) {
 		// Center horizontally and vertically
 		List<Polygon> newPolygons = new ArrayList<Polygon>();
 		
@@ -176,22 +208,15 @@ public class Pipeline {
 		float yDelta = maxY - minY;
 		float xDelta = maxX - minX;
 		
-		float translateY = -1 * minY + (GUI.CANVAS_HEIGHT - yDelta) / 2;
-		float translateX = -1 * minX + (GUI.CANVAS_WIDTH - xDelta) / 2;
+		float translateY = -1 * minY + (height - yDelta) / 2;
+		float translateX = -1 * minX + (width - xDelta) / 2;
+		
+		Transform translation = Transform.newTranslation(translateX, translateY, 0);
 		
 		for (Polygon poly : scene.getPolygons()) {
-			
-			Vector3D[] vertices = new Vector3D[3];
-			int i = 0;
-			
-			for (Vector3D point : poly.getVertices()) {
-				Vector3D newPoint;
-				newPoint = Transform.newTranslation(translateX, translateY, 0).multiply(point);
-				vertices[i] = newPoint;
-				i++;				
-			}
-			
-			newPolygons.add(new Polygon(vertices[0], vertices[1], vertices[2], poly.getReflectance()));
+			Vector3D[] vertices = poly.getVertices();
+			newPolygons.add(new Polygon(translation.multiply(vertices[0]), translation.multiply(vertices[1]),
+					translation.multiply(vertices[2]), poly.getReflectance()));
 		}
 		
 		return new Scene(newPolygons, scene.lightPos);
@@ -204,6 +229,11 @@ public class Pipeline {
 	 * @return
 	 */
 	public static Scene scaleScene(Scene scene) {
+		return scaleScene(scene, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+
+	/** Scales the scene to fit nicely on a canvas of the given size. */
+	public static Scene scaleScene(Scene scene, int width, int height) {
 		
 		List<Polygon> newPolygons = new ArrayList<Polygon>();
 		
@@ -221,104 +251,209 @@ public class Pipeline {
 			}
 		}
 		
-		float scaleY = (float) ((GUI.CANVAS_HEIGHT - 350) / (maxY - minY));
-		float scaleX = (float) ((GUI.CANVAS_WIDTH - 350) / (maxX - minX));
+		float scale = getScale(minX, minY, maxX, maxY, width, height);
 		
-		// Scale by smallest of the two values
-		float scale  = Math.min(scaleY, scaleX);
+		Transform scaling = Transform.newScale(scale, scale, scale);
 		
 		for (Polygon poly : scene.getPolygons()) {
-			
-			Vector3D[] vertices = new Vector3D[3];
-			int i = 0;
-			
-			for (Vector3D point : poly.getVertices()) {
-				Vector3D newPoint;
-				newPoint = Transform.newScale(scale, scale, scale).multiply(point);
-				vertices[i] = newPoint;
-				i++;				
-			}
-			
-			newPolygons.add(new Polygon(vertices[0], vertices[1], vertices[2], poly.getReflectance()));
+			Vector3D[] vertices = poly.getVertices();
+			newPolygons.add(new Polygon(scaling.multiply(vertices[0]), scaling.multiply(vertices[1]),
+					scaling.multiply(vertices[2]), poly.getReflectance()));
 		}
 		
 		return new Scene(newPolygons, scene.lightPos);
 	}
 
 	/**
-	 * Computes the edgelist of a single provided polygon, as per the lecture
-	 * slides.
+	 * Returns the factor scaleScene would scale the given mesh by, so that it
+	 * fits nicely on the canvas.
 	 */
-	public static EdgeList computeEdgeList(Polygon poly) {
+	public static float getScale(Mesh mesh) {
+		return getScale(mesh, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+
+	/** The same as getScale above, for a canvas of the given size. */
+	public static float getScale(Mesh mesh, int width, int height) {
 		
-		int ymin = (int) (Math.min(poly.vertices[0].y, Math.min(poly.vertices[1].y, poly.vertices[2].y)));
-		int ymax = (int) (Math.max(poly.vertices[0].y, Math.max(poly.vertices[1].y, poly.vertices[2].y)));
-		EdgeList edgeList = new EdgeList(ymin, ymax);
+		float minY = Float.POSITIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		float minX = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
 		
-		Vector3D[][] edges = new Vector3D[][]{
-			new Vector3D[]{poly.vertices[0],poly.vertices[1]},
-			new Vector3D[]{poly.vertices[1],poly.vertices[2]},
-			new Vector3D[]{poly.vertices[2],poly.vertices[0]}
-		};
+		for (int v = 0; v < mesh.size * 3; v++) {
+			minY = Math.min(minY, mesh.ys[v]);
+			maxY = Math.max(maxY, mesh.ys[v]);
+			minX = Math.min(minX, mesh.xs[v]);
+			maxX = Math.max(maxX, mesh.xs[v]);
+		}
+		
+		return getScale(minX, minY, maxX, maxY, width, height);
+	}
+	
+	/**
+	 * Returns the factor scaleScene would scale a model with the given bounds
+	 * by, such as the bounds of the root of its Bvh.
+	 */
+	public static float getScale(float minX, float minY, float maxX, float maxY) {
+		return getScale(minX, minY, maxX, maxY, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+
+	/**
+	 * The same as getScale above, for a canvas of the given size. The model
+	 * is fitted inside a margin of the same share of the canvas as FIT_MARGIN
+	 * is of the GUI's.
+	 */
+	public static float getScale(float minX, float minY, float maxX, float maxY, int width, int height) {
 		
-		setXCoords(edgeList, edges);
-		setZCoords(edgeList, edges);
+		float scaleY = (height - (float) height * FIT_MARGIN / GUI.CANVAS_HEIGHT) / (maxY - minY);
+		float scaleX = (width - (float) width * FIT_MARGIN / GUI.CANVAS_WIDTH) / (maxX - minX);
 		
-		return edgeList;
+		// Scale by smallest of the two values
+		return Math.min(scaleY, scaleX);
 	}
 	
-	protected static void setXCoords(EdgeList edgeList, Vector3D[][] edges) {
+	/**
+	 * Centres the given mesh on the canvas in place, as translateScene does for
+	 * a scene, and returns the translation that was applied.
+	 */
+	public static Transform translateMesh(Mesh mesh) {
+		return translateMesh(mesh, GUI.CANVAS_WIDTH, GUI.CANVAS_HEIGHT);
+	}
+
+	/**
+	 * The same as translateMesh above, for a canvas of the given size.
+	 */
+	public static Transform translateMesh(Mesh mesh, int width, int height) {
 		
-		float x, slope;
-		int y;
+		float minY = Float.POSITIVE_INFINITY;
+		float maxY = Float.NEGATIVE_INFINITY;
+		float minX = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY;
+		int count = mesh.size * 3;
 		
-		for (Vector3D[] edge : edges) {
-			slope = (edge[1].x - edge[0].x) / (float) (edge[1].y - edge[0].y);
-			x = edge[0].x;
-			y = (int) (edge[0].y);
-			
-			// Going down
-			if (edge[0].y < edge[1].y) {
-				while (y <= Math.floor(edge[1].y)) {
-					edgeList.rows.get(y).leftX = x;
-					x = x + slope;
-					y++;
-				}
-			} else {
-				while (y >= Math.ceil(edge[1].y)) {
-					edgeList.rows.get(y).rightX = x;
-					x = x - slope;
-					y--;
-				}
-			}
-		}	
+		for (int v = 0; v < count; v++) {
+			minY = Math.min(minY, mesh.ys[v]);
+			maxY = Math.max(maxY, mesh.ys[v]);
+			minX = Math.min(minX, mesh.xs[v]);
+			maxX = Math.max(maxX, mesh.xs[v]);
+		}
+		
+		float translateY = -1 * minY + (height - (maxY - minY)) / 2;
+		float translateX = -1 * minX + (width - (maxX - minX)) / 2;
+		
+		for (int v = 0; v < count; v++) {
+			mesh.xs[v] += translateX;
+			mesh.ys[v] += translateY;
+		}
+		
+		return Transform.newTranslation(translateX, translateY, 0);
+	}
+
+	/** One reusable EdgeList per thread, handed out by computeEdgeList. */
+	private static final ThreadLocal<EdgeList> EDGE_LISTS = new ThreadLocal<EdgeList>() {
+		@Override
+		protected EdgeList initialValue() {
+			return new EdgeList(0, -1);
+		}
+	};
+
+	/**
+	 * Returns the calling thread's reusable EdgeList, the same one that
+	 * computeEdgeList(Polygon) fills in, so it must be finished with before
+	 * that is called again on the same thread.
+	 */
+	public static EdgeList getEdgeList() {
+		return EDGE_LISTS.get();
+	}
+
+	/**
+	 * Computes the edgelist of a single provided polygon, as per the lecture
+	 * slides.
+	 * 
+	 * The returned EdgeList is reused by the next call on the same thread, so
+	 * it should be drawn (or copied) before computing another one.
+	 */
+	public static EdgeList computeEdgeList(Polygon poly) {
+		Vector3D a = poly.vertices[0];
+		Vector3D b = poly.vertices[1];
+		Vector3D c = poly.vertices[2];
+		return computeEdgeList(a.x, a.y, a.z, b.x, b.y, b.z, c.x, c.y, c.z, EDGE_LISTS.get());
 	}
 	
-	protected static void setZCoords(EdgeList edgeList, Vector3D[][] edges) {
+	/**
+	 * Computes the edgelist of the triangle with the given vertices into an
+	 * existing EdgeList, which is reset first.
+	 */
+	public static EdgeList computeEdgeList(float ax, float ay, float az, float bx, float by, float bz,
+			float cx, float cy, float cz, EdgeList edgeList) {
 		
-		float z, slope;
-		int y;
+		int ymin = (int) (Math.min(ay, Math.min(by, cy)));
+		int ymax = (int) (Math.max(ay, Math.max(by, cy)));
+		edgeList.reset(ymin, ymax);
 		
-		for (Vector3D[] edge : edges) {
-			slope = (edge[1].z - edge[0].z) / (float) (edge[1].y - edge[0].y);
-			z = edge[0].z;
-			y = (int) (edge[0].y);
-			
-			// Going down
-			if (edge[0].y < edge[1].y) {
-				while (y <= Math.floor(edge[1].y)) {
-					edgeList.rows.get(y).leftZ = z;
-					z = z + slope;
-					y++;
-				}
-			} else {
-				while (y >= Math.ceil(edge[1].y)) {
-					edgeList.rows.get(y).rightZ = z;
-					z = z - slope;
-					y--;
-				}
+		setEdge(edgeList, ax, ay, az, bx, by, bz);
+		setEdge(edgeList, bx, by, bz, cx, cy, cz);
+		setEdge(edgeList, cx, cy, cz, ax, ay, az);
+		
+		return edgeList;
+	}
+	
+	/**
+	 * Computes the edgelist of polygon p of the given mesh into an existing
+	 * EdgeList.
+	 */
+	public static EdgeList computeEdgeList(Mesh mesh, int p, EdgeList edgeList) {
+		int v = p * 3;
+		float[] xs = mesh.xs;
+		float[] ys = mesh.ys;
+		float[] zs = mesh.zs;
+		return computeEdgeList(xs[v], ys[v], zs[v], xs[v + 1], ys[v + 1], zs[v + 1], xs[v + 2], ys[v + 2], zs[v + 2], edgeList);
+	}
+	
+	/**
+	 * Walks down (or up) one edge of a polygon, interpolating x and z and
+	 * storing them as the left (or right) side of each row the edge crosses.
+	 * 
+	 * The walk starts on a whole row, which can be up to a row before the
+	 * vertex, so on a nearly flat edge it can overshoot the end of the edge
+	 * by a long way. The values are kept within the edge's own range, which
+	 * stops those rows turning into long whiskers and means a polygon never
+	 * draws outside its bounding box.
+	 */
+	protected static void setEdge(EdgeList edgeList, float x0, float y0, float z0, float x1, float y1, float z1) {
+		
+		float slopeX = (x1 - x0) / (y1 - y0);
+		float slopeZ = (z1 - z0) / (y1 - y0);
+		float minX = Math.min(x0, x1);
+		float maxX = Math.max(x0, x1);
+		float minZ = Math.min(z0, z1);
+		float maxZ = Math.max(z0, z1);
+		float x = x0;
+		float z = z0;
+		int y = (int) y0;
+		
+		// Going down
+		if (y0 < y1) {
+			int end = (int) Math.floor(y1);
+			while (y <= end) {
+				edgeList.setLeft(y, clamp(x, minX, maxX), clamp(z, minZ, maxZ));
+				x = x + slopeX;
+				z = z + slopeZ;
+				y++;
+			}
+		} else {
+			int end = (int) Math.ceil(y1);
+			while (y >= end) {
+				edgeList.setRight(y, clamp(x, minX, maxX), clamp(z, minZ, maxZ));
+				x = x - slopeX;
+				z = z - slopeZ;
+				y--;
 			}
-		}	
+		}
+	}
+	
+	private static float clamp(float value, float min, float max) {
+		return value < min ? min : (value > max ? max : value);
 	}
 
 	/**
@@ -340,29 +475,221 @@ public class Pipeline {
 	 *            The colour of the polygon to add into the zbuffer.
 	 */
 	public static void computeZBuffer(Color[][] zbuffer, float[][] zdepth, EdgeList polyEdgeList, Color polyColor) {
+		// This is the original Color[][] version, kept so that code indexing the
+		// zbuffer by [x][y] still works. The part of the arrays the polygon
+		// covers is copied out row by row and drawn by the same span walk as
+		// the FrameBuffer version, then the pixels it wrote are copied back.
+		if (zbuffer.length == 0) {
+			return;
+		}
+		int startY = Math.max(polyEdgeList.getStartY(), 0);
+		int endY = Math.min(polyEdgeList.getEndY(), zbuffer[0].length - 1);
+		int minX = zbuffer.length;
+		int maxX = -1;
+		for (int y = startY; y <= endY; y++) {
+			minX = Math.min(minX, (int) Math.floor(polyEdgeList.getLeftX(y)));
+			maxX = Math.max(maxX, (int) Math.floor(polyEdgeList.getRightX(y)));
+		}
+		minX = Math.max(minX, 0);
+		maxX = Math.min(maxX, zbuffer.length - 1);
+		if (minX > maxX || startY > endY) {
+			return;
+		}
 		
-		float slope, z, x;
-		
-		for (int y = polyEdgeList.startY; y <= polyEdgeList.endY; y++) {
-			slope = (polyEdgeList.getRightZ(y) - polyEdgeList.getLeftZ(y)) / (float) (polyEdgeList.getRightX(y) - polyEdgeList.getLeftX(y));
-			z = (float) Math.floor(polyEdgeList.getLeftZ(y));
-			x = (float) Math.floor(polyEdgeList.getLeftX(y));
+		int width = maxX - minX + 1;
+		int height = endY - startY + 1;
+		float[] depth = new float[width * height];
+		int[] written = new int[width * height];
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = startY; y <= endY; y++) {
+				depth[(y - startY) * width + x - minX] = zdepth[x][y];
+			}
+		}
+		Arrays.fill(written, FrameBuffer.NO_POLYGON);
+		fillSpans(depth, null, written, width, minX, startY, polyEdgeList, 0, 0, minX, startY, maxX, endY, null,
+				false);
+		for (int x = minX; x <= maxX; x++) {
+			for (int y = startY; y <= endY; y++) {
+				int i = (y - startY) * width + x - minX;
+				if (written[i] != FrameBuffer.NO_POLYGON) {
+					zbuffer[x][y] = polyColor;
+					zdepth[x][y] = depth[i];
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fills a frame buffer with the contents of a single edge list. This does
+	 * the same thing as the Color[][] version above, but writes packed RGB ints
+	 * straight into the buffer's image, so no Color objects are needed per
+	 * pixel and there is no copying step afterwards.
+	 * 
+	 * @param frame
+	 *            The frame buffer holding the colour and depth of each pixel
+	 *            so far.
+	 * @param polyEdgeList
+	 *            The edgelist of the polygon to add into the frame buffer.
+	 * @param polyColor
+	 *            The packed RGB colour of the polygon.
+	 * @return The number of pixels that passed the depth test.
+	 */
+	public static int computeZBuffer(FrameBuffer frame, EdgeList polyEdgeList, int polyColor) {
+		return computeZBuffer(frame, polyEdgeList, polyColor, frame.originX, frame.originY,
+				frame.originX + frame.width - 1, frame.originY + frame.height - 1);
+	}
+	
+	/**
+	 * The same as computeZBuffer above, but only touches the pixels inside the
+	 * given rectangle (inclusive). The depth of each pixel is worked out from
+	 * the start of its row rather than stepped along from the last pixel, so
+	 * every pixel gets exactly the same depth however the frame is clipped.
+	 */
+	public static int computeZBuffer(FrameBuffer frame, EdgeList polyEdgeList, int polyColor,
+			int minX, int minY, int maxX, int maxY) {
+		return fillSpans(frame.depth, frame.pixels, null, frame.width, frame.originX, frame.originY, polyEdgeList,
+				polyColor, 0, minX, minY, maxX, maxY, null, false);
+	}
+	
+	/**
+	 * The same as the clipped computeZBuffer above, but also marking the
+	 * blocks of the depth pyramid it writes to (if the pyramid isn't null),
+	 * and writing the given polygon index to the frame's id buffer (if it has
+	 * one) for every pixel written.
+	 */
+	public static int computeZBuffer(FrameBuffer frame, EdgeList polyEdgeList, int polyColor, int polyId,
+			int minX, int minY, int maxX, int maxY, DepthPyramid pyramid) {
+		return fillSpans(frame.depth, frame.pixels, frame.ids, frame.width, frame.originX, frame.originY,
+				polyEdgeList, polyColor, polyId, minX, minY, maxX, maxY, pyramid, false);
+	}
+	
+	/**
+	 * Returns true if at least one pixel of the edge list inside the given
+	 * rectangle (inclusive) would pass the depth test, i.e. if computeZBuffer
+	 * would draw anything. This stops at the first such pixel, so a polygon
+	 * can be checked before it is shaded without doing much of the work of
+	 * drawing it twice.
+	 */
+	public static boolean isAnyPixelVisible(FrameBuffer frame, EdgeList polyEdgeList, int minX, int minY, int maxX,
+			int maxY) {
+		return fillSpans(frame.depth, null, null, frame.width, frame.originX, frame.originY, polyEdgeList, 0, 0, minX,
+				minY, maxX, maxY, null, true) > 0;
+	}
+	
+	/**
+	 * The span walk behind every form of computeZBuffer and
+	 * isAnyPixelVisible: each row of the edge list inside the given rectangle
+	 * (inclusive) is depth tested against a buffer width pixels wide whose
+	 * first entry is pixel (originX, originY). Each pixel that passes has its
+	 * depth written, and its colour and id if pixels and ids aren't null,
+	 * and the pyramid's blocks are marked for each row written to if it isn't
+	 * null. If testOnly is set nothing is written, and the walk stops at the
+	 * first pixel that would be. Returns the number of pixels that passed.
+	 */
+	private static int fillSpans(float[] depth, int[] pixels, int[] ids, int width, int originX, int originY,
+			EdgeList polyEdgeList, int polyColor, int polyId, int minX, int minY, int maxX, int maxY,
+			DepthPyramid pyramid, boolean testOnly) {
+		
+		int written = 0;
+		int startY = Math.max(polyEdgeList.getStartY(), minY);
+		int endY = Math.min(polyEdgeList.getEndY(), maxY);
+		
+		for (int y = startY; y <= endY; y++) {
+			float leftX = polyEdgeList.getLeftX(y);
+			float rightX = polyEdgeList.getRightX(y);
+			float leftZ = polyEdgeList.getLeftZ(y);
+			float dx = rightX - leftX;
+			float dz = polyEdgeList.getRightZ(y) - leftZ;
+			float slope = dx == 0 ? 0 : dz / dx;
+			float z0 = (float) Math.floor(leftZ);
+			int x0 = (int) Math.floor(leftX);
+			int x1 = Math.min((int) Math.floor(rightX), maxX);
+			int row = (y - originY) * width - originX;
+			// Rounding the ends of the row out to whole pixels can carry the
+			// depth past the polygon's own, so keep it between the row's ends
+			// (rounded down, as the start is)
+			float nearZ = Math.min(z0, (float) Math.floor(leftZ + dz));
+			float farZ = Math.max(z0, z0 + dz);
 			
-			while (x <= Math.floor(polyEdgeList.getRightX(y))) {
-				if (
-					(int) x >= 0 &&
-					y >= 0 &&
-					(int) x < zbuffer.length && 
-					y < zbuffer[(int) x].length &&
-					z < zdepth[(int) x][y]) {
-						zbuffer[(int) x][y] = polyColor;
-						zdepth[(int) x][y] = z;
+			int before = written;
+			for (int x = Math.max(x0, minX); x <= x1; x++) {
+				float z = Math.min(Math.max(z0 + (x - x0) * slope, nearZ), farZ);
+				if (z < depth[row + x]) {
+					if (testOnly) {
+						return 1;
+					}
+					depth[row + x] = z;
+					if (pixels != null) {
+						pixels[row + x] = polyColor;
+					}
+					if (ids != null) {
+						ids[row + x] = polyId;
+					}
+					written++;
 				}
-				
-				z = z + slope;
-				x++;
+			}
+			if (pyramid != null && written != before) {
+				pyramid.markRowWritten(Math.max(x0, minX), x1, y);
+			}
+		}
+		return written;
+	}
+	
+	/**
+	 * Returns true if polygon p of a screen-space mesh would draw nothing
+	 * inside the given rectangle (inclusive), because the depth pyramid shows
+	 * everything already drawn where it lands is nearer. This is checked from
+	 * the vertices alone, before working out the polygon's edge list, and
+	 * the polygon is added to the pyramid's count of occluded ones. If the
+	 * pyramid is counting pixels, the edge list is worked out into edgeList
+	 * to count them, and left there.
+	 * 
+	 * The polygon never draws outside its bounding box, and computeZBuffer
+	 * keeps each row's depths between the row's ends rounded down, so no
+	 * pixel is nearer than its nearest vertex rounded down.
+	 */
+	public static boolean isOccluded(Mesh screen, int p, EdgeList edgeList, DepthPyramid pyramid, int minX,
+			int minY, int maxX, int maxY) {
+		int v = p * 3;
+		float[] xs = screen.xs;
+		float[] ys = screen.ys;
+		float[] zs = screen.zs;
+		int x0 = Math.max(minX, (int) Math.floor(Math.min(xs[v], Math.min(xs[v + 1], xs[v + 2]))));
+		int x1 = Math.min(maxX, (int) Math.ceil(Math.max(xs[v], Math.max(xs[v + 1], xs[v + 2]))));
+		int y0 = Math.max(minY, (int) Math.floor(Math.min(ys[v], Math.min(ys[v + 1], ys[v + 2]))));
+		int y1 = Math.min(maxY, (int) Math.ceil(Math.max(ys[v], Math.max(ys[v + 1], ys[v + 2]))));
+		if (!(x0 <= x1 && y0 <= y1)) {
+			// Off this part of the screen, which computeZBuffer handles
+			return false;
+		}
+		float nearest = (float) Math.floor(Math.min(zs[v], Math.min(zs[v + 1], zs[v + 2])));
+		if (!pyramid.isOccluded(x0, y0, x1, y1, nearest)) {
+			return false;
+		}
+		int pixels = 0;
+		if (pyramid.countPixels) {
+			pixels = countPixels(computeEdgeList(screen, p, edgeList), minX, minY, maxX, maxY);
+		}
+		pyramid.addOccluded(x0, y0, 1, pixels);
+		return true;
+	}
+	
+	/**
+	 * Returns the number of pixels computeZBuffer would depth test for the
+	 * given edge list, inside the given rectangle (inclusive).
+	 */
+	public static int countPixels(EdgeList polyEdgeList, int minX, int minY, int maxX, int maxY) {
+		int count = 0;
+		int startY = Math.max(polyEdgeList.getStartY(), minY);
+		int endY = Math.min(polyEdgeList.getEndY(), maxY);
+		for (int y = startY; y <= endY; y++) {
+			int x0 = Math.max((int) Math.floor(polyEdgeList.getLeftX(y)), minX);
+			int x1 = Math.min((int) Math.floor(polyEdgeList.getRightX(y)), maxX);
+			if (x1 >= x0) {
+				count += x1 - x0 + 1;
 			}
 		}
+		return count;
 	}
 }
 
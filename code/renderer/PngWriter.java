@@ -0,0 +1,154 @@
+package renderer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an 8 bit RGB PNG a row at a time, so an image far too big to hold
+ * in memory can be streamed out as it is drawn.
+ *
+ * Each row is filtered by the difference from the pixel to its left (PNG's
+ * Sub filter), which suits rendered images with big flat areas, and
+ * compressed straight into IDAT chunks of at most CHUNK_SIZE bytes, so only
+ * one row and one chunk are held at a time. Rows must be written top to
+ * bottom, and finish must be called after the last one; the stream written
+ * to is not closed.
+ */
+public class PngWriter {
+
+	/** The most compressed bytes put in one IDAT chunk. */
+	public static final int CHUNK_SIZE = 1 << 16;
+
+	private static final byte[] SIGNATURE = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+
+	private static final int FILTER_SUB = 1;
+
+	public final int width;
+	public final int height;
+
+	private final OutputStream out;
+	private final Deflater deflater;
+	private final DeflaterOutputStream compressed;
+
+	/** One filtered row, with its filter byte first. */
+	private final byte[] row;
+
+	private int rowsWritten = 0;
+
+	/** Writes the PNG's header for an image of the given size. */
+	public PngWriter(OutputStream out, int width, int height) throws IOException {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("width and height must be positive");
+		}
+		this.width = width;
+		this.height = height;
+		this.out = out;
+		this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+		this.compressed = new DeflaterOutputStream(new ChunkStream(), deflater, CHUNK_SIZE);
+		this.row = new byte[1 + width * 3];
+
+		out.write(SIGNATURE);
+		byte[] header = new byte[13];
+		putInt(header, 0, width);
+		putInt(header, 4, height);
+		header[8] = 8; // bits per channel
+		header[9] = 2; // RGB
+		// compression, filtering and interlacing are all the standard ones
+		writeChunk("IHDR", header, header.length);
+	}
+
+	/**
+	 * Writes the next row of the image, from width pixels of pixels (as
+	 * 0xRRGGBB) starting at offset.
+	 */
+	public void writeRow(int[] pixels, int offset) throws IOException {
+		if (rowsWritten == height) {
+			throw new IllegalStateException("all " + height + " rows have been written");
+		}
+		row[0] = FILTER_SUB;
+		int left = 0;
+		for (int x = 0, b = 1; x < width; x++, b += 3) {
+			int rgb = pixels[offset + x];
+			row[b] = (byte) ((rgb >> 16) - (left >> 16));
+			row[b + 1] = (byte) ((rgb >> 8) - (left >> 8));
+			row[b + 2] = (byte) (rgb - left);
+			left = rgb;
+		}
+		compressed.write(row, 0, row.length);
+		rowsWritten++;
+	}
+
+	/** Writes the rest of the compressed rows and the end of the PNG. */
+	public void finish() throws IOException {
+		if (rowsWritten != height) {
+			throw new IllegalStateException(rowsWritten + " of " + height + " rows have been written");
+		}
+		compressed.finish();
+		compressed.flush();
+		deflater.end();
+		writeChunk("IEND", new byte[0], 0);
+		out.flush();
+	}
+
+	private void writeChunk(String type, byte[] data, int length) throws IOException {
+		byte[] lengthAndType = new byte[8];
+		putInt(lengthAndType, 0, length);
+		for (int i = 0; i < 4; i++) {
+			lengthAndType[4 + i] = (byte) type.charAt(i);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(lengthAndType, 4, 4);
+		crc.update(data, 0, length);
+		byte[] check = new byte[4];
+		putInt(check, 0, (int) crc.getValue());
+		out.write(lengthAndType);
+		out.write(data, 0, length);
+		out.write(check);
+	}
+
+	private static void putInt(byte[] bytes, int offset, int value) {
+		bytes[offset] = (byte) (value >>> 24);
+		bytes[offset + 1] = (byte) (value >>> 16);
+		bytes[offset + 2] = (byte) (value >>> 8);
+		bytes[offset + 3] = (byte) value;
+	}
+
+	/** Collects compressed bytes, writing out an IDAT chunk whenever it fills. */
+	private class ChunkStream extends OutputStream {
+
+		private final byte[] chunk = new byte[CHUNK_SIZE];
+		private int length = 0;
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int count) throws IOException {
+			while (count > 0) {
+				int n = Math.min(count, CHUNK_SIZE - length);
+				System.arraycopy(bytes, offset, chunk, length, n);
+				length += n;
+				offset += n;
+				count -= n;
+				if (length == CHUNK_SIZE) {
+					flush();
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (length > 0) {
+				writeChunk("IDAT", chunk, length);
+				length = 0;
+			}
+		}
+	}
+}
+
+// code for comp261 assignments
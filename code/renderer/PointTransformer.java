@@ -0,0 +1,20 @@
+package renderer;
+
+/**
+ * Transforms runs of points held in separate x, y and z arrays, for
+ * Transform's batch multiply. Transform has a plain loop for this, and uses
+ * the VectorTransform kernel instead when it can be loaded (see
+ * Transform.vectorTransform).
+ */
+interface PointTransformer {
+
+	/**
+	 * Applies the 3x4 matrix to count points starting at offset, writing them
+	 * to the same positions of the out arrays, which may be the input arrays.
+	 * The results must be exactly those of the plain loop.
+	 */
+	void multiply(float[][] matrix, float[] xs, float[] ys, float[] zs, float[] outXs, float[] outYs,
+			float[] outZs, int offset, int count);
+}
+
+// code for comp261 assignments
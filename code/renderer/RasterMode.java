@@ -0,0 +1,16 @@
+package renderer;
+
+/** The ways the renderer can fill in polygons. Both give nearly the same image. */
+public enum RasterMode {
+
+	/** An edge list per polygon, filled in a row at a time by computeZBuffer. */
+	SCANLINE,
+
+	/**
+	 * The HalfSpaceRasterizer, which never leaves gaps or draws a pixel twice
+	 * along edges shared by two polygons.
+	 */
+	HALF_SPACE
+}
+
+// code for comp261 assignments
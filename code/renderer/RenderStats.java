@@ -0,0 +1,233 @@
+package renderer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records how long each stage of a frame took, and how much work it did, for
+ * the last few frames, so slow frames can be tracked down.
+ *
+ * A frame is recorded between beginFrame and endFrame. Times are kept in
+ * nanoseconds. The percentiles are worked out over the frames kept, so a few
+ * slow frames show up in p95 and p99 without being lost in the average.
+ *
+ * This is not thread safe. The SceneRenderer only records into it while it is
+ * set, so leaving it unset costs nothing more than a null check per stage.
+ */
+public class RenderStats {
+
+	/**
+	 * The stages of a frame. Scaling and rotating are done in a single pass
+	 * over the vertices, so they are timed together as TRANSFORM. RASTERIZE is
+	 * the wall time of drawing every polygon; EDGE_LIST and Z_BUFFER split it
+	 * up, and are added up across threads when the tiles are drawn in
+	 * parallel. SORT is only timed when polygons are ordered by depth. When
+	 * shading is deferred SHADE only covers setting up the lights, and the
+	 * colours are worked out as part of RASTERIZE. RESOLVE is only timed when
+	 * anti-aliasing is on.
+	 */
+	public enum Stage {
+		CLEAR, TRANSFORM, TRANSLATE, CULL, SHADE, SORT, EDGE_LIST, Z_BUFFER, RASTERIZE, RESOLVE, TOTAL
+	}
+
+	public enum Counter {
+		/** Polygons in the model. */
+		SUBMITTED,
+		/** Polygons facing away from the viewer, or off the canvas. */
+		CULLED,
+		/**
+		 * Polygons skipped whole by the depth pyramid, as hidden behind ones
+		 * already drawn. When drawing in tiles a polygon is counted once for
+		 * each tile it was skipped in.
+		 */
+		OCCLUDED,
+		/** Polygons drawn. */
+		RASTERIZED,
+		/**
+		 * Polygons whose colour was needed: every one drawn, unless shading
+		 * is deferred, when only those with a pixel passing the depth test.
+		 */
+		SHADED,
+		/** Pixels whose depth was tested. */
+		PIXELS_TESTED,
+		/** Pixels that passed the depth test. */
+		PIXELS_WRITTEN,
+		/** Pixels whose depth test was skipped by the depth pyramid. */
+		PIXELS_OCCLUDED,
+		/** Pixels covered by at least one polygon at the end of the frame. */
+		PIXELS_COVERED
+	}
+
+	public static final int DEFAULT_WINDOW = 120;
+
+	private final int window;
+
+	// Ring buffers of the last frames, indexed [stage][frame % window].
+	private final long[][] times;
+	private final long[][] counts;
+	private final long[] currentTimes = new long[Stage.values().length];
+	private final long[] currentCounts = new long[Counter.values().length];
+	private long frames = 0;
+	private long frameStart;
+
+	private final long[] scratch;
+
+	public RenderStats() {
+		this(DEFAULT_WINDOW);
+	}
+
+	/** Keeps the given number of frames to work out percentiles from. */
+	public RenderStats(int window) {
+		this.window = window;
+		this.times = new long[Stage.values().length][window];
+		this.counts = new long[Counter.values().length][window];
+		this.scratch = new long[window];
+	}
+
+	public void beginFrame() {
+		Arrays.fill(currentTimes, 0);
+		Arrays.fill(currentCounts, 0);
+		frameStart = System.nanoTime();
+	}
+
+	/** Adds to the time of a stage of the current frame. */
+	public void addTime(Stage stage, long nanos) {
+		currentTimes[stage.ordinal()] += nanos;
+	}
+
+	/** Adds to a counter of the current frame. */
+	public void addCount(Counter counter, long count) {
+		currentCounts[counter.ordinal()] += count;
+	}
+
+	public void endFrame() {
+		currentTimes[Stage.TOTAL.ordinal()] = System.nanoTime() - frameStart;
+		int slot = (int) (frames % window);
+		for (int s = 0; s < currentTimes.length; s++) {
+			times[s][slot] = currentTimes[s];
+		}
+		for (int c = 0; c < currentCounts.length; c++) {
+			counts[c][slot] = currentCounts[c];
+		}
+		frames++;
+	}
+
+	/** The number of frames recorded so far, including ones no longer kept. */
+	public long getFrames() {
+		return frames;
+	}
+
+	/** Returns the time the stage took in the last frame, in nanoseconds. */
+	public long getLast(Stage stage) {
+		return frames == 0 ? 0 : times[stage.ordinal()][(int) ((frames - 1) % window)];
+	}
+
+	/** Returns the counter's value in the last frame. */
+	public long getLast(Counter counter) {
+		return frames == 0 ? 0 : counts[counter.ordinal()][(int) ((frames - 1) % window)];
+	}
+
+	/**
+	 * Returns the given percentile (0 to 100) of the stage's time over the
+	 * frames kept, in nanoseconds.
+	 */
+	public long getPercentile(Stage stage, double percentile) {
+		return percentile(times[stage.ordinal()], percentile);
+	}
+
+	/** Returns the given percentile (0 to 100) of the counter over the frames kept. */
+	public long getPercentile(Counter counter, double percentile) {
+		return percentile(counts[counter.ordinal()], percentile);
+	}
+
+	/**
+	 * Returns how many times each covered pixel was depth tested in the last
+	 * frame, on average.
+	 */
+	public double getOverdraw() {
+		long covered = getLast(Counter.PIXELS_COVERED);
+		return covered == 0 ? 0 : getLast(Counter.PIXELS_TESTED) / (double) covered;
+	}
+
+	/**
+	 * Returns how many times each covered pixel was written in the last
+	 * frame, on average. Drawing front to back brings this down towards 1.
+	 */
+	public double getWriteOverdraw() {
+		long covered = getLast(Counter.PIXELS_COVERED);
+		return covered == 0 ? 0 : getLast(Counter.PIXELS_WRITTEN) / (double) covered;
+	}
+
+	private long percentile(long[] values, double percentile) {
+		int kept = (int) Math.min(frames, window);
+		if (kept == 0) {
+			return 0;
+		}
+		System.arraycopy(values, 0, scratch, 0, kept);
+		Arrays.sort(scratch, 0, kept);
+		// nearest rank
+		int rank = (int) Math.ceil(percentile / 100 * kept);
+		return scratch[Math.max(0, Math.min(rank - 1, kept - 1))];
+	}
+
+	/** Returns a few lines of text summing up the stats, for showing on screen. */
+	public List<String> getSummary() {
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format(Locale.ROOT, "%-10s %7s %7s %7s  (ms, last %d)", "stage", "p50", "p95", "p99",
+				Math.min(frames, window)));
+		for (Stage stage : Stage.values()) {
+			lines.add(String.format(Locale.ROOT, "%-10s %7.2f %7.2f %7.2f", stage.name().toLowerCase(Locale.ROOT),
+					getPercentile(stage, 50) / 1e6, getPercentile(stage, 95) / 1e6, getPercentile(stage, 99) / 1e6));
+		}
+		lines.add(String.format(Locale.ROOT, "polygons %d, culled %d, drawn %d, shaded %d",
+				getLast(Counter.SUBMITTED), getLast(Counter.CULLED), getLast(Counter.RASTERIZED),
+				getLast(Counter.SHADED)));
+		lines.add(String.format(Locale.ROOT, "pixels tested %d, written %d", getLast(Counter.PIXELS_TESTED),
+				getLast(Counter.PIXELS_WRITTEN)));
+		lines.add(String.format(Locale.ROOT, "occluded %d polygons, %d pixels", getLast(Counter.OCCLUDED),
+				getLast(Counter.PIXELS_OCCLUDED)));
+		lines.add(String.format(Locale.ROOT, "overdraw %.2f tested, %.2f written", getOverdraw(),
+				getWriteOverdraw()));
+		return lines;
+	}
+
+	/**
+	 * Returns the stats as JSON: the number of frames, then for each stage and
+	 * counter its value in the last frame and its p50, p95 and p99, then the
+	 * last frame's overdraw. Times are in nanoseconds.
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder();
+		json.append("{\"frames\":").append(frames).append(",\"window\":").append(Math.min(frames, window));
+		json.append(",\"stages\":{");
+		for (Stage stage : Stage.values()) {
+			if (stage.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(stage.name().toLowerCase(Locale.ROOT)).append("\":");
+			appendValues(json, getLast(stage), getPercentile(stage, 50), getPercentile(stage, 95),
+					getPercentile(stage, 99));
+		}
+		json.append("},\"counters\":{");
+		for (Counter counter : Counter.values()) {
+			if (counter.ordinal() > 0) {
+				json.append(',');
+			}
+			json.append('"').append(counter.name().toLowerCase(Locale.ROOT)).append("\":");
+			appendValues(json, getLast(counter), getPercentile(counter, 50), getPercentile(counter, 95),
+					getPercentile(counter, 99));
+		}
+		json.append("},\"overdraw\":").append(String.format(Locale.ROOT, "%.4f", getOverdraw()));
+		json.append(",\"writeOverdraw\":").append(String.format(Locale.ROOT, "%.4f", getWriteOverdraw())).append('}');
+		return json.toString();
+	}
+
+	private static void appendValues(StringBuilder json, long last, long p50, long p95, long p99) {
+		json.append("{\"last\":").append(last).append(",\"p50\":").append(p50).append(",\"p95\":").append(p95)
+				.append(",\"p99\":").append(p99).append('}');
+	}
+}
+
+// code for comp261 assignments
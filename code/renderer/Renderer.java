@@ -1,51 +1,80 @@
 package renderer;
 
 import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
 import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
 import javax.swing.event.ChangeEvent;
 
-import renderer.Scene.Polygon;
-
 public class Renderer extends GUI {
 	
-	protected Scene scene = null;
+	/** Runs the pipeline for the loaded model. */
+	protected SceneRenderer sceneRenderer = new SceneRenderer(CANVAS_WIDTH, CANVAS_HEIGHT);
+	{
+		// for picking, and for changing the lights without drawing again
+		sceneRenderer.polygonIds = true;
+	}
 	
-	protected Color ambientLight = new Color(128, 128, 128);
+	/**
+	 * The frame stats shown over the image, or null if they are turned off.
+	 * P turns them on and off, and O writes them to STATS_FILE. Setting the
+	 * renderer.stats system property turns them on from the start.
+	 */
+	protected RenderStats stats = Boolean.getBoolean("renderer.stats") ? new RenderStats() : null;
 	
-	protected Color bottomLeftLight = new Color(0, 0, 0);
+	public static final String STATS_FILE = "render-stats.json";
 	
-	protected Color bottomRightLight = new Color(0, 0, 0);
+	private static final Font STATS_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
 	
-	protected float rotationX = 0;
+	// The lights and orientation are changed on the Swing thread and read by
+	// the render thread, which reads each of them once per frame.
 	
-	protected float rotationY = 0;
+	protected volatile Color ambientLight = new Color(128, 128, 128);
 	
-	protected boolean scaled = false;
+	protected volatile Color bottomLeftLight = new Color(0, 0, 0);
 	
+	protected volatile Color bottomRightLight = new Color(0, 0, 0);
 	
+	/** The number of point lights L puts around the model. */
+	public static final int RING_LIGHTS = 16;
+	
+	/**
+	 * A ring of coloured point lights around the model, as well as the
+	 * corner lights, or null if they are off. L turns them on and off. Only
+	 * used on the render thread.
+	 */
+	protected List<Light> ringLights = null;
+	
+	/** The accumulated rotation of the model, built up from key presses. */
+	protected volatile Transform orientation = Transform.identity();
+	
+	/**
+	 * The orientation the last full frame was drawn with, or null if the next
+	 * frame has to be drawn in full. Only used on the render thread.
+	 */
+	protected Transform drawnOrientation = null;
 	
 	@Override
 	protected void onLoad(File file) {
 		
-		rotationX = 0;
-		rotationY = 0;
-		scaled = false;
+		orientation = Transform.identity();
+		ringLights = null;
 
 		/*
 		 * This method should parse the given file into a Scene object, which
 		 * you store and use to render an image.
 		 */
 		try {
-			scene = loadScene(file);
+			sceneRenderer.setModel(SceneLoader.load(file), file.getName());
 			
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
@@ -53,61 +82,160 @@ public class Renderer extends GUI {
 		}	
 	}
 	
-	protected Scene loadScene(File file) throws FileNotFoundException, IOException {
-		BufferedReader data = null;
-		String lightStr = null;
-		String[] values = null;
-		Vector3D light = null;
-		String line = null;
-		List<Polygon> polygons = new ArrayList<Polygon>();
-		float[] polygonPoints = new float[9];
-		int[] polygonColors = new int[3];
-		
-		data = new BufferedReader(new FileReader(file));
-		lightStr = data.readLine();
-		values = lightStr.split(" ");
-		light = new Vector3D(Float.parseFloat(values[0]), Float.parseFloat(values[1]), Float.parseFloat(values[2]));
-		
-		while ((line = data.readLine()) != null) {
-			values = line.split(" ");
-			
-			int i;
-			for (i=0; i<9; i++) {
-				polygonPoints[i] = Float.parseFloat(values[i]);
-			}
-			
-			for (i=0; i<3; i++) {
-				polygonColors[i] = Integer.parseInt(values[i+9]);
-			}
-			
-			polygons.add(new Polygon(polygonPoints, polygonColors));
-		}
-		
-		return new Scene(polygons, light);
+	/**
+	 * Loads a scene file (text or binary) as a Scene. The renderer itself
+	 * loads straight into a Mesh with SceneLoader instead.
+	 */
+	protected Scene loadScene(File file) throws IOException {
+		return SceneLoader.load(file).toScene();
 	}
 	
 	@Override
 	protected void onKeyPress(KeyEvent ev) {
-		if (ev.getKeyCode() == KeyEvent.VK_LEFT
+		float rotationX = 0;
+		float rotationY = 0;
+		
+		if (Character.toUpperCase(ev.getKeyChar()) == 'P') {
+			// The stats belong to the render thread, so change them there
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					stats = stats == null ? new RenderStats() : null;
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'H') {
+			// Switch between the scanline and half-space rasterizers
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					sceneRenderer.rasterMode = sceneRenderer.rasterMode == RasterMode.SCANLINE
+							? RasterMode.HALF_SPACE : RasterMode.SCANLINE;
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'G') {
+			// Go through flat, Gouraud and Phong shading
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					ShadingMode[] modes = ShadingMode.values();
+					sceneRenderer.shadingMode = modes[(sceneRenderer.shadingMode.ordinal() + 1) % modes.length];
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'X') {
+			// Go through the anti-aliasing modes, starting with none
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					AntiAliasMode[] modes = AntiAliasMode.values();
+					sceneRenderer.antiAliasing = modes[(sceneRenderer.antiAliasing.ordinal() + 1) % modes.length];
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'L') {
+			// Put a ring of point lights around the model, or take it away
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					Mesh model = sceneRenderer.getModel();
+					ringLights = ringLights == null && model != null ? makeRingLights(model, RING_LIGHTS) : null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'M') {
+			// Turn shadows from the file's light on or off
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					sceneRenderer.shadows = !sceneRenderer.shadows;
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'C') {
+			// Turn occlusion culling with the depth pyramid on or off
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					sceneRenderer.occlusionCulling = !sceneRenderer.occlusionCulling;
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'F') {
+			// Turn front to back ordering, and deferring shading until a
+			// polygon passes the depth test, on or off together
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					sceneRenderer.depthOrdering = !sceneRenderer.depthOrdering;
+					sceneRenderer.deferredShading = sceneRenderer.depthOrdering;
+					drawnOrientation = null;
+				}
+			});
+			return;
+		}
+		else if (Character.toUpperCase(ev.getKeyChar()) == 'O') {
+			runOnRenderThread(new Runnable() {
+				public void run() {
+					writeStats();
+				}
+			});
+			return;
+		}
+		else if (ev.getKeyCode() == KeyEvent.VK_LEFT
 				|| Character.toUpperCase(ev.getKeyChar()) == 'A') {			
 			rotationY = 0.1f; 
-			rotationX = 0;
 		}
 		else if (ev.getKeyCode() == KeyEvent.VK_RIGHT
 				|| Character.toUpperCase(ev.getKeyChar()) == 'D') {			
 			rotationY = -0.1f;
-			rotationX = 0;
 		}
 		else if (ev.getKeyCode() == KeyEvent.VK_UP
 				|| Character.toUpperCase(ev.getKeyChar()) == 'W') {			
-			rotationY = 0;
 			rotationX = -0.1f;
 		}
 		else if (ev.getKeyCode() == KeyEvent.VK_DOWN
 				|| Character.toUpperCase(ev.getKeyChar()) == 'S') {			
-			rotationY = 0;
 			rotationX = 0.1f;
 		}
+		else {
+			return;
+		}
+		
+		// Rotate about x then y, on top of the rotation so far
+		orientation = Transform.newYRotation(rotationY)
+				.compose(Transform.newXRotation(rotationX))
+				.compose(orientation)
+				.orthonormalized();
+	}
+	
+	/**
+	 * Shows the polygon clicked on, and the line of the scene file it came
+	 * from, in the status line, looked up in the polygon ids of the frame
+	 * being shown.
+	 */
+	@Override
+	protected void onMouseClick(MouseEvent ev) {
+		final int x = ev.getX();
+		final int y = ev.getY();
+		runOnRenderThread(new Runnable() {
+			public void run() {
+				int p = sceneRenderer.pick(x, y);
+				if (p == FrameBuffer.NO_POLYGON) {
+					setStatus("no polygon at (" + x + ", " + y + ")");
+					return;
+				}
+				int line = sceneRenderer.getModel().getSourceLine(p);
+				setStatus("polygon " + p + " at (" + x + ", " + y + ")"
+						+ (line > 0 ? ", from line " + line : ""));
+			}
+		});
 	}
 	
 	/**
@@ -121,72 +249,100 @@ public class Renderer extends GUI {
 		ambientLight = new Color(ambientColor[0], ambientColor[1], ambientColor[2]);
 		bottomLeftLight = new Color(bottomLeftColor[0], bottomLeftColor[1], bottomLeftColor[2]);
 		bottomRightLight = new Color(bottomRightColor[0], bottomRightColor[1], bottomRightColor[2]);
-		
-		rotationY = 0;
-		rotationX = 0;
 	}
 
 	@Override
 	protected BufferedImage render() {
 		
-		if (scene == null) return null;
-
 		/*
 		 * This method should put together the pieces of your renderer, as
 		 * described in the lecture. This will involve calling each of the
 		 * static method stubs in the Pipeline class, which you also need to
 		 * fill in.
 		 */
-		
-		if (!scaled) {			
-			scene = Pipeline.scaleScene(scene);
-			scaled = true;
+		sceneRenderer.stats = stats;
+		Transform orientation = this.orientation;
+		BufferedImage image;
+		List<Light> lights = Light.cornerLights(bottomLeftLight, bottomRightLight);
+		if (ringLights != null) {
+			lights.addAll(ringLights);
 		}
-		scene = Pipeline.rotateScene(scene, rotationX, rotationY);
-		scene = Pipeline.translateScene(scene);
-		
-		
-		Color[][] zbuffer = new Color[CANVAS_WIDTH][CANVAS_HEIGHT];
-		float[][] zdepth = new float[CANVAS_WIDTH][CANVAS_HEIGHT];
-		
-		// Initialize all pixels to be ambient color
-		// Initialize z-depth to be as large as possible
-		for (int x = 0; x < CANVAS_WIDTH; x++) {
-			for (int y = 0; y < CANVAS_HEIGHT; y++) {
-				zbuffer[x][y] = ambientLight;
-				zdepth[x][y] = Integer.MAX_VALUE;
-			}
+		if (orientation == drawnOrientation && sceneRenderer.canReshade()) {
+			// Only the lights have changed, so just colour the last frame again
+			image = sceneRenderer.reshade(ambientLight, lights);
+		} else {
+			image = sceneRenderer.render(orientation, ambientLight, lights);
+			drawnOrientation = orientation;
 		}
+		if (image != null && stats != null) {
+			drawStats(image);
+		}
+		return image;
+	}
 	
-		for (Polygon poly : scene.getPolygons()) {
-			if (poly.isHidden || Pipeline.isHidden(poly)) {
-				poly.isHidden = true;
-				continue;
+	/**
+	 * Makes the given number of point lights of different colours, evenly
+	 * spaced on a ring around the middle of the model, each shining at half
+	 * strength on the model's middle.
+	 */
+	protected static List<Light> makeRingLights(Mesh model, int count) {
+		float[] min = { Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY };
+		float[] max = { Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY };
+		float[][] values = { model.xs, model.ys, model.zs };
+		for (int axis = 0; axis < 3; axis++) {
+			for (int v = 0; v < model.size * 3; v++) {
+				min[axis] = Math.min(min[axis], values[axis][v]);
+				max[axis] = Math.max(max[axis], values[axis][v]);
 			}
-			
-			Color polyColor = Pipeline.getShading(poly, scene.getLight(), Color.WHITE, ambientLight, bottomLeftLight, bottomRightLight);
-			EdgeList edgeList = Pipeline.computeEdgeList(poly);
-			Pipeline.computeZBuffer(zbuffer, zdepth, edgeList, polyColor);
 		}
-		
-		return convertBitmapToImage(zbuffer);
-		
+		float radius = Math.max(max[0] - min[0], Math.max(max[1] - min[1], max[2] - min[2]));
+		radius = radius > 0 ? radius : 1;
+		List<Light> lights = new ArrayList<Light>(count);
+		for (int i = 0; i < count; i++) {
+			double angle = 2 * Math.PI * i / count;
+			Vector3D position = new Vector3D((min[0] + max[0]) / 2 + radius * (float) Math.cos(angle),
+					(min[1] + max[1]) / 2, (min[2] + max[2]) / 2 + radius * (float) Math.sin(angle));
+			lights.add(Light.point(position, Color.getHSBColor((float) i / count, 0.6f, 1), 0, 0,
+					2 / (radius * radius)));
+		}
+		return lights;
 	}
-
+	
+	/** Draws the frame stats over the top left of the image. */
+	protected void drawStats(BufferedImage image) {
+		List<String> lines = stats.getSummary();
+		Graphics2D g = image.createGraphics();
+		g.setFont(STATS_FONT);
+		int lineHeight = g.getFontMetrics().getHeight();
+		int width = 0;
+		for (String line : lines) {
+			width = Math.max(width, g.getFontMetrics().stringWidth(line));
+		}
+		g.setColor(new Color(0, 0, 0, 160));
+		g.fillRect(0, 0, width + 8, lineHeight * lines.size() + 6);
+		g.setColor(Color.WHITE);
+		for (int i = 0; i < lines.size(); i++) {
+			g.drawString(lines.get(i), 4, lineHeight * (i + 1));
+		}
+		g.dispose();
+	}
+	
 	/**
-	 * Converts a 2D array of Colors to a BufferedImage. Assumes that bitmap is
-	 * indexed by column then row and has imageHeight rows and imageWidth
-	 * columns. Note that image.setRGB requires x (col) and y (row) are given in
-	 * that order.
+	 * Writes the frame stats as JSON to STATS_FILE, if they are turned on,
+	 * and says how it went in the status line.
 	 */
-	private BufferedImage convertBitmapToImage(Color[][] bitmap) {
-		BufferedImage image = new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
-		for (int x = 0; x < CANVAS_WIDTH; x++) {
-			for (int y = 0; y < CANVAS_HEIGHT; y++) {
-				image.setRGB(x, y, bitmap[x][y].getRGB());
-			}
+	protected void writeStats() {
+		if (stats == null) {
+			setStatus("press P to turn on the frame stats first");
+			return;
+		}
+		try (Writer writer = new FileWriter(STATS_FILE)) {
+			writer.write(stats.toJson());
+			writer.write('\n');
+			setStatus("frame stats written to " + new File(STATS_FILE).getAbsolutePath());
+		} catch (IOException e) {
+			setStatus("could not write frame stats: " + e.getMessage());
 		}
-		return image;
 	}
 
 	public static void main(String[] args) {
@@ -1,6 +1,7 @@
 package renderer;
 
 import java.awt.Color;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -18,6 +19,9 @@ public class Scene {
 	public List<Polygon> polygons;
 	public Vector3D lightPos;
 
+	/** Any other lights besides the one at lightPos, which shines white. */
+	public List<Light> lights = new ArrayList<Light>();
+
 	public Scene(List<Polygon> polygons, Vector3D lightPos) {
           this.polygons = polygons;
           this.lightPos = lightPos;
@@ -31,6 +35,10 @@ public class Scene {
           return polygons;
 	}
 
+	public List<Light> getLights() {
+          return lights;
+	}
+
 	/**
 	 * Polygon stores data about a single polygon in a scene, keeping track of
 	 * (at least!) its three vertices and its reflectance.
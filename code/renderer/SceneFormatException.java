@@ -0,0 +1,32 @@
+package renderer;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a scene file can't be parsed. The message says which line of the
+ * file the problem is on.
+ */
+@SuppressWarnings("serial")
+public class SceneFormatException extends IOException {
+
+	private final long line;
+	private final String detail;
+
+	public SceneFormatException(long line, String detail) {
+		super("line " + line + ": " + detail);
+		this.line = line;
+		this.detail = detail;
+	}
+
+	/** The line of the file the problem is on, counting from 1. */
+	public long getLine() {
+		return line;
+	}
+
+	/** The description of the problem, without the line number. */
+	public String getDetail() {
+		return detail;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,39 @@
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event covering the loading of one scene file. Off unless
+ * turned on, see FrameEvent.
+ */
+@Name("renderer.SceneLoad")
+@Label("Scene Load")
+@Category("Renderer")
+@Description("A scene file loaded by the renderer")
+@Enabled(false)
+@StackTrace(false)
+public class SceneLoadEvent extends Event {
+
+	@Label("Scene")
+	public String scene;
+
+	@Label("Format")
+	@Description("text, binary, or cache if a text file was read from its binary copy")
+	public String format;
+
+	@Label("Polygons")
+	public int polygons;
+
+	@Label("Bytes Read")
+	@DataAmount
+	public long bytesRead;
+}
+
+// code for comp261 assignments
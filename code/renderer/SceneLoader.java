@@ -0,0 +1,124 @@
+package renderer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Loads scene files into Meshes. Both the text format and the binary format
+ * (see BinaryScene) are understood.
+ *
+ * Loading a text file also leaves a binary copy of it next to the file, with
+ * ".bin" added to the name. Later loads of the text file use that copy
+ * instead, as long as the text file still has exactly the length and
+ * last-modified time recorded in it.
+ */
+public class SceneLoader {
+
+	public static final String CACHE_SUFFIX = ".bin";
+
+	/** Loads a scene file of either format, using the binary cache if possible. */
+	public static Mesh load(File file) throws IOException {
+		return load(file, true);
+	}
+
+	/**
+	 * Loads a scene file of either format. If useCache is true, text files are
+	 * read from (and their binary copy is written to) the cache file.
+	 */
+	public static Mesh load(File file, boolean useCache) throws IOException {
+		SceneLoadEvent event = new SceneLoadEvent();
+		event.begin();
+		Mesh mesh = read(file, useCache, event);
+		if (event.shouldCommit()) {
+			event.scene = file.getPath();
+			event.polygons = mesh.size;
+			event.commit();
+		}
+		return mesh;
+	}
+
+	private static Mesh read(File file, boolean useCache, SceneLoadEvent event) throws IOException {
+		if (BinaryScene.isBinary(file)) {
+			event.format = "binary";
+			event.bytesRead = file.length();
+			return BinaryScene.read(file);
+		}
+		event.format = "text";
+		event.bytesRead = file.length();
+		if (!useCache) {
+			return loadText(file);
+		}
+
+		// taken before parsing, so a file changed while it is parsed leaves a
+		// cache that doesn't match it
+		long length = file.length();
+		long lastModified = file.lastModified();
+		File cache = getCacheFile(file);
+		if (cache.isFile()) {
+			try {
+				// a cache written before the source file was recorded, or
+				// before source lines were kept, is rebuilt
+				if (BinaryScene.isReadFrom(cache, length, lastModified)) {
+					Mesh mesh = BinaryScene.read(cache);
+					if (mesh.sourceLines != null) {
+						event.format = "cache";
+						event.bytesRead = cache.length();
+						return mesh;
+					}
+				}
+			} catch (IOException e) {
+				// A broken cache is just rebuilt below.
+				System.err.println("Ignoring scene cache " + cache + ": " + e.getMessage());
+			}
+		}
+
+		Mesh mesh = loadText(file);
+		writeCache(mesh, cache, length, lastModified);
+		return mesh;
+	}
+
+	/** Returns the binary cache file used for the given text scene file. */
+	public static File getCacheFile(File text) {
+		return new File(text.getPath() + CACHE_SUFFIX);
+	}
+
+	/**
+	 * Writes a cache file, going via a temporary file so a half-written cache
+	 * is never left behind. Failing to write it (e.g. in a read-only
+	 * directory) isn't an error, the scene just gets parsed again next time.
+	 */
+	private static void writeCache(Mesh mesh, File cache, long length, long lastModified) {
+		File temp = null;
+		try {
+			// a temp file of its own, in case another thread is writing the
+			// same cache at the same time
+			temp = File.createTempFile(cache.getName(), ".tmp", cache.getAbsoluteFile().getParentFile());
+			BinaryScene.write(mesh, temp, length, lastModified);
+			Files.move(temp.toPath(), cache.toPath(), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			if (temp != null) {
+				temp.delete();
+			}
+			System.err.println("Could not write scene cache " + cache + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Parses a text scene file, see TextSceneParser. Big files are parsed on
+	 * as many threads as there are cores, unless the renderer.loadThreads
+	 * system property says otherwise.
+	 */
+	public static Mesh loadText(File file) throws IOException {
+		return loadText(file, Integer.getInteger("renderer.loadThreads", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/** Parses a text scene file, using up to the given number of threads. */
+	public static Mesh loadText(File file, int threads) throws IOException {
+		return TextSceneParser.parse(file, threads);
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,884 @@
+package renderer;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import jdk.jfr.EventType;
+
+import renderer.RenderStats.Counter;
+import renderer.RenderStats.Stage;
+
+/**
+ * Runs the rendering pipeline for one model, with no GUI attached, so it can
+ * be used both by the Renderer and by headless tools like the BatchRenderer.
+ *
+ * A SceneRenderer keeps its screen mesh, frame buffers and shading from frame
+ * to frame, so it should be reused for every frame of the same model. It is
+ * not thread safe; use one per thread.
+ */
+public class SceneRenderer {
+
+	private static final EventType STAGE_EVENTS = EventType.getEventType(StageEvent.class);
+
+	/** The size of the frames drawn, which only changes with setSize. */
+	public int width;
+	public int height;
+
+	/**
+	 * The canvas the model is fitted to and centred on, and where on it the
+	 * frame's top left corner is. This is normally just the frame, but a
+	 * TiledRenderer sets a bigger canvas and draws it one tile at a time.
+	 */
+	protected int canvasWidth;
+	protected int canvasHeight;
+	protected int canvasX = 0;
+	protected int canvasY = 0;
+
+	/**
+	 * The loaded model. This is never changed after loading; instead each
+	 * frame it is transformed by the current view into the screen mesh.
+	 */
+	protected Mesh model = null;
+
+	/**
+	 * The model transformed into screen space, reused between frames. It
+	 * covers the whole canvas, and is only transformed again once the
+	 * orientation, the canvas size or the samples per pixel change, so the
+	 * frames showing different parts of a canvas all share it.
+	 */
+	protected Mesh screen = new Mesh(0);
+
+	/**
+	 * The orientation and samples per pixel the screen mesh was made with, or
+	 * null if it needs making again.
+	 */
+	protected Transform screenOrientation = null;
+	protected int screenSamples = 0;
+
+	/**
+	 * The scale that fits the model to the canvas, worked out on load and
+	 * again whenever the canvas changes.
+	 */
+	protected float scale = 1;
+
+	/**
+	 * The full model to screen transform used for the last frame, i.e. the
+	 * translation composed with the orientation composed with the scale.
+	 */
+	protected Transform view = Transform.identity();
+
+	/** The orientation the last frame was drawn with. */
+	protected Transform orientation = null;
+
+	/**
+	 * Two frame buffers, reused between frames so rendering doesn't allocate
+	 * a new bitmap. They are drawn into in turn, so one can be shown while
+	 * the next frame is drawn into the other.
+	 */
+	protected FrameBuffer[] frames = new FrameBuffer[2];
+
+	/** The frame buffer drawn into for the last frame. */
+	protected FrameBuffer frame = null;
+
+	protected EdgeList edgeList = new EdgeList(0, -1);
+
+	/**
+	 * If true the polygons are drawn by the TileRasterizer on all cores,
+	 * otherwise one at a time on the rendering thread. Both give the same
+	 * image.
+	 */
+	public boolean parallel = Runtime.getRuntime().availableProcessors() > 1;
+
+	protected TileRasterizer tileRasterizer = new TileRasterizer();
+
+	protected DepthSorter depthSorter = new DepthSorter();
+
+	/** How polygons are filled in. */
+	public RasterMode rasterMode = RasterMode.SCANLINE;
+
+	/**
+	 * How polygons are coloured in. Gouraud and Phong shading are worked out
+	 * per pixel from the polygon ids once the polygons have been drawn, so
+	 * they turn the ids on, and they need the model's IndexedMesh, which is
+	 * built when the model is set if the shading is already smooth, or
+	 * otherwise the first time it is needed. It is flat unless the
+	 * renderer.shading system property is set to gouraud or phong.
+	 */
+	public ShadingMode shadingMode = ShadingMode
+			.valueOf(System.getProperty("renderer.shading", "flat").toUpperCase(Locale.ROOT));
+
+	/**
+	 * If true, the frame's depth pyramid is used to skip polygons, and blocks
+	 * of polygons, hidden behind ones already drawn. This gives the same
+	 * image either way. It pays off for models with many layers hidden behind
+	 * each other, but costs a little for ones without, so it is off unless
+	 * the renderer.occlusionCulling system property is set.
+	 */
+	public boolean occlusionCulling = Boolean.getBoolean("renderer.occlusionCulling");
+
+	/**
+	 * If true, the visible polygons are sorted nearest first before they are
+	 * drawn, so that fewer pixels are written only to be drawn over. Polygons
+	 * at exactly the same depth can then be drawn in a different order, so
+	 * the image can change where they meet. It is off unless the
+	 * renderer.depthOrdering system property is set.
+	 */
+	public boolean depthOrdering = Boolean.getBoolean("renderer.depthOrdering");
+
+	/**
+	 * If true, a polygon is only shaded once it is known to have a pixel that
+	 * passes the depth test, instead of every visible polygon being shaded
+	 * before any are drawn. This gives the same image either way, and saves
+	 * the most with depthOrdering on. It is off unless the
+	 * renderer.deferredShading system property is set.
+	 */
+	public boolean deferredShading = Boolean.getBoolean("renderer.deferredShading");
+
+	/**
+	 * A hierarchy of boxes around the model's polygons, built when the model
+	 * is set.
+	 */
+	protected Bvh bvh = null;
+
+	/**
+	 * If true, the bvh is used to skip whole groups of polygons that are off
+	 * the canvas before looking at each polygon. This gives the same image
+	 * either way.
+	 */
+	public boolean canvasCulling = true;
+
+	/**
+	 * If true, the index of the polygon drawn at each pixel is kept in the
+	 * frame buffer, so pick is a single lookup and reshade can change the
+	 * lights without drawing the frame again. It costs an int per pixel and a
+	 * little time per pixel drawn, so it is off unless the
+	 * renderer.polygonIds system property is set.
+	 */
+	public boolean polygonIds = Boolean.getBoolean("renderer.polygonIds");
+
+	/**
+	 * The normal and reflectance at each pixel of the last frame, for
+	 * reshade. Only made once a frame is reshaded.
+	 */
+	protected GBuffer gBuffer = null;
+
+	/** Whether the gBuffer has been filled in from the last frame drawn. */
+	protected boolean gBufferBuilt = false;
+
+	/** Which polygons the bvh found on the canvas, one bit each. */
+	protected long[] onCanvas = new long[0];
+
+	/** The visible polygons of the current frame, reused between frames. */
+	protected int[] visible = new int[0];
+
+	/** The colour of each polygon, kept from frame to frame. */
+	protected ShadingCache shading = null;
+
+	/**
+	 * If true, pixels that the file's light can't reach, because another part
+	 * of the model is in the way, are lit without it. This needs the polygon
+	 * ids, so it turns them on. It is off unless the renderer.shadows system
+	 * property is set.
+	 */
+	public boolean shadows = Boolean.getBoolean("renderer.shadows");
+
+	/**
+	 * The depth of the model as seen from the file's light, drawn the first
+	 * time a frame has shadows and then kept until the model or its light
+	 * changes. The light turns with the model, so turning the view never
+	 * changes it.
+	 */
+	protected ShadowMap shadowMap = null;
+
+	/** The colour of each polygon without the file's light, for shadows. */
+	protected ShadingCache shadowShading = null;
+
+	/** Which pixels of the last frame were in shadow, if shadowsDrawn. */
+	protected boolean[] shadowMask = new boolean[0];
+
+	/** Whether the last frame was drawn with shadows. */
+	protected boolean shadowsDrawn = false;
+
+	/**
+	 * How the edges of polygons are smoothed (see AntiAliasMode and
+	 * AntiAliasing). Supersampling draws everything into a sample buffer
+	 * bigger than the frame, which is then shrunk into the frame, and a frame
+	 * drawn that way can't be reshaded. The adaptive mode needs the polygon
+	 * ids, so it turns them on. It is off unless the renderer.antiAlias
+	 * system property is set to supersample_2x, supersample_4x or adaptive.
+	 */
+	public AntiAliasMode antiAliasing = AntiAliasMode
+			.valueOf(System.getProperty("renderer.antiAlias", "off").toUpperCase(Locale.ROOT));
+
+	/** What supersampled frames are drawn into, made the first time one is. */
+	protected FrameBuffer sampleBuffer = null;
+
+	protected AntiAliasing antiAliaser = new AntiAliasing();
+
+	/** How the edges of the last frame were smoothed. */
+	protected AntiAliasMode drawnAntiAliasing = AntiAliasMode.OFF;
+
+	/** The model with its vertices welded, for smooth shading. */
+	protected IndexedMesh indexedModel = null;
+
+	/** The Gouraud and Phong shading of indexedModel. */
+	protected SmoothShading smoothShading = null;
+
+	/**
+	 * If set, the time taken by each stage of every frame and the amount of
+	 * work done are recorded into it.
+	 */
+	public RenderStats stats = null;
+
+	/** The name of the model, for the Flight Recorder events. */
+	protected String sceneName = null;
+
+	// While a frame is being drawn: the stats it is recorded into (if any),
+	// the Flight Recorder event of the current stage (if they are turned on),
+	// and when the current stage started.
+	private RenderStats frameStats;
+	private StageEvent stageEvent;
+	private long stageStart;
+
+	public SceneRenderer(int width, int height) {
+		this.width = width;
+		this.height = height;
+		this.canvasWidth = width;
+		this.canvasHeight = height;
+	}
+
+	/**
+	 * Changes the size of the frames drawn from now on, and fits the model to
+	 * the new size. The frame buffers are made again at the new size the next
+	 * time they are drawn into, and the last frame can't be reshaded.
+	 */
+	public void setSize(int width, int height) {
+		setFrameSize(width, height);
+		setCanvas(width, height, 0, 0);
+	}
+
+	/**
+	 * Changes the size of the frames drawn from now on, as setSize does, but
+	 * leaves the canvas as it is.
+	 */
+	protected void setFrameSize(int width, int height) {
+		if (width != this.width || height != this.height) {
+			this.width = width;
+			this.height = height;
+			this.frames = new FrameBuffer[2];
+			this.frame = null;
+			this.sampleBuffer = null;
+			this.gBuffer = null;
+			this.orientation = null;
+		}
+	}
+
+	/**
+	 * Fits the model to a canvas of the given size instead of to the frame,
+	 * with the frame's top left corner at (x, y) on it, so the frame shows
+	 * just that part of the canvas. Moving the frame over the same canvas
+	 * doesn't transform the model again. The last frame can't be reshaded.
+	 */
+	public void setCanvas(int canvasWidth, int canvasHeight, int x, int y) {
+		boolean resized = canvasWidth != this.canvasWidth || canvasHeight != this.canvasHeight;
+		this.canvasWidth = canvasWidth;
+		this.canvasHeight = canvasHeight;
+		this.canvasX = x;
+		this.canvasY = y;
+		if (model != null) {
+			if (resized) {
+				fitModel();
+				this.screenOrientation = null;
+			}
+			this.orientation = null;
+		}
+	}
+
+	/** Works out the scale that fits the model to the canvas. */
+	private void fitModel() {
+		Vector3D min = bvh.getMin();
+		Vector3D max = bvh.getMax();
+		this.scale = Pipeline.getScale(min.x, min.y, max.x, max.y, canvasWidth, canvasHeight);
+	}
+
+	/** Sets the model to render, and works out the scale that fits it. */
+	public void setModel(Mesh model) {
+		setModel(model, null);
+	}
+
+	/**
+	 * Sets the model to render, along with a name for it (such as its file)
+	 * that the Flight Recorder events are tagged with.
+	 */
+	public void setModel(Mesh model, String sceneName) {
+		this.model = model;
+		this.sceneName = sceneName;
+		this.bvh = new Bvh(model);
+		fitModel();
+		this.screenOrientation = null;
+		this.shading = new ShadingCache(model);
+		this.indexedModel = null;
+		this.smoothShading = null;
+		this.shadowMap = null;
+		this.shadowShading = null;
+		if (shadingMode != ShadingMode.FLAT) {
+			getIndexedModel();
+		}
+		// the last frame was of another model, so it can't be reshaded
+		this.orientation = null;
+	}
+
+	public Mesh getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the model with its vertices welded, building it if it hasn't
+	 * been yet.
+	 */
+	public IndexedMesh getIndexedModel() {
+		if (indexedModel == null) {
+			indexedModel = new IndexedMesh(model);
+			smoothShading = new SmoothShading(indexedModel);
+		}
+		return indexedModel;
+	}
+
+	/**
+	 * Returns the shadow map of the model's light, drawing it if it hasn't
+	 * been yet or the light has changed since.
+	 */
+	public ShadowMap getShadowMap() {
+		if (shadowMap == null || !shadowMap.isFor(model)) {
+			shadowMap = new ShadowMap(model);
+		}
+		return shadowMap;
+	}
+
+	/** Returns the hierarchy of boxes around the model's polygons. */
+	public Bvh getBvh() {
+		return bvh;
+	}
+
+	/** Returns the model to screen transform used for the last frame. */
+	public Transform getView() {
+		return view;
+	}
+
+	/** Returns the frame buffer drawn into for the last frame. */
+	public FrameBuffer getFrame() {
+		return frame;
+	}
+
+	/**
+	 * Returns the index of the model polygon drawn at pixel (x, y) of the last
+	 * frame, or FrameBuffer.NO_POLYGON if there isn't one. Only works when the
+	 * last frame was drawn with polygonIds on.
+	 */
+	public int pick(int x, int y) {
+		if (frame == null || x < 0 || y < 0 || x >= frame.width || y >= frame.height) {
+			return FrameBuffer.NO_POLYGON;
+		}
+		return frame.getId(x, y);
+	}
+
+	/**
+	 * Returns true if the last frame can be lit differently with reshade,
+	 * i.e. it was drawn with polygonIds on, and wasn't supersampled.
+	 */
+	public boolean canReshade() {
+		return frame != null && frame.ids != null && orientation != null && !drawnAntiAliasing.isSupersampled();
+	}
+
+	/**
+	 * Draws the last frame again with different lights, without transforming
+	 * or drawing any polygons. With flat shading the colour of each pixel is
+	 * worked out from the normal and reflectance kept in the G-buffer for it;
+	 * the G-buffer is filled in from the polygon ids the first time a frame is
+	 * reshaded, and reused until the next render. Gouraud and Phong shading
+	 * are worked out from the polygon ids anyway, so they are just run again.
+	 * This gives the same image as render with the same orientation, up to
+	 * one step of each channel from rounding, and the edges are resolved
+	 * again if the frame was drawn with adaptive anti-aliasing. Like render,
+	 * it draws into the frame buffer that isn't being shown. Returns null if
+	 * canReshade is false.
+	 */
+	public BufferedImage reshade(Color ambientLight, List<Light> lights) {
+		if (model == null || !canReshade()) return null;
+
+		FrameBuffer last = frame;
+		FrameBuffer frame = frames[frames[0] == last ? 1 : 0];
+		if (frame == null) {
+			frame = new FrameBuffer(width, height);
+			frames[frames[0] == null ? 0 : 1] = frame;
+		}
+		frame.enableIds();
+		frame.originX = last.originX;
+		frame.originY = last.originY;
+		this.frame = frame;
+
+		// The screen mesh still holds the last frame drawn, and the lights are
+		// turned into model space for the orientation it was drawn with
+		Lighting lighting = new Lighting(ambientLight, getLights(lights), orientation);
+		// The shadows fall where they did, and just the lights have changed
+		Lighting shadowLighting = null;
+		boolean[] shadowed = null;
+		if (shadowsDrawn) {
+			shadowLighting = new Lighting(ambientLight, getLights(lights, false), orientation);
+			shadowed = shadowMask;
+		}
+		if (shadingMode != ShadingMode.FLAT) {
+			getIndexedModel();
+			smoothShading.parallel = parallel;
+			smoothShading.shade(last.ids, frame.pixels, width, last.originX, last.originY, screen, shadingMode,
+					lighting, shadowLighting, shadowed);
+		} else {
+			if (gBuffer == null) {
+				gBuffer = new GBuffer(width, height);
+			}
+			gBuffer.parallel = parallel;
+			if (!gBufferBuilt) {
+				gBuffer.build(last, model);
+				gBufferBuilt = true;
+			}
+			gBuffer.light(frame.pixels, lighting, shadowLighting, shadowed);
+		}
+		int[] ids = last.ids;
+		System.arraycopy(ids, 0, frame.ids, 0, ids.length);
+		System.arraycopy(last.depth, 0, frame.depth, 0, last.depth.length);
+		if (drawnAntiAliasing == AntiAliasMode.ADAPTIVE) {
+			antiAliaser.parallel = parallel;
+			antiAliaser.resolveEdges(frame, screen, drawnAntiAliasing.samples);
+		}
+		return frame.getImage();
+	}
+
+	/**
+	 * The same as reshade above, with just the two bottom corner lights
+	 * besides the model's own.
+	 */
+	public BufferedImage reshade(Color ambientLight, Color bottomLeftLight, Color bottomRightLight) {
+		return reshade(ambientLight, Light.cornerLights(bottomLeftLight, bottomRightLight));
+	}
+
+	/**
+	 * Returns every light on the model: the given lights, then the file's
+	 * light in white, then any other lights read in from the scene file.
+	 */
+	public List<Light> getLights(List<Light> lights) {
+		return getLights(lights, true);
+	}
+
+	/**
+	 * The same as getLights above, but the file's light is left out if
+	 * fileLight is false, as it is for pixels in its shadow.
+	 */
+	public List<Light> getLights(List<Light> lights, boolean fileLight) {
+		List<Light> all = new ArrayList<Light>(lights.size() + 1 + model.lights.size());
+		all.addAll(lights);
+		if (fileLight) {
+			all.add(Light.directional(model.light, Color.WHITE));
+		}
+		all.addAll(model.lights);
+		return all;
+	}
+
+	/**
+	 * The same as render below, with just the two bottom corner lights
+	 * besides the model's own.
+	 */
+	public BufferedImage render(Transform orientation, Color ambientLight, Color bottomLeftLight,
+			Color bottomRightLight) {
+		return render(orientation, ambientLight, Light.cornerLights(bottomLeftLight, bottomRightLight));
+	}
+
+	/**
+	 * Renders the model rotated by the given orientation and lit by the
+	 * ambient light, the given lights and the model's own lights (see
+	 * getLights), or returns null if there is no model. The image returned is
+	 * only drawn into again by the render after next.
+	 */
+	public BufferedImage render(Transform orientation, Color ambientLight, List<Light> lights) {
+
+		if (model == null) return null;
+
+		FrameEvent frameEvent = new FrameEvent();
+		frameEvent.begin();
+		beginStages();
+
+		// Draw into the frame buffer that isn't being shown, or into the
+		// sample buffer if supersampling, which is then shrunk into it
+		FrameBuffer shown = frames[frames[0] == this.frame ? 1 : 0];
+		if (shown == null) {
+			shown = new FrameBuffer(width, height);
+			frames[frames[0] == null ? 0 : 1] = shown;
+		}
+		this.frame = shown;
+		this.orientation = orientation;
+		this.gBufferBuilt = false;
+		this.drawnAntiAliasing = antiAliasing;
+		int samples = antiAliasing.isSupersampled() ? antiAliasing.samples : 1;
+		FrameBuffer frame = shown;
+		shown.originX = canvasX;
+		shown.originY = canvasY;
+		if (samples > 1) {
+			if (sampleBuffer == null || sampleBuffer.width != width * samples
+					|| sampleBuffer.height != height * samples) {
+				sampleBuffer = new FrameBuffer(width * samples, height * samples);
+			}
+			frame = sampleBuffer;
+			// each pixel of the canvas covers a block of samples
+			frame.originX = canvasX * samples;
+			frame.originY = canvasY * samples;
+			if (polygonIds) {
+				shown.enableIds();
+			} else {
+				shown.disableIds();
+			}
+		}
+		boolean smooth = shadingMode != ShadingMode.FLAT;
+		if (smooth) {
+			getIndexedModel();
+		}
+		if (polygonIds || smooth || shadows || antiAliasing == AntiAliasMode.ADAPTIVE) {
+			frame.enableIds();
+		} else {
+			frame.disableIds();
+		}
+
+		// Initialize all pixels to be ambient color
+		// Initialize z-depth to be as large as possible
+		frame.clear(ambientLight.getRGB() & 0xffffff);
+		endStage(Stage.CLEAR, 0);
+
+		// Scale and rotate the model into the screen mesh, then centre it on
+		// the canvas, unless the screen mesh already holds it. If the model
+		// has been welded and its vertices are shared, each is only
+		// transformed once.
+		boolean transform = orientation != screenOrientation || samples != screenSamples;
+		Transform rotateAndScale = orientation.compose(Transform.newScale(scale, scale, scale));
+		if (transform) {
+			if (indexedModel != null && indexedModel.vertexCount < model.size) {
+				indexedModel.transform(rotateAndScale, screen);
+			} else {
+				model.transform(rotateAndScale, screen);
+			}
+		}
+		endStage(Stage.TRANSFORM, transform ? model.size : 0);
+		if (transform) {
+			view = Pipeline.translateMesh(screen, canvasWidth, canvasHeight).compose(rotateAndScale);
+			if (samples > 1) {
+				// Then spread it over the sample buffer, so each pixel of the
+				// canvas covers a block of samples
+				Transform spread = Transform.newScale(samples, samples, 1);
+				screen.transform(spread, screen);
+				view = spread.compose(view);
+			}
+			screenOrientation = orientation;
+			screenSamples = samples;
+		}
+		endStage(Stage.TRANSLATE, transform ? model.size : 0);
+
+		if (visible.length < screen.size) {
+			visible = new int[screen.size];
+		}
+		int visibleCount = 0;
+
+		// Only look at the polygons in boxes that reach the part of the
+		// canvas the frame shows, if there are any that don't. A pixel's
+		// worth of slack covers the rounding in translating the screen mesh
+		// separately.
+		int minX = frame.originX, minY = frame.originY;
+		int maxX = minX + frame.width - 1, maxY = minY + frame.height - 1;
+		int onCanvasCount = screen.size;
+		if (canvasCulling) {
+			if (onCanvas.length < (screen.size + 63) >> 6) {
+				onCanvas = new long[(screen.size + 63) >> 6];
+			}
+			onCanvasCount = bvh.cull(view, minX - 1, minY - 1, maxX + 1, maxY + 1, onCanvas);
+		}
+		if (onCanvasCount == screen.size) {
+			for (int p = 0; p < screen.size; p++) {
+				if (!Pipeline.isHidden(screen, p)) {
+					visible[visibleCount++] = p;
+				}
+			}
+		} else {
+			for (int w = 0; w < (screen.size + 63) >> 6; w++) {
+				long bits = onCanvas[w];
+				while (bits != 0) {
+					int p = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					if (!Pipeline.isHidden(screen, p)) {
+						visible[visibleCount++] = p;
+					}
+				}
+			}
+		}
+		endStage(Stage.CULL, screen.size);
+
+		// Colours are only worked out again if the lights have changed, or
+		// a light fixed to the view is on and the model has been rotated
+		shading.setLights(ambientLight, getLights(lights));
+		shading.setView(screen, orientation);
+		// Smooth shading is done after drawing, so the polygons are drawn
+		// with whatever colours the cache has
+		ShadingCache deferred = deferredShading && !smooth ? shading : null;
+		if (deferred == null && !smooth) {
+			for (int i = 0; i < visibleCount; i++) {
+				shading.getColor(visible[i]);
+			}
+		}
+		int[] colors = shading.getColors();
+		endStage(Stage.SHADE, visibleCount);
+
+		// Sorting after shading keeps the shading in model order, which is
+		// kinder to the caches
+		if (depthOrdering) {
+			depthSorter.sort(screen, visible, visibleCount);
+			endStage(Stage.SORT, visibleCount);
+		}
+
+		RenderStats stats = frameStats;
+		DepthPyramid pyramid = occlusionCulling ? frame.pyramid : null;
+		frame.pyramid.countPixels = stats != null;
+		if (parallel) {
+			tileRasterizer.mode = rasterMode;
+			tileRasterizer.occlusionCulling = occlusionCulling;
+			tileRasterizer.deferredShading = deferred;
+			tileRasterizer.rasterize(frame, screen, visible, visibleCount, colors, stats);
+		} else if (rasterMode == RasterMode.HALF_SPACE) {
+			rasterizeHalfSpace(frame, visibleCount, colors, pyramid, deferred, stats);
+		} else if (stats == null) {
+			for (int i = 0; i < visibleCount; i++) {
+				int p = visible[i];
+				if (pyramid != null && Pipeline.isOccluded(screen, p, edgeList, pyramid, minX, minY, maxX, maxY)) {
+					continue;
+				}
+				Pipeline.computeEdgeList(screen, p, edgeList);
+				if (deferred == null) {
+					Pipeline.computeZBuffer(frame, edgeList, colors[p], p, minX, minY, maxX, maxY, pyramid);
+				} else if (Pipeline.isAnyPixelVisible(frame, edgeList, minX, minY, maxX, maxY)) {
+					Pipeline.computeZBuffer(frame, edgeList, deferred.getColor(p), p, minX, minY, maxX, maxY,
+							pyramid);
+				}
+			}
+		} else {
+			rasterizeCounted(frame, visibleCount, colors, pyramid, deferred, stats);
+		}
+
+		endStage(Stage.RASTERIZE, visibleCount);
+
+		// Shadows are looked up in the light's depth map after drawing, and
+		// the pixels in them shaded again without the file's light
+		shadowsDrawn = shadows;
+		Lighting shadowLighting = null;
+		if (shadows) {
+			ShadowMap shadowMap = getShadowMap();
+			if (shadowMask.length < frame.pixels.length) {
+				shadowMask = new boolean[frame.pixels.length];
+			}
+			shadowMap.parallel = parallel;
+			int shadowedCount = shadowMap.resolve(frame, view, shadowMask);
+			if (shadowShading == null) {
+				shadowShading = new ShadingCache(model);
+			}
+			shadowShading.setLights(ambientLight, getLights(lights, false));
+			shadowShading.setView(screen, orientation);
+			shadowLighting = shadowShading.getLighting();
+			if (!smooth && shadowedCount > 0) {
+				int[] ids = frame.ids;
+				int[] pixels = frame.pixels;
+				for (int i = 0; i < pixels.length; i++) {
+					if (shadowMask[i]) {
+						pixels[i] = shadowShading.getColor(ids[i]);
+					}
+				}
+			}
+			endStage(Stage.SHADE, shadowedCount);
+		}
+
+		if (smooth) {
+			smoothShading.parallel = parallel;
+			smoothShading.shade(frame.ids, frame.pixels, frame.width, frame.originX, frame.originY, screen,
+					shadingMode, shading.getLighting(), shadowLighting, shadows ? shadowMask : null);
+			endStage(Stage.SHADE, visibleCount);
+		}
+
+		if (samples > 1) {
+			antiAliaser.parallel = parallel;
+			antiAliaser.downsample(frame, samples, shown);
+			endStage(Stage.RESOLVE, visibleCount);
+		} else if (antiAliasing == AntiAliasMode.ADAPTIVE) {
+			antiAliaser.parallel = parallel;
+			antiAliaser.resolveEdges(frame, screen, antiAliasing.samples);
+			endStage(Stage.RESOLVE, visibleCount);
+		}
+		endStages(frame, visibleCount);
+
+		if (frameEvent.shouldCommit()) {
+			frameEvent.scene = sceneName;
+			frameEvent.polygons = model.size;
+			frameEvent.visiblePolygons = visibleCount;
+			frameEvent.width = width;
+			frameEvent.height = height;
+			frameEvent.parallel = parallel;
+			frameEvent.commit();
+		}
+
+		return shown.getImage();
+	}
+
+	/** Starts recording a frame into the stats and events that are turned on. */
+	private void beginStages() {
+		frameStats = stats;
+		if (frameStats != null) {
+			frameStats.beginFrame();
+			frameStats.addCount(Counter.SUBMITTED, model.size);
+			stageStart = System.nanoTime();
+		}
+		if (STAGE_EVENTS.isEnabled()) {
+			stageEvent = new StageEvent();
+			stageEvent.begin();
+		}
+	}
+
+	/**
+	 * Records the end of a stage, which worked on the given number of
+	 * polygons, and starts timing the next one.
+	 */
+	private void endStage(Stage stage, int polygons) {
+		if (frameStats != null) {
+			long now = System.nanoTime();
+			frameStats.addTime(stage, now - stageStart);
+			stageStart = now;
+		}
+		if (stageEvent != null) {
+			stageEvent.end();
+			if (stageEvent.shouldCommit()) {
+				stageEvent.stage = stage.name().toLowerCase(Locale.ROOT);
+				stageEvent.scene = sceneName;
+				stageEvent.polygons = polygons;
+				stageEvent.commit();
+			}
+			stageEvent = new StageEvent();
+			stageEvent.begin();
+		}
+	}
+
+	private void endStages(FrameBuffer frame, int visibleCount) {
+		if (frameStats != null) {
+			frameStats.addCount(Counter.CULLED, model.size - visibleCount);
+			frameStats.addCount(Counter.RASTERIZED, visibleCount);
+			frameStats.addCount(Counter.SHADED, shading.getUsedCount());
+			// The drawing loops count every pixel polygons cover as tested,
+			// so take off the ones the depth pyramid skipped
+			long occludedPixels = frame.pyramid.getOccludedPixels();
+			frameStats.addCount(Counter.OCCLUDED, frame.pyramid.getOccludedPolygons());
+			frameStats.addCount(Counter.PIXELS_OCCLUDED, occludedPixels);
+			frameStats.addCount(Counter.PIXELS_TESTED, -occludedPixels);
+			frameStats.addCount(Counter.PIXELS_COVERED, countCovered(frame));
+			frameStats.endFrame();
+			frameStats = null;
+		}
+		stageEvent = null;
+	}
+
+	/**
+	 * The serial drawing loop, timing each stage and counting pixels. If
+	 * deferred isn't null, polygons are only shaded, from it, once they are
+	 * known to have a pixel that passes the depth test.
+	 */
+	private void rasterizeCounted(FrameBuffer frame, int visibleCount, int[] colors, DepthPyramid pyramid,
+			ShadingCache deferred, RenderStats stats) {
+		long edgeListNanos = 0;
+		long zBufferNanos = 0;
+		long tested = 0;
+		long written = 0;
+		int minX = frame.originX;
+		int minY = frame.originY;
+		int maxX = minX + frame.width - 1;
+		int maxY = minY + frame.height - 1;
+		for (int i = 0; i < visibleCount; i++) {
+			int p = visible[i];
+			if (pyramid != null && Pipeline.isOccluded(screen, p, edgeList, pyramid, minX, minY, maxX, maxY)) {
+				// the pixels it would have tested, which are taken off again
+				// as occluded ones
+				tested += Pipeline.countPixels(edgeList, minX, minY, maxX, maxY);
+				continue;
+			}
+			long start = System.nanoTime();
+			Pipeline.computeEdgeList(screen, p, edgeList);
+			long edgeListDone = System.nanoTime();
+			if (deferred == null) {
+				written += Pipeline.computeZBuffer(frame, edgeList, colors[p], p, minX, minY, maxX, maxY, pyramid);
+			} else if (Pipeline.isAnyPixelVisible(frame, edgeList, minX, minY, maxX, maxY)) {
+				written += Pipeline.computeZBuffer(frame, edgeList, deferred.getColor(p), p, minX, minY, maxX, maxY,
+						pyramid);
+			}
+			zBufferNanos += System.nanoTime() - edgeListDone;
+			edgeListNanos += edgeListDone - start;
+			tested += Pipeline.countPixels(edgeList, minX, minY, maxX, maxY);
+		}
+		stats.addTime(Stage.EDGE_LIST, edgeListNanos);
+		stats.addTime(Stage.Z_BUFFER, zBufferNanos);
+		stats.addCount(Counter.PIXELS_TESTED, tested);
+		stats.addCount(Counter.PIXELS_WRITTEN, written);
+	}
+
+	/**
+	 * The serial drawing loop for the half-space rasterizer, which has no edge
+	 * lists, so all of its time counts as z-buffer time.
+	 */
+	private void rasterizeHalfSpace(FrameBuffer frame, int visibleCount, int[] colors, DepthPyramid pyramid,
+			ShadingCache deferred, RenderStats stats) {
+		int minX = frame.originX;
+		int minY = frame.originY;
+		int maxX = minX + frame.width - 1;
+		int maxY = minY + frame.height - 1;
+		if (stats == null) {
+			for (int i = 0; i < visibleCount; i++) {
+				int p = visible[i];
+				if (deferred == null) {
+					HalfSpaceRasterizer.draw(frame, screen, p, colors[p], minX, minY, maxX, maxY, pyramid);
+				} else if (HalfSpaceRasterizer.isAnyPixelVisible(frame, screen, p, minX, minY, maxX, maxY, pyramid)) {
+					HalfSpaceRasterizer.draw(frame, screen, p, deferred.getColor(p), minX, minY, maxX, maxY, pyramid);
+				}
+			}
+			return;
+		}
+		long zBufferNanos = 0;
+		long tested = 0;
+		long written = 0;
+		for (int i = 0; i < visibleCount; i++) {
+			int p = visible[i];
+			long start = System.nanoTime();
+			if (deferred == null) {
+				written += HalfSpaceRasterizer.draw(frame, screen, p, colors[p], minX, minY, maxX, maxY, pyramid);
+			} else if (HalfSpaceRasterizer.isAnyPixelVisible(frame, screen, p, minX, minY, maxX, maxY, pyramid)) {
+				written += HalfSpaceRasterizer.draw(frame, screen, p, deferred.getColor(p), minX, minY, maxX, maxY,
+						pyramid);
+			}
+			zBufferNanos += System.nanoTime() - start;
+			tested += HalfSpaceRasterizer.countPixels(screen, p, minX, minY, maxX, maxY);
+		}
+		stats.addTime(Stage.Z_BUFFER, zBufferNanos);
+		stats.addCount(Counter.PIXELS_TESTED, tested);
+		stats.addCount(Counter.PIXELS_WRITTEN, written);
+	}
+
+	private static int countCovered(FrameBuffer frame) {
+		int covered = 0;
+		for (float z : frame.depth) {
+			if (z != FrameBuffer.FAR) {
+				covered++;
+			}
+		}
+		return covered;
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,213 @@
+package renderer;
+
+import java.awt.Color;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Remembers the shaded colour of every polygon of a model between frames.
+ *
+ * Polygons are shaded in model space, with the lights turned into model space
+ * once per frame by a Lighting. Lights given in model space, like the one read
+ * in from the file, turn with the model, so the angle between them and a
+ * polygon never changes as the model is rotated, and as long as every light
+ * that is on is one of those a polygon's colour only has to be worked out
+ * again when the lights change. A light fixed to the view, like the bottom
+ * corner lights, lands somewhere else in model space every time the model is
+ * turned, so while one of them is on every new orientation also needs new
+ * colours.
+ *
+ * Colours are worked out lazily, the first time a polygon is asked for, so
+ * polygons that are never visible are never shaded.
+ */
+public class ShadingCache {
+
+	// Reads and writes stamps with acquire and release ordering, for
+	// getColorConcurrent.
+	private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private final Mesh model;
+
+	private final int[] colors;
+
+	// A polygon's colour is up to date if its stamp equals generation.
+	private final int[] stamps;
+	private int generation = 1;
+
+	// A polygon has been asked for since the last setView if its entry in
+	// used equals view, and usedCount counts them.
+	private final int[] used;
+	private int view = 1;
+	private int usedCount = 0;
+
+	// The lights as last set, and made ready for the current view.
+	private Color ambientLight = Color.BLACK;
+	private List<Light> lights = new ArrayList<Light>();
+	private Lighting lighting = null;
+	private Transform orientation = null;
+
+	// Room for the light falling on one polygon.
+	private final float[] light = new float[3];
+
+	public ShadingCache(Mesh model) {
+		this.model = model;
+		this.colors = new int[model.size];
+		this.stamps = new int[model.size];
+		this.used = new int[model.size];
+		this.lights.add(Light.directional(model.light, Color.WHITE));
+	}
+
+	/** Forgets every colour worked out so far. */
+	public void invalidate() {
+		generation++;
+	}
+
+	/**
+	 * Sets the ambient light and the lights the next colours are for. The
+	 * list should include the file's light, and is copied, so it can be
+	 * changed afterwards. Every colour worked out so far is forgotten if the
+	 * lights turn out to be different.
+	 */
+	public void setLights(Color ambientLight, List<Light> lights) {
+		this.ambientLight = ambientLight;
+		this.lights = new ArrayList<Light>(lights);
+		if (orientation != null) {
+			updateLighting();
+		}
+	}
+
+	/**
+	 * The same as setLights above, for the file's light with the given
+	 * colour, and the two bottom corner lights.
+	 */
+	public void setLights(Color lightColor, Color ambientLight, Color bottomLeftLight, Color bottomRightLight) {
+		List<Light> lights = Light.cornerLights(bottomLeftLight, bottomRightLight);
+		lights.add(Light.directional(model.light, lightColor));
+		setLights(ambientLight, lights);
+	}
+
+	/**
+	 * Sets the view the next colours are for. The screen mesh must be the
+	 * model transformed by the given orientation (plus any scale and
+	 * translation).
+	 */
+	public void setView(Mesh screen, Transform orientation) {
+		this.orientation = orientation;
+		updateLighting();
+		view++;
+		usedCount = 0;
+	}
+
+	/** Turns the lights into model space for the current orientation. */
+	private void updateLighting() {
+		Lighting lighting = new Lighting(ambientLight, lights, orientation);
+		if (!lighting.sameAs(this.lighting)) {
+			this.lighting = lighting;
+			invalidate();
+		}
+	}
+
+	/** Returns the lights made ready for the current view by setView. */
+	public Lighting getLighting() {
+		return lighting;
+	}
+
+	/** Returns the packed RGB colour of polygon p. */
+	public int getColor(int p) {
+		if (used[p] != view) {
+			used[p] = view;
+			usedCount++;
+		}
+		if (stamps[p] != generation) {
+			colors[p] = shade(p, light);
+			stamps[p] = generation;
+		}
+		return colors[p];
+	}
+
+	/**
+	 * The same as getColor, but safe to call from several threads at once, as
+	 * the TileRasterizer does when it shades polygons as it draws them.
+	 * Nothing is locked: a polygon always shades to the same colour, so two
+	 * threads shading it at once just write the same value, and its stamp is
+	 * only written once its colour is. Each thread gives its own room for the
+	 * light falling on a polygon, three floats. The polygons asked for are
+	 * marked but not counted, so countUsed must be called once the threads
+	 * are done.
+	 */
+	public int getColorConcurrent(int p, float[] light) {
+		used[p] = view;
+		if ((int) STAMPS.getAcquire(stamps, p) == generation) {
+			return colors[p];
+		}
+		int color = shade(p, light);
+		colors[p] = color;
+		STAMPS.setRelease(stamps, p, generation);
+		return color;
+	}
+
+	/**
+	 * Sets the used count to the number of the given polygons whose colour
+	 * has been asked for since the last setView, which must include all of
+	 * those asked for.
+	 */
+	public void countUsed(int[] polys, int count) {
+		int counted = 0;
+		for (int i = 0; i < count; i++) {
+			if (used[polys[i]] == view) {
+				counted++;
+			}
+		}
+		usedCount = counted;
+	}
+
+	/**
+	 * Returns the number of different polygons whose colour has been asked for
+	 * since the last setView, whether or not it had to be worked out again.
+	 */
+	public int getUsedCount() {
+		return usedCount;
+	}
+
+	/**
+	 * Returns the array of colours, indexed by polygon. Only the entries
+	 * returned by getColor since the last change are up to date.
+	 */
+	public int[] getColors() {
+		return colors;
+	}
+
+	private int shade(int p, float[] light) {
+		int v = p * 3;
+		float[] xs = model.xs, ys = model.ys, zs = model.zs;
+		float e1x = xs[v + 1] - xs[v];
+		float e1y = ys[v + 1] - ys[v];
+		float e1z = zs[v + 1] - zs[v];
+		float e2x = xs[v + 2] - xs[v + 1];
+		float e2y = ys[v + 2] - ys[v + 1];
+		float e2z = zs[v + 2] - zs[v + 1];
+		float nx = e1y * e2z - e1z * e2y;
+		float ny = e1z * e2x - e1x * e2z;
+		float nz = e1x * e2y - e1y * e2x;
+		float mag = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+		if (mag > 0) {
+			nx /= mag;
+			ny /= mag;
+			nz /= mag;
+		} else {
+			// Vector3D.unitVector treats a zero normal as (1, 0, 0)
+			nx = 1;
+			ny = 0;
+			nz = 0;
+		}
+		// Point lights shine on the middle of the polygon
+		float third = 1 / 3f;
+		lighting.sum(nx, ny, nz, (xs[v] + xs[v + 1] + xs[v + 2]) * third, (ys[v] + ys[v + 1] + ys[v + 2]) * third,
+				(zs[v] + zs[v + 1] + zs[v + 2]) * third, light, 0);
+		return Lighting.colour(light, 0, model.reflectance[p]);
+	}
+}
+
+// code for comp261 assignments
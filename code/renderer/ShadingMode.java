@@ -0,0 +1,22 @@
+package renderer;
+
+/** The ways the renderer can colour in polygons. */
+public enum ShadingMode {
+
+	/** One colour per polygon, from its own normal. */
+	FLAT,
+
+	/**
+	 * A colour per vertex, from the vertex normals of the IndexedMesh, blended
+	 * across each polygon.
+	 */
+	GOURAUD,
+
+	/**
+	 * The vertex normals blended across each polygon, and a colour worked out
+	 * for every pixel from the blended normal.
+	 */
+	PHONG
+}
+
+// code for comp261 assignments
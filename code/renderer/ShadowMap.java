@@ -0,0 +1,210 @@
+package renderer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The depth of the model as seen from the file's light, for working out
+ * which pixels of a frame the light can't reach.
+ *
+ * The model is turned so the light shines straight down the z axis, scaled to
+ * fit a square depth buffer, and drawn into it with computeEdgeList and
+ * computeZBuffer just as a frame is, so each texel holds the depth of the
+ * surface nearest the light. A point is in shadow if it is further from the
+ * light than the depth stored where it lands, by more than a small bias that
+ * stops surfaces shadowing themselves through rounding.
+ *
+ * The file's light turns with the model, so the map is in model space and
+ * only has to be drawn again when the model or its light changes. Each frame
+ * just looks its pixels up in it: resolve turns every pixel drawn back into
+ * model space from its depth, then into the map, in bands of rows on the
+ * pool.
+ */
+public class ShadowMap {
+
+	/** The width and height of the map, in texels. */
+	public static final int DEFAULT_SIZE = 1024;
+
+	/** How much further than the map's depth a point must be to be shadowed, in texels. */
+	public static final float BIAS = 2;
+
+	/** Rows of pixels per task when resolving in parallel. */
+	private static final int BAND_HEIGHT = 32;
+
+	public final int size;
+
+	/** The model the map was drawn from, and its light at the time. */
+	public final Mesh model;
+	public final Vector3D light;
+
+	/** Turns model space into the map's texels and depths. */
+	public final Transform toMap;
+
+	/** The depth of the nearest surface to the light at each texel. */
+	private final FrameBuffer depths;
+
+	/** Model units per texel. */
+	private final float texelSize;
+
+	/**
+	 * If true, resolving is split into bands of rows on the pool, otherwise it
+	 * is all done on the calling thread.
+	 */
+	public boolean parallel = true;
+
+	private final ForkJoinPool pool;
+
+	/** Draws the map for the model's light, at the default size. */
+	public ShadowMap(Mesh model) {
+		this(model, DEFAULT_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/** Draws the map for the model's light, size texels across. */
+	public ShadowMap(Mesh model, int size, ForkJoinPool pool) {
+		this.model = model;
+		this.light = model.light;
+		this.size = size;
+		this.pool = pool;
+
+		// Look along the light, so nearer the light is smaller z as on screen
+		Vector3D z = new Vector3D(-light.x, -light.y, -light.z).unitVector();
+		Vector3D other = Math.abs(z.x) < 0.9f ? new Vector3D(1, 0, 0) : new Vector3D(0, 1, 0);
+		Vector3D x = other.crossProduct(z).unitVector();
+		Vector3D y = z.crossProduct(x);
+		Transform rotation = Transform.newBasis(x, y, z);
+
+		Mesh turned = new Mesh(model.size);
+		model.transform(rotation, turned);
+		float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+		float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+		for (int v = 0; v < model.size * 3; v++) {
+			minX = Math.min(minX, turned.xs[v]);
+			maxX = Math.max(maxX, turned.xs[v]);
+			minY = Math.min(minY, turned.ys[v]);
+			maxY = Math.max(maxY, turned.ys[v]);
+			minZ = Math.min(minZ, turned.zs[v]);
+		}
+		// One texel of margin all round, and depths from 0 up
+		float extent = Math.max(Math.max(maxX - minX, maxY - minY), Float.MIN_NORMAL);
+		float scale = (size - 3) / extent;
+		this.texelSize = 1 / scale;
+		this.toMap = Transform.newTranslation(1 - minX * scale, 1 - minY * scale, -minZ * scale)
+				.compose(Transform.newScale(scale, scale, scale)).compose(rotation);
+
+		model.transform(toMap, turned);
+		this.depths = new FrameBuffer(size, size);
+		depths.clear(0);
+		EdgeList edgeList = Pipeline.getEdgeList();
+		for (int p = 0; p < turned.size; p++) {
+			Pipeline.computeEdgeList(turned, p, edgeList);
+			Pipeline.computeZBuffer(depths, edgeList, 0, 0, 0, size - 1, size - 1);
+		}
+	}
+
+	/** Returns true if the map is still right for the given model. */
+	public boolean isFor(Mesh model) {
+		return model == this.model && model.light.equals(light);
+	}
+
+	/** Returns the size of a texel of the map, in model units. */
+	public float getTexelSize() {
+		return texelSize;
+	}
+
+	/**
+	 * Returns true if the point with the given texel coordinates and depth,
+	 * as given by toMap, is further from the light than the map's depth there
+	 * by more than the bias. Points off the map are never in shadow.
+	 */
+	public boolean isShadowed(float x, float y, float z, float bias) {
+		int tx = Math.round(x);
+		int ty = Math.round(y);
+		if (tx < 0 || ty < 0 || tx >= size || ty >= size) {
+			return false;
+		}
+		return z > depths.depth[ty * size + tx] + bias;
+	}
+
+	/**
+	 * Works out which pixels of a frame are shadowed from the file's light,
+	 * and sets their entries in shadowed (and clears the rest). The frame
+	 * must have polygon ids, and view is the transform the model was drawn
+	 * with. Returns the number of pixels shadowed.
+	 */
+	public int resolve(FrameBuffer frame, Transform view, boolean[] shadowed) {
+		Transform screenToMap = toMap.compose(view.inverse());
+		// A pixel's depth is rounded down to a whole screen unit, so allow
+		// for that as well, in texels
+		Vector3D unit = screenToMap.multiply(new Vector3D(0, 0, 1))
+				.minus(screenToMap.multiply(new Vector3D(0, 0, 0)));
+		float bias = BIAS + unit.mag;
+		Band band = new Band(frame, screenToMap, bias, shadowed, 0, frame.height);
+		return !parallel || frame.height <= BAND_HEIGHT ? band.compute() : pool.invoke(band);
+	}
+
+	/** Resolves rows [from, to), splitting itself while taller than BAND_HEIGHT. */
+	@SuppressWarnings("serial")
+	private class Band extends RecursiveTask<Integer> {
+
+		private final FrameBuffer frame;
+		private final Transform screenToMap;
+		private final float bias;
+		private final boolean[] shadowed;
+		private final int from;
+		private final int to;
+
+		Band(FrameBuffer frame, Transform screenToMap, float bias, boolean[] shadowed, int from, int to) {
+			this.frame = frame;
+			this.screenToMap = screenToMap;
+			this.bias = bias;
+			this.shadowed = shadowed;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (parallel && to - from > BAND_HEIGHT) {
+				int mid = (from + to) >>> 1;
+				Band top = new Band(frame, screenToMap, bias, shadowed, from, mid);
+				top.fork();
+				int bottom = new Band(frame, screenToMap, bias, shadowed, mid, to).compute();
+				return bottom + top.join();
+			}
+			return resolveRows(frame, screenToMap, bias, shadowed, from, to);
+		}
+	}
+
+	private int resolveRows(FrameBuffer frame, Transform m, float bias, boolean[] shadowed, int fromRow,
+			int toRow) {
+		float m00 = m.get(0, 0), m01 = m.get(0, 1), m02 = m.get(0, 2), m03 = m.get(0, 3);
+		float m10 = m.get(1, 0), m11 = m.get(1, 1), m12 = m.get(1, 2), m13 = m.get(1, 3);
+		float m20 = m.get(2, 0), m21 = m.get(2, 1), m22 = m.get(2, 2), m23 = m.get(2, 3);
+		int[] ids = frame.ids;
+		float[] depth = frame.depth;
+		int width = frame.width;
+		int count = 0;
+		for (int y = fromRow; y < toRow; y++) {
+			// the pixel's position on the canvas
+			float sy = y + frame.originY;
+			for (int x = 0; x < width; x++) {
+				int i = y * width + x;
+				if (ids[i] == FrameBuffer.NO_POLYGON) {
+					shadowed[i] = false;
+					continue;
+				}
+				float sx = x + frame.originX;
+				float z = depth[i];
+				boolean inShadow = isShadowed(m03 + m00 * sx + m01 * sy + m02 * z,
+						m13 + m10 * sx + m11 * sy + m12 * z, m23 + m20 * sx + m21 * sy + m22 * z, bias);
+				shadowed[i] = inShadow;
+				if (inShadow) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+}
+
+// code for comp261 assignments
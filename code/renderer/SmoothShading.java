@@ -0,0 +1,340 @@
+package renderer;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Gouraud and Phong shading, worked out for every pixel of a frame once its
+ * polygons have been drawn with polygon ids on.
+ *
+ * Each pixel is given its position within the polygon drawn there, as
+ * weights on the polygon's three corners (barycentric coordinates). On a
+ * flat screen-space triangle these are exactly what interpolating from the
+ * edges along each row gives, so this is the same as blending along the
+ * edge list spans, but works the same whichever rasterizer drew the frame,
+ * draws each pixel once however many polygons were drawn over it, and can be
+ * run again on the same ids when only the lights change.
+ *
+ * For Gouraud shading the weights blend the light falling on the corners'
+ * vertices, which is worked out once per vertex rather than once per polygon
+ * corner, and the blend is then coloured by the polygon's reflectance, so
+ * polygons of different colours can share a vertex. For Phong shading the
+ * weights blend the vertex normals, and each pixel is shaded from its own
+ * normal.
+ *
+ * The lights are turned into model space once per frame by a Lighting, so
+ * vertex normals never need to be transformed. Point lights shine on each
+ * vertex for Gouraud shading, and on each pixel's own position, blended from
+ * the corners' in the same way as the normal, for Phong shading. Like the
+ * ShadingCache, the vertex lights are only worked out again when the
+ * lighting changes, which includes turning the model while a light fixed to
+ * the view is on.
+ *
+ * The rows of the frame, and the vertices, are split into bands on the pool.
+ */
+public class SmoothShading {
+
+	/** Rows of pixels per task when shading in parallel. */
+	private static final int BAND_HEIGHT = 32;
+
+	/** Vertices per task when working out the vertex lights in parallel. */
+	private static final int MIN_VERTICES = 16384;
+
+	private final IndexedMesh indexed;
+	private final ForkJoinPool pool;
+
+	/**
+	 * If true, the work is split into bands on the pool, otherwise it is all
+	 * done on the calling thread. Both give the same image.
+	 */
+	public boolean parallel = true;
+
+	/**
+	 * The red, green and blue light falling on each vertex, from 0 to 1 (or
+	 * more), for Gouraud shading. Vertex v's are at 3v, 3v + 1 and 3v + 2.
+	 */
+	private final float[] vertexLights;
+	private boolean vertexLightsValid = false;
+
+	// The lighting the vertex lights, and the current frame, are for.
+	private Lighting lighting;
+
+	// The same for pixels in shadow, if there are any.
+	private float[] shadowVertexLights = null;
+	private boolean shadowVertexLightsValid = false;
+	private Lighting shadowLighting;
+	private boolean[] shadowed;
+
+	public SmoothShading(IndexedMesh indexed) {
+		this(indexed, ForkJoinPool.commonPool());
+	}
+
+	public SmoothShading(IndexedMesh indexed, ForkJoinPool pool) {
+		this.indexed = indexed;
+		this.pool = pool;
+		this.vertexLights = new float[indexed.vertexCount * 3];
+	}
+
+	public IndexedMesh getIndexedMesh() {
+		return indexed;
+	}
+
+	/**
+	 * Colours every pixel given a polygon by the ids, writing into pixels, and
+	 * gives the rest the ambient light. The ids and pixels are rows of the
+	 * given width, the screen mesh is the one the polygons were drawn from, and
+	 * the lighting must be made for the orientation it was drawn with.
+	 */
+	public void shade(int[] ids, int[] pixels, int width, Mesh screen, ShadingMode mode, Lighting lighting) {
+		shade(ids, pixels, width, screen, mode, lighting, null, null);
+	}
+
+	/**
+	 * The same as shade above, but pixels set in shadowed (if it isn't null)
+	 * are lit by shadowLighting instead, which leaves out the light they are
+	 * shadowed from.
+	 */
+	public void shade(int[] ids, int[] pixels, int width, Mesh screen, ShadingMode mode, Lighting lighting,
+			Lighting shadowLighting, boolean[] shadowed) {
+		shade(ids, pixels, width, 0, 0, screen, mode, lighting, shadowLighting, shadowed);
+	}
+
+	/**
+	 * The same as shade above, for rows that start at (left, top) on the
+	 * canvas the screen mesh was drawn on, such as those of a frame showing
+	 * part of it.
+	 */
+	public void shade(int[] ids, int[] pixels, int width, int left, int top, Mesh screen, ShadingMode mode,
+			Lighting lighting, Lighting shadowLighting, boolean[] shadowed) {
+		if (mode == ShadingMode.FLAT) {
+			throw new IllegalArgumentException("flat shading is done by the ShadingCache");
+		}
+		if (!lighting.sameAs(this.lighting)) {
+			vertexLightsValid = false;
+		}
+		this.lighting = lighting;
+		this.shadowed = shadowed;
+		if (shadowed != null) {
+			if (!shadowLighting.sameAs(this.shadowLighting)) {
+				shadowVertexLightsValid = false;
+			}
+			this.shadowLighting = shadowLighting;
+		}
+		if (mode == ShadingMode.GOURAUD && !vertexLightsValid) {
+			shadeVertices(lighting, vertexLights);
+			vertexLightsValid = true;
+		}
+		if (mode == ShadingMode.GOURAUD && shadowed != null && !shadowVertexLightsValid) {
+			if (shadowVertexLights == null) {
+				shadowVertexLights = new float[vertexLights.length];
+			}
+			shadeVertices(shadowLighting, shadowVertexLights);
+			shadowVertexLightsValid = true;
+		}
+		int height = ids.length / width;
+		PixelTask task = new PixelTask(ids, pixels, width, left, top, screen, mode, 0, height);
+		if (!parallel || height <= BAND_HEIGHT) {
+			task.compute();
+		} else {
+			pool.invoke(task);
+		}
+	}
+
+	/** Works out the light falling on every vertex, split across the pool. */
+	private void shadeVertices(Lighting lighting, float[] lights) {
+		int chunks = parallel ? Math.max(1, Math.min(pool.getParallelism(), indexed.vertexCount / MIN_VERTICES))
+				: 1;
+		if (chunks == 1) {
+			shadeVertices(lighting, lights, 0, indexed.vertexCount);
+		} else {
+			pool.invoke(new VertexTask(lighting, lights, 0, indexed.vertexCount, indexed.vertexCount / chunks + 1));
+		}
+	}
+
+	/** Works out the light falling on vertices [from, to). */
+	private void shadeVertices(Lighting lighting, float[] lights, int from, int to) {
+		for (int v = from; v < to; v++) {
+			lighting.sum(indexed.normalXs[v], indexed.normalYs[v], indexed.normalZs[v], indexed.xs[v],
+					indexed.ys[v], indexed.zs[v], lights, v * 3);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private class VertexTask extends RecursiveAction {
+		private final Lighting lighting;
+		private final float[] lights;
+		private final int from;
+		private final int to;
+		private final int chunk;
+
+		VertexTask(Lighting lighting, float[] lights, int from, int to, int chunk) {
+			this.lighting = lighting;
+			this.lights = lights;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > chunk) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new VertexTask(lighting, lights, from, mid, chunk),
+						new VertexTask(lighting, lights, mid, to, chunk));
+			} else {
+				shadeVertices(lighting, lights, from, to);
+			}
+		}
+	}
+
+	/** Shades rows [from, to), splitting itself while it is taller than BAND_HEIGHT. */
+	@SuppressWarnings("serial")
+	private class PixelTask extends RecursiveAction {
+		private final int[] ids;
+		private final int[] pixels;
+		private final int width;
+		private final int left;
+		private final int top;
+		private final Mesh screen;
+		private final ShadingMode mode;
+		private final int from;
+		private final int to;
+
+		PixelTask(int[] ids, int[] pixels, int width, int left, int top, Mesh screen, ShadingMode mode, int from,
+				int to) {
+			this.ids = ids;
+			this.pixels = pixels;
+			this.width = width;
+			this.left = left;
+			this.top = top;
+			this.screen = screen;
+			this.mode = mode;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (parallel && to - from > BAND_HEIGHT) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new PixelTask(ids, pixels, width, left, top, screen, mode, from, mid),
+						new PixelTask(ids, pixels, width, left, top, screen, mode, mid, to));
+			} else {
+				shadeRows(ids, pixels, width, left, top, screen, mode == ShadingMode.PHONG, from, to);
+			}
+		}
+	}
+
+	private void shadeRows(int[] ids, int[] pixels, int width, int left, int top, Mesh screen, boolean phong,
+			int fromRow, int toRow) {
+		Lighting lit = this.lighting, unlit = this.shadowLighting;
+		boolean[] shadowed = this.shadowed;
+		int ambient = lit.ambientLight.getRGB() & 0xffffff;
+		boolean pointLights = lit.hasPointLights || (shadowed != null && unlit.hasPointLights);
+		int[] indices = indexed.indices;
+		float[] xs = screen.xs, ys = screen.ys;
+		float[] nxs = indexed.normalXs, nys = indexed.normalYs, nzs = indexed.normalZs;
+		float[] vxs = indexed.xs, vys = indexed.ys, vzs = indexed.zs;
+		float[] light = new float[3];
+
+		float[] litVertices = vertexLights, unlitVertices = shadowVertexLights;
+
+		// The polygon of the last pixel, and what was worked out for it
+		int last = FrameBuffer.NO_POLYGON;
+		float originX = 0, originY = 0, bcY = 0, cbX = 0, caY = 0, acX = 0, inverseArea = 0;
+		int va = 0, vb = 0, vc = 0, reflectance = 0;
+
+		for (int y = fromRow; y < toRow; y++) {
+			int row = y * width;
+			float centreY = y + top + 0.5f;
+			for (int x = 0; x < width; x++) {
+				int p = ids[row + x];
+				if (p == FrameBuffer.NO_POLYGON) {
+					pixels[row + x] = ambient;
+					continue;
+				}
+				if (p != last) {
+					int c = p * 3;
+					float ax = xs[c], ay = ys[c];
+					float bx = xs[c + 1], by = ys[c + 1];
+					float cx = xs[c + 2], cy = ys[c + 2];
+					bcY = by - cy;
+					cbX = cx - bx;
+					caY = cy - ay;
+					acX = ax - cx;
+					float area = bcY * acX + cbX * (ay - cy);
+					inverseArea = area == 0 ? 0 : 1 / area;
+					// the weights are worked out from the third corner
+					originX = cx;
+					originY = cy;
+					va = indices[c];
+					vb = indices[c + 1];
+					vc = indices[c + 2];
+					reflectance = screen.reflectance[p];
+					last = p;
+				}
+
+				// The weights of the three corners at the pixel's centre,
+				// kept inside the polygon for pixels just outside its edges
+				float dx = x + left + 0.5f - originX, dy = centreY - originY;
+				float wa, wb, wc;
+				if (inverseArea == 0) {
+					wa = wb = wc = 1 / 3f;
+				} else {
+					wa = (bcY * dx + cbX * dy) * inverseArea;
+					wb = (caY * dx + acX * dy) * inverseArea;
+					wc = 1 - wa - wb;
+					if (wa < 0 || wb < 0 || wc < 0) {
+						wa = Math.max(wa, 0);
+						wb = Math.max(wb, 0);
+						wc = Math.max(wc, 0);
+						float sum = wa + wb + wc;
+						wa /= sum;
+						wb /= sum;
+						wc /= sum;
+					}
+				}
+
+				boolean inShadow = shadowed != null && shadowed[row + x];
+				if (phong) {
+					Lighting lighting = inShadow ? unlit : lit;
+					float nx = wa * nxs[va] + wb * nxs[vb] + wc * nxs[vc];
+					float ny = wa * nys[va] + wb * nys[vb] + wc * nys[vc];
+					float nz = wa * nzs[va] + wb * nzs[vb] + wc * nzs[vc];
+					float mag = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+					if (mag > 0) {
+						nx /= mag;
+						ny /= mag;
+						nz /= mag;
+					} else {
+						nx = 1;
+					}
+					float px = 0, py = 0, pz = 0;
+					if (pointLights) {
+						px = wa * vxs[va] + wb * vxs[vb] + wc * vxs[vc];
+						py = wa * vys[va] + wb * vys[vb] + wc * vys[vc];
+						pz = wa * vzs[va] + wb * vzs[vb] + wc * vzs[vc];
+					}
+					lighting.sum(nx, ny, nz, px, py, pz, light, 0);
+					pixels[row + x] = Lighting.colour(light, 0, reflectance);
+				} else {
+					float[] lights = inShadow ? unlitVertices : litVertices;
+					int r = colour(lights, va * 3, vb * 3, vc * 3, wa, wb, wc, (reflectance >> 16) & 0xff);
+					int g = colour(lights, va * 3 + 1, vb * 3 + 1, vc * 3 + 1, wa, wb, wc, (reflectance >> 8) & 0xff);
+					int b = colour(lights, va * 3 + 2, vb * 3 + 2, vc * 3 + 2, wa, wb, wc, reflectance & 0xff);
+					pixels[row + x] = (r << 16) | (g << 8) | b;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Blends one channel of the light at three vertices, and colours it by
+	 * that channel of the reflectance.
+	 */
+	private static int colour(float[] lights, int a, int b, int c, float wa, float wb, float wc, int reflectance) {
+		return Lighting.channel(lights[a] * wa + lights[b] * wb + lights[c] * wc, reflectance);
+	}
+}
+
+// code for comp261 assignments
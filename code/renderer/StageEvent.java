@@ -0,0 +1,36 @@
+package renderer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Flight Recorder event covering one stage of a frame, named as in
+ * RenderStats.Stage. Edge lists and the z-buffer are done polygon by
+ * polygon, so they are recorded together as the rasterize stage. Off unless
+ * turned on, see FrameEvent.
+ */
+@Name("renderer.Stage")
+@Label("Pipeline Stage")
+@Category("Renderer")
+@Description("One stage of a frame drawn by the renderer")
+@Enabled(false)
+@StackTrace(false)
+public class StageEvent extends Event {
+
+	@Label("Stage")
+	public String stage;
+
+	@Label("Scene")
+	public String scene;
+
+	@Label("Polygons")
+	@Description("Polygons the stage worked on")
+	public int polygons;
+}
+
+// code for comp261 assignments
@@ -0,0 +1,553 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the text scene format straight from the bytes of the file into a
+ * Mesh, without making a String, String[] or boxed number per line. Numbers
+ * are read by hand, giving exactly the same float as Float.parseFloat.
+ *
+ * The first line of a scene holds the light direction, and every line after
+ * that holds one polygon: the x, y and z of its three vertices and then its
+ * red, green and blue reflectance, separated by spaces. Blank lines are
+ * skipped. Anything wrong is reported as a SceneFormatException with the line
+ * number.
+ *
+ * Any line after the first can hold another light instead of a polygon (see
+ * Light), as one of
+ *
+ * <pre>
+ * directional x y z r g b
+ * point x y z r g b constant linear quadratic
+ * </pre>
+ *
+ * where x, y and z are the direction the light comes from or the position of
+ * the light, in model space, and r, g and b its colour from 0 to 255.
+ *
+ * If the mesh has a sourceLines array, the line number of each polygon is
+ * recorded in it, so a polygon picked on screen can be traced back to the
+ * file. The whole-file parse methods always record them.
+ */
+public class TextSceneParser {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/** Files smaller than this are always parsed on one thread. */
+	public static final long PARALLEL_THRESHOLD = 16 << 20;
+
+	/** Powers of ten that a double holds exactly. */
+	private static final double[] POWERS_OF_TEN = new double[23];
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final Mesh mesh;
+	private boolean needLight;
+	private long line;
+
+	// The bytes being parsed, and how far through the current line we are.
+	private byte[] data;
+	private int pos;
+	private int end;
+	private int valuesOnLine;
+
+	private final float[] points = new float[9];
+	private byte[] token = new byte[64];
+
+	/**
+	 * @param mesh
+	 *            The mesh to add the polygons to.
+	 * @param readLight
+	 *            Whether the first line is the light direction.
+	 * @param firstLine
+	 *            The line number of the first line, used in error messages.
+	 */
+	public TextSceneParser(Mesh mesh, boolean readLight, long firstLine) {
+		this.mesh = mesh;
+		this.needLight = readLight;
+		this.line = firstLine;
+	}
+
+	/** Parses a whole text scene file on the current thread. */
+	public static Mesh parse(File file) throws IOException {
+		return parse(file, 1);
+	}
+
+	/**
+	 * Parses a whole text scene file, using up to the given number of threads
+	 * for files bigger than PARALLEL_THRESHOLD. The file is split into chunks
+	 * at line boundaries, each chunk is parsed into its own Mesh at the same
+	 * time, and the chunks are then joined back together in file order. The
+	 * result is exactly the same as parsing the file on one thread, including
+	 * the order of the polygons and the line numbers in any error.
+	 */
+	public static Mesh parse(File file, int threads) throws IOException {
+		return parse(file, threads, PARALLEL_THRESHOLD);
+	}
+
+	/**
+	 * The same as parse(File, int), but with the size above which files are
+	 * split given explicitly.
+	 */
+	public static Mesh parse(File file, int threads, long threshold) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (threads <= 1 || size < threshold) {
+				return parseChunk(channel, 0, size, true).finished();
+			}
+
+			long[] bounds = splitAtLines(channel, threads);
+			int chunks = bounds.length - 1;
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks));
+			try {
+				List<Future<TextSceneParser>> results = new ArrayList<Future<TextSceneParser>>();
+				for (int i = 0; i < chunks; i++) {
+					final long from = bounds[i];
+					final long to = bounds[i + 1];
+					final boolean first = i == 0;
+					results.add(executor.submit(new Callable<TextSceneParser>() {
+						@Override
+						public TextSceneParser call() throws IOException {
+							return parseChunk(channel, from, to, first);
+						}
+					}));
+				}
+
+				// Wait for the chunks in file order, so that the first error
+				// in the file is the one reported, and its line number can be
+				// worked out from the chunks before it.
+				TextSceneParser[] parsers = new TextSceneParser[chunks];
+				long linesBefore = 0;
+				for (int i = 0; i < chunks; i++) {
+					try {
+						parsers[i] = results.get(i).get();
+					} catch (ExecutionException e) {
+						if (e.getCause() instanceof SceneFormatException) {
+							SceneFormatException cause = (SceneFormatException) e.getCause();
+							throw new SceneFormatException(linesBefore + cause.getLine(), cause.getDetail());
+						}
+						throw new IOException(e.getCause());
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new InterruptedIOException("interrupted while loading " + file);
+					}
+					linesBefore += parsers[i].line - 1;
+
+					// A file starting with a huge run of blank lines might not
+					// have its light in the first chunk, so the next chunk would
+					// be parsed wrongly. Just parse it all in one go instead.
+					if (parsers[0].needLight) {
+						return parseChunk(channel, 0, size, true).finished();
+					}
+				}
+				return join(parsers);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/** Parses the whole lines in bytes [from, to) of the file. */
+	private static TextSceneParser parseChunk(FileChannel channel, long from, long to, boolean readLight)
+			throws IOException {
+		Mesh mesh = new Mesh((int) Math.min((to - from) / 64 + 16, Integer.MAX_VALUE / 3));
+		mesh.sourceLines = new int[mesh.reflectance.length];
+		TextSceneParser parser = new TextSceneParser(mesh, readLight, 1);
+		ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, Math.max(to - from, 16)));
+		long position = from;
+
+		while (true) {
+			if (buffer.remaining() > to - position) {
+				buffer.limit(buffer.position() + (int) (to - position));
+			}
+			int read = position < to ? channel.read(buffer, position) : -1;
+			boolean end = read < 0 || (position += read) >= to;
+			buffer.flip();
+			parser.parse(buffer, end);
+			if (end) {
+				return parser;
+			}
+			buffer.compact();
+			if (!buffer.hasRemaining()) {
+				// A single line fills the buffer, so make room for more.
+				ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+				buffer.flip();
+				bigger.put(buffer);
+				buffer = bigger;
+			}
+		}
+	}
+
+	/**
+	 * Splits the file into about the given number of chunks, moving each
+	 * split to just after the next newline. Returns the chunk boundaries,
+	 * starting with 0 and ending with the file size.
+	 */
+	private static long[] splitAtLines(FileChannel channel, int chunks) throws IOException {
+		long size = channel.size();
+		long[] bounds = new long[chunks + 1];
+		int count = 1;
+		ByteBuffer window = ByteBuffer.allocate(4096);
+		for (int i = 1; i < chunks; i++) {
+			long position = Math.max(size * i / chunks, bounds[count - 1]);
+			long split = size;
+			while (position < size && split == size) {
+				window.clear();
+				int read = channel.read(window, position);
+				for (int j = 0; j < read; j++) {
+					if (window.get(j) == '\n') {
+						split = position + j + 1;
+						break;
+					}
+				}
+				position += Math.max(read, 0);
+			}
+			if (split > bounds[count - 1] && split < size) {
+				bounds[count++] = split;
+			}
+		}
+		bounds[count++] = size;
+		return Arrays.copyOf(bounds, count);
+	}
+
+	/**
+	 * Joins the meshes of the given parsers end to end, in order, moving each
+	 * chunk's line numbers on by the number of lines in the chunks before it.
+	 */
+	private static Mesh join(TextSceneParser[] parsers) {
+		int total = 0;
+		for (TextSceneParser parser : parsers) {
+			total += parser.mesh.size;
+		}
+		Mesh mesh = new Mesh(total);
+		mesh.sourceLines = new int[total];
+		mesh.light = parsers[0].mesh.light;
+		int linesBefore = 0;
+		for (TextSceneParser parser : parsers) {
+			Mesh chunk = parser.mesh;
+			mesh.lights.addAll(chunk.lights);
+			System.arraycopy(chunk.xs, 0, mesh.xs, mesh.size * 3, chunk.size * 3);
+			System.arraycopy(chunk.ys, 0, mesh.ys, mesh.size * 3, chunk.size * 3);
+			System.arraycopy(chunk.zs, 0, mesh.zs, mesh.size * 3, chunk.size * 3);
+			System.arraycopy(chunk.reflectance, 0, mesh.reflectance, mesh.size, chunk.size);
+			for (int p = 0; p < chunk.size; p++) {
+				mesh.sourceLines[mesh.size + p] = chunk.sourceLines[p] + linesBefore;
+			}
+			mesh.size += chunk.size;
+			linesBefore += (int) (parser.line - 1);
+		}
+		return mesh;
+	}
+
+	/** Checks the input had everything in it, and returns the mesh. */
+	private Mesh finished() throws SceneFormatException {
+		finish();
+		return mesh;
+	}
+
+	/**
+	 * Parses every complete line between the buffer's position and limit, and
+	 * leaves the position at the start of the first incomplete line. If
+	 * endOfInput is true, the last line doesn't need to end in a newline.
+	 * 
+	 * The buffer must be a heap buffer, as its backing array is scanned
+	 * directly, which is quite a bit faster than going through get(int).
+	 */
+	public void parse(ByteBuffer buffer, boolean endOfInput) throws SceneFormatException {
+		this.data = buffer.array();
+		int offset = buffer.arrayOffset();
+		int limit = offset + buffer.limit();
+		int start = offset + buffer.position();
+
+		while (start < limit) {
+			int newline = start;
+			while (newline < limit && data[newline] != '\n') {
+				newline++;
+			}
+			if (newline == limit && !endOfInput) {
+				break;
+			}
+			parseLine(start, newline);
+			line++;
+			start = Math.min(newline + 1, limit);
+		}
+		buffer.position(start - offset);
+	}
+
+	/** Checks the input had everything in it, once it has all been parsed. */
+	public void finish() throws SceneFormatException {
+		if (needLight) {
+			throw new SceneFormatException(line, "expected the light direction but the file is empty");
+		}
+	}
+
+	private void parseLine(int start, int lineEnd) throws SceneFormatException {
+		pos = start;
+		end = lineEnd;
+		valuesOnLine = 0;
+		skipSpaces();
+		if (pos == end) {
+			return;
+		}
+
+		if (needLight) {
+			mesh.light = new Vector3D(nextFloat(3), nextFloat(3), nextFloat(3));
+			needLight = false;
+			return;
+		}
+		byte first = data[pos];
+		if ((first >= 'a' && first <= 'z') || (first >= 'A' && first <= 'Z')) {
+			// Numbers like "NaN" are left for nextFloat to complain about
+			if (isWord("directional")) {
+				parseLight(Light.Type.DIRECTIONAL, 6);
+				return;
+			} else if (isWord("point")) {
+				parseLight(Light.Type.POINT, 9);
+				return;
+			}
+		}
+
+		for (int i = 0; i < 9; i++) {
+			points[i] = nextFloat(12);
+		}
+		int r = nextColor(12);
+		int g = nextColor(12);
+		int b = nextColor(12);
+		mesh.add(points[0], points[1], points[2], points[3], points[4], points[5], points[6], points[7], points[8],
+				(r << 16) | (g << 8) | b);
+		if (mesh.sourceLines != null) {
+			mesh.sourceLines[mesh.size - 1] = (int) line;
+		}
+	}
+
+	/**
+	 * If the next value on the line is the given word, moves past it and
+	 * returns true.
+	 */
+	private boolean isWord(String word) {
+		int length = word.length();
+		if (end - pos < length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (data[pos + i] != word.charAt(i)) {
+				return false;
+			}
+		}
+		int start = pos;
+		pos += length;
+		if (!atValueEnd()) {
+			pos = start;
+			return false;
+		}
+		return true;
+	}
+
+	/** Reads the rest of a light line, which has the given number of values. */
+	private void parseLight(Light.Type type, int values) throws SceneFormatException {
+		Vector3D vector = new Vector3D(nextFloat(values), nextFloat(values), nextFloat(values));
+		Color color = new Color(nextColor(values), nextColor(values), nextColor(values));
+		if (type == Light.Type.DIRECTIONAL) {
+			mesh.lights.add(Light.directional(vector, color));
+			return;
+		}
+		float constant = nextFloat(values);
+		float linear = nextFloat(values);
+		float quadratic = nextFloat(values);
+		try {
+			mesh.lights.add(Light.point(vector, color, constant, linear, quadratic));
+		} catch (IllegalArgumentException e) {
+			throw new SceneFormatException(line, e.getMessage());
+		}
+	}
+
+	private void skipSpaces() {
+		while (pos < end) {
+			byte c = data[pos];
+			if (c != ' ' && c != '\t' && c != '\r') {
+				return;
+			}
+			pos++;
+		}
+	}
+
+	/** Moves to the next value on the line, complaining if there isn't one. */
+	private void startValue(int expected) throws SceneFormatException {
+		skipSpaces();
+		if (pos == end) {
+			throw new SceneFormatException(line, "expected " + expected + " values but found " + valuesOnLine);
+		}
+		valuesOnLine++;
+	}
+
+	private boolean atValueEnd() {
+		if (pos == end) {
+			return true;
+		}
+		byte c = data[pos];
+		return c == ' ' || c == '\t' || c == '\r';
+	}
+
+	private static boolean isDigit(byte c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Reads the next float. Up to 18 significant digits are gathered into a
+	 * long and scaled by an exact power of ten in double precision, which
+	 * rounds correctly; rounding that to a float is then also correct unless
+	 * the double lands exactly halfway between two floats. That case, very
+	 * long or very large/small numbers, and anything else unusual (such as
+	 * "NaN") are passed to Float.parseFloat instead.
+	 */
+	private float nextFloat(int expected) throws SceneFormatException {
+		startValue(expected);
+		int start = pos;
+		boolean negative = false;
+		byte c = data[pos];
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigits = false;
+		boolean exact = true;
+
+		while (pos < end && isDigit(c = data[pos])) {
+			anyDigits = true;
+			if (digits < 18) {
+				mantissa = mantissa * 10 + (c - '0');
+				if (mantissa != 0) {
+					digits++;
+				}
+			} else {
+				exponent++;
+				exact &= c == '0';
+			}
+			pos++;
+		}
+		if (pos < end && data[pos] == '.') {
+			pos++;
+			while (pos < end && isDigit(c = data[pos])) {
+				anyDigits = true;
+				if (digits < 18) {
+					mantissa = mantissa * 10 + (c - '0');
+					if (mantissa != 0) {
+						digits++;
+					}
+					exponent--;
+				} else {
+					exact &= c == '0';
+				}
+				pos++;
+			}
+		}
+		if (anyDigits && pos < end && ((c = data[pos]) == 'e' || c == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && ((c = data[pos]) == '-' || c == '+')) {
+				negativeExponent = c == '-';
+				pos++;
+			}
+			int value = 0;
+			boolean anyExponentDigits = false;
+			while (pos < end && isDigit(c = data[pos])) {
+				anyExponentDigits = true;
+				value = Math.min(value * 10 + (c - '0'), 100000);
+				pos++;
+			}
+			anyDigits = anyExponentDigits;
+			exponent += negativeExponent ? -value : value;
+		}
+
+		if (!anyDigits || !atValueEnd()) {
+			return slowFloat(start);
+		}
+		if (mantissa == 0) {
+			return negative ? -0.0f : 0.0f;
+		}
+		if (!exact || exponent < -22 || exponent > 22 || mantissa > (1L << 53)) {
+			return slowFloat(start);
+		}
+
+		double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+		long bits = Double.doubleToRawLongBits(value);
+		if ((bits & 0x1fffffffL) == 0x10000000L || value < Float.MIN_NORMAL) {
+			return slowFloat(start);
+		}
+		float result = (float) value;
+		return negative ? -result : result;
+	}
+
+	/** Reads the value starting at start with Float.parseFloat. */
+	private float slowFloat(int start) throws SceneFormatException {
+		pos = start;
+		while (!atValueEnd()) {
+			pos++;
+		}
+		String text = tokenString(start, pos);
+		try {
+			return Float.parseFloat(text);
+		} catch (NumberFormatException e) {
+			throw new SceneFormatException(line, "expected a number but found \"" + text + "\"");
+		}
+	}
+
+	/** Reads the next colour component, a whole number from 0 to 255. */
+	private int nextColor(int expected) throws SceneFormatException {
+		startValue(expected);
+		int start = pos;
+		int value = 0;
+		if (data[pos] == '+') {
+			pos++;
+		}
+		boolean anyDigits = false;
+		byte c;
+		while (pos < end && isDigit(c = data[pos])) {
+			anyDigits = true;
+			value = Math.min(value * 10 + (c - '0'), 1000);
+			pos++;
+		}
+		if (!anyDigits || !atValueEnd() || value > 255) {
+			while (!atValueEnd()) {
+				pos++;
+			}
+			throw new SceneFormatException(line,
+					"expected a colour from 0 to 255 but found \"" + tokenString(start, pos) + "\"");
+		}
+		return value;
+	}
+
+	private String tokenString(int from, int to) {
+		if (token.length < to - from) {
+			token = new byte[to - from];
+		}
+		for (int i = from; i < to; i++) {
+			token[i - from] = data[i];
+		}
+		return new String(token, 0, to - from, StandardCharsets.ISO_8859_1);
+	}
+}
+
+// code for comp261 assignments
@@ -0,0 +1,332 @@
+package renderer;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import renderer.RenderStats.Counter;
+import renderer.RenderStats.Stage;
+
+/**
+ * Draws polygons into a FrameBuffer using several threads. The canvas is cut
+ * into square tiles and each polygon is put in the bin of every tile its
+ * bounding box touches. Each tile is then drawn by a ForkJoin task which only
+ * writes to that tile's pixels, so no locking is needed. Within a tile the
+ * polygons are drawn in the same order as the serial loop, and
+ * Pipeline.computeZBuffer gives every pixel the same depth however it is
+ * clipped, so the result is identical to drawing them one by one.
+ */
+public class TileRasterizer {
+
+	public static final int TILE_SIZE = 64;
+
+	/** Tiles with fewer polygons than this aren't split any further. */
+	private static final int MIN_TASK_POLYGONS = 256;
+
+	private final ForkJoinPool pool;
+
+	/** How the polygons in each tile are filled in. */
+	public RasterMode mode = RasterMode.SCANLINE;
+
+	/**
+	 * If true, the frame's depth pyramid is used to skip polygons and blocks
+	 * hidden behind ones already drawn. The tiles line up with the pyramid's,
+	 * so each task only touches the pyramid within its own tiles.
+	 */
+	public boolean occlusionCulling = false;
+
+	/**
+	 * If set, polygons are only shaded once they are known to have a pixel
+	 * that passes the depth test in some tile, and the colours are taken from
+	 * here instead of the array given to rasterize. The tiles shade into it
+	 * at the same time without locking it, and the polygons they shaded are
+	 * counted once they are all done.
+	 */
+	public ShadingCache deferredShading = null;
+
+	// Reused between frames: bins[binStarts[t] .. binStarts[t + 1]) holds the
+	// polygons of tile t, in drawing order, and next[t] is where the next
+	// polygon of tile t goes while they are being filled.
+	private int[] binStarts = new int[1];
+	private int[] bins = new int[0];
+	private int[] next = new int[0];
+
+	// Totals of the per-tile stats, added to by every task of a frame.
+	private final LongAdder edgeListNanos = new LongAdder();
+	private final LongAdder zBufferNanos = new LongAdder();
+	private final LongAdder pixelsTested = new LongAdder();
+	private final LongAdder pixelsWritten = new LongAdder();
+
+	public TileRasterizer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public TileRasterizer(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Draws the given polygons of a screen-space mesh into the frame.
+	 * 
+	 * @param polys
+	 *            The indices of the polygons to draw, in drawing order.
+	 * @param count
+	 *            How many entries of polys to use.
+	 * @param colors
+	 *            The packed RGB colour of each polygon, indexed by polygon.
+	 */
+	public void rasterize(FrameBuffer frame, Mesh screen, int[] polys, int count, int[] colors) {
+		rasterize(frame, screen, polys, count, colors, null);
+	}
+
+	/**
+	 * The same as rasterize above, but also adds the time spent on edge lists
+	 * and the z-buffer (summed over all threads) and the pixel counts to the
+	 * given stats, if it isn't null.
+	 */
+	public void rasterize(FrameBuffer frame, Mesh screen, int[] polys, int count, int[] colors, RenderStats stats) {
+		int tilesX = (frame.width + TILE_SIZE - 1) / TILE_SIZE;
+		int tilesY = (frame.height + TILE_SIZE - 1) / TILE_SIZE;
+		int tiles = tilesX * tilesY;
+		// The tiles are counted from the frame's corner, like the pyramid's
+		float originX = frame.originX, originY = frame.originY;
+		if (binStarts.length < tiles + 1) {
+			binStarts = new int[tiles + 1];
+			next = new int[tiles];
+		}
+		
+		// Count how many polygons land in each tile, turn the counts into
+		// start positions, then fill the bins.
+		Arrays.fill(binStarts, 0, tiles + 1, 0);
+		for (int i = 0; i < count; i++) {
+			int p = polys[i];
+			int tx0 = tileOf(minX(screen, p) - originX, tilesX);
+			int tx1 = tileOf(maxX(screen, p) - originX, tilesX);
+			int ty0 = tileOf(minY(screen, p) - originY, tilesY);
+			int ty1 = tileOf(maxY(screen, p) - originY, tilesY);
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) {
+					binStarts[ty * tilesX + tx + 1]++;
+				}
+			}
+		}
+		for (int t = 0; t < tiles; t++) {
+			binStarts[t + 1] += binStarts[t];
+		}
+		if (bins.length < binStarts[tiles]) {
+			bins = new int[Math.max(binStarts[tiles], bins.length * 2)];
+		}
+		int[] next = this.next;
+		System.arraycopy(binStarts, 0, next, 0, tiles);
+		for (int i = 0; i < count; i++) {
+			int p = polys[i];
+			int tx0 = tileOf(minX(screen, p) - originX, tilesX);
+			int tx1 = tileOf(maxX(screen, p) - originX, tilesX);
+			int ty0 = tileOf(minY(screen, p) - originY, tilesY);
+			int ty1 = tileOf(maxY(screen, p) - originY, tilesY);
+			for (int ty = ty0; ty <= ty1; ty++) {
+				for (int tx = tx0; tx <= tx1; tx++) {
+					bins[next[ty * tilesX + tx]++] = p;
+				}
+			}
+		}
+		
+		pool.invoke(new TileTask(frame, screen, colors, stats != null, tilesX, 0, tiles));
+		if (deferredShading != null) {
+			deferredShading.countUsed(polys, count);
+		}
+		
+		if (stats != null) {
+			stats.addTime(Stage.EDGE_LIST, edgeListNanos.sumThenReset());
+			stats.addTime(Stage.Z_BUFFER, zBufferNanos.sumThenReset());
+			stats.addCount(Counter.PIXELS_TESTED, pixelsTested.sumThenReset());
+			stats.addCount(Counter.PIXELS_WRITTEN, pixelsWritten.sumThenReset());
+		}
+	}
+
+	/**
+	 * Draws the polygons bins[from .. to) into the part of the frame inside
+	 * the given rectangle, using the depth pyramid if it isn't null. If
+	 * shading isn't null, polygons with no pixel passing the depth test are
+	 * skipped without being shaded, and the rest take their colour from it,
+	 * with light as room for the light falling on each.
+	 */
+	static void rasterizeTile(FrameBuffer frame, Mesh screen, int[] bins, int from, int to, int[] colors,
+			EdgeList edgeList, int minX, int minY, int maxX, int maxY, DepthPyramid pyramid, ShadingCache shading,
+			float[] light) {
+		for (int i = from; i < to; i++) {
+			int p = bins[i];
+			if (pyramid != null && Pipeline.isOccluded(screen, p, edgeList, pyramid, minX, minY, maxX, maxY)) {
+				continue;
+			}
+			Pipeline.computeEdgeList(screen, p, edgeList);
+			if (shading == null) {
+				Pipeline.computeZBuffer(frame, edgeList, colors[p], p, minX, minY, maxX, maxY, pyramid);
+			} else if (Pipeline.isAnyPixelVisible(frame, edgeList, minX, minY, maxX, maxY)) {
+				int color = shading.getColorConcurrent(p, light);
+				Pipeline.computeZBuffer(frame, edgeList, color, p, minX, minY, maxX, maxY, pyramid);
+			}
+		}
+	}
+
+	/**
+	 * The same as rasterizeTile, but timing each stage and counting pixels
+	 * into totals: edge list nanoseconds, z-buffer nanoseconds, pixels tested
+	 * and pixels written.
+	 */
+	static void rasterizeTileCounted(FrameBuffer frame, Mesh screen, int[] bins, int from, int to, int[] colors,
+			EdgeList edgeList, int minX, int minY, int maxX, int maxY, DepthPyramid pyramid, ShadingCache shading,
+			float[] light, long[] totals) {
+		for (int i = from; i < to; i++) {
+			int p = bins[i];
+			if (pyramid != null && Pipeline.isOccluded(screen, p, edgeList, pyramid, minX, minY, maxX, maxY)) {
+				// the pixels it would have tested, which are taken off again
+				// as occluded ones
+				totals[2] += Pipeline.countPixels(edgeList, minX, minY, maxX, maxY);
+				continue;
+			}
+			long start = System.nanoTime();
+			Pipeline.computeEdgeList(screen, p, edgeList);
+			long edgeListDone = System.nanoTime();
+			if (shading == null) {
+				totals[3] += Pipeline.computeZBuffer(frame, edgeList, colors[p], p, minX, minY, maxX, maxY, pyramid);
+			} else if (Pipeline.isAnyPixelVisible(frame, edgeList, minX, minY, maxX, maxY)) {
+				int color = shading.getColorConcurrent(p, light);
+				totals[3] += Pipeline.computeZBuffer(frame, edgeList, color, p, minX, minY, maxX, maxY, pyramid);
+			}
+			long zBufferDone = System.nanoTime();
+			totals[0] += edgeListDone - start;
+			totals[1] += zBufferDone - edgeListDone;
+			totals[2] += Pipeline.countPixels(edgeList, minX, minY, maxX, maxY);
+		}
+	}
+
+	/**
+	 * The same as rasterizeTile, but filling the polygons in with the
+	 * HalfSpaceRasterizer. If totals isn't null the z-buffer time and pixel
+	 * counts are added to it, as in rasterizeTileCounted.
+	 */
+	static void rasterizeTileHalfSpace(FrameBuffer frame, Mesh screen, int[] bins, int from, int to, int[] colors,
+			int minX, int minY, int maxX, int maxY, DepthPyramid pyramid, ShadingCache shading, float[] light,
+			long[] totals) {
+		if (totals == null) {
+			for (int i = from; i < to; i++) {
+				int p = bins[i];
+				if (shading == null) {
+					HalfSpaceRasterizer.draw(frame, screen, p, colors[p], minX, minY, maxX, maxY, pyramid);
+				} else if (HalfSpaceRasterizer.isAnyPixelVisible(frame, screen, p, minX, minY, maxX, maxY, pyramid)) {
+					int color = shading.getColorConcurrent(p, light);
+					HalfSpaceRasterizer.draw(frame, screen, p, color, minX, minY, maxX, maxY, pyramid);
+				}
+			}
+			return;
+		}
+		for (int i = from; i < to; i++) {
+			int p = bins[i];
+			long start = System.nanoTime();
+			if (shading == null) {
+				totals[3] += HalfSpaceRasterizer.draw(frame, screen, p, colors[p], minX, minY, maxX, maxY, pyramid);
+			} else if (HalfSpaceRasterizer.isAnyPixelVisible(frame, screen, p, minX, minY, maxX, maxY, pyramid)) {
+				int color = shading.getColorConcurrent(p, light);
+				totals[3] += HalfSpaceRasterizer.draw(frame, screen, p, color, minX, minY, maxX, maxY, pyramid);
+			}
+			totals[1] += System.nanoTime() - start;
+			totals[2] += HalfSpaceRasterizer.countPixels(screen, p, minX, minY, maxX, maxY);
+		}
+	}
+
+	/**
+	 * The tile a pixel coordinate, measured from the frame's corner, falls in,
+	 * clamped to the frame. Polygons are binned one pixel wider than their
+	 * vertices on each side, as the edge list rounds towards the outside of
+	 * the polygon.
+	 */
+	private static int tileOf(float coord, int tiles) {
+		int tile = (int) Math.floor(coord / TILE_SIZE);
+		return Math.max(0, Math.min(tile, tiles - 1));
+	}
+
+	private static float minX(Mesh m, int p) {
+		int v = p * 3;
+		return Math.min(m.xs[v], Math.min(m.xs[v + 1], m.xs[v + 2])) - 1;
+	}
+
+	private static float maxX(Mesh m, int p) {
+		int v = p * 3;
+		return Math.max(m.xs[v], Math.max(m.xs[v + 1], m.xs[v + 2])) + 1;
+	}
+
+	private static float minY(Mesh m, int p) {
+		int v = p * 3;
+		return Math.min(m.ys[v], Math.min(m.ys[v + 1], m.ys[v + 2])) - 1;
+	}
+
+	private static float maxY(Mesh m, int p) {
+		int v = p * 3;
+		return Math.max(m.ys[v], Math.max(m.ys[v + 1], m.ys[v + 2])) + 1;
+	}
+
+	/** Draws the tiles [from, to), splitting the range while it is big. */
+	@SuppressWarnings("serial")
+	private class TileTask extends RecursiveAction {
+		private final FrameBuffer frame;
+		private final Mesh screen;
+		private final int[] colors;
+		private final boolean counted;
+		private final int tilesX;
+		private final int from;
+		private final int to;
+
+		TileTask(FrameBuffer frame, Mesh screen, int[] colors, boolean counted, int tilesX, int from, int to) {
+			this.frame = frame;
+			this.screen = screen;
+			this.colors = colors;
+			this.counted = counted;
+			this.tilesX = tilesX;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1 && binStarts[to] - binStarts[from] > MIN_TASK_POLYGONS) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new TileTask(frame, screen, colors, counted, tilesX, from, mid),
+						new TileTask(frame, screen, colors, counted, tilesX, mid, to));
+				return;
+			}
+			EdgeList edgeList = Pipeline.getEdgeList();
+			long[] totals = counted ? new long[4] : null;
+			DepthPyramid pyramid = occlusionCulling ? frame.pyramid : null;
+			ShadingCache shading = deferredShading;
+			float[] light = shading == null ? null : new float[3];
+			for (int t = from; t < to; t++) {
+				int left = (t % tilesX) * TILE_SIZE;
+				int top = (t / tilesX) * TILE_SIZE;
+				int minX = frame.originX + left;
+				int minY = frame.originY + top;
+				int maxX = frame.originX + Math.min(left + TILE_SIZE, frame.width) - 1;
+				int maxY = frame.originY + Math.min(top + TILE_SIZE, frame.height) - 1;
+				if (mode == RasterMode.HALF_SPACE) {
+					rasterizeTileHalfSpace(frame, screen, bins, binStarts[t], binStarts[t + 1], colors, minX, minY,
+							maxX, maxY, pyramid, shading, light, totals);
+				} else if (counted) {
+					rasterizeTileCounted(frame, screen, bins, binStarts[t], binStarts[t + 1], colors, edgeList,
+							minX, minY, maxX, maxY, pyramid, shading, light, totals);
+				} else {
+					rasterizeTile(frame, screen, bins, binStarts[t], binStarts[t + 1], colors, edgeList, minX,
+							minY, maxX, maxY, pyramid, shading, light);
+				}
+			}
+			if (counted) {
+				edgeListNanos.add(totals[0]);
+				zBufferNanos.add(totals[1]);
+				pixelsTested.add(totals[2]);
+				pixelsWritten.add(totals[3]);
+			}
+		}
+	}
+}
+
+// code for comp261 assignments
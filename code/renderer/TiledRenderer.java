@@ -0,0 +1,102 @@
+package renderer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Renders images too big to draw in one frame buffer, such as posters many
+ * thousands of pixels across, straight to a PNG.
+ *
+ * The model is fitted to the whole image as a SceneRenderer would fit it to
+ * a frame that size, but only one square tile of it is drawn at a time, by a
+ * SceneRenderer the size of a tile whose canvas is set to the whole image.
+ * The model is transformed onto the canvas once per image, and each tile's
+ * frame just sits at the tile's place on the canvas (see FrameBuffer), so
+ * every pixel is worked out from the same numbers as in one big frame and
+ * the image is exactly the same. Per tile, the bvh picks out the polygons
+ * that reach it, so only they are drawn, although the bvh itself is walked
+ * from the top for every tile. Each row of tiles is copied into a band of
+ * colours as wide as the image, which is then compressed out by a PngWriter
+ * before the next row is drawn, so memory use is the screen mesh, one tile's
+ * frame buffers and one band, however tall the image.
+ *
+ * Tiles are drawn with a pixel of overlap all round, which is thrown away,
+ * so that anti-aliasing and everything else that looks at neighbouring
+ * pixels sees the same pixels at the edges of a tile as in the middle. The
+ * overlap stops at the edges of the image, where one big frame stops too.
+ */
+public class TiledRenderer {
+
+	/** The width and height of a tile, in pixels. */
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	/** The overlap drawn around each tile. */
+	private static final int APRON = 1;
+
+	public final int tileSize;
+
+	/**
+	 * Draws each tile. Its modes, such as its shading and anti-aliasing, are
+	 * used for every tile, and can be set as on any SceneRenderer.
+	 */
+	public final SceneRenderer sceneRenderer;
+
+	public TiledRenderer() {
+		this(DEFAULT_TILE_SIZE);
+	}
+
+	public TiledRenderer(int tileSize) {
+		if (tileSize <= 0) {
+			throw new IllegalArgumentException("tile size must be positive");
+		}
+		this.tileSize = tileSize;
+		this.sceneRenderer = new SceneRenderer(tileSize + 2 * APRON, tileSize + 2 * APRON);
+	}
+
+	/**
+	 * Sets the model to render, along with a name for it (which may be null)
+	 * that the Flight Recorder events are tagged with.
+	 */
+	public void setModel(Mesh model, String sceneName) {
+		sceneRenderer.setModel(model, sceneName);
+	}
+
+	/**
+	 * Renders the model as SceneRenderer.render would into a frame of the
+	 * given size, and writes it to out as a PNG. The stream is not closed.
+	 */
+	public void render(Transform orientation, Color ambientLight, List<Light> lights, int width, int height,
+			OutputStream out) throws IOException {
+		if (sceneRenderer.getModel() == null) {
+			throw new IllegalStateException("no model to render");
+		}
+		PngWriter png = new PngWriter(out, width, height);
+		int[] band = new int[width * Math.min(tileSize, height)];
+		for (int top = 0; top < height; top += tileSize) {
+			int bandHeight = Math.min(tileSize, height - top);
+			int frameTop = Math.max(top - APRON, 0);
+			int frameHeight = Math.min(top + bandHeight + APRON, height) - frameTop;
+			for (int left = 0; left < width; left += tileSize) {
+				int tileWidth = Math.min(tileSize, width - left);
+				int frameLeft = Math.max(left - APRON, 0);
+				int frameWidth = Math.min(left + tileWidth + APRON, width) - frameLeft;
+				sceneRenderer.setFrameSize(frameWidth, frameHeight);
+				sceneRenderer.setCanvas(width, height, frameLeft, frameTop);
+				sceneRenderer.render(orientation, ambientLight, lights);
+				FrameBuffer frame = sceneRenderer.getFrame();
+				for (int y = 0; y < bandHeight; y++) {
+					System.arraycopy(frame.pixels, (top - frameTop + y) * frame.width + left - frameLeft, band,
+							y * width + left, tileWidth);
+				}
+			}
+			for (int y = 0; y < bandHeight; y++) {
+				png.writeRow(band, y * width);
+			}
+		}
+		png.finish();
+	}
+}
+
+// code for comp261 assignments
@@ -12,6 +12,41 @@ package renderer;
  */
 public class Transform {
 
+	/**
+	 * If true, batch multiplies of at least VECTOR_MIN_POINTS points use the
+	 * Vector API kernel in VectorTransform, when it is available. It gives
+	 * exactly the same results as the plain loop. It is on unless the
+	 * renderer.vectorTransform system property is set to false.
+	 */
+	public static boolean vectorTransform = !"false".equals(System.getProperty("renderer.vectorTransform"));
+
+	/** Batches smaller than this aren't worth setting the vector kernel up for. */
+	public static final int VECTOR_MIN_POINTS = 64;
+
+	/**
+	 * The Vector API kernel, or null if it can't be used here. It is built
+	 * from its own source root with jdk.incubator.vector, which must also be
+	 * added at run time (--add-modules jdk.incubator.vector). Without either,
+	 * or on a JDK too old for it, loading it fails and the plain loop is used.
+	 */
+	private static final PointTransformer VECTOR_KERNEL = loadVectorKernel();
+
+	private static PointTransformer loadVectorKernel() {
+		try {
+			return (PointTransformer) Class.forName("renderer.VectorTransform").getDeclaredConstructor()
+					.newInstance();
+		} catch (ReflectiveOperationException e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	/** Returns true if the Vector API kernel was loaded. */
+	public static boolean isVectorKernelAvailable() {
+		return VECTOR_KERNEL != null;
+	}
+
 	private final float[][] values;
 
 	/** Construct a Transformation given 3x4 array of elements */
@@ -75,6 +110,15 @@ public class Transform {
 				{ sinth, costh, 0.0f, 0.0f }, { 0.0f, 0.0f, 1.0f, 0.0f } });
 	}
 
+	/**
+	 * Construct a rotation Transformation that takes the given unit axes,
+	 * which must be at right angles to each other, onto the x, y and z axes
+	 */
+	public static Transform newBasis(Vector3D xAxis, Vector3D yAxis, Vector3D zAxis) {
+		return new Transform(new float[][] { { xAxis.x, xAxis.y, xAxis.z, 0.0f },
+				{ yAxis.x, yAxis.y, yAxis.z, 0.0f }, { zAxis.x, zAxis.y, zAxis.z, 0.0f } });
+	}
+
 	/* post multiply this transform by another (this * other) */
 	public Transform compose(Transform other) {
 		float[][] ans = new float[3][4];
@@ -89,12 +133,14 @@ public class Transform {
 		return new Transform(ans);
 	}
 
+	/* returns the element at the given row (0 to 2) and column (0 to 3) */
+	public float get(int row, int col) {
+		return values[row][col];
+	}
+
 	/* apply this transform to a vector */
 	public Vector3D multiply(Vector3D vect) {
-		if (values == null || values[0] == null || values[1] == null
-				|| values[2] == null) {
-			throw new IllegalStateException("Ill-formed transform");
-		}
+		// values is final and its shape is checked by the constructor
 		if (vect == null) {
 			throw new IllegalArgumentException("multiply by null vector");
 		}
@@ -110,6 +156,94 @@ public class Transform {
 		return new Vector3D(x, y, z);
 	}
 
+	/*
+	 * apply this transform to count points stored as separate x, y and z
+	 * arrays, starting at offset, and write the results to the same positions
+	 * of the out arrays. The out arrays may be the same as the input arrays.
+	 * Unlike multiply(Vector3D) this allocates nothing. Big batches go
+	 * through the Vector API kernel if it is available and vectorTransform is
+	 * on, and otherwise through a loop simple enough for the JIT to unroll.
+	 */
+	public void multiply(float[] xs, float[] ys, float[] zs, float[] outXs,
+			float[] outYs, float[] outZs, int offset, int count) {
+		if (vectorTransform && VECTOR_KERNEL != null && count >= VECTOR_MIN_POINTS) {
+			VECTOR_KERNEL.multiply(values, xs, ys, zs, outXs, outYs, outZs, offset, count);
+		} else {
+			multiplyScalar(xs, ys, zs, outXs, outYs, outZs, offset, count);
+		}
+	}
+
+	/* the plain loop behind the batch multiply above */
+	private void multiplyScalar(float[] xs, float[] ys, float[] zs, float[] outXs,
+			float[] outYs, float[] outZs, int offset, int count) {
+		final float m00 = values[0][0], m01 = values[0][1], m02 = values[0][2], m03 = values[0][3];
+		final float m10 = values[1][0], m11 = values[1][1], m12 = values[1][2], m13 = values[1][3];
+		final float m20 = values[2][0], m21 = values[2][1], m22 = values[2][2], m23 = values[2][3];
+		final int end = offset + count;
+		for (int i = offset; i < end; i++) {
+			float x = xs[i];
+			float y = ys[i];
+			float z = zs[i];
+			outXs[i] = m03 + m00 * x + m01 * y + m02 * z;
+			outYs[i] = m13 + m10 * x + m11 * y + m12 * z;
+			outZs[i] = m23 + m20 * x + m21 * y + m22 * z;
+		}
+	}
+
+	/*
+	 * returns a copy of this transform with the rows of its 3x3 part made
+	 * orthogonal and of equal length again. Composing many rotations slowly
+	 * skews and scales the matrix through rounding error; this undoes that
+	 * while keeping any uniform scale.
+	 */
+	public Transform orthonormalized() {
+		float[][] v = values;
+		float scale = (float) Math.sqrt(v[0][0] * v[0][0] + v[0][1] * v[0][1] + v[0][2] * v[0][2]);
+		Vector3D r0 = new Vector3D(v[0][0], v[0][1], v[0][2]).unitVector();
+		Vector3D r1 = new Vector3D(v[1][0], v[1][1], v[1][2]);
+		r1 = r1.minus(scaled(r0, r0.dotProduct(r1))).unitVector();
+		Vector3D r2 = r0.crossProduct(r1);
+		return new Transform(new float[][] {
+				{ r0.x * scale, r0.y * scale, r0.z * scale, v[0][3] },
+				{ r1.x * scale, r1.y * scale, r1.z * scale, v[1][3] },
+				{ r2.x * scale, r2.y * scale, r2.z * scale, v[2][3] } });
+	}
+
+	/*
+	 * returns the transform that undoes this one, i.e. whose compose with
+	 * this is the identity (up to rounding). Throws an IllegalStateException
+	 * if this transform squashes space flat and so can't be undone.
+	 */
+	public Transform inverse() {
+		float[][] v = values;
+		// the inverse of the 3x3 part is its adjugate over its determinant
+		float c00 = v[1][1] * v[2][2] - v[1][2] * v[2][1];
+		float c01 = v[0][2] * v[2][1] - v[0][1] * v[2][2];
+		float c02 = v[0][1] * v[1][2] - v[0][2] * v[1][1];
+		float c10 = v[1][2] * v[2][0] - v[1][0] * v[2][2];
+		float c11 = v[0][0] * v[2][2] - v[0][2] * v[2][0];
+		float c12 = v[0][2] * v[1][0] - v[0][0] * v[1][2];
+		float c20 = v[1][0] * v[2][1] - v[1][1] * v[2][0];
+		float c21 = v[0][1] * v[2][0] - v[0][0] * v[2][1];
+		float c22 = v[0][0] * v[1][1] - v[0][1] * v[1][0];
+		float det = v[0][0] * c00 + v[0][1] * c10 + v[0][2] * c20;
+		if (det == 0 || Float.isNaN(det)) {
+			throw new IllegalStateException("Transform: can't invert\n" + this);
+		}
+		float[][] ans = { { c00 / det, c01 / det, c02 / det, 0.0f },
+				{ c10 / det, c11 / det, c12 / det, 0.0f },
+				{ c20 / det, c21 / det, c22 / det, 0.0f } };
+		// then the translation is undone after the rest
+		for (int row = 0; row < 3; row++) {
+			ans[row][3] = -(ans[row][0] * v[0][3] + ans[row][1] * v[1][3] + ans[row][2] * v[2][3]);
+		}
+		return new Transform(ans);
+	}
+
+	private static Vector3D scaled(Vector3D v, float s) {
+		return new Vector3D(v.x * s, v.y * s, v.z * s);
+	}
+
 	public String toString() {
 		StringBuilder ans = new StringBuilder();
 		for (int row = 0; row < 3; row++) {
@@ -11,7 +11,15 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 
 @RunWith(Suite.class)
-@SuiteClasses({ EdgeListTests.class, ZBufferTests.class, PolygonHidingTests.class, ShadingTests.class, RotationTests.class })
+@SuiteClasses({ EdgeListTests.class, ZBufferTests.class, PolygonHidingTests.class, ShadingTests.class, RotationTests.class,
+		TileRasterizerTests.class, SceneLoaderTests.class,
+		TextSceneParserTests.class, BatchRendererTests.class,
+		RenderStatsTests.class, FlightRecorderTests.class,
+		HalfSpaceRasterizerTests.class, DepthPyramidTests.class, DepthOrderingTests.class,
+		BvhTests.class, PickingTests.class, GBufferTests.class,
+		IndexedMeshTests.class, SmoothShadingTests.class, LightingTests.class,
+		ShadowMapTests.class, AntiAliasingTests.class,
+		TiledRendererTests.class })
 public class AllTests {
 
 }
@@ -0,0 +1,152 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import renderer.AntiAliasMode;
+import renderer.AntiAliasing;
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.SceneRenderer;
+import renderer.ShadingMode;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class AntiAliasingTests {
+
+	private static final Transform ORIENTATION = Transform.newYRotation(0.4f)
+			.compose(Transform.newXRotation(-0.3f));
+
+	private static SceneRenderer renderer(Mesh model, AntiAliasMode mode, boolean parallel) {
+		SceneRenderer sceneRenderer = new SceneRenderer(400, 400);
+		sceneRenderer.antiAliasing = mode;
+		sceneRenderer.parallel = parallel;
+		sceneRenderer.setModel(model);
+		return sceneRenderer;
+	}
+
+	private static int[] draw(Mesh model, AntiAliasMode mode, boolean parallel) {
+		SceneRenderer sceneRenderer = renderer(model, mode, parallel);
+		sceneRenderer.render(ORIENTATION, Color.GRAY, new Color(150, 80, 0), Color.BLACK);
+		return sceneRenderer.getFrame().pixels.clone();
+	}
+
+	/** Adds up how far apart every channel of two images is. */
+	private static long difference(int[] a, int[] b) {
+		long sum = 0;
+		for (int i = 0; i < a.length; i++) {
+			for (int shift = 0; shift < 24; shift += 8) {
+				sum += Math.abs(((a[i] >> shift) & 0xff) - ((b[i] >> shift) & 0xff));
+			}
+		}
+		return sum;
+	}
+
+	@Test
+	/** Each block of samples is averaged into one pixel, rounding to the nearest. */
+	public void testDownsample() {
+		FrameBuffer samples = new FrameBuffer(4, 2);
+		samples.clear(0);
+		samples.pixels[0] = 0xff0000;
+		samples.pixels[1] = 0x00ff00;
+		samples.pixels[4] = 0x0000ff;
+		samples.pixels[5] = 0x030303;
+		samples.pixels[2] = samples.pixels[3] = samples.pixels[6] = samples.pixels[7] = 0xfefefe;
+		samples.depth[5] = 7;
+		FrameBuffer frame = new FrameBuffer(2, 1);
+		new AntiAliasing().downsample(samples, 2, frame);
+		assertEquals(0x414141, frame.pixels[0]);
+		assertEquals(0xfefefe, frame.pixels[1]);
+		// the depth is that of the sample nearest the middle
+		assertEquals(7, frame.depth[0], 0);
+	}
+
+	@Test
+	/**
+	 * Smoothing only changes pixels on the edges of polygons, and both ways
+	 * give nearly the same image.
+	 */
+	public void testEdgesOnly() {
+		Mesh model = new Mesh(0);
+		model.add(-50, -40, 0, -10, 45, 0, 50, 10, 0, 0x4080c0);
+		model.light = new Vector3D(0, 0, -1);
+		int[] plain = draw(model, AntiAliasMode.OFF, false);
+		int[] smoothed = draw(model, AntiAliasMode.SUPERSAMPLE_4X, false);
+		int[] adaptive = draw(model, AntiAliasMode.ADAPTIVE, false);
+
+		int colours = 0;
+		for (int i = 0; i < plain.length; i++) {
+			int x = i % 400, y = i / 400;
+			boolean nearEdge = false;
+			for (int n = 0; n < 9 && !nearEdge; n++) {
+				int nx = Math.min(Math.max(x + n % 3 - 1, 0), 399), ny = Math.min(Math.max(y + n / 3 - 1, 0), 399);
+				nearEdge = plain[ny * 400 + nx] != plain[i];
+			}
+			if (!nearEdge) {
+				assertEquals(plain[i], adaptive[i]);
+			}
+			if (smoothed[i] != plain[i] && smoothed[i] != plain[0] && adaptive[i] != plain[0]) {
+				colours++;
+			}
+		}
+		assertTrue(colours > 100);
+		assertTrue(difference(adaptive, smoothed) * 3 < difference(plain, smoothed));
+	}
+
+	@Test
+	/** On a sphere the adaptive mode comes much closer to supersampling than no smoothing. */
+	public void testAdaptiveOnSphere() {
+		Mesh model = IndexedMeshTests.sphere(12, 16, 50);
+		int[] plain = draw(model, AntiAliasMode.OFF, false);
+		int[] smoothed = draw(model, AntiAliasMode.SUPERSAMPLE_4X, false);
+		int[] adaptive = draw(model, AntiAliasMode.ADAPTIVE, false);
+		assertTrue(difference(adaptive, smoothed) * 3 < difference(plain, smoothed));
+		assertTrue(difference(draw(model, AntiAliasMode.SUPERSAMPLE_2X, false), smoothed) < difference(plain,
+				smoothed));
+	}
+
+	@Test
+	/** Every mode gives the same image on one thread as on several. */
+	public void testParallel() {
+		Mesh model = IndexedMeshTests.sphere(12, 16, 50);
+		for (AntiAliasMode mode : AntiAliasMode.values()) {
+			assertArrayEquals(draw(model, mode, false), draw(model, mode, true));
+		}
+	}
+
+	@Test
+	/**
+	 * A frame smoothed by the adaptive mode can be reshaded, and is smoothed
+	 * again, but a supersampled one can't.
+	 */
+	public void testReshade() {
+		Mesh model = IndexedMeshTests.sphere(12, 16, 50);
+		for (ShadingMode shadingMode : ShadingMode.values()) {
+			SceneRenderer reshaded = renderer(model, AntiAliasMode.ADAPTIVE, false);
+			reshaded.shadingMode = shadingMode;
+			reshaded.render(ORIENTATION, Color.DARK_GRAY, Color.BLACK, Color.BLACK);
+			assertTrue(reshaded.canReshade());
+			reshaded.reshade(Color.GRAY, new Color(150, 80, 0), Color.BLACK);
+
+			SceneRenderer drawn = renderer(model, AntiAliasMode.ADAPTIVE, false);
+			drawn.shadingMode = shadingMode;
+			drawn.render(ORIENTATION, Color.GRAY, new Color(150, 80, 0), Color.BLACK);
+			GBufferTests.assertClose(drawn.getFrame().pixels, reshaded.getFrame().pixels);
+		}
+
+		SceneRenderer supersampled = renderer(model, AntiAliasMode.SUPERSAMPLE_2X, false);
+		supersampled.polygonIds = true;
+		supersampled.render(ORIENTATION, Color.GRAY, Color.BLACK, Color.BLACK);
+		assertFalse(supersampled.canReshade());
+		// but the polygons can still be picked
+		assertTrue(supersampled.pick(200, 200) != FrameBuffer.NO_POLYGON);
+	}
+}
+
+// code for COMP261 assignments
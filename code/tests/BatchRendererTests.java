@@ -0,0 +1,98 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import renderer.BatchRenderer;
+import renderer.BatchRenderer.Job;
+import renderer.SceneLoader;
+import renderer.SceneRenderer;
+
+public class BatchRendererTests {
+
+	private static final String SCENE = "0 0 -1\n"
+			+ "-10 -10 0 10 -10 0 0 10 0 255 0 128\n"
+			+ "-10 -10 0 0 10 0 -5 5 -5 10 200 30\n";
+
+	private static File writeFile(String name, String contents) throws IOException {
+		File file = File.createTempFile(name, ".txt");
+		file.deleteOnExit();
+		SceneLoader.getCacheFile(file).deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write(contents);
+		}
+		return file;
+	}
+
+	@Test
+	/** Options on the command line should all be read into the job. */
+	public void testParseJob() {
+		Job job = BatchRenderer.parseJob(new String[] { "a.txt", "out/a.png", "rotateX=0.5", "rotateY=-1",
+				"ambient=1,2,3", "bottomLeft=4,5,6", "bottomRight=7,8,9", "width=20", "height=10" },
+				new File("base"));
+
+		assertEquals(new File("base", "a.txt"), job.scene);
+		assertEquals(new File("base", "out/a.png"), job.output);
+		assertEquals(0.5f, job.rotateX, 0);
+		assertEquals(-1f, job.rotateY, 0);
+		assertEquals(new Color(1, 2, 3), job.ambientLight);
+		assertEquals(new Color(4, 5, 6), job.bottomLeftLight);
+		assertEquals(new Color(7, 8, 9), job.bottomRightLight);
+		assertEquals(20, job.width);
+		assertEquals(10, job.height);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadOption() {
+		BatchRenderer.parseJob(new String[] { "a.txt", "a.png", "zoom=2" }, null);
+	}
+
+	@Test
+	/**
+	 * Every job in a manifest should be written out, and look the same as
+	 * rendering it directly.
+	 */
+	public void testManifest() throws Exception {
+		File scene = writeFile("scene", SCENE);
+		File first = File.createTempFile("first", ".png");
+		File second = File.createTempFile("second", ".png");
+		first.deleteOnExit();
+		second.deleteOnExit();
+		File manifest = writeFile("jobs", "# two views\n\n"
+				+ scene.getPath() + " " + first.getPath() + " width=64 height=48\n"
+				+ scene.getPath() + " " + second.getPath() + " rotateY=0.7 ambient=0,0,0 width=64 height=48\n");
+
+		List<Job> jobs = BatchRenderer.readManifest(manifest);
+		assertEquals(2, jobs.size());
+		assertEquals(0, BatchRenderer.renderAll(jobs, 2));
+
+		for (int i = 0; i < 2; i++) {
+			Job job = jobs.get(i);
+			SceneRenderer sceneRenderer = new SceneRenderer(job.width, job.height);
+			sceneRenderer.setModel(SceneLoader.load(job.scene));
+			BufferedImage expected = sceneRenderer.render(job.getOrientation(), job.ambientLight,
+					job.bottomLeftLight, job.bottomRightLight);
+			BufferedImage actual = ImageIO.read(job.output);
+
+			assertEquals(64, actual.getWidth());
+			assertEquals(48, actual.getHeight());
+			for (int y = 0; y < 48; y++) {
+				for (int x = 0; x < 64; x++) {
+					assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+				}
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
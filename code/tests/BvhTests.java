@@ -0,0 +1,177 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.Bvh;
+import renderer.Mesh;
+import renderer.RenderStats;
+import renderer.RenderStats.Counter;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class BvhTests {
+
+	/** Makes a mesh of small random triangles scattered through a cube. */
+	private static Mesh randomMesh(int size, long seed) {
+		Random random = new Random(seed);
+		Mesh mesh = new Mesh(size);
+		for (int i = 0; i < size; i++) {
+			float x = random.nextFloat() * 200 - 100;
+			float y = random.nextFloat() * 200 - 100;
+			float z = random.nextFloat() * 200 - 100;
+			mesh.add(x, y, z, x + random.nextFloat() * 10, y + random.nextFloat() * 10, z,
+					x, y + random.nextFloat() * 10, z + random.nextFloat() * 10, random.nextInt(0x1000000));
+		}
+		mesh.light = new Vector3D(0, 0, -1);
+		return mesh;
+	}
+
+	private static Transform randomView(Random random) {
+		return Transform.newTranslation(random.nextFloat() * 200, random.nextFloat() * 200, 0)
+				.compose(Transform.newYRotation(random.nextFloat() * 6))
+				.compose(Transform.newXRotation(random.nextFloat() * 6))
+				.compose(Transform.newScale(2, 2, 2));
+	}
+
+	@Test
+	/** The root's box is the box around every vertex. */
+	public void testBounds() {
+		Mesh mesh = randomMesh(5000, 261);
+		Bvh bvh = new Bvh(mesh);
+		float minX = Float.POSITIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+		for (int v = 0; v < mesh.size * 3; v++) {
+			minX = Math.min(minX, mesh.xs[v]);
+			maxZ = Math.max(maxZ, mesh.zs[v]);
+		}
+		assertEquals(minX, bvh.getMin().x, 0);
+		assertEquals(maxZ, bvh.getMax().z, 0);
+		assertTrue(bvh.getNodeCount() < mesh.size * 2);
+	}
+
+	@Test
+	/**
+	 * Culling keeps every polygon with a vertex inside the rectangle, and
+	 * skips most of the ones far from it.
+	 */
+	public void testCull() {
+		Mesh mesh = randomMesh(20000, 262);
+		Bvh bvh = new Bvh(mesh);
+		Random random = new Random(263);
+		long[] set = new long[(mesh.size + 63) / 64];
+		for (int trial = 0; trial < 20; trial++) {
+			Transform view = randomView(random);
+			int included = bvh.cull(view, 50, 80, 150, 130, set);
+			int inside = 0;
+			for (int p = 0; p < mesh.size; p++) {
+				boolean in = (set[p / 64] & (1L << p)) != 0;
+				for (int i = 0; i < 3; i++) {
+					int v = p * 3 + i;
+					Vector3D s = view.multiply(new Vector3D(mesh.xs[v], mesh.ys[v], mesh.zs[v]));
+					if (s.x >= 50 && s.x <= 150 && s.y >= 80 && s.y <= 130) {
+						assertTrue(in);
+						inside++;
+						break;
+					}
+				}
+			}
+			assertTrue(included >= inside);
+			assertTrue(included < mesh.size / 2);
+		}
+	}
+
+	/** The t at which a ray hits polygon p of the mesh transformed by the view, or infinity. */
+	private static float bruteForce(Mesh mesh, int p, Transform view, Vector3D o, Vector3D d) {
+		Vector3D a = view.multiply(new Vector3D(mesh.xs[p * 3], mesh.ys[p * 3], mesh.zs[p * 3]));
+		Vector3D b = view.multiply(new Vector3D(mesh.xs[p * 3 + 1], mesh.ys[p * 3 + 1], mesh.zs[p * 3 + 1]));
+		Vector3D c = view.multiply(new Vector3D(mesh.xs[p * 3 + 2], mesh.ys[p * 3 + 2], mesh.zs[p * 3 + 2]));
+		Vector3D e1 = b.minus(a), e2 = c.minus(a);
+		Vector3D pv = d.crossProduct(e2);
+		float det = e1.dotProduct(pv);
+		if (det == 0) {
+			return Float.POSITIVE_INFINITY;
+		}
+		Vector3D tv = o.minus(a);
+		float u = tv.dotProduct(pv) / det;
+		Vector3D qv = tv.crossProduct(e1);
+		float w = d.dotProduct(qv) / det;
+		float t = e2.dotProduct(qv) / det;
+		if (u < 0 || u > 1 || w < 0 || u + w > 1 || t < 0) {
+			return Float.POSITIVE_INFINITY;
+		}
+		return t;
+	}
+
+	@Test
+	/**
+	 * Rays find the same nearest polygon as testing every polygon, with the
+	 * tree built on one thread or several.
+	 */
+	public void testIntersect() {
+		Mesh mesh = randomMesh(20000, 264);
+		Bvh serial = new Bvh(mesh, new ForkJoinPool(1));
+		Bvh parallel = new Bvh(mesh, new ForkJoinPool(4));
+		Random random = new Random(265);
+		int hits = 0;
+		for (int trial = 0; trial < 200; trial++) {
+			Transform view = randomView(random);
+			Vector3D origin = new Vector3D(random.nextFloat() * 200, random.nextFloat() * 200, -1000);
+			Vector3D direction = new Vector3D(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f, 1);
+			if (trial % 2 == 0) {
+				// looking straight into the screen, as picking does
+				direction = new Vector3D(0, 0, 1);
+			}
+			float best = Float.POSITIVE_INFINITY;
+			for (int p = 0; p < mesh.size; p++) {
+				best = Math.min(best, bruteForce(mesh, p, view, origin, direction));
+			}
+			float[] hit = new float[1];
+			int p = serial.intersect(view, origin, direction, hit);
+			assertEquals(p, parallel.intersect(view, origin, direction, null));
+			if (best == Float.POSITIVE_INFINITY) {
+				assertEquals(-1, p);
+			} else {
+				hits++;
+				assertTrue(p >= 0);
+				assertEquals(best, hit[0], best * 1e-4f);
+			}
+		}
+		assertTrue(hits > 20);
+	}
+
+	@Test
+	/**
+	 * Culling polygons off the canvas gives the same image, while skipping
+	 * some of them.
+	 */
+	public void testSameImage() {
+		Mesh model = randomMesh(5000, 266);
+		int[][] pixels = new int[2][];
+		long[] culled = new long[2];
+		for (int culling = 0; culling < 2; culling++) {
+			// the model is centred on a canvas the size of the GUI's, so a
+			// smaller frame only shows part of it
+			SceneRenderer sceneRenderer = new SceneRenderer(350, 250);
+			sceneRenderer.parallel = false;
+			sceneRenderer.canvasCulling = culling == 1;
+			sceneRenderer.stats = new RenderStats();
+			sceneRenderer.setModel(model);
+			sceneRenderer.setCanvas(600, 600, 0, 0);
+			sceneRenderer.render(Transform.newYRotation(0.5f), Color.GRAY, Color.BLACK, Color.BLACK);
+			pixels[culling] = sceneRenderer.getFrame().pixels.clone();
+			culled[culling] = sceneRenderer.stats.getLast(Counter.CULLED);
+		}
+		assertArrayEquals(pixels[0], pixels[1]);
+		assertTrue(culled[1] > culled[0]);
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,146 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.DepthSorter;
+import renderer.Mesh;
+import renderer.RasterMode;
+import renderer.RenderStats;
+import renderer.RenderStats.Counter;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class DepthOrderingTests {
+
+	/** The depth of the nearest vertex of polygon p. */
+	private static float nearest(Mesh mesh, int p) {
+		return Math.min(mesh.zs[p * 3], Math.min(mesh.zs[p * 3 + 1], mesh.zs[p * 3 + 2]));
+	}
+
+	@Test
+	/**
+	 * Polygons come out nearest first by their nearest vertex, and ones at the
+	 * same depth stay in the order they were in.
+	 */
+	public void testSort() {
+		Mesh mesh = new Mesh(0);
+		float[] depths = { 5, -3, 5, 10, 0, -3, 7 };
+		for (float z : depths) {
+			mesh.add(0, 0, z + 2, 1, 0, z, 0, 1, z + 1, 0xffffff);
+		}
+		int[] polys = { 0, 1, 2, 3, 4, 5, 6 };
+		new DepthSorter().sort(mesh, polys, polys.length);
+		assertArrayEquals(new int[] { 1, 5, 4, 0, 2, 6, 3 }, polys);
+
+		// a polygon with no proper depth doesn't stop the others being sorted
+		mesh.add(0, 0, Float.NaN, 1, 0, 0, 0, 1, 0, 0xffffff);
+		mesh.add(0, 0, Float.NEGATIVE_INFINITY, 1, 0, 0, 0, 1, 0, 0xffffff);
+		polys = new int[] { 7, 0, 1, 2, 8, 3, 4, 5, 6 };
+		new DepthSorter().sort(mesh, polys, polys.length);
+		assertArrayEquals(new int[] { 7, 1, 8, 5, 4, 0, 2, 6, 3 }, polys);
+
+		// only the first count entries are touched
+		polys = new int[] { 3, 1, 0, 4 };
+		new DepthSorter().sort(mesh, polys, 2);
+		assertArrayEquals(new int[] { 1, 3, 0, 4 }, polys);
+	}
+
+	@Test
+	/**
+	 * A sort big enough to be split across threads gives the same order as
+	 * one on a single thread, and is in order up to the size of a key.
+	 */
+	public void testParallelSort() {
+		Random random = new Random(261);
+		Mesh mesh = new Mesh(0);
+		int count = 200000;
+		for (int i = 0; i < count; i++) {
+			float z = random.nextFloat() * 1000 - 500;
+			mesh.add(0, 0, z, 1, 0, z + random.nextFloat(), 0, 1, z + 1, 0xffffff);
+		}
+		int[] serial = new int[count];
+		int[] parallel = new int[count];
+		for (int i = 0; i < count; i++) {
+			serial[i] = parallel[i] = count - 1 - i;
+		}
+		new DepthSorter(new ForkJoinPool(1)).sort(mesh, serial, count);
+		new DepthSorter(new ForkJoinPool(4)).sort(mesh, parallel, count);
+		assertArrayEquals(serial, parallel);
+
+		boolean[] seen = new boolean[count];
+		float step = 1000f / ((1 << DepthSorter.KEY_BITS) - 1);
+		for (int i = 0; i < count; i++) {
+			seen[parallel[i]] = true;
+			if (i > 0) {
+				assertTrue(nearest(mesh, parallel[i]) >= nearest(mesh, parallel[i - 1]) - step);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			assertTrue(seen[i]);
+		}
+	}
+
+	/**
+	 * Squares stacked one behind another, farthest first, each a little
+	 * bigger than the one behind it and all at different depths, with one
+	 * small triangle in front of them all.
+	 */
+	private static Mesh stackModel() {
+		Mesh model = new Mesh(0);
+		for (int i = 0; i < 10; i++) {
+			float size = 11 + i, z = 10 - i * 2;
+			int color = 0x100000 * (i + 1);
+			model.add(-size, -size, z, -size, size, z, size, size, z, color);
+			model.add(-size, -size, z, size, size, z, size, -size, z, color);
+		}
+		model.add(-5, -5, -20, 0, 5, -20, 5, -5, -20, 0xffffff);
+		model.light = new Vector3D(0, 0, -1);
+		return model;
+	}
+
+	@Test
+	/**
+	 * Sorting front to back and deferring shading draw the same image, with
+	 * fewer pixels written and fewer polygons shaded, serially and in tiles,
+	 * with either rasterizer.
+	 */
+	public void testSameImage() {
+		Mesh model = stackModel();
+		for (RasterMode mode : RasterMode.values()) {
+			for (int parallel = 0; parallel < 2; parallel++) {
+				int[][] pixels = new int[2][];
+				long[] written = new long[2];
+				long[] shaded = new long[2];
+				for (int ordered = 0; ordered < 2; ordered++) {
+					SceneRenderer sceneRenderer = new SceneRenderer(600, 600);
+					sceneRenderer.rasterMode = mode;
+					sceneRenderer.parallel = parallel == 1;
+					sceneRenderer.depthOrdering = ordered == 1;
+					sceneRenderer.deferredShading = ordered == 1;
+					sceneRenderer.stats = new RenderStats();
+					sceneRenderer.setModel(model);
+					sceneRenderer.render(Transform.identity(), Color.GRAY, Color.BLACK, Color.BLACK);
+					pixels[ordered] = sceneRenderer.getFrame().pixels.clone();
+					written[ordered] = sceneRenderer.stats.getLast(Counter.PIXELS_WRITTEN);
+					shaded[ordered] = sceneRenderer.stats.getLast(Counter.SHADED);
+				}
+				String message = mode + " " + parallel;
+				assertArrayEquals(message, pixels[0], pixels[1]);
+				assertTrue(message, written[1] * 2 < written[0]);
+				assertEquals(message, 21, shaded[0]);
+				assertEquals(message, 3, shaded[1]);
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
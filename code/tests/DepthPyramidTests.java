@@ -0,0 +1,109 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import renderer.DepthPyramid;
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.RasterMode;
+import renderer.RenderStats;
+import renderer.RenderStats.Counter;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class DepthPyramidTests {
+
+	@Test
+	/**
+	 * A block is only occluded once everything in it is nearer, and only
+	 * after the pixels written there have been noted.
+	 */
+	public void testIsOccluded() {
+		FrameBuffer frame = new FrameBuffer(100, 100);
+		frame.clear(0);
+		DepthPyramid pyramid = frame.pyramid;
+		assertFalse(pyramid.isOccluded(0, 0, 7, 7, 1000));
+
+		for (int y = 0; y < 8; y++) {
+			for (int x = 0; x < 8; x++) {
+				frame.depth[y * frame.width + x] = x == 3 && y == 5 ? 10 : 5;
+			}
+		}
+		// nothing has been noted yet, so the pyramid still thinks it's empty
+		assertFalse(pyramid.isOccluded(0, 0, 7, 7, 20));
+		pyramid.markWritten(0, 0, 64);
+
+		assertTrue(pyramid.isOccluded(0, 0, 7, 7, 20));
+		assertTrue(pyramid.isOccluded(2, 2, 5, 5, 10));
+		assertFalse(pyramid.isOccluded(2, 2, 5, 5, 9));
+		// the next block along is still empty
+		assertFalse(pyramid.isOccluded(0, 0, 8, 7, 20));
+
+		frame.clear(0);
+		assertFalse(pyramid.isOccluded(0, 0, 7, 7, 20));
+	}
+
+	/**
+	 * A wall in front, drawn first, with a grid of small triangles behind it
+	 * and one poking out past its edge.
+	 */
+	private static Mesh wallModel() {
+		Mesh model = new Mesh(0);
+		model.add(-20, -20, -5, -20, 20, -5, 20, 20, -5, 0x808080);
+		model.add(-20, -20, -5, 20, 20, -5, 20, -20, -5, 0x808080);
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				float x = -15 + i * 3, y = -15 + j * 3;
+				model.add(x, y, 10, x + 1, y + 2, 10, x + 2, y, 10, 0xff0000);
+			}
+		}
+		model.add(15, 15, 10, 25, 30, 10, 30, 15, 10, 0x00ff00);
+		model.light = new Vector3D(0, 0, -1);
+		return model;
+	}
+
+	@Test
+	/**
+	 * Occlusion culling should skip the hidden triangles without changing the
+	 * image, both drawing serially and in tiles, with either rasterizer.
+	 */
+	public void testSameImage() {
+		Mesh model = wallModel();
+		for (RasterMode mode : RasterMode.values()) {
+			for (int parallel = 0; parallel < 2; parallel++) {
+				int[][] pixels = new int[2][];
+				for (int culling = 0; culling < 2; culling++) {
+					SceneRenderer sceneRenderer = new SceneRenderer(600, 600);
+					sceneRenderer.rasterMode = mode;
+					sceneRenderer.parallel = parallel == 1;
+					sceneRenderer.occlusionCulling = culling == 1;
+					sceneRenderer.stats = new RenderStats();
+					sceneRenderer.setModel(model);
+					sceneRenderer.render(Transform.identity(), Color.GRAY, Color.BLACK, Color.BLACK);
+					pixels[culling] = sceneRenderer.getFrame().pixels.clone();
+
+					RenderStats stats = sceneRenderer.stats;
+					if (culling == 0) {
+						assertEquals(0, stats.getLast(Counter.OCCLUDED));
+						assertEquals(0, stats.getLast(Counter.PIXELS_OCCLUDED));
+					} else {
+						// the grid is hidden, but the last one pokes out
+						assertTrue(mode + " " + parallel, stats.getLast(Counter.OCCLUDED) >= 100);
+						assertTrue(stats.getLast(Counter.PIXELS_OCCLUDED) > 0);
+					}
+				}
+				assertArrayEquals(mode + " " + parallel, pixels[0], pixels[1]);
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,84 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import renderer.BinaryScene;
+import renderer.Mesh;
+import renderer.SceneLoader;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class FlightRecorderTests {
+
+	@Test
+	/**
+	 * With the renderer events turned on, loading and drawing a frame should
+	 * record a load, a frame and each of its stages.
+	 */
+	public void testEvents() throws IOException {
+		Mesh mesh = new Mesh(2);
+		mesh.add(-10, -10, 0, 0, 10, 0, 10, -10, 0, 0xff0080);
+		mesh.add(-10, -10, 5, 10, -10, 5, 0, 10, 5, 0x00ff00);
+		mesh.light = new Vector3D(0, 0, -1);
+		File scene = File.createTempFile("scene", ".bin");
+		scene.deleteOnExit();
+		BinaryScene.write(mesh, scene);
+
+		File dump = File.createTempFile("recording", ".jfr");
+		dump.deleteOnExit();
+		try (Recording recording = new Recording()) {
+			recording.enable("renderer.Frame");
+			recording.enable("renderer.Stage");
+			recording.enable("renderer.SceneLoad");
+			recording.start();
+
+			SceneRenderer sceneRenderer = new SceneRenderer(600, 600);
+			sceneRenderer.setModel(SceneLoader.load(scene), "test scene");
+			sceneRenderer.render(Transform.identity(), Color.GRAY, Color.BLACK, Color.BLACK);
+
+			recording.stop();
+			recording.dump(dump.toPath());
+		}
+
+		List<String> stages = new ArrayList<String>();
+		int frames = 0;
+		int loads = 0;
+		for (RecordedEvent event : RecordingFile.readAllEvents(dump.toPath())) {
+			String name = event.getEventType().getName();
+			if (name.equals("renderer.Frame")) {
+				frames++;
+				assertEquals("test scene", event.getString("scene"));
+				assertEquals(2, event.getInt("polygons"));
+				assertEquals(1, event.getInt("visiblePolygons"));
+			} else if (name.equals("renderer.Stage")) {
+				assertEquals("test scene", event.getString("scene"));
+				stages.add(event.getString("stage"));
+			} else if (name.equals("renderer.SceneLoad")) {
+				loads++;
+				assertEquals("binary", event.getString("format"));
+				assertEquals(2, event.getInt("polygons"));
+				assertEquals(scene.length(), event.getLong("bytesRead"));
+			}
+		}
+		assertEquals(1, frames);
+		assertEquals(1, loads);
+		assertTrue(stages.contains("transform"));
+		assertTrue(stages.contains("cull"));
+		assertTrue(stages.contains("rasterize"));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,118 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.FrameBuffer;
+import renderer.GBuffer;
+import renderer.Light;
+import renderer.Lighting;
+import renderer.Mesh;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class GBufferTests {
+
+	/** Checks every channel of every pixel is within one step. */
+	static void assertClose(int[] expected, int[] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++) {
+			for (int shift = 0; shift < 24; shift += 8) {
+				int e = (expected[i] >> shift) & 0xff;
+				int a = (actual[i] >> shift) & 0xff;
+				assertTrue("pixel " + i + ": " + Integer.toHexString(expected[i]) + " vs "
+						+ Integer.toHexString(actual[i]), Math.abs(e - a) <= 1);
+			}
+		}
+	}
+
+	/** Makes a mesh of random triangles scattered through a cube. */
+	private static Mesh randomMesh(int size, long seed) {
+		Random random = new Random(seed);
+		Mesh mesh = new Mesh(size);
+		for (int i = 0; i < size; i++) {
+			float x = random.nextFloat() * 200 - 100;
+			float y = random.nextFloat() * 200 - 100;
+			float z = random.nextFloat() * 200 - 100;
+			mesh.add(x, y, z, x + random.nextFloat() * 40 - 20, y + random.nextFloat() * 40 - 20,
+					z + random.nextFloat() * 40 - 20, x + random.nextFloat() * 40 - 20,
+					y + random.nextFloat() * 40 - 20, z + random.nextFloat() * 40 - 20, random.nextInt(0x1000000));
+		}
+		mesh.light = new Vector3D(0.3f, -1, -0.6f);
+		return mesh;
+	}
+
+	@Test
+	/**
+	 * Lighting the G-buffer gives the colours the polygons are drawn with, up
+	 * to rounding, for any orientation and lights, and the same colours on
+	 * one thread as on several.
+	 */
+	public void testSameAsDrawn() {
+		Mesh model = randomMesh(3000, 271);
+		Random random = new Random(272);
+		for (int trial = 0; trial < 5; trial++) {
+			Transform orientation = Transform.newYRotation(random.nextFloat() * 6)
+					.compose(Transform.newXRotation(random.nextFloat() * 6));
+			Color ambient = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+			Color bottomLeft = trial % 2 == 0 ? Color.BLACK : new Color(random.nextInt(256), 0, random.nextInt(256));
+			Color bottomRight = trial < 3 ? Color.BLACK : new Color(0, random.nextInt(256), random.nextInt(256));
+
+			SceneRenderer sceneRenderer = new SceneRenderer(300, 300);
+			sceneRenderer.parallel = false;
+			sceneRenderer.polygonIds = true;
+			sceneRenderer.setModel(model);
+			sceneRenderer.render(orientation, ambient, bottomLeft, bottomRight);
+			FrameBuffer frame = sceneRenderer.getFrame();
+
+			GBuffer serial = new GBuffer(300, 300, new ForkJoinPool(1));
+			serial.parallel = false;
+			GBuffer parallel = new GBuffer(300, 300, new ForkJoinPool(4));
+			serial.build(frame, model);
+			parallel.build(frame, model);
+
+			Lighting lighting = new Lighting(ambient,
+					sceneRenderer.getLights(Light.cornerLights(bottomLeft, bottomRight)), orientation);
+			int[] serialPixels = new int[300 * 300];
+			int[] parallelPixels = new int[300 * 300];
+			serial.light(serialPixels, lighting);
+			parallel.light(parallelPixels, lighting);
+			assertArrayEquals(serialPixels, parallelPixels);
+			assertClose(frame.pixels, serialPixels);
+		}
+	}
+
+	@Test
+	/**
+	 * After turning the model the G-buffer is filled in again, so reshading
+	 * never shows an old frame.
+	 */
+	public void testRebuiltAfterRender() {
+		Mesh model = randomMesh(2000, 273);
+		SceneRenderer reshaded = new SceneRenderer(300, 300);
+		reshaded.polygonIds = true;
+		reshaded.setModel(model);
+		Color light = new Color(40, 80, 120);
+		for (int turn = 0; turn < 3; turn++) {
+			Transform orientation = Transform.newYRotation(turn * 0.7f);
+			reshaded.render(orientation, Color.GRAY, Color.BLACK, Color.BLACK);
+			reshaded.reshade(Color.DARK_GRAY, Color.BLACK, Color.BLACK);
+			reshaded.reshade(light, Color.BLACK, light);
+
+			SceneRenderer drawn = new SceneRenderer(300, 300);
+			drawn.setModel(model);
+			drawn.render(orientation, light, Color.BLACK, light);
+			assertClose(drawn.getFrame().pixels, reshaded.getFrame().pixels);
+		}
+	}
+}
+
+// code for COMP261 assignments
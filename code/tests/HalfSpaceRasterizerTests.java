@@ -0,0 +1,148 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.FrameBuffer;
+import renderer.HalfSpaceRasterizer;
+import renderer.Mesh;
+import renderer.RasterMode;
+import renderer.TileRasterizer;
+
+public class HalfSpaceRasterizerTests {
+
+	/**
+	 * Draws every polygon of the mesh, each one nearer than the last so it
+	 * always passes the depth test, and returns how many times each pixel was
+	 * drawn.
+	 */
+	private static int[] coverage(Mesh mesh, int canvas) {
+		int[] counts = new int[canvas * canvas];
+		for (int p = 0; p < mesh.size; p++) {
+			for (int v = p * 3; v < p * 3 + 3; v++) {
+				mesh.zs[v] = mesh.size - p;
+			}
+			FrameBuffer frame = new FrameBuffer(canvas, canvas);
+			frame.clear(0);
+			int written = HalfSpaceRasterizer.draw(frame, mesh, p, 1, 0, 0, canvas - 1, canvas - 1);
+			int drawn = 0;
+			for (int i = 0; i < counts.length; i++) {
+				if (frame.pixels[i] == 1) {
+					counts[i]++;
+					drawn++;
+				}
+			}
+			assertEquals(drawn, written);
+			assertEquals(drawn, HalfSpaceRasterizer.countPixels(mesh, p, 0, 0, canvas - 1, canvas - 1));
+		}
+		return counts;
+	}
+
+	/** Checks every pixel centre inside [min, max) is drawn once, and no others. */
+	private static void assertCoveredOnce(int[] counts, int canvas, int min, int max) {
+		for (int y = 0; y < canvas; y++) {
+			for (int x = 0; x < canvas; x++) {
+				boolean inside = x >= min && x < max && y >= min && y < max;
+				assertEquals("pixel " + x + ", " + y, inside ? 1 : 0, counts[y * canvas + x]);
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * A square cut into a grid of triangles with randomly moved inner
+	 * vertices, in both windings, should have every pixel inside drawn
+	 * exactly once.
+	 */
+	public void testSharedEdges() {
+		int canvas = 100;
+		int cells = 6;
+		float min = 10, max = 90, cell = (max - min) / cells;
+		Random random = new Random(261);
+		float[][] xs = new float[cells + 1][cells + 1];
+		float[][] ys = new float[cells + 1][cells + 1];
+		for (int i = 0; i <= cells; i++) {
+			for (int j = 0; j <= cells; j++) {
+				boolean inner = i > 0 && i < cells && j > 0 && j < cells;
+				xs[i][j] = min + i * cell + (inner ? (random.nextFloat() - 0.5f) * cell * 0.8f : 0);
+				ys[i][j] = min + j * cell + (inner ? (random.nextFloat() - 0.5f) * cell * 0.8f : 0);
+			}
+		}
+		Mesh mesh = new Mesh(cells * cells * 2);
+		for (int i = 0; i < cells; i++) {
+			for (int j = 0; j < cells; j++) {
+				mesh.add(xs[i][j], ys[i][j], 0, xs[i + 1][j], ys[i + 1][j], 0, xs[i + 1][j + 1], ys[i + 1][j + 1], 0, 0);
+				// the other triangle is wound the other way
+				mesh.add(xs[i][j], ys[i][j], 0, xs[i][j + 1], ys[i][j + 1], 0, xs[i + 1][j + 1], ys[i + 1][j + 1], 0, 0);
+			}
+		}
+
+		assertCoveredOnce(coverage(mesh, canvas), canvas, 10, 90);
+	}
+
+	@Test
+	/**
+	 * Edges running exactly through pixel centres, horizontally, vertically
+	 * and diagonally, are where the top-left rule decides which triangle gets
+	 * the pixel.
+	 */
+	public void testEdgesThroughPixelCentres() {
+		int canvas = 100;
+		float c = 50.5f, lo = 10.5f, hi = 90.5f;
+		float[] ring = { lo, lo, c, lo, hi, lo, hi, c, hi, hi, c, hi, lo, hi, lo, c };
+		Mesh mesh = new Mesh(8);
+		for (int i = 0; i < 8; i++) {
+			int j = (i + 1) % 8;
+			mesh.add(c, c, 0, ring[i * 2], ring[i * 2 + 1], 0, ring[j * 2], ring[j * 2 + 1], 0, 0);
+		}
+
+		// centres from 10.5 up to but not including 90.5
+		assertCoveredOnce(coverage(mesh, canvas), canvas, 10, 90);
+	}
+
+	@Test
+	/** Drawing in tiles on several threads should match drawing in one go. */
+	public void testTiledSameAsSerial() {
+		int canvas = 300;
+		Random random = new Random(15);
+		Mesh mesh = new Mesh(1000);
+		for (int i = 0; i < 1000; i++) {
+			float x = random.nextFloat() * (canvas + 40) - 20;
+			float y = random.nextFloat() * (canvas + 40) - 20;
+			float r = random.nextFloat() * 60;
+			mesh.add(x, y, random.nextFloat() * 100,
+					x + random.nextFloat() * r, y + random.nextFloat() * r, random.nextFloat() * 100,
+					x - random.nextFloat() * r, y + random.nextFloat() * r, random.nextFloat() * 100,
+					random.nextInt(0x1000000));
+		}
+		int[] polys = new int[mesh.size];
+		for (int p = 0; p < mesh.size; p++) {
+			polys[p] = p;
+		}
+
+		FrameBuffer serial = new FrameBuffer(canvas, canvas);
+		serial.clear(0);
+		int written = 0;
+		for (int p = 0; p < mesh.size; p++) {
+			written += HalfSpaceRasterizer.draw(serial, mesh, p, mesh.reflectance[p], 0, 0, canvas - 1, canvas - 1);
+		}
+		assertTrue(written > 0);
+
+		FrameBuffer tiled = new FrameBuffer(canvas, canvas);
+		tiled.clear(0);
+		TileRasterizer tileRasterizer = new TileRasterizer();
+		tileRasterizer.mode = RasterMode.HALF_SPACE;
+		tileRasterizer.rasterize(tiled, mesh, polys, polys.length, mesh.reflectance);
+
+		for (int i = 0; i < canvas * canvas; i++) {
+			assertEquals(serial.pixels[i], tiled.pixels[i]);
+			assertEquals(serial.depth[i], tiled.depth[i], 0);
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,141 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.IndexedMesh;
+import renderer.Mesh;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class IndexedMeshTests {
+
+	/**
+	 * Makes a sphere of triangles around the origin, with the given number of
+	 * rings from pole to pole and segments around. Neighbouring triangles
+	 * have exactly the same corners.
+	 */
+	static Mesh sphere(int rings, int segments, float radius) {
+		Mesh mesh = new Mesh(0);
+		for (int i = 0; i < rings; i++) {
+			for (int j = 0; j < segments; j++) {
+				float[] a = point(i, j, rings, segments, radius);
+				float[] b = point(i + 1, j, rings, segments, radius);
+				float[] c = point(i + 1, j + 1, rings, segments, radius);
+				float[] d = point(i, j + 1, rings, segments, radius);
+				// the triangles touching a pole would have two corners there
+				if (i < rings - 1) {
+					mesh.add(a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1], c[2], 0xc08040);
+				}
+				if (i > 0) {
+					mesh.add(a[0], a[1], a[2], c[0], c[1], c[2], d[0], d[1], d[2], 0xc08040);
+				}
+			}
+		}
+		mesh.light = new Vector3D(0.4f, -0.5f, -1);
+		return mesh;
+	}
+
+	private static float[] point(int i, int j, int rings, int segments, float radius) {
+		if (i == 0 || i == rings) {
+			return new float[] { 0, i == 0 ? radius : -radius, 0 };
+		}
+		double theta = Math.PI * i / rings;
+		double phi = 2 * Math.PI * (j % segments) / segments;
+		return new float[] { (float) (radius * Math.sin(theta) * Math.cos(phi)),
+				(float) (radius * Math.cos(theta)), (float) (radius * Math.sin(theta) * Math.sin(phi)) };
+	}
+
+	@Test
+	/** The twelve triangles of a cube share its eight corners. */
+	public void testWeldCube() {
+		float[][] corners = new float[8][];
+		for (int i = 0; i < 8; i++) {
+			corners[i] = new float[] { (i & 1) * 10, (i >> 1 & 1) * 10, (i >> 2 & 1) * 10 };
+		}
+		int[][] faces = { { 0, 1, 3, 2 }, { 4, 6, 7, 5 }, { 0, 4, 5, 1 }, { 2, 3, 7, 6 }, { 0, 2, 6, 4 },
+				{ 1, 5, 7, 3 } };
+		Mesh cube = new Mesh(0);
+		for (int[] face : faces) {
+			float[] a = corners[face[0]], b = corners[face[1]], c = corners[face[2]], d = corners[face[3]];
+			cube.add(a[0], a[1], a[2], b[0], b[1], b[2], c[0], c[1], c[2], 0xffffff);
+			cube.add(a[0], a[1], a[2], c[0], c[1], c[2], d[0], d[1], d[2], 0xffffff);
+		}
+
+		IndexedMesh indexed = new IndexedMesh(cube);
+		assertEquals(12, indexed.size);
+		assertEquals(8, indexed.vertexCount);
+		for (int i = 0; i < 36; i++) {
+			int v = indexed.indices[i];
+			assertEquals(cube.xs[i], indexed.xs[v], 0);
+			assertEquals(cube.ys[i], indexed.ys[v], 0);
+			assertEquals(cube.zs[i], indexed.zs[v], 0);
+		}
+
+		// corners a little apart are welded with a tolerance, but not without
+		Mesh nudged = new Mesh(0);
+		nudged.add(0, 0, 0, 1, 0, 0, 0, 1, 0, 0xffffff);
+		nudged.add(0.0001f, 0, 0, 0, 1, 0, 1, 1, 0, 0xffffff);
+		assertEquals(4, new IndexedMesh(nudged, 0.01f, ForkJoinPool.commonPool()).vertexCount);
+		assertEquals(5, new IndexedMesh(nudged, 0, ForkJoinPool.commonPool()).vertexCount);
+	}
+
+	@Test
+	/**
+	 * The vertex normals of a sphere point straight out from (or all straight
+	 * into) its centre, and are the same however many threads work them out.
+	 */
+	public void testSphereNormals() {
+		Mesh model = sphere(200, 200, 50);
+		IndexedMesh indexed = new IndexedMesh(model);
+		assertEquals(199 * 200 + 2, indexed.vertexCount);
+
+		float sign = 0;
+		for (int v = 0; v < indexed.vertexCount; v++) {
+			float length = (float) Math.sqrt(
+					indexed.xs[v] * indexed.xs[v] + indexed.ys[v] * indexed.ys[v] + indexed.zs[v] * indexed.zs[v]);
+			float cos = (indexed.xs[v] * indexed.normalXs[v] + indexed.ys[v] * indexed.normalYs[v]
+					+ indexed.zs[v] * indexed.normalZs[v]) / length;
+			if (sign == 0) {
+				sign = Math.signum(cos);
+			}
+			assertTrue("vertex " + v + ": " + cos, cos * sign > 0.999f);
+		}
+
+		IndexedMesh serial = new IndexedMesh(model, 1e-4f, new ForkJoinPool(1));
+		IndexedMesh parallel = new IndexedMesh(model, 1e-4f, new ForkJoinPool(4));
+		assertArrayEquals(serial.indices, parallel.indices);
+		assertArrayEquals(serial.normalXs, parallel.normalXs, 0);
+		assertArrayEquals(serial.normalYs, parallel.normalYs, 0);
+		assertArrayEquals(serial.normalZs, parallel.normalZs, 0);
+	}
+
+	@Test
+	/** Transforming the welded vertices gives the same mesh as Mesh.transform. */
+	public void testTransform() {
+		Mesh model = sphere(30, 40, 80);
+		IndexedMesh indexed = new IndexedMesh(model);
+		assertTrue(indexed.vertexCount < model.size);
+		Transform transform = Transform.newYRotation(0.7f).compose(Transform.newXRotation(-1.1f))
+				.compose(Transform.newScale(2.5f, 2.5f, 2.5f));
+
+		Mesh expected = new Mesh(0);
+		model.transform(transform, expected);
+		Mesh actual = new Mesh(0);
+		indexed.transform(transform, actual);
+		assertEquals(expected.size, actual.size);
+		int n = model.size * 3;
+		assertArrayEquals(Arrays.copyOf(expected.xs, n), Arrays.copyOf(actual.xs, n), 0);
+		assertArrayEquals(Arrays.copyOf(expected.ys, n), Arrays.copyOf(actual.ys, n), 0);
+		assertArrayEquals(Arrays.copyOf(expected.zs, n), Arrays.copyOf(actual.zs, n), 0);
+		assertTrue(actual.reflectance == model.reflectance);
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,232 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.BinaryScene;
+import renderer.Light;
+import renderer.Lighting;
+import renderer.Mesh;
+import renderer.Pipeline;
+import renderer.SceneFormatException;
+import renderer.SceneRenderer;
+import renderer.ShadingMode;
+import renderer.TextSceneParser;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class LightingTests {
+
+	@Test
+	/**
+	 * The file's light and the corner lights give the same colours as
+	 * getShading, up to rounding, with the normal in model space and the
+	 * corner lights turned back into it.
+	 */
+	public void testSameAsGetShading() {
+		Random random = new Random(221);
+		Vector3D fileLight = new Vector3D(0.3f, -1, -0.6f);
+		float[] light = new float[3];
+		for (int trial = 0; trial < 1000; trial++) {
+			Transform orientation = Transform.newYRotation(random.nextFloat() * 6)
+					.compose(Transform.newXRotation(random.nextFloat() * 6));
+			Color ambient = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+			Color bottomLeft = new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256));
+			Color bottomRight = trial % 2 == 0 ? Color.BLACK : new Color(random.nextInt(256), 0, 0);
+			Vector3D normal = new Vector3D(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f,
+					random.nextFloat() - 0.5f).unitVector();
+			int reflectance = random.nextInt(0x1000000);
+
+			List<Light> lights = Light.cornerLights(bottomLeft, bottomRight);
+			lights.add(Light.directional(fileLight, Color.WHITE));
+			Lighting lighting = new Lighting(ambient, lights, orientation);
+			lighting.sum(normal.x, normal.y, normal.z, 0, 0, 0, light, 0);
+			int actual = Lighting.colour(light, 0, reflectance);
+
+			int expected = Pipeline.getShading(orientation.multiply(normal), reflectance,
+					orientation.multiply(fileLight), Color.WHITE, ambient, bottomLeft, bottomRight);
+			GBufferTests.assertClose(new int[] { expected }, new int[] { actual });
+		}
+	}
+
+	@Test
+	/**
+	 * Lights that are off, and point lights too weak to reach half a step,
+	 * are left out, and leaving them out changes nothing.
+	 */
+	public void testOffLightsLeftOut() {
+		List<Light> lights = new ArrayList<Light>();
+		lights.add(Light.directional(new Vector3D(0, 0, -1), new Color(100, 150, 200)));
+		Lighting one = new Lighting(Color.DARK_GRAY, lights, Transform.identity());
+		assertEquals(1, one.count);
+
+		for (int i = 0; i < 20; i++) {
+			lights.add(Light.directional(new Vector3D(i, 1, 0), Color.BLACK));
+			lights.add(Light.point(new Vector3D(0, i, 0), Color.BLACK, 1, 0, 0));
+		}
+		// at best 1/1000 of 255, under half a step anywhere
+		lights.add(Light.point(new Vector3D(0, 0, -5), Color.WHITE, 1000, 0, 0));
+		Lighting many = new Lighting(Color.DARK_GRAY, lights, Transform.identity());
+		assertEquals(1, many.count);
+		assertTrue(many.sameAs(one));
+		assertTrue(!many.hasPointLights);
+	}
+
+	@Test
+	/**
+	 * A point light falls off with distance as its attenuation says, shines
+	 * on a surface at the angle from the surface to it, and is skipped once
+	 * it is too far away to matter.
+	 */
+	public void testPointLight() {
+		List<Light> lights = new ArrayList<Light>();
+		lights.add(Light.point(new Vector3D(0, 0, -10), new Color(255, 128, 0), 1, 0.5f, 0.25f));
+		Lighting lighting = new Lighting(Color.BLACK, lights, Transform.identity());
+		assertEquals(1, lighting.count);
+		assertTrue(lighting.hasPointLights);
+
+		float[] light = new float[3];
+		// straight on, 4 away
+		lighting.sum(0, 0, -1, 0, 0, -6, light, 0);
+		float attenuation = 1 / (1 + 0.5f * 4 + 0.25f * 16);
+		assertEquals(attenuation, light[0], 1e-5f);
+		assertEquals(attenuation * 128 / 255, light[1], 1e-5f);
+		assertEquals(0, light[2], 0);
+
+		// 4 away at 60 degrees
+		lighting.sum(0, 0, -1, 2 * (float) Math.sqrt(3), 0, -8, light, 0);
+		assertEquals(attenuation / 2, light[0], 1e-5f);
+
+		// from behind
+		lighting.sum(0, 0, 1, 0, 0, -6, light, 0);
+		assertEquals(0, light[0], 0);
+
+		// far enough away that it would add under half a step
+		lighting.sum(0, 0, -1, 0, 0, 1000, light, 0);
+		assertEquals(0, light[0], 0);
+		assertEquals(0, Lighting.colour(light, 0, 0xffffff));
+
+		try {
+			Light.point(new Vector3D(0, 0, 0), Color.WHITE, 0, 0, 0);
+			fail("expected an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// no attenuation at all isn't allowed
+		}
+	}
+
+	private static final String SCENE = "0 0 -1\n"
+			+ "directional 1 1 -1 10 20 30\n"
+			+ "-20 -20 0 -20 20 0 20 20 0 200 100 50\n"
+			+ "point 0 0 -30 255 255 255 1 0 0.001\n"
+			+ "\n"
+			+ "-20 -20 0 20 20 0 20 -20 0 200 100 50\n";
+
+	private static File writeScene(String contents) throws IOException {
+		File file = File.createTempFile("scene", ".txt");
+		file.deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write(contents);
+		}
+		return file;
+	}
+
+	private static void assertLights(Mesh mesh) {
+		assertEquals(2, mesh.size);
+		assertEquals(2, mesh.lights.size());
+		Light directional = mesh.lights.get(0);
+		assertEquals(Light.Type.DIRECTIONAL, directional.type);
+		assertEquals(new Vector3D(1, 1, -1), directional.vector);
+		assertEquals(new Color(10, 20, 30), directional.color);
+		Light point = mesh.lights.get(1);
+		assertEquals(Light.Type.POINT, point.type);
+		assertEquals(new Vector3D(0, 0, -30), point.vector);
+		assertEquals(Color.WHITE, point.color);
+		assertEquals(1, point.constant, 0);
+		assertEquals(0, point.linear, 0);
+		assertEquals(0.001f, point.quadratic, 0);
+		assertArrayEquals(new int[] { 3, 6 }, new int[] { mesh.sourceLines[0], mesh.sourceLines[1] });
+	}
+
+	@Test
+	/**
+	 * Lights can be given in the scene file, between the polygons, and are
+	 * kept in binary scene files.
+	 */
+	public void testSceneFile() throws IOException {
+		File text = writeScene(SCENE);
+		assertLights(TextSceneParser.parse(text));
+		// a threshold of 0 splits even this tiny file into chunks
+		assertLights(TextSceneParser.parse(text, 4, 0));
+
+		File binary = File.createTempFile("scene", ".bin");
+		binary.deleteOnExit();
+		BinaryScene.convert(text, binary);
+		assertLights(BinaryScene.read(binary));
+
+		String[] bad = { "0 0 -1\ndirectional 1 1 -1 10 20\n", "0 0 -1\npoint 0 0 0 1 2 3 0 0 0\n",
+				"0 0 -1\n\nspot 0 0 0 1 2 3\n" };
+		long[] lines = { 2, 2, 3 };
+		for (int i = 0; i < bad.length; i++) {
+			try {
+				TextSceneParser.parse(writeScene(bad[i]));
+				fail("expected a SceneFormatException");
+			} catch (SceneFormatException e) {
+				assertEquals(lines[i], e.getLine());
+			}
+		}
+	}
+
+	@Test
+	/**
+	 * A model lit by sixteen point lights draws the same on one thread as on
+	 * several, and reshades to the same image as drawing it again, in every
+	 * shading mode.
+	 */
+	public void testManyLights() {
+		Mesh model = IndexedMeshTests.sphere(16, 24, 50);
+		List<Light> lights = new ArrayList<Light>();
+		for (int i = 0; i < 16; i++) {
+			double angle = 2 * Math.PI * i / 16;
+			lights.add(Light.point(new Vector3D(80 * (float) Math.cos(angle), 20, 80 * (float) Math.sin(angle)),
+					Color.getHSBColor(i / 16f, 0.7f, 1), 0, 0, 1 / 2000f));
+		}
+		Transform orientation = Transform.newYRotation(0.5f).compose(Transform.newXRotation(0.2f));
+
+		for (ShadingMode mode : ShadingMode.values()) {
+			int[] expected = null;
+			for (int parallel = 0; parallel < 2; parallel++) {
+				SceneRenderer sceneRenderer = new SceneRenderer(400, 400);
+				sceneRenderer.shadingMode = mode;
+				sceneRenderer.parallel = parallel == 1;
+				sceneRenderer.setModel(model);
+				sceneRenderer.render(orientation, Color.DARK_GRAY, lights);
+				if (expected == null) {
+					expected = sceneRenderer.getFrame().pixels.clone();
+				}
+				assertArrayEquals(mode.toString(), expected, sceneRenderer.getFrame().pixels);
+			}
+
+			SceneRenderer reshaded = new SceneRenderer(400, 400);
+			reshaded.shadingMode = mode;
+			reshaded.polygonIds = true;
+			reshaded.setModel(model);
+			reshaded.render(orientation, Color.GRAY, Color.BLACK, Color.BLACK);
+			reshaded.reshade(Color.DARK_GRAY, lights);
+			GBufferTests.assertClose(expected, reshaded.getFrame().pixels);
+		}
+	}
+}
+
+// code for COMP261 assignments
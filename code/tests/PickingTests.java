@@ -0,0 +1,158 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import renderer.BinaryScene;
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.RasterMode;
+import renderer.SceneLoader;
+import renderer.SceneRenderer;
+import renderer.TextSceneParser;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class PickingTests {
+
+	/** A square made of polygons 0 and 1, with triangle 2 in front of it. */
+	private static Mesh squareModel() {
+		Mesh model = new Mesh(0);
+		model.add(-20, -20, 10, -20, 20, 10, 20, 20, 10, 0x804020);
+		model.add(-20, -20, 10, 20, 20, 10, 20, -20, 10, 0x204080);
+		model.add(-5, -5, -20, 0, 5, -20, 5, -5, -20, 0xffffff);
+		model.light = new Vector3D(0, 0, -1);
+		return model;
+	}
+
+	@Test
+	/**
+	 * The polygon picked is the nearest one drawn at that pixel, for either
+	 * rasterizer, and the same serially and in tiles.
+	 */
+	public void testPick() {
+		for (RasterMode mode : RasterMode.values()) {
+			int[] expected = null;
+			for (int parallel = 0; parallel < 2; parallel++) {
+				SceneRenderer sceneRenderer = new SceneRenderer(600, 600);
+				sceneRenderer.rasterMode = mode;
+				sceneRenderer.parallel = parallel == 1;
+				sceneRenderer.polygonIds = true;
+				sceneRenderer.setModel(squareModel());
+				sceneRenderer.render(Transform.identity(), Color.GRAY, Color.BLACK, Color.BLACK);
+
+				String message = mode + " " + parallel;
+				assertEquals(message, 2, sceneRenderer.pick(300, 300));
+				assertEquals(message, FrameBuffer.NO_POLYGON, sceneRenderer.pick(0, 0));
+				assertEquals(message, FrameBuffer.NO_POLYGON, sceneRenderer.pick(-1, 700));
+				assertEquals(message, 0, sceneRenderer.pick(200, 400));
+				assertEquals(message, 1, sceneRenderer.pick(400, 200));
+
+				int[] ids = sceneRenderer.getFrame().ids;
+				if (expected == null) {
+					expected = ids.clone();
+				}
+				assertArrayEquals(message, expected, ids);
+			}
+		}
+	}
+
+	@Test
+	/** Without polygonIds there is nothing to pick, or to reshade. */
+	public void testIdsOff() {
+		SceneRenderer sceneRenderer = new SceneRenderer(600, 600);
+		sceneRenderer.setModel(squareModel());
+		sceneRenderer.render(Transform.identity(), Color.GRAY, Color.BLACK, Color.BLACK);
+		assertEquals(null, sceneRenderer.getFrame().ids);
+		assertEquals(FrameBuffer.NO_POLYGON, sceneRenderer.pick(300, 300));
+		assertTrue(!sceneRenderer.canReshade());
+		assertEquals(null, sceneRenderer.reshade(Color.GRAY, Color.BLACK, Color.BLACK));
+	}
+
+	@Test
+	/**
+	 * Changing the lights with reshade gives the same image as drawing the
+	 * frame again with them (up to rounding), with and without the corner
+	 * lights, and keeps the polygon ids.
+	 */
+	public void testReshade() {
+		Transform orientation = Transform.newYRotation(0.3f).compose(Transform.newXRotation(0.2f));
+		Color[][] lights = { { Color.GRAY, Color.BLACK, Color.BLACK },
+				{ new Color(30, 60, 90), Color.BLACK, Color.BLACK },
+				{ new Color(30, 60, 90), new Color(200, 0, 0), new Color(0, 0, 150) },
+				{ Color.DARK_GRAY, new Color(0, 100, 0), Color.BLACK } };
+
+		SceneRenderer reshaded = new SceneRenderer(600, 600);
+		reshaded.polygonIds = true;
+		reshaded.setModel(squareModel());
+		reshaded.render(orientation, lights[0][0], lights[0][1], lights[0][2]);
+		int[] ids = reshaded.getFrame().ids.clone();
+		for (Color[] light : lights) {
+			SceneRenderer drawn = new SceneRenderer(600, 600);
+			drawn.setModel(squareModel());
+			drawn.render(orientation, light[0], light[1], light[2]);
+
+			assertTrue(reshaded.canReshade());
+			reshaded.reshade(light[0], light[1], light[2]);
+			GBufferTests.assertClose(drawn.getFrame().pixels, reshaded.getFrame().pixels);
+			assertArrayEquals(ids, reshaded.getFrame().ids);
+		}
+
+		// A new model can't be reshaded until it has been drawn
+		reshaded.setModel(squareModel());
+		assertTrue(!reshaded.canReshade());
+	}
+
+	private static final String SCENE = "-0.5 -1 -0.7\n"
+			+ "10 5 5 2 3 2 9 5 4 255 0 128\n"
+			+ "\n"
+			+ "-1.5 2e1 0.25 3 -4 5 6 7 -8.125 1 2 3\n"
+			+ "0 0 0 1 0 0 0 1 0 9 9 9\n"
+			+ "\n"
+			+ "\n"
+			+ "0 0 0 1 0 0 0 1 0 7 7 7\n";
+
+	@Test
+	/**
+	 * Each polygon remembers the line of the scene file it came from, however
+	 * the file is parsed and when it is cached in binary.
+	 */
+	public void testSourceLines() throws IOException {
+		File text = File.createTempFile("scene", ".txt");
+		text.deleteOnExit();
+		SceneLoader.getCacheFile(text).deleteOnExit();
+		try (FileWriter writer = new FileWriter(text)) {
+			writer.write(SCENE);
+		}
+		int[] expected = { 2, 4, 5, 8 };
+
+		Mesh serial = TextSceneParser.parse(text);
+		assertArrayEquals(expected, Arrays.copyOf(serial.sourceLines, serial.size));
+		// a threshold of 0 splits even this tiny file into chunks
+		Mesh parallel = TextSceneParser.parse(text, 4, 0);
+		assertArrayEquals(expected, Arrays.copyOf(parallel.sourceLines, parallel.size));
+
+		File binary = File.createTempFile("scene", ".bin");
+		binary.deleteOnExit();
+		BinaryScene.convert(text, binary);
+		assertArrayEquals(expected, BinaryScene.read(binary).sourceLines);
+
+		// loading twice reads the cache the second time
+		SceneLoader.load(text);
+		Mesh cached = SceneLoader.load(text);
+		assertArrayEquals(expected, cached.sourceLines);
+		assertEquals(8, cached.getSourceLine(3));
+		assertEquals(0, squareModel().getSourceLine(0));
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,90 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import renderer.EdgeList;
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.Pipeline;
+import renderer.RenderStats;
+import renderer.RenderStats.Counter;
+import renderer.RenderStats.Stage;
+import renderer.SceneRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class RenderStatsTests {
+
+	@Test
+	/** Percentiles are taken by nearest rank over the frames kept. */
+	public void testPercentiles() {
+		RenderStats stats = new RenderStats(10);
+		// 20 frames, only the last 10 (values 11 to 20) are kept
+		for (int i = 1; i <= 20; i++) {
+			stats.beginFrame();
+			stats.addTime(Stage.SHADE, i);
+			stats.addCount(Counter.RASTERIZED, i * 10);
+			stats.endFrame();
+		}
+
+		assertEquals(20, stats.getFrames());
+		assertEquals(20, stats.getLast(Stage.SHADE));
+		assertEquals(15, stats.getPercentile(Stage.SHADE, 50));
+		assertEquals(20, stats.getPercentile(Stage.SHADE, 95));
+		assertEquals(11, stats.getPercentile(Stage.SHADE, 0));
+		assertEquals(190, stats.getPercentile(Counter.RASTERIZED, 90));
+		assertTrue(stats.toJson().contains("\"shade\":{\"last\":20,\"p50\":15,\"p95\":20,\"p99\":20}"));
+	}
+
+	@Test
+	/**
+	 * A polygon drawn into an empty frame should write every pixel it tests,
+	 * and drawing it again behind itself should write none.
+	 */
+	public void testPixelCounts() {
+		FrameBuffer frame = new FrameBuffer(50, 50);
+		frame.clear(0);
+		EdgeList edgeList = Pipeline.computeEdgeList(5, 5, 10, 40, 8, 10, 20, 45, 10, new EdgeList(0, -1));
+
+		int tested = Pipeline.countPixels(edgeList, 0, 0, 49, 49);
+		assertTrue(tested > 0);
+		assertEquals(tested, Pipeline.computeZBuffer(frame, edgeList, 0xff0000));
+		assertEquals(0, Pipeline.computeZBuffer(frame, edgeList, 0x00ff00));
+	}
+
+	@Test
+	/** The tiled and serial renderers should count the same work. */
+	public void testSerialAndParallelCounts() {
+		Mesh model = new Mesh(3);
+		// two facing the viewer, one in front of the other, and one facing away
+		model.add(-10, -10, 0, 0, 10, 0, 10, -10, 0, 0xff0080);
+		model.add(-10, -10, 5, 10, -10, 5, 0, 10, 5, 0x00ff00);
+		model.add(-5, -5, -2, 0, 5, -2, 5, -5, -2, 0x0000ff);
+		model.light = new Vector3D(0, 0, -1);
+
+		long[] written = new long[2];
+		for (int i = 0; i < 2; i++) {
+			SceneRenderer sceneRenderer = new SceneRenderer(600, 600);
+			sceneRenderer.parallel = i == 1;
+			sceneRenderer.stats = new RenderStats();
+			sceneRenderer.setModel(model);
+			sceneRenderer.render(Transform.identity(), Color.GRAY, Color.BLACK, Color.BLACK);
+
+			RenderStats stats = sceneRenderer.stats;
+			assertEquals(3, stats.getLast(Counter.SUBMITTED));
+			assertEquals(1, stats.getLast(Counter.CULLED));
+			assertEquals(2, stats.getLast(Counter.RASTERIZED));
+			assertTrue(stats.getLast(Counter.PIXELS_WRITTEN) >= stats.getLast(Counter.PIXELS_COVERED));
+			assertTrue(stats.getOverdraw() > 1);
+			written[i] = stats.getLast(Counter.PIXELS_WRITTEN);
+		}
+		assertEquals(written[0], written[1]);
+	}
+}
+
+// code for COMP261 assignments
@@ -5,11 +5,13 @@ import static org.junit.Assert.assertTrue;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.junit.Assume;
 import org.junit.Test;
 
 import renderer.Pipeline;
 import renderer.Scene;
 import renderer.Scene.Polygon;
+import renderer.Transform;
 import renderer.Vector3D;
 
 /**
@@ -112,6 +114,67 @@ public class RotationTests {
 
 		assertTrue(eq(expected, p2));
 	}
+
+	@Test
+	/**
+	 * Transforming arrays of points in one go should give the same answers as
+	 * transforming them one Vector3D at a time, including in place.
+	 */
+	public void testBatchTransform() {
+		Transform t = Transform.newTranslation(3, -2, 7).compose(Transform.newYRotation(0.3f))
+				.compose(Transform.newXRotation(0.6f));
+		float[] xs = new float[] { 10, 2, 9, -4 };
+		float[] ys = new float[] { 5, 3, 5, 0.5f };
+		float[] zs = new float[] { 5, 2, 4, -8 };
+
+		Vector3D[] expected = new Vector3D[4];
+		for (int i = 0; i < 4; i++)
+			expected[i] = t.multiply(new Vector3D(xs[i], ys[i], zs[i]));
+
+		t.multiply(xs, ys, zs, xs, ys, zs, 1, 3);
+
+		assertTrue(new Vector3D(xs[0], ys[0], zs[0]).equals(new Vector3D(10, 5, 5)));
+		for (int i = 1; i < 4; i++)
+			assertTrue(new Vector3D(xs[i], ys[i], zs[i]).equals(expected[i]));
+	}
+
+	@Test
+	/**
+	 * A batch big enough for the Vector API kernel gives exactly the same
+	 * answers as the plain loop, including the points left over at the end.
+	 * The kernel is only built by the benchmarks, so without it on the class
+	 * path this test is skipped. To run it with the kernel, compile it next to
+	 * the other classes and run the tests with the incubator module, e.g.
+	 *
+	 * javac --release 17 --add-modules jdk.incubator.vector -d <classes>
+	 *     -cp <classes> vector/renderer/VectorTransform.java
+	 * java --add-modules jdk.incubator.vector -cp <classes>:<junit>
+	 *     org.junit.runner.JUnitCore tests.RotationTests
+	 */
+	public void testVectorBatchTransform() {
+		Assume.assumeTrue(Transform.isVectorKernelAvailable());
+		Transform t = Transform.newTranslation(3, -2, 7).compose(Transform.newYRotation(0.3f))
+				.compose(Transform.newXRotation(0.6f)).compose(Transform.newScale(2.5f, 2.5f, 2.5f));
+		int count = Transform.VECTOR_MIN_POINTS * 4 + 3;
+		float[][] in = new float[3][count + 1];
+		java.util.Random random = new java.util.Random(4);
+		for (int c = 0; c < 3; c++)
+			for (int i = 0; i <= count; i++)
+				in[c][i] = random.nextFloat() * 200 - 100;
+
+		float[][][] out = new float[2][3][count + 1];
+		boolean vector = Transform.vectorTransform;
+		try {
+			for (int pass = 0; pass < 2; pass++) {
+				Transform.vectorTransform = pass == 1;
+				t.multiply(in[0], in[1], in[2], out[pass][0], out[pass][1], out[pass][2], 1, count);
+			}
+		} finally {
+			Transform.vectorTransform = vector;
+		}
+		for (int c = 0; c < 3; c++)
+			assertTrue(java.util.Arrays.equals(out[0][c], out[1][c]));
+	}
 }
 
 // code for COMP261 assignments
\ No newline at end of file
@@ -0,0 +1,127 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import renderer.BinaryScene;
+import renderer.Mesh;
+import renderer.SceneLoader;
+
+public class SceneLoaderTests {
+
+	private static final String SCENE = "-0.5 -1 -0.7\n"
+			+ "10 5 5 2 3 2 9 5 4 255 0 128\n"
+			+ "-1.5 2e1 0.25 3 -4 5 6 7 -8.125 1 2 3\n";
+
+	private static File writeScene(String contents) throws IOException {
+		File file = File.createTempFile("scene", ".txt");
+		file.deleteOnExit();
+		SceneLoader.getCacheFile(file).deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write(contents);
+		}
+		return file;
+	}
+
+	private static void assertSameMesh(Mesh expected, Mesh actual) {
+		assertEquals(expected.size, actual.size);
+		assertTrue(expected.light.equals(actual.light));
+		for (int v = 0; v < expected.size * 3; v++) {
+			assertEquals(expected.xs[v], actual.xs[v], 0);
+			assertEquals(expected.ys[v], actual.ys[v], 0);
+			assertEquals(expected.zs[v], actual.zs[v], 0);
+		}
+		for (int p = 0; p < expected.size; p++) {
+			assertEquals(expected.reflectance[p], actual.reflectance[p]);
+		}
+	}
+
+	@Test
+	/** Check the text format is read properly. */
+	public void testLoadText() throws IOException {
+		Mesh mesh = SceneLoader.loadText(writeScene(SCENE));
+
+		assertEquals(2, mesh.size);
+		assertEquals(-0.7f, mesh.light.z, 0);
+		assertEquals(2, mesh.xs[1], 0);
+		assertEquals(20, mesh.ys[3], 0);
+		assertEquals(-8.125f, mesh.zs[5], 0);
+		assertEquals(0xff0080, mesh.reflectance[0]);
+		assertEquals(0x010203, mesh.reflectance[1]);
+	}
+
+	@Test
+	/** Converting to binary and reading it back should give the same mesh. */
+	public void testBinaryRoundTrip() throws IOException {
+		File text = writeScene(SCENE);
+		File binary = File.createTempFile("scene", ".bin");
+		binary.deleteOnExit();
+
+		BinaryScene.convert(text, binary);
+
+		assertTrue(BinaryScene.isBinary(binary));
+		assertTrue(!BinaryScene.isBinary(text));
+		assertSameMesh(SceneLoader.loadText(text), BinaryScene.read(binary));
+		assertSameMesh(SceneLoader.loadText(text), SceneLoader.load(binary));
+	}
+
+	@Test
+	/**
+	 * Loading a text file should leave a cache behind, which is used until the
+	 * text file changes.
+	 */
+	public void testCache() throws IOException {
+		File text = writeScene(SCENE);
+		File cache = SceneLoader.getCacheFile(text);
+
+		assertSameMesh(SceneLoader.loadText(text), SceneLoader.load(text));
+		assertTrue(cache.isFile());
+		assertSameMesh(SceneLoader.loadText(text), SceneLoader.load(text));
+
+		// Change the text file and make it newer than the cache.
+		try (FileWriter writer = new FileWriter(text, true)) {
+			writer.write("0 0 0 1 0 0 0 1 0 9 9 9\n");
+		}
+		text.setLastModified(cache.lastModified() + 2000);
+
+		assertEquals(3, SceneLoader.load(text).size);
+		assertEquals(3, BinaryScene.read(cache).size);
+	}
+
+	@Test
+	/**
+	 * The cache is only used if the text file has exactly the length and time
+	 * recorded in it, so a change that leaves the text file older than the
+	 * cache, or a cache that doesn't record its text file, is noticed.
+	 */
+	public void testCacheMatchesSource() throws IOException {
+		File text = writeScene(SCENE);
+		File cache = SceneLoader.getCacheFile(text);
+		SceneLoader.load(text);
+		assertTrue(BinaryScene.isReadFrom(cache, text.length(), text.lastModified()));
+		assertTrue(!BinaryScene.isReadFrom(cache, text.length() + 1, text.lastModified()));
+		assertTrue(!BinaryScene.isReadFrom(cache, text.length(), text.lastModified() - 1000));
+
+		// Change the text file but make it older than the cache.
+		try (FileWriter writer = new FileWriter(text, true)) {
+			writer.write("0 0 0 1 0 0 0 1 0 9 9 9\n");
+		}
+		text.setLastModified(cache.lastModified() - 60000);
+		assertEquals(3, SceneLoader.load(text).size);
+		assertEquals(3, BinaryScene.read(cache).size);
+
+		// A cache with no source file, such as one from an older version.
+		BinaryScene.write(SceneLoader.loadText(writeScene(SCENE)), cache);
+		assertTrue(!BinaryScene.isReadFrom(cache, text.length(), text.lastModified()));
+		assertEquals(3, SceneLoader.load(text).size);
+		assertTrue(BinaryScene.isReadFrom(cache, text.length(), text.lastModified()));
+	}
+}
+
+// code for COMP261 assignments
@@ -3,11 +3,16 @@ package tests;
 import static org.junit.Assert.*;
 
 import java.awt.Color;
+import java.util.Arrays;
 
 import org.junit.Test;
 
+import renderer.Mesh;
 import renderer.Pipeline;
+import renderer.Scene;
 import renderer.Scene.Polygon;
+import renderer.ShadingCache;
+import renderer.Transform;
 import renderer.Vector3D;
 
 /**
@@ -89,6 +94,98 @@ public class ShadingTests {
 
 		assertEquals(expected, shading);
 	}
+
+	@Test
+	/**
+	 * The shading cache should give the same colours as getShading, both
+	 * before and after the model is rotated, and pick up light changes.
+	 */
+	public void testShadingCache() {
+		float[] verts = new float[] { 0, 0, 5, 5, 10, 5, 10, 0, 5 };
+		int[] col = new int[] { 100, 200, 255 };
+		Polygon poly = new Polygon(verts, col);
+		Mesh model = Mesh.fromScene(new Scene(Arrays.asList(poly), new Vector3D(1, 2, -3)));
+		Color ambient = new Color(20, 30, 40);
+		Color bl = new Color(50, 0, 0);
+		Color br = new Color(0, 0, 60);
+
+		ShadingCache cache = new ShadingCache(model);
+		Transform orientation = Transform.newXRotation(0.3f).compose(Transform.newYRotation(-0.7f));
+		Mesh screen = new Mesh(1);
+		model.transform(orientation, screen);
+		cache.setLights(Color.WHITE, ambient, bl, br);
+		cache.setView(screen, orientation);
+
+		Polygon rotated = screen.getPolygon(0);
+		Vector3D light = orientation.multiply(model.light);
+		Color expected = Pipeline.getShading(rotated, light, Color.WHITE, ambient, bl, br);
+		assertColorClose(expected, cache.getColor(0));
+
+		cache.setLights(Color.WHITE, Color.BLACK, bl, br);
+		expected = Pipeline.getShading(rotated, light, Color.WHITE, Color.BLACK, bl, br);
+		assertColorClose(expected, cache.getColor(0));
+	}
+
+	@Test
+	/**
+	 * Threads shading the same polygons at once without a lock get the same
+	 * colours as one thread, and each polygon is counted once.
+	 */
+	public void testShadingCacheConcurrent() throws InterruptedException {
+		final Mesh model = IndexedMeshTests.sphere(40, 50, 50);
+		final Transform orientation = Transform.newYRotation(0.5f);
+		ShadingCache serial = new ShadingCache(model);
+		serial.setLights(Color.WHITE, Color.GRAY, Color.RED, Color.BLUE);
+		serial.setView(model, orientation);
+		final ShadingCache concurrent = new ShadingCache(model);
+		concurrent.setLights(Color.WHITE, Color.GRAY, Color.RED, Color.BLUE);
+		concurrent.setView(model, orientation);
+
+		// every thread asks for the even polygons, each from a different
+		// place, so they often shade the same one at once
+		final int[][] colors = new int[4][model.size];
+		Thread[] threads = new Thread[colors.length];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					float[] light = new float[3];
+					int evens = (model.size + 1) / 2;
+					for (int i = 0; i < evens; i++) {
+						int p = (i + thread * evens / 4) % evens * 2;
+						colors[thread][p] = concurrent.getColorConcurrent(p, light);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		int[] polys = new int[model.size];
+		for (int p = 0; p < model.size; p++) {
+			polys[p] = p;
+		}
+		concurrent.countUsed(polys, model.size);
+		assertEquals((model.size + 1) / 2, concurrent.getUsedCount());
+		for (int p = 0; p < model.size; p += 2) {
+			int expected = serial.getColor(p);
+			for (int[] threadColors : colors) {
+				assertEquals(expected, threadColors[p]);
+			}
+			assertEquals(expected, concurrent.getColors()[p]);
+		}
+	}
+
+	// The cache works out the file light in model space, so rounding can
+	// differ by one step.
+	private static void assertColorClose(Color expected, int actual) {
+		Color found = new Color(actual);
+		assertTrue(Math.abs(expected.getRed() - found.getRed()) <= 1);
+		assertTrue(Math.abs(expected.getGreen() - found.getGreen()) <= 1);
+		assertTrue(Math.abs(expected.getBlue() - found.getBlue()) <= 1);
+	}
 }
 
 //code for COMP261 assignments
\ No newline at end of file
@@ -0,0 +1,175 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.SceneRenderer;
+import renderer.ShadingMode;
+import renderer.ShadowMap;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class ShadowMapTests {
+
+	private static final Transform ORIENTATION = Transform.newYRotation(0.2f)
+			.compose(Transform.newXRotation(-0.1f));
+
+	/**
+	 * A small square in front of a big one, lit from the right, so the small
+	 * one casts a shadow on the left of the big one.
+	 */
+	private static Mesh occludedFloor() {
+		Mesh model = new Mesh(0);
+		square(model, 0, 10, 0, 0xc08040);
+		square(model, 0, 80, 30, 0x40a0c0);
+		model.light = new Vector3D(1, 0, -1);
+		return model;
+	}
+
+	private static void square(Mesh model, float centreX, float half, float z, int rgb) {
+		float left = centreX - half, right = centreX + half;
+		model.add(left, -half, z, left, half, z, right, half, z, rgb);
+		model.add(left, -half, z, right, half, z, right, -half, z, rgb);
+	}
+
+	private static boolean isShadowed(ShadowMap map, float x, float y, float z) {
+		Vector3D point = map.toMap.multiply(new Vector3D(x, y, z));
+		return map.isShadowed(point.x, point.y, point.z, ShadowMap.BIAS);
+	}
+
+	private static SceneRenderer renderer(Mesh model, ShadingMode mode, boolean shadows, boolean parallel) {
+		SceneRenderer sceneRenderer = new SceneRenderer(400, 400);
+		sceneRenderer.shadingMode = mode;
+		sceneRenderer.shadows = shadows;
+		sceneRenderer.parallel = parallel;
+		sceneRenderer.setModel(model);
+		return sceneRenderer;
+	}
+
+	private static int[] draw(Mesh model, ShadingMode mode, boolean shadows, boolean parallel, Color ambient,
+			Color bottomLeft) {
+		SceneRenderer sceneRenderer = renderer(model, mode, shadows, parallel);
+		sceneRenderer.render(ORIENTATION, ambient, bottomLeft, Color.BLACK);
+		return sceneRenderer.getFrame().pixels;
+	}
+
+	@Test
+	/** Points behind the small square from the light are shadowed, and no others. */
+	public void testShadowedPoints() {
+		ShadowMap map = new ShadowMap(occludedFloor(), 256, ForkJoinPool.commonPool());
+		assertTrue(isShadowed(map, -30, 0, 30));
+		assertTrue(isShadowed(map, -25, 5, 30));
+		assertFalse(isShadowed(map, 30, 0, 30));
+		assertFalse(isShadowed(map, -60, 0, 30));
+		assertFalse(isShadowed(map, 0, 0, 30));
+		// the small square doesn't shadow itself
+		assertFalse(isShadowed(map, 0, 0, 0));
+		assertFalse(isShadowed(map, 5, -5, 0));
+	}
+
+	@Test
+	/**
+	 * With shadows on, the only pixels that change are those of the big
+	 * square, which are then lit by the ambient light alone.
+	 */
+	public void testShadowsInFrame() {
+		Mesh model = occludedFloor();
+		Color ambient = new Color(60, 60, 60);
+		SceneRenderer sceneRenderer = renderer(model, ShadingMode.FLAT, true, false);
+		sceneRenderer.render(ORIENTATION, ambient, Color.BLACK, Color.BLACK);
+		FrameBuffer frame = sceneRenderer.getFrame();
+		int[] lit = draw(model, ShadingMode.FLAT, false, false, ambient, Color.BLACK);
+		int unlit = (ambient.getRed() * 0x40 / 255 << 16) | (ambient.getGreen() * 0xa0 / 255 << 8)
+				| ambient.getBlue() * 0xc0 / 255;
+
+		int shadowed = 0;
+		for (int i = 0; i < lit.length; i++) {
+			if (lit[i] != frame.pixels[i]) {
+				shadowed++;
+				int p = frame.ids[i];
+				assertTrue("pixel " + i + " of polygon " + p, p == 2 || p == 3);
+				GBufferTests.assertClose(new int[] { unlit }, new int[] { frame.pixels[i] });
+			}
+		}
+		// the shadow is about as big on screen as the small square
+		int square = 0;
+		for (int i = 0; i < frame.ids.length; i++) {
+			if (frame.ids[i] == 0 || frame.ids[i] == 1) {
+				square++;
+			}
+		}
+		assertTrue(shadowed + " pixels shadowed", shadowed > square / 2 && shadowed < square * 2);
+	}
+
+	@Test
+	/**
+	 * The map is drawn once for a model, however it is turned, and again
+	 * when its light changes.
+	 */
+	public void testMapCached() {
+		Mesh model = occludedFloor();
+		SceneRenderer sceneRenderer = renderer(model, ShadingMode.FLAT, true, false);
+		sceneRenderer.render(ORIENTATION, Color.GRAY, Color.BLACK, Color.BLACK);
+		ShadowMap map = sceneRenderer.getShadowMap();
+		sceneRenderer.render(Transform.newYRotation(1), Color.GRAY, Color.BLACK, Color.BLACK);
+		sceneRenderer.render(Transform.newXRotation(-0.5f), Color.DARK_GRAY, Color.RED, Color.BLACK);
+		assertSame(map, sceneRenderer.getShadowMap());
+
+		model.light = new Vector3D(-1, 0, -1);
+		sceneRenderer.render(ORIENTATION, Color.GRAY, Color.BLACK, Color.BLACK);
+		assertTrue(map != sceneRenderer.getShadowMap());
+	}
+
+	@Test
+	/** Shadows come out the same on one thread as on several, in every mode. */
+	public void testParallel() {
+		Mesh model = occludedFloor();
+		for (ShadingMode mode : ShadingMode.values()) {
+			assertArrayEquals(draw(model, mode, true, false, Color.GRAY, Color.BLACK),
+					draw(model, mode, true, true, Color.GRAY, Color.BLACK));
+		}
+	}
+
+	@Test
+	/** Reshading a frame with shadows gives the same image as drawing it again. */
+	public void testReshade() {
+		Mesh model = occludedFloor();
+		Color[][] lights = { { Color.GRAY, Color.BLACK }, { new Color(30, 60, 90), new Color(200, 0, 0) } };
+		for (ShadingMode mode : ShadingMode.values()) {
+			SceneRenderer reshaded = renderer(model, mode, true, false);
+			reshaded.render(ORIENTATION, lights[0][0], lights[0][1], Color.BLACK);
+			for (Color[] light : lights) {
+				reshaded.reshade(light[0], light[1], Color.BLACK);
+				GBufferTests.assertClose(draw(model, mode, true, false, light[0], light[1]),
+						reshaded.getFrame().pixels);
+			}
+		}
+	}
+
+	@Test
+	/** A transform composed with its inverse leaves points where they were. */
+	public void testInverse() {
+		Transform transform = Transform.newTranslation(3, -7, 12).compose(ORIENTATION)
+				.compose(Transform.newScale(2, 2, 2));
+		Transform inverse = transform.inverse();
+		Vector3D[] points = { new Vector3D(0, 0, 0), new Vector3D(1, 2, 3), new Vector3D(-40, 15, 8) };
+		for (Vector3D point : points) {
+			Vector3D back = inverse.multiply(transform.multiply(point));
+			assertEquals(point.x, back.x, 1e-4f);
+			assertEquals(point.y, back.y, 1e-4f);
+			assertEquals(point.z, back.z, 1e-4f);
+		}
+	}
+}
+
+// code for COMP261 assignments
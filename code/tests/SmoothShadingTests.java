@@ -0,0 +1,107 @@
+package tests;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+
+import org.junit.Test;
+
+import renderer.Mesh;
+import renderer.SceneRenderer;
+import renderer.ShadingMode;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class SmoothShadingTests {
+
+	private static final Transform ORIENTATION = Transform.newYRotation(0.4f)
+			.compose(Transform.newXRotation(-0.3f));
+
+	private static int[] draw(Mesh model, ShadingMode mode, boolean parallel, Color ambient, Color bottomLeft,
+			Color bottomRight) {
+		SceneRenderer sceneRenderer = new SceneRenderer(400, 400);
+		sceneRenderer.shadingMode = mode;
+		sceneRenderer.parallel = parallel;
+		sceneRenderer.setModel(model);
+		sceneRenderer.render(ORIENTATION, ambient, bottomLeft, bottomRight);
+		return sceneRenderer.getFrame().pixels;
+	}
+
+	@Test
+	/**
+	 * On a flat surface every vertex normal is the surface's normal, so
+	 * Gouraud and Phong shading look like flat shading.
+	 */
+	public void testFlatSurface() {
+		Mesh model = new Mesh(0);
+		model.add(-20, -20, 0, -20, 20, 0, 20, 20, 0, 0x804020);
+		model.add(-20, -20, 0, 20, 20, 0, 20, -20, 0, 0x804020);
+		model.light = new Vector3D(0.3f, 0.2f, -1);
+		Color ambient = new Color(40, 50, 60);
+		Color bottomLeft = new Color(90, 0, 30);
+
+		int[] flat = draw(model, ShadingMode.FLAT, false, ambient, bottomLeft, Color.BLACK);
+		GBufferTests.assertClose(flat, draw(model, ShadingMode.GOURAUD, false, ambient, bottomLeft, Color.BLACK));
+		GBufferTests.assertClose(flat, draw(model, ShadingMode.PHONG, false, ambient, bottomLeft, Color.BLACK));
+	}
+
+	@Test
+	/**
+	 * On a sphere the smooth modes differ from flat shading, and from each
+	 * other, but give the same image on one thread as on several.
+	 */
+	public void testSphere() {
+		Mesh model = IndexedMeshTests.sphere(12, 16, 50);
+		Color ambient = new Color(30, 30, 30);
+		Color bottomRight = new Color(0, 80, 120);
+		int[] flat = draw(model, ShadingMode.FLAT, false, ambient, Color.BLACK, bottomRight);
+		int[] gouraud = draw(model, ShadingMode.GOURAUD, false, ambient, Color.BLACK, bottomRight);
+		int[] phong = draw(model, ShadingMode.PHONG, false, ambient, Color.BLACK, bottomRight);
+		assertTrue(differences(flat, gouraud) > 1000);
+		assertTrue(differences(flat, phong) > 1000);
+		assertTrue(differences(gouraud, phong) > 1000);
+
+		assertArrayEquals(gouraud, draw(model, ShadingMode.GOURAUD, true, ambient, Color.BLACK, bottomRight));
+		assertArrayEquals(phong, draw(model, ShadingMode.PHONG, true, ambient, Color.BLACK, bottomRight));
+	}
+
+	private static int differences(int[] a, int[] b) {
+		int count = 0;
+		for (int i = 0; i < a.length; i++) {
+			if (a[i] != b[i]) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	/**
+	 * Reshading with smooth shading gives the same image as drawing again
+	 * with the new lights, including after switching mode.
+	 */
+	public void testReshade() {
+		Mesh model = IndexedMeshTests.sphere(12, 16, 50);
+		Color[][] lights = { { Color.GRAY, Color.BLACK, Color.BLACK },
+				{ new Color(30, 60, 90), new Color(200, 0, 0), new Color(0, 0, 150) },
+				{ Color.DARK_GRAY, new Color(0, 100, 0), Color.BLACK } };
+
+		for (ShadingMode mode : new ShadingMode[] { ShadingMode.GOURAUD, ShadingMode.PHONG }) {
+			SceneRenderer reshaded = new SceneRenderer(400, 400);
+			reshaded.shadingMode = ShadingMode.FLAT;
+			reshaded.polygonIds = true;
+			reshaded.setModel(model);
+			reshaded.render(ORIENTATION, lights[0][0], lights[0][1], lights[0][2]);
+			reshaded.shadingMode = mode;
+			for (Color[] light : lights) {
+				assertTrue(reshaded.canReshade());
+				reshaded.reshade(light[0], light[1], light[2]);
+				GBufferTests.assertClose(draw(model, mode, false, light[0], light[1], light[2]),
+						reshaded.getFrame().pixels);
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
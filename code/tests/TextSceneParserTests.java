@@ -0,0 +1,156 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.Mesh;
+import renderer.SceneFormatException;
+import renderer.TextSceneParser;
+
+public class TextSceneParserTests {
+
+	private static File writeScene(String contents) throws IOException {
+		File file = File.createTempFile("scene", ".txt");
+		file.deleteOnExit();
+		try (FileWriter writer = new FileWriter(file)) {
+			writer.write(contents);
+		}
+		return file;
+	}
+
+	private static void assertParseError(String contents, long line) throws IOException {
+		try {
+			TextSceneParser.parse(writeScene(contents));
+			fail("expected a SceneFormatException");
+		} catch (SceneFormatException e) {
+			assertEquals(line, e.getLine());
+		}
+	}
+
+	@Test
+	/**
+	 * Every number should come out exactly as Float.parseFloat would read it,
+	 * however it is written.
+	 */
+	public void testSameFloatsAsParseFloat() throws IOException {
+		Random random = new Random(261);
+		String[] texts = new String[9 * 2000];
+		for (int i = 0; i < texts.length; i++) {
+			float f = Float.intBitsToFloat(random.nextInt());
+			switch (i % 6) {
+			case 0:
+				texts[i] = Float.toString(f);
+				break;
+			case 1:
+				texts[i] = Double.toString(random.nextGaussian() * 1000);
+				break;
+			case 2:
+				texts[i] = String.format("%.3f", random.nextFloat() * 600 - 300);
+				break;
+			case 3:
+				texts[i] = Integer.toString(random.nextInt(2000) - 1000);
+				break;
+			case 4:
+				texts[i] = "0.000000000000000000000123456789012345678901";
+				break;
+			default:
+				texts[i] = Float.isNaN(f) || Float.isInfinite(f) ? "1e-45" : String.format("%.9e", f);
+			}
+		}
+
+		StringBuilder scene = new StringBuilder("1.5 -2 3e2\n");
+		for (int p = 0; p < texts.length / 9; p++) {
+			for (int i = 0; i < 9; i++)
+				scene.append(texts[p * 9 + i]).append(' ');
+			scene.append("1 2 3\n");
+		}
+
+		Mesh mesh = TextSceneParser.parse(writeScene(scene.toString()));
+
+		assertEquals(texts.length / 9, mesh.size);
+		for (int p = 0; p < mesh.size; p++) {
+			for (int i = 0; i < 3; i++) {
+				int v = p * 3 + i;
+				assertEquals(Float.floatToIntBits(Float.parseFloat(texts[p * 9 + i * 3])),
+						Float.floatToIntBits(mesh.xs[v]));
+				assertEquals(Float.floatToIntBits(Float.parseFloat(texts[p * 9 + i * 3 + 1])),
+						Float.floatToIntBits(mesh.ys[v]));
+				assertEquals(Float.floatToIntBits(Float.parseFloat(texts[p * 9 + i * 3 + 2])),
+						Float.floatToIntBits(mesh.zs[v]));
+			}
+		}
+	}
+
+	@Test
+	/** Windows line endings, tabs, blank lines and no final newline are fine. */
+	public void testLayout() throws IOException {
+		Mesh mesh = TextSceneParser.parse(writeScene("0 0 -1\r\n\r\n1 2 3\t4 5 6  7 8 9 10 20 30\r\n   \n"
+				+ "-1 -2 -3 -4 -5 -6 -7 -8 -9 255 255 255"));
+
+		assertEquals(2, mesh.size);
+		assertTrue(mesh.light.z == -1);
+		assertEquals(0x0a141e, mesh.reflectance[0]);
+		assertEquals(-9, mesh.zs[5], 0);
+	}
+
+	@Test
+	/** Mistakes should be reported with the line they are on. */
+	public void testErrorLines() throws IOException {
+		assertParseError("", 1);
+		assertParseError("0 0 1\n1 2 3 4 5 6 7 8 9 1 2 3\n1 2 3 4 5 6 7 8 9 1 2\n", 3);
+		assertParseError("0 0 1\n\n1 2 3 4 5 6 7 8 x9 1 2 3\n", 3);
+		assertParseError("0 0 1\n1 2 3 4 5 6 7 8 9 1 256 3\n", 2);
+		assertParseError("0 zero 1\n", 1);
+	}
+
+	@Test
+	/**
+	 * Parsing a file in chunks on several threads should give the same mesh as
+	 * parsing it in one go, and report errors on the right line.
+	 */
+	public void testParallel() throws IOException {
+		StringBuilder scene = new StringBuilder("\n0.5 -1 2\n");
+		for (int p = 0; p < 500; p++) {
+			for (int i = 0; i < 9; i++)
+				scene.append(p * 9 + i).append(i % 2 == 0 ? " " : ".5 ");
+			scene.append(p % 256).append(" 0 ").append(p % 7).append(p % 50 == 0 ? "\n\n" : "\n");
+		}
+		File file = writeScene(scene.toString());
+
+		Mesh serial = TextSceneParser.parse(file);
+		for (int threads = 2; threads <= 7; threads++) {
+			Mesh parallel = TextSceneParser.parse(file, threads, 0);
+			assertEquals(serial.size, parallel.size);
+			assertTrue(serial.light.equals(parallel.light));
+			for (int v = 0; v < serial.size * 3; v++) {
+				assertEquals(serial.xs[v], parallel.xs[v], 0);
+				assertEquals(serial.ys[v], parallel.ys[v], 0);
+				assertEquals(serial.zs[v], parallel.zs[v], 0);
+			}
+			for (int p = 0; p < serial.size; p++)
+				assertEquals(serial.reflectance[p], parallel.reflectance[p]);
+		}
+
+		scene.append("1 2 3\n");
+		File broken = writeScene(scene.toString());
+		long lines = scene.toString().split("\n", -1).length - 1;
+		for (int threads = 1; threads <= 7; threads++) {
+			try {
+				TextSceneParser.parse(broken, threads, 0);
+				fail("expected a SceneFormatException");
+			} catch (SceneFormatException e) {
+				assertEquals(lines, e.getLine());
+			}
+		}
+	}
+}
+
+// code for COMP261 assignments
@@ -0,0 +1,64 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import renderer.EdgeList;
+import renderer.FrameBuffer;
+import renderer.Mesh;
+import renderer.Pipeline;
+import renderer.TileRasterizer;
+
+public class TileRasterizerTests {
+
+	/** Makes a mesh of random, overlapping triangles, some off the canvas. */
+	private static Mesh randomMesh(int size, int canvas, long seed) {
+		Random random = new Random(seed);
+		Mesh mesh = new Mesh(size);
+		for (int i = 0; i < size; i++) {
+			float x = random.nextFloat() * (canvas + 40) - 20;
+			float y = random.nextFloat() * (canvas + 40) - 20;
+			float r = random.nextFloat() * 80;
+			mesh.add(x, y, random.nextFloat() * 100,
+					x + random.nextFloat() * r, y + random.nextFloat() * r, random.nextFloat() * 100,
+					x - random.nextFloat() * r, y + random.nextFloat() * r, random.nextFloat() * 100,
+					random.nextInt(0x1000000));
+		}
+		return mesh;
+	}
+
+	@Test
+	/**
+	 * Drawing with tiles on several threads must give exactly the same colours
+	 * and depths as drawing the polygons one at a time.
+	 */
+	public void testSameAsSerial() {
+		int canvas = 300;
+		Mesh mesh = randomMesh(2000, canvas, 261);
+		int[] polys = new int[mesh.size];
+		for (int p = 0; p < mesh.size; p++)
+			polys[p] = p;
+
+		FrameBuffer serial = new FrameBuffer(canvas, canvas - 17);
+		serial.clear(0);
+		EdgeList edgeList = new EdgeList(0, -1);
+		for (int p = 0; p < mesh.size; p++) {
+			Pipeline.computeEdgeList(mesh, p, edgeList);
+			Pipeline.computeZBuffer(serial, edgeList, mesh.reflectance[p]);
+		}
+
+		FrameBuffer tiled = new FrameBuffer(canvas, canvas - 17);
+		tiled.clear(0);
+		new TileRasterizer().rasterize(tiled, mesh, polys, polys.length, mesh.reflectance);
+
+		for (int i = 0; i < serial.pixels.length; i++) {
+			assertEquals(serial.pixels[i], tiled.pixels[i]);
+			assertEquals(Float.floatToIntBits(serial.depth[i]), Float.floatToIntBits(tiled.depth[i]));
+		}
+	}
+}
+
+// code for COMP261 assignments
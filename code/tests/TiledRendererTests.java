@@ -0,0 +1,164 @@
+package tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.Test;
+
+import renderer.AntiAliasMode;
+import renderer.BatchRenderer;
+import renderer.BatchRenderer.Job;
+import renderer.Light;
+import renderer.Mesh;
+import renderer.PngWriter;
+import renderer.RasterMode;
+import renderer.SceneRenderer;
+import renderer.ShadingMode;
+import renderer.TiledRenderer;
+import renderer.Transform;
+import renderer.Vector3D;
+
+public class TiledRendererTests {
+
+	private static final Transform ORIENTATION = Transform.newYRotation(0.4f)
+			.compose(Transform.newXRotation(-0.3f));
+
+	private static final List<Light> LIGHTS = Light.cornerLights(new Color(150, 80, 0), Color.BLACK);
+
+	private static BufferedImage read(ByteArrayOutputStream png) throws IOException {
+		return ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+	}
+
+	@Test
+	/**
+	 * Rows written by the PngWriter read back the same, including ones
+	 * spread over several IDAT chunks.
+	 */
+	public void testPngRoundTrip() throws IOException {
+		int width = 300, height = 100;
+		int[] pixels = new int[width * height];
+		Random random = new Random(25);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = random.nextInt() & 0xffffff;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		PngWriter png = new PngWriter(out, width, height);
+		for (int y = 0; y < height; y++) {
+			png.writeRow(pixels, y * width);
+		}
+		png.finish();
+		assertTrue(out.size() > PngWriter.CHUNK_SIZE);
+
+		BufferedImage image = read(out);
+		assertEquals(width, image.getWidth());
+		assertEquals(height, image.getHeight());
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				assertEquals(pixels[y * width + x], image.getRGB(x, y) & 0xffffff);
+			}
+		}
+	}
+
+	@Test
+	/** The model is fitted to and centred on whatever size the frame is. */
+	public void testFitToSize() {
+		Mesh model = new Mesh(0);
+		model.add(-10, -10, 0, -10, 10, 0, 10, 10, 0, 0xffffff);
+		model.add(-10, -10, 0, 10, 10, 0, 10, -10, 0, 0xffffff);
+		model.light = new Vector3D(0, 0, -1);
+		int[][] sizes = { { 300, 200 }, { 200, 300 }, { 1000, 1000 } };
+		for (int[] size : sizes) {
+			int width = size[0], height = size[1];
+			SceneRenderer sceneRenderer = new SceneRenderer(width, height);
+			sceneRenderer.setModel(model);
+			sceneRenderer.render(Transform.identity(), Color.BLACK, Color.BLACK, Color.BLACK);
+			int[] pixels = sceneRenderer.getFrame().pixels;
+			int minX = width, minY = height, maxX = -1, maxY = -1;
+			for (int i = 0; i < pixels.length; i++) {
+				if ((pixels[i] & 0xffffff) != 0) {
+					minX = Math.min(minX, i % width);
+					maxX = Math.max(maxX, i % width);
+					minY = Math.min(minY, i / width);
+					maxY = Math.max(maxY, i / width);
+				}
+			}
+			// the same share of the smaller side as on the GUI's canvas
+			float side = Math.min(width, height) * 250f / 600;
+			assertEquals(side, maxX - minX + 1, 2);
+			assertEquals(side, maxY - minY + 1, 2);
+			assertEquals(width / 2f, (minX + maxX + 1) / 2f, 1);
+			assertEquals(height / 2f, (minY + maxY + 1) / 2f, 1);
+		}
+	}
+
+	@Test
+	/**
+	 * An image drawn in tiles, with sizes that don't divide it or line up
+	 * with the depth pyramid's blocks, is exactly the same as one drawn in a
+	 * single frame, in every anti-aliasing and raster mode.
+	 */
+	public void testTilesMatchFrame() throws IOException {
+		Mesh model = IndexedMeshTests.sphere(12, 16, 50);
+		int[][] sizes = { { 300, 200, 64 }, { 513, 300, 100 } };
+		for (int[] size : sizes) {
+			int width = size[0], height = size[1];
+			for (RasterMode rasterMode : RasterMode.values()) {
+				for (AntiAliasMode mode : AntiAliasMode.values()) {
+					SceneRenderer sceneRenderer = new SceneRenderer(width, height);
+					setModes(sceneRenderer, rasterMode, mode);
+					sceneRenderer.setModel(model);
+					sceneRenderer.render(ORIENTATION, Color.GRAY, LIGHTS);
+					int[] expected = sceneRenderer.getFrame().pixels;
+
+					TiledRenderer tiledRenderer = new TiledRenderer(size[2]);
+					setModes(tiledRenderer.sceneRenderer, rasterMode, mode);
+					tiledRenderer.setModel(model, null);
+					ByteArrayOutputStream out = new ByteArrayOutputStream();
+					tiledRenderer.render(ORIENTATION, Color.GRAY, LIGHTS, width, height, out);
+					BufferedImage image = read(out);
+
+					assertEquals(width, image.getWidth());
+					assertEquals(height, image.getHeight());
+					for (int y = 0; y < height; y++) {
+						for (int x = 0; x < width; x++) {
+							String at = width + "x" + height + " " + rasterMode + " " + mode + " at " + x + ", " + y;
+							assertEquals(at, expected[y * width + x] & 0xffffff, image.getRGB(x, y) & 0xffffff);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static void setModes(SceneRenderer sceneRenderer, RasterMode rasterMode, AntiAliasMode mode) {
+		sceneRenderer.rasterMode = rasterMode;
+		sceneRenderer.antiAliasing = mode;
+		sceneRenderer.shadingMode = ShadingMode.GOURAUD;
+		sceneRenderer.occlusionCulling = true;
+		sceneRenderer.shadows = true;
+	}
+
+	@Test
+	/** Big images are drawn in tiles by the BatchRenderer, and small ones needn't be. */
+	public void testBatchTiles() {
+		Job job = BatchRenderer.parseJob(new String[] { "a.txt", "a.png", "width=64", "height=48" }, null);
+		assertEquals(0, BatchRenderer.getTileSize(job));
+		job = BatchRenderer.parseJob(new String[] { "a.txt", "a.png", "width=64", "height=48", "tile=16" },
+				null);
+		assertEquals(16, BatchRenderer.getTileSize(job));
+		job = BatchRenderer.parseJob(new String[] { "a.txt", "a.png", "width=16384", "height=16384" }, null);
+		assertEquals(TiledRenderer.DEFAULT_TILE_SIZE, BatchRenderer.getTileSize(job));
+	}
+}
+
+// code for COMP261 assignments
@@ -7,6 +7,7 @@ import java.awt.Color;
 import org.junit.Test;
 
 import renderer.EdgeList;
+import renderer.FrameBuffer;
 import renderer.Pipeline;
 
 /**
@@ -193,6 +194,53 @@ public class ZBufferTests {
 		}
 
 	}
+
+	@Test
+	/**
+	 * The FrameBuffer version should colour exactly the same pixels as the
+	 * Color[][] version, just stored row by row as packed ints.
+	 */
+	public void testFrameBufferMatchesArrays() {
+		Color[][] zbuffer = new Color[10][10];
+		float[][] zdepth = new float[10][10];
+		FrameBuffer frame = new FrameBuffer(10, 10);
+		for (int i = 0; i < 10; i++)
+			for (int j = 0; j < 10; j++)
+				zdepth[i][j] = 50;
+		frame.clear(0);
+		java.util.Arrays.fill(frame.depth, 50);
+
+		Color col = new Color(100, 0, 0);
+
+		EdgeList el = new EdgeList(0, 9) {
+			public float getLeftX(int y) {
+				return 0;
+			}
+
+			public float getRightX(int y) {
+				return y;
+			}
+
+			public float getLeftZ(int y) {
+				return 25;
+			}
+
+			public float getRightZ(int y) {
+				return 25;
+			}
+		};
+
+		Pipeline.computeZBuffer(zbuffer, zdepth, el, col);
+		Pipeline.computeZBuffer(frame, el, col.getRGB());
+
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 10; j++) {
+				int expected = zbuffer[i][j] == null ? 0 : zbuffer[i][j].getRGB() & 0xffffff;
+				assertEquals(expected, frame.getRGB(i, j) & 0xffffff);
+				assertEquals(zdepth[i][j], frame.getDepth(i, j), 1e-5);
+			}
+		}
+	}
 }
 
 //code for COMP261 assignments
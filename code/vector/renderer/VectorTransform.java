@@ -0,0 +1,53 @@
+package renderer;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Transform's batch multiply with the JDK's Vector API, a whole vector of
+ * points at a time. This lives in its own source root because it needs
+ * jdk.incubator.vector (JDK 16 or later) to compile and run; Transform loads
+ * it by name and falls back to its plain loop if it isn't there.
+ *
+ * Each point's coordinates are added up in the same order as the plain loop,
+ * without fusing the multiplies and adds, so the results are exactly the
+ * same.
+ */
+final class VectorTransform implements PointTransformer {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	@Override
+	public void multiply(float[][] matrix, float[] xs, float[] ys, float[] zs, float[] outXs, float[] outYs,
+			float[] outZs, int offset, int count) {
+		final float m00 = matrix[0][0], m01 = matrix[0][1], m02 = matrix[0][2], m03 = matrix[0][3];
+		final float m10 = matrix[1][0], m11 = matrix[1][1], m12 = matrix[1][2], m13 = matrix[1][3];
+		final float m20 = matrix[2][0], m21 = matrix[2][1], m22 = matrix[2][2], m23 = matrix[2][3];
+		final FloatVector t0 = FloatVector.broadcast(SPECIES, m03);
+		final FloatVector t1 = FloatVector.broadcast(SPECIES, m13);
+		final FloatVector t2 = FloatVector.broadcast(SPECIES, m23);
+		final int end = offset + count;
+		final int vectorEnd = offset + SPECIES.loopBound(count);
+		int i = offset;
+		for (; i < vectorEnd; i += SPECIES.length()) {
+			// all three are read before any is written, so the out arrays can
+			// be the input arrays
+			FloatVector x = FloatVector.fromArray(SPECIES, xs, i);
+			FloatVector y = FloatVector.fromArray(SPECIES, ys, i);
+			FloatVector z = FloatVector.fromArray(SPECIES, zs, i);
+			t0.add(x.mul(m00)).add(y.mul(m01)).add(z.mul(m02)).intoArray(outXs, i);
+			t1.add(x.mul(m10)).add(y.mul(m11)).add(z.mul(m12)).intoArray(outYs, i);
+			t2.add(x.mul(m20)).add(y.mul(m21)).add(z.mul(m22)).intoArray(outZs, i);
+		}
+		for (; i < end; i++) {
+			float x = xs[i];
+			float y = ys[i];
+			float z = zs[i];
+			outXs[i] = m03 + m00 * x + m01 * y + m02 * z;
+			outYs[i] = m13 + m10 * x + m11 * y + m12 * z;
+			outZs[i] = m23 + m20 * x + m21 * y + m22 * z;
+		}
+	}
+}
+
+// code for comp261 assignments